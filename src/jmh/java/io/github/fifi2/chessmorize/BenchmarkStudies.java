@@ -0,0 +1,83 @@
+package io.github.fifi2.chessmorize;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Benchmark studies
+ * - a study is made of the same repertoire chapter repeated, so that the
+ * numbers only depend on its size (and are comparable across commits)
+ * - the chapter is a white repertoire with nested variations, comments and
+ * NAGs (about 40 lines)
+ */
+
+public final class BenchmarkStudies {
+
+    public static final String MAIN_LINE = """
+        e4 e5 Nf3 Nc6 Bb5 a6 Ba4 Nf6 O-O Be7 Re1 b5 Bb3 d6 c3 O-O h3 Na5 Bc2
+        c5 d4 Qc7 Nbd2 cxd4 cxd4 Nc6 Nb3 a5 Be3 a4 Nbd2 Bd7 Rc1 Qb7 Qe2""";
+
+    private static final String CHAPTER = """
+        1. e4 { Best by test } e5 (1... c5 2. Nf3 d6 (2... Nc6 3. Bb5 g6 \
+        (3... e6 4. O-O Nge7 5. Re1 a6 6. Bf1) 4. O-O Bg7 5. Re1 e5 6. c3) \
+        (2... e6 3. d4 cxd4 4. Nxd4 Nf6 (4... a6 5. Bd3 Bc5 6. Nb3) 5. Nc3 d6 \
+        6. g4!) 3. d4 cxd4 4. Nxd4 Nf6 5. Nc3 a6 (5... g6 6. Be3 Bg7 7. f3 O-O \
+        8. Qd2 Nc6 9. Bc4) (5... Nc6 6. Bg5 e6 7. Qd2) 6. Be3 e5 (6... e6 \
+        7. f3 b5 8. Qd2) 7. Nb3 Be6 8. f3) (1... c6 2. d4 d5 3. e5 Bf5 \
+        (3... c5 4. dxc5 e6 5. Be3) 4. Nf3 e6 5. Be2 c5 6. Be3) (1... e6 \
+        2. d4 d5 3. Nd2 c5 (3... Nf6 4. e5 Nfd7 5. Bd3 c5 6. c3 Nc6 7. Ne2) \
+        (3... dxe4 4. Nxe4 Nd7 5. Nf3 Ngf6 6. Nxf6+ Nxf6) 4. exd5 exd5 \
+        (4... Qxd5 5. Ngf3 cxd4 6. Bc4 Qd6 7. O-O) 5. Ngf3 Nc6 6. Bb5) \
+        2. Nf3 Nc6 (2... Nf6 3. Nxe5 d6 4. Nf3 Nxe4 5. d4 d5 6. Bd3) (2... d6 \
+        3. d4 exd4 (3... Nf6 4. Nc3 Nbd7 5. Bc4 Be7 6. O-O) 4. Nxd4 Nf6 \
+        5. Nc3 Be7 6. Bf4) 3. Bb5 { The Spanish } a6 (3... Nf6 4. O-O Nxe4 \
+        5. d4 Nd6 (5... Be7 6. Qe2 Nd6 7. Bxc6 bxc6 8. dxe5) 6. Bxc6 dxc6 \
+        7. dxe5 Nf5 8. Qxd8+ Kxd8) (3... Bc5 4. c3 Nf6 (4... f5?! 5. d4 fxe4 \
+        6. Bxc6 dxc6 7. Nxe5) 5. d4 exd4 6. e5) 4. Ba4 Nf6 5. O-O Be7 \
+        (5... b5 6. Bb3 Bc5 7. a4) (5... Nxe4 6. d4 b5 7. Bb3 d5 8. dxe5 Be6 \
+        9. Nbd2) 6. Re1 b5 7. Bb3 d6 (7... O-O 8. h3 Bb7 9. d3 d5 10. exd5 \
+        Nxd5 11. Nxe5 Nd4 12. Nd2) 8. c3 O-O 9. h3 Na5 (9... Bb7 10. d4 Re8 \
+        11. Nbd2 Bf8 12. a3) 10. Bc2 c5 11. d4 *""";
+
+    /**
+     * The size of a study, in chapters.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum StudySize {
+
+        SMALL(1),
+        MEDIUM(16),
+        HUGE(256);
+
+        private final int chapters;
+
+    }
+
+    private BenchmarkStudies() {
+    }
+
+    /**
+     * Build the PGN of a study.
+     *
+     * @param size is the study size.
+     * @return the PGN.
+     */
+    public static String pgn(final StudySize size) {
+
+        return IntStream
+            .rangeClosed(1, size.getChapters())
+            .mapToObj(chapter -> """
+                [Event "Bench: Chapter %d"]
+                [StudyName "Bench"]
+                [ChapterName "Chapter %d"]
+                
+                %s
+                """.formatted(chapter, chapter, CHAPTER))
+            .collect(Collectors.joining("\n"));
+    }
+
+}
@@ -0,0 +1,69 @@
+package io.github.fifi2.chessmorize.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * The round-trips of the moves of the lines of a Book, as stored by the
+ * BookRepository: encoded by a LineMovesCodec (per line of 24 moves, drawn
+ * from the moves of the Book).
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LineMovesCodecBenchmark {
+
+    private static final int MOVES = 2000;
+    private static final int LINE_MOVES = 24;
+    private static final long SEED = 42;
+
+    @Param({"JSON", "BINARY"})
+    private LineMovesFormat format;
+
+    private LineMovesCodec codec;
+    private List<UUID> moveIds;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() {
+
+        this.codec = switch (this.format) {
+            case JSON -> new JsonLineMovesCodec(new ObjectMapper());
+            case BINARY -> new BinaryLineMovesCodec();
+        };
+
+        final Random random = new Random(SEED);
+        final List<UUID> bookMoveIds = IntStream
+            .range(0, MOVES)
+            .mapToObj(i -> new UUID(random.nextLong(), random.nextLong()))
+            .toList();
+        this.moveIds = IntStream
+            .range(0, LINE_MOVES)
+            .mapToObj(i -> bookMoveIds.get(random.nextInt(MOVES)))
+            .toList();
+        this.encoded = this.codec.encode(this.moveIds);
+    }
+
+    @Benchmark
+    public byte[] write() {
+
+        return this.codec.encode(this.moveIds);
+    }
+
+    @Benchmark
+    public List<UUID> read() {
+
+        return this.codec.decode(this.encoded);
+    }
+
+}
@@ -0,0 +1,73 @@
+package io.github.fifi2.chessmorize.service;
+
+import io.github.fifi2.chessmorize.BenchmarkStudies;
+import io.github.fifi2.chessmorize.BenchmarkStudies.StudySize;
+import io.github.fifi2.chessmorize.config.properties.ImportProperties;
+import io.github.fifi2.chessmorize.config.properties.TrainingProperties;
+import io.github.fifi2.chessmorize.converter.PgnGamesToBookConverter;
+import io.github.fifi2.chessmorize.metrics.Metrics;
+import io.github.fifi2.chessmorize.model.Book;
+import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.model.Line;
+import io.github.fifi2.chessmorize.service.pgn.PgnParser;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class CreateLinesBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    private StudySize size;
+
+    @Param({"false", "true"})
+    private boolean mergeTranspositions;
+
+    private BookService bookService;
+    private Book book;
+
+    @Setup
+    public void setUp() {
+
+        final ImportProperties importProperties = new ImportProperties();
+        importProperties.setMergeTranspositions(this.mergeTranspositions);
+        final TrainingProperties trainingProperties = new TrainingProperties();
+        trainingProperties.setShuffled(false);
+
+        this.bookService = new BookService(
+            null,
+            null,
+            null,
+            new BookMutex(),
+            new DueLineQueues(
+                256,
+                Duration.ofMinutes(30),
+                Clock.systemUTC()),
+            trainingProperties,
+            importProperties,
+            null,
+            null,
+            null,
+            new Metrics(new SimpleMeterRegistry()));
+        this.book = new PgnGamesToBookConverter(importProperties).convert(
+            PgnParser.parse(BenchmarkStudies.pgn(this.size)),
+            "bench",
+            Color.WHITE);
+    }
+
+    @Benchmark
+    public List<Line> createLines() {
+
+        return this.bookService.createLines(this.book);
+    }
+
+}
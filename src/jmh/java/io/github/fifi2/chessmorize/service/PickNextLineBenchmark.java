@@ -0,0 +1,117 @@
+package io.github.fifi2.chessmorize.service;
+
+import io.github.fifi2.chessmorize.config.properties.TrainingProperties;
+import io.github.fifi2.chessmorize.metrics.Metrics;
+import io.github.fifi2.chessmorize.model.Book;
+import io.github.fifi2.chessmorize.model.Chapter;
+import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.model.Line;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Pick the next line of a Book whose lines are spread over the boxes and the
+ * chapters, some of them already trained (the lines are seeded, so that the
+ * Book is the same across runs).
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PickNextLineBenchmark {
+
+    private static final int CHAPTERS = 16;
+    private static final int BOXES = 6;
+    private static final long SEED = 42;
+
+    @Param({"1000", "10000", "100000"})
+    private int lines;
+
+    private TrainingService trainingService;
+    private Book book;
+
+    @Setup
+    public void setUp() {
+
+        final TrainingProperties trainingProperties = new TrainingProperties();
+        trainingProperties.setCalendar(List.of(
+            List.of(0),
+            List.of(0, 1),
+            List.of(0, 2),
+            List.of(0, 1),
+            List.of(0, 3),
+            List.of(0, 1),
+            List.of(0, 2),
+            List.of(0, 1),
+            List.of(0, 4),
+            List.of(0, 1),
+            List.of(0, 2),
+            List.of(0, 1),
+            List.of(0, 3),
+            List.of(0, 1),
+            List.of(0, 2),
+            List.of(0, 5)));
+        this.trainingService = new TrainingService(
+            null,
+            null,
+            new BookMutex(),
+            new DueLineQueues(
+                256,
+                Duration.ofMinutes(30),
+                Clock.systemUTC()),
+            trainingProperties,
+            new Metrics(new SimpleMeterRegistry()));
+
+        final Random random = new Random(SEED);
+        final List<Chapter> chapters = IntStream
+            .range(0, CHAPTERS)
+            .mapToObj(i -> Chapter.builder()
+                .id(UUID.randomUUID())
+                .enabled(i % 4 != 0)
+                .build())
+            .toList();
+        final Instant now = Instant.now();
+        this.book = Book.builder()
+            .id(UUID.randomUUID())
+            .color(Color.WHITE)
+            .calendarSlot(2)
+            .chapters(chapters)
+            .lines(IntStream
+                .range(0, this.lines)
+                .mapToObj(i -> Line.builder()
+                    .id(UUID.randomUUID())
+                    .chapterId(chapters
+                        .get(random.nextInt(CHAPTERS))
+                        .getId())
+                    .moves(List.of())
+                    .boxId(random.nextInt(BOXES))
+                    .lastTraining(random.nextBoolean()
+                        ? now.minus(random.nextInt(30), ChronoUnit.DAYS)
+                        : null)
+                    .lastCalendarSlot(random.nextInt(16))
+                    .build())
+                .toList())
+            .build();
+    }
+
+    @Benchmark
+    public Optional<Line> pickNextLine() {
+
+        return this.trainingService.pickNextLine(this.book);
+    }
+
+}
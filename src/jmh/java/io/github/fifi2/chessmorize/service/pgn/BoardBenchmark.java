@@ -0,0 +1,45 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import io.github.fifi2.chessmorize.BenchmarkStudies;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of the Board, per move of a 35 plies game.
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BoardBenchmark {
+
+    private static final String[] SANS = BenchmarkStudies.MAIN_LINE
+        .split("\\s+");
+
+    @Benchmark
+    @OperationsPerInvocation(35)
+    public long move() {
+
+        final Board board = new Board();
+        for (String san : SANS)
+            board.move(san);
+        return board.getZobristKey();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(35)
+    public void moveAndGetFen(final Blackhole blackhole) {
+
+        final Board board = new Board();
+        for (String san : SANS) {
+            board.move(san);
+            blackhole.consume(board.getFen());
+        }
+    }
+
+}
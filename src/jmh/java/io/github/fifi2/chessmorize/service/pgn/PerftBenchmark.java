@@ -0,0 +1,37 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of the legal move generator, in perft nodes per
+ * microsecond (millions of nodes per second).
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PerftBenchmark {
+
+    private static final String FEN_KIWIPETE =
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+
+    @Benchmark
+    @OperationsPerInvocation(197281)
+    public long initialPosition() {
+
+        return new Board().perft(4);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(97862)
+    public long kiwipete() {
+
+        return new Board(FEN_KIWIPETE).perft(3);
+    }
+
+}
@@ -0,0 +1,38 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import io.github.fifi2.chessmorize.BenchmarkStudies;
+import io.github.fifi2.chessmorize.BenchmarkStudies.StudySize;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PgnParserBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    private StudySize size;
+
+    private String pgn;
+
+    @Setup
+    public void setUp() {
+
+        this.pgn = BenchmarkStudies.pgn(this.size);
+    }
+
+    @Benchmark
+    public PgnParser.Result parse() {
+
+        return PgnParser.parse(
+            this.pgn,
+            ForkJoinPool.commonPool(),
+            PgnParser.DEFAULT_FORK_THRESHOLD);
+    }
+
+}
@@ -1,20 +1,26 @@
 package io.github.fifi2.chessmorize.api;
 
 import io.github.fifi2.chessmorize.error.exception.lichess.*;
-import io.github.resilience4j.retry.annotation.Retry;
+import io.github.fifi2.chessmorize.metrics.Metrics;
+import io.github.resilience4j.reactor.retry.RetryOperator;
+import io.github.resilience4j.retry.RetryRegistry;
 import io.netty.channel.ConnectTimeoutException;
 import io.netty.handler.timeout.ReadTimeoutException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
-import reactor.core.publisher.Mono;
+import reactor.core.publisher.Flux;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Optional;
 import java.util.function.Predicate;
 
 @Component
@@ -24,57 +30,105 @@ public class LichessApiClient {
     private static final String LICHESS_API_NAME = "lichess";
 
     private final WebClient webClient;
+    private final io.github.resilience4j.retry.Retry retry;
+    private final Metrics metrics;
 
     public LichessApiClient(
-        @Qualifier("lichessWebClient") final WebClient webClient) {
+        @Qualifier("lichessWebClient") final WebClient webClient,
+        final RetryRegistry retryRegistry,
+        final Metrics metrics) {
 
         this.webClient = webClient;
+        this.retry = retryRegistry.retry(LICHESS_API_NAME);
+        this.metrics = metrics;
     }
 
     /**
-     * Get a full study from Lichess as a PGN with one game per chapter.
+     * Get a full study from Lichess as a stream of PGN bytes, with one game
+     * per chapter. The call is retried until the response headers are
+     * received, not once the body is streamed (the bytes already sent
+     * downstream can't be taken back). The buffers not delivered downstream
+     * (on cancel or error) are released, as is the body of a response
+     * dropped before being subscribed.
      *
      * @param studyId is the study id.
-     * @return A Mono of String for the PGN with all games
-     * (application/x-chess-pgn).
+     * @return A Flux of DataBuffer for the PGN with all games
+     * (application/x-chess-pgn). The buffers must be released once read.
      */
-    @Retry(name = LICHESS_API_NAME)
-    public Mono<String> getStudyPGN(final String studyId) {
+    public Flux<DataBuffer> getStudyPGNStream(final String studyId) {
 
         final Instant start = Instant.now();
-        log.info("Getting study {} from Lichess", studyId);
+        log.info("Streaming study {} from Lichess", studyId);
 
-        return this.webClient
+        return this.metrics.time(Metrics.LICHESS_DOWNLOAD, this.webClient
             .get()
             .uri("/study/{studyId}.pgn", studyId)
             .retrieve()
-            .bodyToMono(String.class)
-            .doOnNext(pgn -> log.info(
-                "Get study {} from Lichess in {} ms.",
+            .toEntityFlux(DataBuffer.class)
+            .onErrorMap(e -> this.toLichessException(studyId, e))
+            .transformDeferred(RetryOperator.of(this.retry))
+            .flatMapMany(response -> Optional
+                .ofNullable(response.getBody())
+                .orElse(Flux.empty()))
+            .doOnDiscard(ResponseEntity.class, LichessApiClient::releaseBody)
+            .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+            .onErrorMap(e -> this.toLichessException(studyId, e))
+            .switchIfEmpty(Flux.error(new LichessEmptyResponseException()))
+            .doOnComplete(() -> log.info(
+                "Stream study {} from Lichess in {} ms.",
                 studyId,
-                Duration.between(start, Instant.now()).toMillis()))
-            .onErrorMap(
-                WebClientResponseException.class,
-                e -> {
-                    final int code = e.getStatusCode().value();
-                    final HttpStatus status = HttpStatus.resolve(code);
-                    final String message = "Error "
-                        + code
-                        + " during call to Lichess";
-                    log.error(message);
-
-                    if (status == HttpStatus.NOT_FOUND)
-                        return new LichessNotFoundException(studyId, e);
-                    if (status == HttpStatus.REQUEST_TIMEOUT)
-                        return new LichessTimeoutException(status, e);
-                    if (e.getStatusCode().is4xxClientError())
-                        return new Lichess4xxException(message, status, e);
-                    return new Lichess5xxException(message, status, e);
-                })
-            .onErrorMap(
-                isTimeoutException(),
-                e -> new LichessTimeoutException(null, e))
-            .switchIfEmpty(Mono.error(new LichessEmptyResponseException()));
+                Duration.between(start, Instant.now()).toMillis())));
+    }
+
+    /**
+     * Release the body of a response dropped before being subscribed: the
+     * buffers already received are released, and the rest of the body is
+     * cancelled.
+     *
+     * @param response is the dropped response.
+     */
+    private static void releaseBody(final ResponseEntity<?> response) {
+
+        if (response.getBody() instanceof Flux<?> body)
+            body
+                .ofType(DataBuffer.class)
+                .subscribe(
+                    DataBufferUtils::release,
+                    e -> log.debug("Drop the body of a response", e))
+                .dispose();
+    }
+
+    /**
+     * Map the errors of a call to Lichess to LichessException.
+     *
+     * @param studyId is the study id.
+     * @param e       is the error.
+     * @return The matching LichessException (or the error itself if it is not
+     * related to the call).
+     */
+    private Throwable toLichessException(final String studyId,
+                                         final Throwable e) {
+
+        if (e instanceof WebClientResponseException responseException) {
+            final int code = responseException.getStatusCode().value();
+            final HttpStatus status = HttpStatus.resolve(code);
+            final String message = "Error "
+                + code
+                + " during call to Lichess";
+            log.error(message);
+
+            if (status == HttpStatus.NOT_FOUND)
+                return new LichessNotFoundException(studyId, e);
+            if (status == HttpStatus.REQUEST_TIMEOUT)
+                return new LichessTimeoutException(status, e);
+            if (responseException.getStatusCode().is4xxClientError())
+                return new Lichess4xxException(message, status, e);
+            return new Lichess5xxException(message, status, e);
+        }
+
+        if (isTimeoutException().test(e))
+            return new LichessTimeoutException(null, e);
+        return e;
     }
 
     /**
@@ -0,0 +1,111 @@
+package io.github.fifi2.chessmorize.config;
+
+import io.github.fifi2.chessmorize.config.properties.ImportProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@RequiredArgsConstructor
+public class ImportSchedulerConfig {
+
+    private final ImportProperties importProperties;
+
+    /**
+     * The scheduler of the import CPU work (conversion and lines generation,
+     * the PGN being parsed on the parser pool), so that it does not run on the
+     * event loop. Its threads and its queue are bounded: the tasks beyond them
+     * are rejected.
+     *
+     * @return the Scheduler.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler importScheduler() {
+
+        return newImportScheduler(
+            this.importProperties.getParallelism(),
+            this.importProperties.getQueueLimit());
+    }
+
+    /**
+     * The import slots: an import takes one before its study is downloaded
+     * and gives it back once saved (or failed). There is one slot per thread
+     * of the import scheduler and per waiting import, so that the imports
+     * beyond them are rejected before any download or parsing.
+     *
+     * @return the Semaphore of the import slots.
+     */
+    @Bean
+    public Semaphore importSlots() {
+
+        return new Semaphore(
+            this.importProperties.getParallelism()
+                + this.importProperties.getQueueLimit());
+    }
+
+    /**
+     * Create a bounded Scheduler: a fixed number of threads and a bounded
+     * queue of waiting tasks.
+     *
+     * @param parallelism is the number of threads.
+     * @param queueLimit  is the maximum number of waiting tasks.
+     * @return the Scheduler.
+     */
+    static Scheduler newImportScheduler(final int parallelism,
+                                        final int queueLimit) {
+
+        return Schedulers.fromExecutorService(
+            new ThreadPoolExecutor(
+                parallelism,
+                parallelism,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueLimit),
+                new CustomizableThreadFactory("import-")),
+            "import");
+    }
+
+    /**
+     * The pool of the PGN parsing, so that the imports do not compete with
+     * the other parallel streams of the JVM on the common pool.
+     *
+     * @return the ForkJoinPool.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool parserPool() {
+
+        return newParserPool(this.importProperties.getParserParallelism());
+    }
+
+    /**
+     * Create a ForkJoinPool whose threads are named after the parser.
+     *
+     * @param parallelism is the number of threads.
+     * @return the ForkJoinPool.
+     */
+    static ForkJoinPool newParserPool(final int parallelism) {
+
+        return new ForkJoinPool(
+            parallelism,
+            pool -> {
+                final ForkJoinWorkerThread worker = ForkJoinPool
+                    .defaultForkJoinWorkerThreadFactory
+                    .newThread(pool);
+                worker.setName("parser-" + worker.getPoolIndex());
+                return worker;
+            },
+            null,
+            false);
+    }
+
+}
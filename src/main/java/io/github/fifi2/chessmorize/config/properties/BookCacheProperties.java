@@ -0,0 +1,26 @@
+package io.github.fifi2.chessmorize.config.properties;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "chessmorize.book-cache")
+@Validated
+@Data
+public class BookCacheProperties {
+
+    // approximate size of the cached books in memory, zero disables the cache
+    @NotNull
+    private DataSize maxWeight;
+
+    // time to live of a cached book since it has been loaded or written
+    @NotNull
+    private Duration ttl;
+
+}
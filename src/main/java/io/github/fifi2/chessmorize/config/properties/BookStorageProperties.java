@@ -0,0 +1,21 @@
+package io.github.fifi2.chessmorize.config.properties;
+
+import io.github.fifi2.chessmorize.repository.LineMovesFormat;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@Configuration
+@ConfigurationProperties(prefix = "chessmorize.book-storage")
+@Validated
+@Data
+public class BookStorageProperties {
+
+    // format of the moves of the lines written in database (the lines written
+    // in another format are still read)
+    @NotNull
+    private LineMovesFormat linesFormat;
+
+}
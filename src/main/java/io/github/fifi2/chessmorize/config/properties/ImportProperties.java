@@ -0,0 +1,37 @@
+package io.github.fifi2.chessmorize.config.properties;
+
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.annotation.Validated;
+
+@Configuration
+@ConfigurationProperties(prefix = "chessmorize.import")
+@Validated
+@Data
+public class ImportProperties {
+
+    // merge the moves reaching the same position in a chapter (transpositions)
+    private boolean mergeTranspositions;
+
+    // threads of the import scheduler (conversion and lines generation)
+    @Positive
+    private int parallelism;
+
+    // imports waiting beyond the running ones, the next imports are rejected
+    // before their study is downloaded
+    @Positive
+    private int queueLimit;
+
+    // threads of the PGN parser pool, shared by the imports (one task per
+    // chapter)
+    @Positive
+    private int parserParallelism;
+
+    // variations of at least this number of characters are parsed in their
+    // own tasks (a large chapter is split across the parser threads)
+    @Positive
+    private int parserForkThreshold;
+
+}
@@ -1,11 +1,13 @@
 package io.github.fifi2.chessmorize.config.properties;
 
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.validation.annotation.Validated;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -20,6 +22,14 @@ public class TrainingProperties {
     @NotNull
     private List<List<Integer>> calendar; // TODO: make boxes a Set<Integer>
 
+    // maximum number of books having their due lines queued in memory
+    @Positive
+    private int dueLinesMaxBooks;
+
+    // time after which the due lines of a book not trained are dropped
+    @NotNull
+    private Duration dueLinesTtl;
+
     public Integer getMaxNumber() {
 
         return this.calendar
@@ -4,6 +4,7 @@ import io.github.fifi2.chessmorize.controller.api.dto.BookCreationRequest;
 import io.github.fifi2.chessmorize.controller.api.dto.BookLight;
 import io.github.fifi2.chessmorize.controller.api.dto.ToggleChapterRequest;
 import io.github.fifi2.chessmorize.model.Book;
+import io.github.fifi2.chessmorize.model.BookView;
 import io.github.fifi2.chessmorize.service.BookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -39,7 +40,8 @@ public class BookController extends AbstractController {
         responses = {
             @ApiResponse(responseCode = "201", description = "Book created successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid request body or parameters"),
-            @ApiResponse(responseCode = "500", description = "Internal server error")
+            @ApiResponse(responseCode = "500", description = "Internal server error"),
+            @ApiResponse(responseCode = "503", description = "Too many imports in progress")
         })
     public Mono<ResponseEntity<Book>> postBook(
         @RequestBody @Valid @NotNull final BookCreationRequest requestBody,
@@ -57,7 +59,10 @@ public class BookController extends AbstractController {
     @GetMapping(path = "/{bookId}")
     @Operation(
         summary = "Get a book from its ID",
-        description = "Retrieve a book and its information.",
+        description = """
+            Retrieve a book and its information. The view selects the parts of
+            the book to return (the full book by default).
+            """,
         responses = {
             @ApiResponse(responseCode = "200", description = "Book retrieved successfully"),
             @ApiResponse(responseCode = "400", description = "Invalid request body or parameters"),
@@ -65,9 +70,10 @@ public class BookController extends AbstractController {
         })
     public Mono<ResponseEntity<Book>> getBook(
         @PathVariable @NotNull final UUID bookId,
+        @RequestParam(defaultValue = "FULL") final BookView view,
         @Autowired final ServerHttpRequest request) {
 
-        return this.bookService.getOneBook(bookId)
+        return this.bookService.getOneBook(bookId, view)
             .map(ResponseEntity::ok)
             .doOnError(e -> logError(request, e));
     }
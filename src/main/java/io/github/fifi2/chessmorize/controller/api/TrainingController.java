@@ -90,7 +90,7 @@ public class TrainingController extends AbstractController {
         @Autowired final ServerHttpRequest request) {
 
         return this.trainingService.nextCalendarSlot(requestBody.getBookId())
-            .flatMap(book -> Mono.just(ResponseEntity.ok().<Void>build()))
+            .flatMap(calendarSlot -> Mono.just(ResponseEntity.ok().<Void>build()))
             .doOnError(e -> logError(request, e));
     }
 
@@ -1,19 +1,21 @@
 package io.github.fifi2.chessmorize.converter;
 
+import io.github.fifi2.chessmorize.config.properties.ImportProperties;
 import io.github.fifi2.chessmorize.model.*;
 import io.github.fifi2.chessmorize.service.pgn.PgnGame;
 import io.github.fifi2.chessmorize.service.pgn.PgnNag;
 import io.github.fifi2.chessmorize.service.pgn.PgnNode;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 
 @Component
+@RequiredArgsConstructor
 public class PgnGamesToBookConverter {
 
+    private final ImportProperties importProperties;
+
     /**
      * Convert some PgnGames, from Lichess PGN parsing, into a Book.
      *
@@ -54,16 +56,37 @@ public class PgnGamesToBookConverter {
                     .orElse(Map.of())
                     .get("ChapterName"))
                 .enabled(true)
-                .nextMoves(Optional
+                .nextMoves(this.buildNextMoves(Optional
                     .ofNullable(pgnGame.getNodes())
-                    .orElse(List.of())
-                    .stream()
-                    .map(this::buildMove)
-                    .toList())
+                    .orElse(List.of())))
                 .build())
             .toList();
     }
 
+    /**
+     * Build the first moves of a chapter, as a tree or as a graph if the
+     * transpositions have to be merged.
+     *
+     * @param pgnNodes is the list of PgnNodes to convert.
+     * @return a list of Moves.
+     */
+    List<Move> buildNextMoves(final List<PgnNode> pgnNodes) {
+
+        if (!this.importProperties.isMergeTranspositions())
+            return pgnNodes
+                .stream()
+                .map(this::buildMove)
+                .toList();
+
+        final List<Move> moves = new ArrayList<>();
+        this.mergeMoves(
+            moves,
+            pgnNodes,
+            new HashMap<>(),
+            Collections.newSetFromMap(new IdentityHashMap<>()));
+        return moves;
+    }
+
     /**
      * Recursively build a Move from a PgnNode.
      *
@@ -78,7 +101,7 @@ public class PgnGamesToBookConverter {
             .uci(pgnNode.getUci())
             .nag(this.buildNag(pgnNode.getNag()))
             .comment(pgnNode.getComment())
-            .color(this.buildColorFromFen(pgnNode.getFen()))
+            .color(this.buildColor(pgnNode.getColor()))
             .nextMoves(Optional
                 .ofNullable(pgnNode.getVariations())
                 .orElse(List.of())
@@ -88,6 +111,71 @@ public class PgnGamesToBookConverter {
             .build();
     }
 
+    /**
+     * Recursively build the Moves from PgnNodes, merging the transpositions:
+     * the Moves reaching an already known position (same Zobrist key) share
+     * the next moves of this position (referencing the Move owning them), and
+     * a move already present in these next moves is merged with it.
+     *
+     * @param moves         is the list where to add the Moves.
+     * @param pgnNodes      is the list of PgnNodes to convert.
+     * @param continuations is the Move owning the next moves, by position key.
+     * @param path          is the next moves lists from the first moves to
+     *                      the current ones (included).
+     */
+    private void mergeMoves(final List<Move> moves,
+                            final List<PgnNode> pgnNodes,
+                            final Map<Long, Move> continuations,
+                            final Set<List<Move>> path) {
+
+        path.add(moves);
+        for (PgnNode pgnNode : pgnNodes) {
+            final List<PgnNode> variations = Optional
+                .ofNullable(pgnNode.getVariations())
+                .orElse(List.of());
+            final Optional<Move> knownMove = moves
+                .stream()
+                .filter(m -> Objects.equals(m.getSan(), pgnNode.getSan()))
+                .findAny();
+
+            if (knownMove.isPresent()) {
+                this.mergeMoves(
+                    knownMove.get().getNextMoves(),
+                    variations,
+                    continuations,
+                    path);
+                continue;
+            }
+
+            // a known position is not shared if its next moves are on the
+            // current path (it would make a cycle)
+            final Move owner = continuations.get(pgnNode.getZobristKey());
+            final boolean shared = owner != null
+                && !path.contains(owner.getNextMoves());
+
+            final Move move = Move.builder()
+                .id(UUID.randomUUID())
+                .san(pgnNode.getSan())
+                .uci(pgnNode.getUci())
+                .nag(this.buildNag(pgnNode.getNag()))
+                .comment(pgnNode.getComment())
+                .color(this.buildColor(pgnNode.getColor()))
+                .nextMoves(shared ? owner.getNextMoves() : new ArrayList<>())
+                .nextMovesId(shared ? owner.getId() : null)
+                .build();
+            if (owner == null)
+                continuations.put(pgnNode.getZobristKey(), move);
+            moves.add(move);
+
+            this.mergeMoves(
+                move.getNextMoves(),
+                variations,
+                continuations,
+                path);
+        }
+        path.remove(moves);
+    }
+
     /**
      * Convert PgnNag in their Nag equivalent.
      *
@@ -107,21 +195,18 @@ public class PgnGamesToBookConverter {
     }
 
     /**
-     * Build the Color of the move from the FEN string.
+     * Convert the Color of a PgnNode in its Color equivalent.
      *
-     * @param fen is the FEN string to convert.
-     * @return a Color (BLACK or WHITE).
+     * @param pgnColor is the side having played the move.
+     * @return a Color (BLACK or WHITE) or null.
      */
-    Color buildColorFromFen(final String fen) {
+    Color buildColor(
+        final io.github.fifi2.chessmorize.service.pgn.Color pgnColor) {
 
-        if (fen == null || fen.isBlank())
+        if (pgnColor == null)
             return null;
 
-        final String activeColor = fen.split(" ")[1];
-
-        // Note: The FEN format uses "w" for white's turn and "b" for black's
-        // turn, so we need to invert it to determine which player just moved.
-        return "w".equals(activeColor) ? Color.BLACK : Color.WHITE;
+        return Color.valueOf(pgnColor.name());
     }
 
 }
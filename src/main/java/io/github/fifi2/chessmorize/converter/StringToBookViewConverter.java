@@ -0,0 +1,23 @@
+package io.github.fifi2.chessmorize.converter;
+
+import io.github.fifi2.chessmorize.model.BookView;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Request parameter conversion of a BookView, case-insensitive (e.g.
+ * {@code ?view=summary})
+ */
+
+@Component
+public class StringToBookViewConverter implements Converter<String, BookView> {
+
+    @Override
+    public BookView convert(final String source) {
+
+        return BookView.valueOf(source.strip().toUpperCase(Locale.ROOT));
+    }
+
+}
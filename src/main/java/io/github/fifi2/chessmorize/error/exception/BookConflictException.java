@@ -0,0 +1,23 @@
+package io.github.fifi2.chessmorize.error.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.UUID;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+@Getter
+public class BookConflictException extends RuntimeException {
+
+    private final String message;
+
+    public BookConflictException(final UUID bookId,
+                                 final long version,
+                                 final long currentVersion) {
+
+        this.message = ("Book %s has been modified since version %d (current "
+            + "version %d).").formatted(bookId, version, currentVersion);
+    }
+
+}
@@ -0,0 +1,27 @@
+package io.github.fifi2.chessmorize.error.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+@Getter
+public class ImportRejectedException extends RuntimeException {
+
+    private final String message;
+    private final Throwable cause;
+
+    public ImportRejectedException(final String studyId) {
+
+        this(studyId, null);
+    }
+
+    public ImportRejectedException(final String studyId,
+                                   final Throwable cause) {
+
+        this.message = "Too many imports in progress, study %s rejected."
+            .formatted(studyId);
+        this.cause = cause;
+    }
+
+}
@@ -0,0 +1,169 @@
+package io.github.fifi2.chessmorize.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of the import and training hot paths
+ * - the timers measure a stage of the import or of the training, the database
+ * queries (tagged with the query) and the encoding of the lines
+ * - the summaries measure the size of the imported books
+ * - the meters are published on the Prometheus endpoint, with histograms
+ * (management configuration)
+ */
+
+@Component
+@RequiredArgsConstructor
+public class Metrics {
+
+    // timers
+    public static final String LICHESS_DOWNLOAD =
+        "chessmorize.lichess.download";
+    public static final String IMPORT_PARSE = "chessmorize.import.parse";
+    public static final String IMPORT_CONVERT = "chessmorize.import.convert";
+    public static final String IMPORT_LINES = "chessmorize.import.lines";
+    public static final String QUERY = "chessmorize.repository.query";
+    public static final String LINES_ENCODE =
+        "chessmorize.repository.lines.encode";
+    public static final String LINES_DECODE =
+        "chessmorize.repository.lines.decode";
+    public static final String TRAINING_NEXT_LINE =
+        "chessmorize.training.next-line";
+    public static final String TRAINING_QUEUE = "chessmorize.training.queue";
+
+    // summaries
+    public static final String BOOK_MOVES = "chessmorize.book.moves";
+    public static final String BOOK_LINES = "chessmorize.book.lines";
+    public static final String BOOK_STORED_BYTES = "chessmorize.book.stored";
+    public static final String BOOK_MEMORY_BYTES = "chessmorize.book.memory";
+
+    // tags
+    public static final String TAG_QUERY = "query";
+    public static final String TAG_FORMAT = "format";
+
+    private static final String BYTES = "bytes";
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Time a Mono, from its subscription to its termination (or
+     * cancellation).
+     *
+     * @param name is the timer name.
+     * @param mono is the Mono to time.
+     * @param tags is the timer tags (key and value pairs).
+     * @param <T>  is the Mono type.
+     * @return the timed Mono.
+     */
+    public <T> Mono<T> time(final String name,
+                            final Mono<T> mono,
+                            final String... tags) {
+
+        return Mono.defer(() -> {
+            final long start = System.nanoTime();
+            return mono.doFinally(signal -> this.record(
+                name,
+                System.nanoTime() - start,
+                tags));
+        });
+    }
+
+    /**
+     * Time a Flux, from its subscription to its termination (or
+     * cancellation).
+     *
+     * @param name is the timer name.
+     * @param flux is the Flux to time.
+     * @param tags is the timer tags (key and value pairs).
+     * @param <T>  is the Flux type.
+     * @return the timed Flux.
+     */
+    public <T> Flux<T> time(final String name,
+                            final Flux<T> flux,
+                            final String... tags) {
+
+        return Flux.defer(() -> {
+            final long start = System.nanoTime();
+            return flux.doFinally(signal -> this.record(
+                name,
+                System.nanoTime() - start,
+                tags));
+        });
+    }
+
+    /**
+     * Time a computation.
+     *
+     * @param name     is the timer name.
+     * @param supplier is the computation.
+     * @param tags     is the timer tags (key and value pairs).
+     * @param <T>      is the computation result type.
+     * @return the computation result.
+     */
+    public <T> T time(final String name,
+                      final Supplier<T> supplier,
+                      final String... tags) {
+
+        final long start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            this.record(name, System.nanoTime() - start, tags);
+        }
+    }
+
+    /**
+     * Record a duration in a timer.
+     *
+     * @param name  is the timer name.
+     * @param nanos is the duration in nanoseconds.
+     * @param tags  is the timer tags (key and value pairs).
+     */
+    public void record(final String name,
+                       final long nanos,
+                       final String... tags) {
+
+        Timer.builder(name)
+            .tags(tags)
+            .register(this.meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record a count in a summary.
+     *
+     * @param name   is the summary name.
+     * @param amount is the count.
+     */
+    public void count(final String name,
+                      final long amount) {
+
+        DistributionSummary.builder(name)
+            .register(this.meterRegistry)
+            .record(amount);
+    }
+
+    /**
+     * Record a size in a summary (in bytes).
+     *
+     * @param name  is the summary name.
+     * @param bytes is the size.
+     */
+    public void size(final String name,
+                     final long bytes) {
+
+        DistributionSummary.builder(name)
+            .baseUnit(BYTES)
+            .register(this.meterRegistry)
+            .record(bytes);
+    }
+
+}
@@ -1,5 +1,6 @@
 package io.github.fifi2.chessmorize.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Builder;
 import lombok.Data;
@@ -8,7 +9,7 @@ import java.util.List;
 import java.util.UUID;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @Schema(description = "A book containing chapters and lines for chess training")
 public class Book {
 
@@ -35,9 +36,13 @@ public class Book {
         example = "WHITE")
     private Color color;
 
+    // null when left out of the view
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     @Schema(description = "The imported chapters")
     private List<Chapter> chapters;
 
+    // null when left out of the view
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     @Schema(description = "The generated lines")
     private List<Line> lines;
 
@@ -48,4 +53,11 @@ public class Book {
         defaultValue = "0")
     private int calendarSlot;
 
+    // incremented on each update of the training state, default to zero
+    @Schema(
+        description = "The version of the training state",
+        example = "12",
+        defaultValue = "0")
+    private long version;
+
 }
@@ -0,0 +1,24 @@
+package io.github.fifi2.chessmorize.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * The views of a Book: the parts of the Book which are loaded and returned
+ */
+
+@Schema(description = "A view of a book, e.g. SUMMARY, CHAPTERS, LINES or FULL")
+public enum BookView {
+
+    @Schema(description = "The book and its training state, without chapters nor lines")
+    SUMMARY,
+
+    @Schema(description = "The book and its chapters, without their moves")
+    CHAPTERS,
+
+    @Schema(description = "The book and its lines with their moves, without chapters")
+    LINES,
+
+    @Schema(description = "The book with its chapters and lines")
+    FULL
+
+}
@@ -1,5 +1,6 @@
 package io.github.fifi2.chessmorize.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Builder;
 import lombok.Data;
@@ -8,7 +9,7 @@ import java.util.List;
 import java.util.UUID;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @Schema(description = "A chapter in a book, containing a list of moves")
 public class Chapter {
 
@@ -27,6 +28,8 @@ public class Chapter {
         example = "true")
     private boolean enabled;
 
+    // null when left out of the view
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     @Schema(description = "The next moves, as a list of Move")
     private final List<Move> nextMoves;
 
@@ -6,13 +6,14 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @Schema(description = "A line in a book, representing a sequence of moves for training")
 public class Line {
 
@@ -53,15 +54,25 @@ public class Line {
     @JsonIgnore
     public boolean hasNotBeenTrainedToday() {
 
+        return this.hasNotBeenTrainedOn(Instant.now()
+            .atOffset(ZoneOffset.UTC)
+            .toLocalDate());
+    }
+
+    /**
+     * Check if the Line has not been trained on a given day (or after).
+     *
+     * @param day is the day (UTC).
+     * @return a boolean (true = has not been trained on that day).
+     */
+    public boolean hasNotBeenTrainedOn(final LocalDate day) {
+
         return Optional
             .ofNullable(this.lastTraining)
             .map(last -> last
                 .atOffset(ZoneOffset.UTC)
                 .toLocalDate())
-            .map(last -> Instant.now()
-                .atOffset(ZoneOffset.UTC)
-                .toLocalDate()
-                .isAfter(last))
+            .map(day::isAfter)
             .orElse(true);
     }
 
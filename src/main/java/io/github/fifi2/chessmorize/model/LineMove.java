@@ -38,4 +38,22 @@ public class LineMove {
         example = "It's a good opening move")
     private String comment;
 
+    /**
+     * Build the LineMove of a Move (the LineMoves of a Book can be shared by
+     * its Lines).
+     *
+     * @param move is the Move.
+     * @return a LineMove.
+     */
+    public static LineMove of(final Move move) {
+
+        return LineMove.builder()
+            .moveId(move.getId())
+            .san(move.getSan())
+            .nag(move.getNag())
+            .uci(move.getUci())
+            .comment(move.getComment())
+            .build();
+    }
+
 }
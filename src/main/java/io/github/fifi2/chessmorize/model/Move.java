@@ -1,5 +1,8 @@
 package io.github.fifi2.chessmorize.model;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.Builder;
 import lombok.Data;
@@ -42,7 +45,32 @@ public class Move {
         example = "WHITE")
     private Color color;
 
-    @Schema(description = "The next moves, as a list of Move")
+    // shared by the moves reaching the same position when the transpositions
+    // are merged, serialized once (on the Move owning them)
+    @JsonIgnore
     private List<Move> nextMoves;
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(
+        description = """
+            The id of the Move owning the next moves, when they are shared
+            with it (merged transpositions). The next moves are then only given
+            on that Move and are left empty here.
+            """,
+        example = "d3c4b5a6-7e8f-4a2b-9c1d-2e3f4a5b6c7d")
+    private UUID nextMovesId;
+
+    /**
+     * Get the next moves to serialize: the next moves shared with another
+     * Move are only referenced by its id.
+     *
+     * @return the next moves (empty if they are owned by another Move).
+     */
+    @JsonGetter("nextMoves")
+    @Schema(description = "The next moves, as a list of Move")
+    public List<Move> getOwnNextMoves() {
+
+        return this.nextMovesId == null ? this.nextMoves : List.of();
+    }
+
 }
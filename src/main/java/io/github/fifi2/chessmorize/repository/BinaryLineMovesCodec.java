@@ -0,0 +1,55 @@
+package io.github.fifi2.chessmorize.repository;
+
+import io.github.fifi2.chessmorize.error.exception.BookSerDeException;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary codec of the moves of a Line
+ * - each move id is written on 16 bytes (most significant bits first), with
+ * no separator nor header: the number of moves is the size divided by 16
+ * - 16 bytes per move instead of 39 characters in JSON, and no parsing
+ */
+
+@Component
+class BinaryLineMovesCodec implements LineMovesCodec {
+
+    private static final int UUID_BYTES = 16;
+
+    @Override
+    public LineMovesFormat getFormat() {
+
+        return LineMovesFormat.BINARY;
+    }
+
+    @Override
+    public byte[] encode(final List<UUID> moveIds) {
+
+        final ByteBuffer buffer = ByteBuffer.allocate(
+            UUID_BYTES * moveIds.size());
+        moveIds.forEach(moveId -> buffer
+            .putLong(moveId.getMostSignificantBits())
+            .putLong(moveId.getLeastSignificantBits()));
+        return buffer.array();
+    }
+
+    @Override
+    public List<UUID> decode(final byte[] bytes) {
+
+        if (bytes.length % UUID_BYTES != 0)
+            throw new BookSerDeException(
+                "Binary deserialization failure: " + bytes.length + " bytes",
+                null);
+
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        final List<UUID> moveIds = new ArrayList<>(bytes.length / UUID_BYTES);
+        while (buffer.hasRemaining())
+            moveIds.add(new UUID(buffer.getLong(), buffer.getLong()));
+        return moveIds;
+    }
+
+}
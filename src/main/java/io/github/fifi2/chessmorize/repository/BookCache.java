@@ -0,0 +1,391 @@
+package io.github.fifi2.chessmorize.repository;
+
+import io.github.fifi2.chessmorize.config.properties.BookCacheProperties;
+import io.github.fifi2.chessmorize.model.*;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Book cache
+ * - the Books read from the database are kept in memory, the least recently
+ * used ones are evicted when their approximate weight exceeds the maximum
+ * - the cache is write-through: the repositories update the cached Book once
+ * the update has been committed (and evict it if the update fails)
+ * - a cached Book is never replaced by an older version: the version of a
+ * committed update is remembered even if the Book is not cached, so that a
+ * read started before the update doesn't cache an outdated Book
+ * - the cached Books are never handed out, the readers get copies of their
+ * chapters and lines (the imported moves never change and are shared)
+ * - its weight, size, hits and misses are published as metrics
+ */
+
+@Component
+public class BookCache implements MeterBinder {
+
+    // approximate sizes (in bytes) of the objects of a Book
+    private static final long BOOK_WEIGHT = 256;
+    private static final long CHAPTER_WEIGHT = 128;
+    private static final long MOVE_WEIGHT = 160;
+    private static final long LINE_WEIGHT = 128;
+    private static final long LINE_MOVE_WEIGHT = 96;
+    private static final long REFERENCE_WEIGHT = 8;
+    private static final long VERSION_WEIGHT = 64;
+
+    private final long maxWeight;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(
+        16,
+        0.75f,
+        true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long weight;
+
+    /**
+     * A cached Book, with its version, its approximate weight and its
+     * expiration. An entry without Book only remembers the last committed
+     * version of a Book which is not cached.
+     *
+     * @param book      is the Book (null if not cached).
+     * @param version   is the version of the Book.
+     * @param weight    is the approximate weight of the entry (in bytes).
+     * @param expiresAt is the expiration instant (in milliseconds).
+     */
+    private record Entry(Book book,
+                         long version,
+                         long weight,
+                         long expiresAt) {
+    }
+
+    @Autowired
+    public BookCache(final BookCacheProperties properties) {
+
+        this(properties, Clock.systemUTC());
+    }
+
+    BookCache(final BookCacheProperties properties,
+              final Clock clock) {
+
+        this.maxWeight = properties.getMaxWeight().toBytes();
+        this.ttlMillis = properties.getTtl().toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Get a copy of a cached Book.
+     *
+     * @param bookId is the Book id.
+     * @return an Optional of the Book (empty if not cached).
+     */
+    public Optional<Book> get(final UUID bookId) {
+
+        return this.get(bookId, BookCache::copy);
+    }
+
+    /**
+     * Read a cached Book. The reader must not return the mutable parts of the
+     * cached Book (its chapters and lines), but copies of them.
+     *
+     * @param bookId is the Book id.
+     * @param reader is the read of the cached Book.
+     * @param <T>    is the read value type.
+     * @return an Optional of the read value (empty if the Book is not cached).
+     */
+    public synchronized <T> Optional<T> get(final UUID bookId,
+                                            final Function<Book, T> reader) {
+
+        final Optional<Book> book = this.getEntry(bookId).map(Entry::book);
+        (book.isPresent() ? this.hits : this.misses).incrementAndGet();
+
+        return book.map(reader);
+    }
+
+    /**
+     * Put a copy of a Book in the cache, replacing the previous one if any,
+     * unless the cache holds a newer version of it. The least recently used
+     * Books are evicted if the cache is full.
+     *
+     * @param book is the Book.
+     */
+    public synchronized void put(final Book book) {
+
+        final boolean outdated = this.getEntry(book.getId())
+            .filter(entry -> entry.version() > book.getVersion())
+            .isPresent();
+        if (outdated)
+            return;
+
+        final long bookWeight = weigh(book);
+        this.evict(book.getId());
+        if (bookWeight > this.maxWeight)
+            return;
+
+        this.add(book.getId(), new Entry(
+            copy(book),
+            book.getVersion(),
+            bookWeight,
+            this.clock.millis() + this.ttlMillis));
+    }
+
+    /**
+     * Update a cached Book, if any. The update doesn't change its version.
+     *
+     * @param bookId  is the Book id.
+     * @param updater is the update of the cached Book.
+     */
+    public synchronized void update(final UUID bookId,
+                                    final Consumer<Book> updater) {
+
+        this.getEntry(bookId)
+            .map(Entry::book)
+            .ifPresent(updater);
+    }
+
+    /**
+     * Update a cached Book with a committed update bringing it to a version.
+     * The cached Book is updated if it is the previous version, else it is
+     * evicted. Either way the version is remembered, so that an older version
+     * of the Book is not cached afterwards.
+     *
+     * @param bookId  is the Book id.
+     * @param version is the version of the Book after the update.
+     * @param updater is the update of the cached Book.
+     */
+    public synchronized void update(final UUID bookId,
+                                    final long version,
+                                    final Consumer<Book> updater) {
+
+        final Optional<Entry> previous = this.getEntry(bookId)
+            .filter(entry -> entry.book() != null
+                && entry.version() == version - 1);
+        this.evict(bookId);
+
+        this.add(bookId, previous
+            .map(entry -> {
+                updater.accept(entry.book());
+                entry.book().setVersion(version);
+                return new Entry(
+                    entry.book(),
+                    version,
+                    entry.weight(),
+                    entry.expiresAt());
+            })
+            .orElseGet(() -> new Entry(
+                null,
+                version,
+                VERSION_WEIGHT,
+                this.clock.millis() + this.ttlMillis)));
+    }
+
+    /**
+     * Evict a Book from the cache.
+     *
+     * @param bookId is the Book id.
+     */
+    public synchronized void evict(final UUID bookId) {
+
+        Optional
+            .ofNullable(this.entries.remove(bookId))
+            .ifPresent(entry -> this.weight -= entry.weight());
+    }
+
+    /**
+     * Evict all the Books from the cache.
+     */
+    public synchronized void clear() {
+
+        this.entries.clear();
+        this.weight = 0;
+    }
+
+    /**
+     * Get the number of reads served from the cache.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+
+        return this.hits.get();
+    }
+
+    /**
+     * Get the number of reads not served from the cache.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses() {
+
+        return this.misses.get();
+    }
+
+    /**
+     * Get the approximate weight of the cached Books.
+     *
+     * @return the weight (in bytes).
+     */
+    public synchronized long getWeight() {
+
+        return this.weight;
+    }
+
+    /**
+     * Get the number of cached Books.
+     *
+     * @return the number of Books.
+     */
+    public synchronized int size() {
+
+        return (int) this.entries
+            .values()
+            .stream()
+            .filter(entry -> entry.book() != null)
+            .count();
+    }
+
+    @Override
+    public void bindTo(final MeterRegistry registry) {
+
+        Gauge
+            .builder(
+                "chessmorize.book-cache.weight",
+                this,
+                BookCache::getWeight)
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge
+            .builder("chessmorize.book-cache.size", this, BookCache::size)
+            .register(registry);
+        FunctionCounter
+            .builder("chessmorize.book-cache.hits", this, BookCache::getHits)
+            .register(registry);
+        FunctionCounter
+            .builder(
+                "chessmorize.book-cache.misses",
+                this,
+                BookCache::getMisses)
+            .register(registry);
+    }
+
+    /**
+     * Add an entry, the least recently used ones being evicted if the cache
+     * is full.
+     *
+     * @param bookId is the Book id.
+     * @param entry  is the entry.
+     */
+    private void add(final UUID bookId,
+                     final Entry entry) {
+
+        this.entries.put(bookId, entry);
+        this.weight += entry.weight();
+
+        final Iterator<Entry> eldest = this.entries.values().iterator();
+        while (this.weight > this.maxWeight) {
+            this.weight -= eldest.next().weight();
+            eldest.remove();
+        }
+    }
+
+    private Optional<Entry> getEntry(final UUID bookId) {
+
+        final Entry entry = this.entries.get(bookId);
+        if (entry != null && entry.expiresAt() <= this.clock.millis()) {
+            this.evict(bookId);
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(entry);
+    }
+
+    /**
+     * Copy a Book: its chapters and lines are copied, their moves are shared.
+     *
+     * @param book is the Book.
+     * @return the copy.
+     */
+    static Book copy(final Book book) {
+
+        return book.toBuilder()
+            .chapters(Optional
+                .ofNullable(book.getChapters())
+                .map(chapters -> chapters
+                    .stream()
+                    .map(chapter -> chapter.toBuilder().build())
+                    .collect(Collectors.toList()))
+                .orElse(null))
+            .lines(Optional
+                .ofNullable(book.getLines())
+                .map(lines -> lines
+                    .stream()
+                    .map(line -> line.toBuilder().build())
+                    .collect(Collectors.toList()))
+                .orElse(null))
+            .build();
+    }
+
+    /**
+     * Estimate the weight of a Book in memory.
+     *
+     * @param book is the Book.
+     * @return the approximate weight (in bytes).
+     */
+    static long weigh(final Book book) {
+
+        long bookWeight = BOOK_WEIGHT;
+
+        // the next moves can be shared by the transpositions
+        final Set<Move> visited = Collections.newSetFromMap(
+            new IdentityHashMap<>());
+        final Deque<Move> moves = new ArrayDeque<>();
+        for (Chapter chapter : Optional
+            .ofNullable(book.getChapters())
+            .orElse(List.of())) {
+            bookWeight += CHAPTER_WEIGHT + weigh(chapter.getTitle());
+            Optional.ofNullable(chapter.getNextMoves()).ifPresent(moves::addAll);
+        }
+        while (!moves.isEmpty()) {
+            final Move move = moves.pop();
+            if (!visited.add(move))
+                continue;
+            bookWeight += MOVE_WEIGHT + weigh(move.getComment());
+            Optional.ofNullable(move.getNextMoves()).ifPresent(moves::addAll);
+        }
+
+        // the line moves are shared by the lines
+        final Set<LineMove> visitedLineMoves = Collections.newSetFromMap(
+            new IdentityHashMap<>());
+        for (Line line : Optional
+            .ofNullable(book.getLines())
+            .orElse(List.of())) {
+            bookWeight += LINE_WEIGHT;
+            for (LineMove lineMove : Optional
+                .ofNullable(line.getMoves())
+                .orElse(List.of())) {
+                bookWeight += REFERENCE_WEIGHT;
+                if (visitedLineMoves.add(lineMove))
+                    bookWeight += LINE_MOVE_WEIGHT
+                        + weigh(lineMove.getComment());
+            }
+        }
+
+        return bookWeight;
+    }
+
+    private static long weigh(final String text) {
+
+        return text == null ? 0 : 2L * text.length();
+    }
+
+}
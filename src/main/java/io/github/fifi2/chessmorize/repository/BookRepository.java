@@ -1,40 +1,143 @@
 package io.github.fifi2.chessmorize.repository;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.fifi2.chessmorize.config.properties.BookStorageProperties;
 import io.github.fifi2.chessmorize.error.exception.BookNotFoundException;
 import io.github.fifi2.chessmorize.error.exception.BookSerDeException;
-import io.github.fifi2.chessmorize.model.Book;
-import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.metrics.Metrics;
+import io.github.fifi2.chessmorize.model.*;
+import io.r2dbc.spi.Readable;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.github.fifi2.chessmorize.repository.Statements.bind;
+import static io.github.fifi2.chessmorize.repository.Statements.executeBatch;
+
+/**
+ * Book persistence
+ * - a Book is stored in normalized tables: book, chapter, move and line
+ * - the imported content of a Book never changes, its training state
+ * (book_progress and line_progress) is handled by the TrainingRepository
+ * - a line is stored as the ids of its moves, its LineMoves are built from
+ * the move table when it is read (and shared by the lines of the Book)
+ * - the move ids of a line are encoded by a LineMovesCodec, its format is
+ * stored with the line
+ * - the views of a Book read only what they return: the training and
+ * chapters views skip the moves (the move table and the moves of the lines
+ * are not read), the lines view skips the chapters
+ * - the database queries are timed (tagged with the query), the cache hits
+ * are not
+ */
 
 @Repository
 @RequiredArgsConstructor
+@Slf4j
 public class BookRepository {
 
     private static final String INSERT_ONE_BOOK = """
-        INSERT INTO book (id, name, color, state)
-        VALUES (:id, :name, :color, :state)
+        INSERT INTO book (id, study_id, name, color)
+        VALUES (:id, :studyId, :name, :color)
         """;
-    private static final String UPDATE_ONE_BOOK = """
-        UPDATE book
-        SET state = :state
-        WHERE id = :id
+    private static final String INSERT_CHAPTERS = """
+        INSERT INTO chapter (id, book_id, position, title, enabled)
+        VALUES ($1, $2, $3, $4, $5)
+        """;
+    private static final String INSERT_MOVES = """
+        INSERT INTO move (id, book_id, chapter_id, parent_id, position,
+            next_moves_id, san, uci, nag, comment, color)
+        VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11)
+        """;
+    private static final String INSERT_LINES = """
+        INSERT INTO line (id, book_id, chapter_id, moves_format,
+            encoded_moves)
+        VALUES ($1, $2, $3, $4, $5)
+        """;
+    private static final String UPDATE_CHAPTERS = """
+        UPDATE chapter
+        SET enabled = $1
+        WHERE book_id = $2
+        AND id = $3
+        """;
+    private static final String DELETE_DISABLED_CHAPTERS_LINES = """
+        DELETE FROM line
+        WHERE book_id = :id
+        AND chapter_id IN (
+            SELECT id
+            FROM chapter
+            WHERE book_id = :id
+            AND enabled = FALSE)
         """;
     private static final String SELECT_ONE_BOOK = """
-        SELECT state
-        FROM book
-        WHERE id = :id
+        SELECT b.id, b.study_id, b.name, b.color, p.calendar_slot,
+            p.version
+        FROM book b
+        LEFT JOIN book_progress p ON p.book_id = b.id
+        WHERE b.id = :id
+        """;
+    private static final String SELECT_BOOK_CHAPTERS = """
+        SELECT id, title, enabled
+        FROM chapter
+        WHERE book_id = :id
+        ORDER BY position
+        """;
+    private static final String SELECT_BOOK_MOVES = """
+        SELECT m.id, m.chapter_id, m.parent_id, m.next_moves_id, m.san, m.uci,
+            m.nag, m.comment, m.color
+        FROM move m
+        WHERE m.book_id = :id
+        ORDER BY m.position
+        """;
+    private static final String SELECT_BOOK_LINES = """
+        SELECT l.id, l.chapter_id, l.moves_format, l.encoded_moves,
+            p.box_id, p.last_training, p.last_calendar_slot
+        FROM line l
+        JOIN line_progress p ON p.book_id = l.book_id AND p.line_id = l.id
+        WHERE l.book_id = :id
+        ORDER BY p.position
+        """;
+    private static final String SELECT_BOOK_LINE_PROGRESSES = """
+        SELECT l.id, l.chapter_id, p.box_id, p.last_training,
+            p.last_calendar_slot
+        FROM line l
+        JOIN line_progress p ON p.book_id = l.book_id AND p.line_id = l.id
+        WHERE l.book_id = :id
+        ORDER BY p.position
+        """;
+    private static final String SELECT_BOOK_LINE_MOVES = """
+        SELECT m.id, m.san, m.uci, m.nag, m.comment, m.color
+        FROM move m
+        WHERE m.book_id = :id
+        """;
+    private static final String SELECT_ONE_LINE = """
+        SELECT l.id, l.chapter_id, l.moves_format, l.encoded_moves,
+            p.box_id, p.last_training, p.last_calendar_slot
+        FROM line l
+        JOIN line_progress p ON p.book_id = l.book_id AND p.line_id = l.id
+        WHERE l.book_id = :id
+        AND l.id = :lineId
+        """;
+    private static final String SELECT_LINE_MOVES = """
+        SELECT m.id, m.san, m.uci, m.nag, m.comment, m.color
+        FROM move m
+        WHERE m.book_id = :id
+        AND m.id IN (:moveIds)
         """;
     private static final String SELECT_ALL_BOOKS = """
-        SELECT id, name, color
-        FROM book
+        SELECT b.id, b.study_id, b.name, b.color, p.calendar_slot,
+            p.version
+        FROM book b
+        LEFT JOIN book_progress p ON p.book_id = b.id
         """;
     private static final String DELETE_ONE_BOOK = """
         DELETE FROM book
@@ -42,72 +145,345 @@ public class BookRepository {
         """;
     private static final String DELETE_ALL_BOOKS = "DELETE FROM book";
     private static final String FIELD_ID = "id";
+    private static final String FIELD_STUDY_ID = "study_id";
     private static final String FIELD_NAME = "name";
     private static final String FIELD_COLOR = "color";
-    private static final String FIELD_STATE = "state";
+    private static final String FIELD_CALENDAR_SLOT = "calendar_slot";
+    private static final String FIELD_VERSION = "version";
+    private static final String FIELD_TITLE = "title";
+    private static final String FIELD_ENABLED = "enabled";
+    private static final String FIELD_CHAPTER_ID = "chapter_id";
+    private static final String FIELD_PARENT_ID = "parent_id";
+    private static final String FIELD_NEXT_MOVES_ID = "next_moves_id";
+    private static final String FIELD_SAN = "san";
+    private static final String FIELD_UCI = "uci";
+    private static final String FIELD_NAG = "nag";
+    private static final String FIELD_COMMENT = "comment";
+    private static final String FIELD_MOVES_FORMAT = "moves_format";
+    private static final String FIELD_ENCODED_MOVES = "encoded_moves";
+    private static final String PARAM_ID = "id";
+    private static final String PARAM_STUDY_ID = "studyId";
+    private static final String PARAM_NAME = "name";
+    private static final String PARAM_COLOR = "color";
+    private static final String PARAM_LINE_ID = "lineId";
+    private static final String PARAM_MOVE_IDS = "moveIds";
+    private static final String QUERY_SAVE = "save";
+    private static final String QUERY_UPDATE = "update";
+    private static final String QUERY_FIND_BOOK = "find-book";
+    private static final String QUERY_FIND_TRAINING_VIEW = "find-training-view";
+    private static final String QUERY_FIND_CHAPTERS_VIEW = "find-chapters-view";
+    private static final String QUERY_FIND_LINES_VIEW = "find-lines-view";
+    private static final String QUERY_FIND_LINE = "find-line";
 
     private final DatabaseClient databaseClient;
-    private final ObjectMapper objectMapper;
+    private final TrainingRepository trainingRepository;
+    private final BookCache bookCache;
+    private final TransactionalOperator transactionalOperator;
+    private final List<LineMovesCodec> lineMovesCodecs;
+    private final BookStorageProperties bookStorageProperties;
+    private final Metrics metrics;
+
+    /**
+     * A move row: the Move with its position in the chapter graph.
+     *
+     * @param move        is the Move.
+     * @param chapterId   is the Chapter id.
+     * @param parentId    is the previous Move id (null for the first moves).
+     * @param position    is the position in the next moves of the parent.
+     * @param nextMovesId is the id of the Move owning the next moves, when
+     *                    they are shared with it (null otherwise).
+     */
+    private record MoveRow(Move move,
+                           UUID chapterId,
+                           UUID parentId,
+                           int position,
+                           UUID nextMovesId) {
+    }
+
+    /**
+     * A line row: the Line, without its moves, and the ids of its moves.
+     *
+     * @param line    is the Line (its LineMoves are added once built).
+     * @param moveIds is the ids of the moves of the Line.
+     */
+    private record LineRow(Line line,
+                           List<UUID> moveIds) {
+    }
 
     /**
-     * Save a Book in database.
+     * Save a Book in database, with its chapters, moves and lines. The Book
+     * is cached once the transaction is committed.
      *
      * @param book is the Book to persist.
      * @return a Mono of the saved Book.
      */
     public Mono<Book> save(final Book book) {
 
-        return Mono.just(book)
-            .map(this::convertToJson)
-            .flatMap(state -> this.databaseClient
+        final List<Chapter> chapters = Optional
+            .ofNullable(book.getChapters())
+            .orElse(List.of());
+        final List<Line> lines = Optional
+            .ofNullable(book.getLines())
+            .orElse(List.of());
+
+        final LineMovesCodec codec = this.getLineMovesCodec(
+            this.bookStorageProperties.getLinesFormat());
+
+        return this.transactionalOperator.transactional(Mono
+            .fromCallable(() -> this.encodeLinesMoves(book, codec, lines))
+            .flatMap(linesMoves -> this.metrics.time(Metrics.QUERY, this
+                .databaseClient
                 .sql(INSERT_ONE_BOOK)
-                .bind(FIELD_ID, book.getId())
-                .bind(FIELD_NAME, book.getName())
-                .bind(FIELD_COLOR, book.getColor().name())
-                .bind(FIELD_STATE, state)
+                .bind(PARAM_ID, book.getId())
+                .bind(PARAM_STUDY_ID, Parameter.fromOrEmpty(
+                    book.getStudyId(),
+                    String.class))
+                .bind(PARAM_NAME, Parameter.fromOrEmpty(
+                    book.getName(),
+                    String.class))
+                .bind(PARAM_COLOR, Parameter.fromOrEmpty(
+                    Optional
+                        .ofNullable(book.getColor())
+                        .map(Color::name)
+                        .orElse(null),
+                    String.class))
                 .fetch()
-                .rowsUpdated())
-            .flatMap(rowsUpdated -> rowsUpdated > 0
-                ? Mono.just(book)
-                : Mono.empty());
+                .rowsUpdated()
+                .filter(rowsUpdated -> rowsUpdated > 0)
+                .flatMap(rowsUpdated -> this.insertChapters(book, chapters)
+                    .then(this.insertMoves(book, chapters))
+                    .flatMap(moves -> this
+                        .insertLines(book, lines, codec, linesMoves)
+                        .then(this.trainingRepository.save(book))
+                        .doOnSuccess(saved -> this.recordBookSize(
+                            book,
+                            moves,
+                            linesMoves)))
+                    .thenReturn(book)), Metrics.TAG_QUERY, QUERY_SAVE)))
+            .doOnNext(this.bookCache::put);
     }
 
     /**
-     * Update a Book in database.
+     * Update a Book in database, if its version has not changed. The imported
+     * content never changes: only the calendar slot, the chapters state and the
+     * lines order are updated, and the lines of the disabled chapters are
+     * removed. The version of the Book is incremented. The cached Book is
+     * updated once the transaction is committed (evicted if it fails).
      *
      * @param book is the Book to update.
-     * @return a Mono of the updated Book (empty if no record has been updated).
+     * @return a Mono of the updated Book (empty if no record has been updated, a
+     * BookConflictException if its version has changed).
      */
     public Mono<Book> update(final Book book) {
 
-        return Mono.just(book)
-            .map(this::convertToJson)
-            .flatMap(state -> this.databaseClient
-                .sql(UPDATE_ONE_BOOK)
-                .bind(FIELD_ID, book.getId())
-                .bind(FIELD_STATE, state)
-                .fetch()
-                .rowsUpdated())
-            .flatMap(rowsUpdated -> rowsUpdated > 0
-                ? Mono.just(book)
-                : Mono.empty());
+        final List<UUID> lineIds = Optional
+            .ofNullable(book.getLines())
+            .orElse(List.of())
+            .stream()
+            .map(Line::getId)
+            .toList();
+
+        return this.transactionalOperator
+            .transactional(this.metrics.time(Metrics.QUERY, this
+                .trainingRepository
+                .storeCalendarSlot(
+                    book.getId(),
+                    book.getVersion(),
+                    book.getCalendarSlot())
+                .flatMap(calendarSlot -> executeBatch(
+                        this.databaseClient,
+                        UPDATE_CHAPTERS,
+                        Optional
+                            .ofNullable(book.getChapters())
+                            .orElse(List.of()),
+                        (statement, chapter) -> statement
+                            .bind(0, chapter.isEnabled())
+                            .bind(1, book.getId())
+                            .bind(2, chapter.getId()))
+                    .then(this.databaseClient
+                        .sql(DELETE_DISABLED_CHAPTERS_LINES)
+                        .bind(PARAM_ID, book.getId())
+                        .fetch()
+                        .rowsUpdated())
+                    .then(this.trainingRepository.storeLineOrder(
+                        book.getId(),
+                        lineIds))
+                    .then(Mono.fromCallable(() -> {
+                        book.setVersion(book.getVersion() + 1);
+                        return book;
+                    }))), Metrics.TAG_QUERY, QUERY_UPDATE))
+            .doOnNext(updated -> this.bookCache.update(
+                updated.getId(),
+                updated.getVersion(),
+                cached -> {
+                    cached.setCalendarSlot(updated.getCalendarSlot());
+                    TrainingRepository.reorderLines(cached, lineIds);
+                    updateChapters(cached, updated);
+                }))
+            .doOnError(e -> this.bookCache.evict(book.getId()));
     }
 
     /**
-     * Find a Book in database by its id.
+     * Find a Book by its id, from the cache or else from the database.
      *
      * @param bookId is the book id.
      * @return A Mono of the Book.
      */
     public Mono<Book> findById(final UUID bookId) {
 
+        return Mono.defer(() -> this.bookCache.get(bookId)
+            .map(Mono::just)
+            .orElseGet(() -> {
+                final Map<UUID, Move> movesById = new HashMap<>();
+                return this.metrics.time(Metrics.QUERY, this
+                        .findHeaderById(bookId)
+                        .flatMap(book -> Mono
+                            .zip(
+                                this.findChapters(bookId, movesById),
+                                this.findLines(bookId))
+                            .map(chaptersAndLines -> {
+                                book.setChapters(chaptersAndLines.getT1());
+                                book.setLines(buildLines(
+                                    chaptersAndLines.getT2(),
+                                    movesById));
+                                return book;
+                            })), Metrics.TAG_QUERY, QUERY_FIND_BOOK)
+                    .doOnNext(this.bookCache::put);
+            }));
+    }
+
+    /**
+     * Find the training view of a Book, from the cached Book or else from the
+     * database: the Book with its chapters and lines, without their moves.
+     *
+     * @param bookId is the Book id.
+     * @return A Mono of the Book (the next moves of its chapters and the moves
+     * of its lines are null).
+     */
+    public Mono<Book> findTrainingView(final UUID bookId) {
+
+        return Mono.defer(() -> this.bookCache
+            .get(bookId, BookRepository::toTrainingView)
+            .map(Mono::just)
+            .orElseGet(() -> this.metrics.time(Metrics.QUERY, this
+                .findHeaderById(bookId)
+                .flatMap(book -> Mono
+                    .zip(
+                        this.findChapterHeaders(bookId),
+                        this.findLineProgresses(bookId))
+                    .map(chaptersAndLines -> {
+                        book.setChapters(chaptersAndLines.getT1());
+                        book.setLines(chaptersAndLines.getT2());
+                        return book;
+                    })), Metrics.TAG_QUERY, QUERY_FIND_TRAINING_VIEW)));
+    }
+
+    /**
+     * Find the chapters view of a Book, from the cached Book or else from the
+     * database: the Book with its chapters, without their moves.
+     *
+     * @param bookId is the Book id.
+     * @return A Mono of the Book (the next moves of its chapters and its lines
+     * are null).
+     */
+    public Mono<Book> findChaptersView(final UUID bookId) {
+
+        return Mono.defer(() -> this.bookCache
+            .get(bookId, book -> toTrainingView(book).toBuilder()
+                .lines(null)
+                .build())
+            .map(Mono::just)
+            .orElseGet(() -> this.metrics.time(Metrics.QUERY, this
+                .findHeaderById(bookId)
+                .flatMap(book -> this.findChapterHeaders(bookId)
+                    .map(chapters -> {
+                        book.setChapters(chapters);
+                        return book;
+                    })), Metrics.TAG_QUERY, QUERY_FIND_CHAPTERS_VIEW)));
+    }
+
+    /**
+     * Find the lines view of a Book, from the cached Book or else from the
+     * database: the Book with its lines and their moves, without its chapters
+     * (the moves are read, but not linked into the chapters graphs).
+     *
+     * @param bookId is the Book id.
+     * @return A Mono of the Book (its chapters are null).
+     */
+    public Mono<Book> findLinesView(final UUID bookId) {
+
+        return Mono.defer(() -> this.bookCache
+            .get(bookId, book -> BookCache.copy(book.toBuilder()
+                .chapters(null)
+                .build()))
+            .map(Mono::just)
+            .orElseGet(() -> this.metrics.time(Metrics.QUERY, this
+                .findHeaderById(bookId)
+                .flatMap(book -> Mono
+                    .zip(
+                        this.databaseClient
+                            .sql(SELECT_BOOK_LINE_MOVES)
+                            .bind(PARAM_ID, bookId)
+                            .map(BookRepository::readMove)
+                            .all()
+                            .collectMap(Move::getId),
+                        this.findLines(bookId))
+                    .map(movesAndLines -> {
+                        book.setLines(buildLines(
+                            movesAndLines.getT2(),
+                            movesAndLines.getT1()));
+                        return book;
+                    })), Metrics.TAG_QUERY, QUERY_FIND_LINES_VIEW)));
+    }
+
+    /**
+     * Find a Book in database by its id, without its chapters and lines.
+     *
+     * @param bookId is the book id.
+     * @return A Mono of the Book.
+     */
+    public Mono<Book> findHeaderById(final UUID bookId) {
+
         return this.databaseClient
             .sql(SELECT_ONE_BOOK)
-            .bind(FIELD_ID, bookId)
-            .map(row -> row.get(FIELD_STATE, String.class))
+            .bind(PARAM_ID, bookId)
+            .map(BookRepository::readBook)
             .one()
-            .switchIfEmpty(Mono.error(new BookNotFoundException(bookId)))
-            .map(this::readFromJson);
+            .switchIfEmpty(Mono.error(new BookNotFoundException(bookId)));
+    }
+
+    /**
+     * Find a Line of a Book, with its training progress, from the cached Book
+     * or else from the database.
+     *
+     * @param bookId is the Book id.
+     * @param lineId is the Line id.
+     * @return A Mono of the Line (empty if not found).
+     */
+    public Mono<Line> findLine(final UUID bookId,
+                               final UUID lineId) {
+
+        return Mono.defer(() -> this.bookCache
+            .get(bookId, book -> Optional
+                .ofNullable(book.getLines())
+                .orElse(List.of())
+                .stream()
+                .filter(line -> lineId.equals(line.getId()))
+                .findAny()
+                .map(line -> line.toBuilder().build()))
+            .map(Mono::justOrEmpty)
+            .orElseGet(() -> this.metrics.time(Metrics.QUERY, this
+                .databaseClient
+                .sql(SELECT_ONE_LINE)
+                .bind(PARAM_ID, bookId)
+                .bind(PARAM_LINE_ID, lineId)
+                .map(this::readLine)
+                .one()
+                .flatMap(lineRow -> this.findLineMoves(bookId, lineRow)
+                    .map(movesById -> buildLines(
+                        List.of(lineRow),
+                        movesById).getFirst())), Metrics.TAG_QUERY,
+                QUERY_FIND_LINE)));
     }
 
     /**
@@ -119,11 +495,7 @@ public class BookRepository {
 
         return this.databaseClient
             .sql(SELECT_ALL_BOOKS)
-            .map(row -> Book.builder()
-                .id(row.get(FIELD_ID, UUID.class))
-                .name(row.get(FIELD_NAME, String.class))
-                .color(Color.valueOf(row.get(FIELD_COLOR, String.class)))
-                .build())
+            .map(BookRepository::readBook)
             .all();
     }
 
@@ -137,9 +509,10 @@ public class BookRepository {
 
         return this.databaseClient
             .sql(DELETE_ONE_BOOK)
-            .bind(FIELD_ID, bookId)
+            .bind(PARAM_ID, bookId)
             .fetch()
             .rowsUpdated()
+            .doOnNext(rowsUpdated -> this.bookCache.evict(bookId))
             .flatMap(rowsUpdated -> rowsUpdated > 0
                 ? Mono.just(bookId)
                 : Mono.error(new BookNotFoundException(bookId)));
@@ -156,38 +529,477 @@ public class BookRepository {
             .sql(DELETE_ALL_BOOKS)
             .fetch()
             .rowsUpdated()
+            .doOnNext(rowsUpdated -> this.bookCache.clear())
             .map(rowsUpdated -> true)
             .onErrorReturn(false);
     }
 
     /**
-     * Serialize a Book into a JSON
+     * Get the training view of a cached Book: copies of its chapters and lines,
+     * without their moves.
+     *
+     * @param book is the cached Book.
+     * @return the training view.
+     */
+    private static Book toTrainingView(final Book book) {
+
+        return book.toBuilder()
+            .chapters(Optional
+                .ofNullable(book.getChapters())
+                .orElse(List.of())
+                .stream()
+                .map(chapter -> chapter.toBuilder().nextMoves(null).build())
+                .collect(Collectors.toList()))
+            .lines(Optional
+                .ofNullable(book.getLines())
+                .orElse(List.of())
+                .stream()
+                .map(line -> line.toBuilder().moves(null).build())
+                .collect(Collectors.toList()))
+            .build();
+    }
+
+    /**
+     * Apply the update of a Book to the cached Book: the chapters states, and
+     * the removal of the lines of the disabled chapters. The updated Book can
+     * be a training view, its moves are not used.
+     *
+     * @param cached  is the cached Book.
+     * @param updated is the updated Book.
+     */
+    private static void updateChapters(final Book cached,
+                                       final Book updated) {
+
+        final Map<UUID, Boolean> enabledByChapterId = Optional
+            .ofNullable(updated.getChapters())
+            .orElse(List.of())
+            .stream()
+            .collect(Collectors.toMap(Chapter::getId, Chapter::isEnabled));
+        Optional
+            .ofNullable(cached.getChapters())
+            .orElse(List.of())
+            .forEach(chapter -> chapter.setEnabled(enabledByChapterId
+                .getOrDefault(chapter.getId(), chapter.isEnabled())));
+        cached.setLines(new ArrayList<>(purgeDisabledChaptersLines(cached)));
+    }
+
+    /**
+     * Remove the Lines of the disabled chapters, as the update does in
+     * database.
      *
-     * @param book The Book
-     * @return The JSON as a String
+     * @param book is the Book.
+     * @return the Lines of the enabled chapters.
      */
-    private String convertToJson(final Book book) {
+    private static List<Line> purgeDisabledChaptersLines(final Book book) {
+
+        final Set<UUID> disabledChapterIds = Optional
+            .ofNullable(book.getChapters())
+            .orElse(List.of())
+            .stream()
+            .filter(chapter -> !chapter.isEnabled())
+            .map(Chapter::getId)
+            .collect(Collectors.toSet());
+
+        return Optional
+            .ofNullable(book.getLines())
+            .orElse(List.of())
+            .stream()
+            .filter(line -> !disabledChapterIds.contains(line.getChapterId()))
+            .toList();
+    }
+
+    private Mono<Long> insertChapters(final Book book,
+                                      final List<Chapter> chapters) {
+
+        return executeBatch(
+            this.databaseClient,
+            INSERT_CHAPTERS,
+            IntStream.range(0, chapters.size()).boxed().toList(),
+            (statement, position) -> {
+                final Chapter chapter = chapters.get(position);
+                statement
+                    .bind(0, chapter.getId())
+                    .bind(1, book.getId())
+                    .bind(2, position)
+                    .bind(4, chapter.isEnabled());
+                bind(statement, 3, chapter.getTitle(), String.class);
+            });
+    }
+
+    private Mono<Long> insertMoves(final Book book,
+                                   final List<Chapter> chapters) {
+
+        final List<MoveRow> moveRows = new ArrayList<>();
+        chapters.forEach(chapter -> collectMoveRows(
+            chapter.getId(),
+            null,
+            chapter.getNextMoves(),
+            new IdentityHashMap<>(),
+            moveRows));
+
+        return executeBatch(
+            this.databaseClient,
+            INSERT_MOVES,
+            moveRows,
+            (statement, moveRow) -> {
+                final Move move = moveRow.move();
+                statement
+                    .bind(0, move.getId())
+                    .bind(1, book.getId())
+                    .bind(2, moveRow.chapterId())
+                    .bind(4, moveRow.position());
+                bind(statement, 3, moveRow.parentId(), UUID.class);
+                bind(statement, 5, moveRow.nextMovesId(), UUID.class);
+                bind(statement, 6, move.getSan(), String.class);
+                bind(statement, 7, move.getUci(), String.class);
+                bind(statement, 8, Optional
+                    .ofNullable(move.getNag())
+                    .map(Nag::name)
+                    .orElse(null), String.class);
+                bind(statement, 9, move.getComment(), String.class);
+                bind(statement, 10, Optional
+                    .ofNullable(move.getColor())
+                    .map(Color::name)
+                    .orElse(null), String.class);
+            });
+    }
+
+    private Mono<Long> insertLines(final Book book,
+                                   final List<Line> lines,
+                                   final LineMovesCodec codec,
+                                   final List<byte[]> linesMoves) {
+
+        return executeBatch(
+            this.databaseClient,
+            INSERT_LINES,
+            IntStream.range(0, lines.size()).boxed().toList(),
+            (statement, position) -> {
+                final Line line = lines.get(position);
+                statement
+                    .bind(0, line.getId())
+                    .bind(1, book.getId())
+                    .bind(3, codec.getFormat().name())
+                    .bind(4, linesMoves.get(position));
+                bind(statement, 2, line.getChapterId(), UUID.class);
+            });
+    }
+
+    private Mono<List<Chapter>> findChapters(final UUID bookId,
+                                             final Map<UUID, Move> movesById) {
+
+        final Map<UUID, List<Move>> firstMovesByChapterId = new HashMap<>();
+
+        return this.databaseClient
+            .sql(SELECT_BOOK_MOVES)
+            .bind(PARAM_ID, bookId)
+            .map(row -> {
+                final Move move = readMove(row);
+                movesById.put(move.getId(), move);
+                return new MoveRow(
+                    move,
+                    row.get(FIELD_CHAPTER_ID, UUID.class),
+                    row.get(FIELD_PARENT_ID, UUID.class),
+                    0,
+                    row.get(FIELD_NEXT_MOVES_ID, UUID.class));
+            })
+            .all()
+            .collectList()
+            .map(moveRows -> {
+                // the rows are sorted by position: the next moves are added in
+                // their original order
+                moveRows.forEach(moveRow -> Optional
+                    .ofNullable(moveRow.parentId())
+                    .map(parentId -> movesById.get(parentId).getNextMoves())
+                    .orElseGet(() -> firstMovesByChapterId.computeIfAbsent(
+                        moveRow.chapterId(),
+                        chapterId -> new ArrayList<>()))
+                    .add(moveRow.move()));
+                moveRows
+                    .stream()
+                    .filter(moveRow -> moveRow.nextMovesId() != null)
+                    .forEach(moveRow -> {
+                        moveRow.move().setNextMoves(movesById
+                            .get(moveRow.nextMovesId())
+                            .getNextMoves());
+                        moveRow.move().setNextMovesId(moveRow.nextMovesId());
+                    });
+                return firstMovesByChapterId;
+            })
+            .flatMap(firstMoves -> this.databaseClient
+                .sql(SELECT_BOOK_CHAPTERS)
+                .bind(PARAM_ID, bookId)
+                .map(row -> readChapter(
+                    row,
+                    chapterId -> firstMoves.getOrDefault(
+                        chapterId,
+                        new ArrayList<>())))
+                .all()
+                .collectList());
+    }
+
+    private Mono<List<Chapter>> findChapterHeaders(final UUID bookId) {
+
+        return this.databaseClient
+            .sql(SELECT_BOOK_CHAPTERS)
+            .bind(PARAM_ID, bookId)
+            .map(row -> readChapter(row, chapterId -> null))
+            .all()
+            .collectList();
+    }
+
+    private Mono<List<Line>> findLineProgresses(final UUID bookId) {
 
-        try {
-            return objectMapper.writeValueAsString(book);
-        } catch (JsonProcessingException e) {
-            throw new BookSerDeException("Json serialization failure", e);
+        return this.databaseClient
+            .sql(SELECT_BOOK_LINE_PROGRESSES)
+            .bind(PARAM_ID, bookId)
+            .map(row -> TrainingRepository.readLineProgress(row)
+                .id(row.get(FIELD_ID, UUID.class))
+                .chapterId(row.get(FIELD_CHAPTER_ID, UUID.class))
+                .build())
+            .all()
+            .collectList();
+    }
+
+    private Mono<List<LineRow>> findLines(final UUID bookId) {
+
+        return this.databaseClient
+            .sql(SELECT_BOOK_LINES)
+            .bind(PARAM_ID, bookId)
+            .map(this::readLine)
+            .all()
+            .collectList();
+    }
+
+    private Mono<Map<UUID, Move>> findLineMoves(final UUID bookId,
+                                                final LineRow lineRow) {
+
+        if (lineRow.moveIds().isEmpty())
+            return Mono.just(Map.of());
+
+        return this.databaseClient
+            .sql(SELECT_LINE_MOVES)
+            .bind(PARAM_ID, bookId)
+            .bind(PARAM_MOVE_IDS, lineRow.moveIds())
+            .map(BookRepository::readMove)
+            .all()
+            .collectMap(Move::getId);
+    }
+
+    /**
+     * Build the LineMoves of the Lines from the Moves of their Book. A LineMove
+     * is shared by all the Lines having its Move.
+     *
+     * @param lineRows  is the line rows.
+     * @param movesById is the Moves of the Book by id.
+     * @return the Lines.
+     */
+    private static List<Line> buildLines(final List<LineRow> lineRows,
+                                         final Map<UUID, Move> movesById) {
+
+        final Map<UUID, LineMove> lineMoves = new HashMap<>();
+        return lineRows
+            .stream()
+            .map(lineRow -> {
+                lineRow.moveIds().forEach(moveId -> lineRow.line().getMoves()
+                    .add(lineMoves.computeIfAbsent(moveId, id -> LineMove.of(
+                        Optional
+                            .ofNullable(movesById.get(id))
+                            .orElseThrow(() -> new BookSerDeException(
+                                "Unknown move " + id + " in line "
+                                    + lineRow.line().getId(),
+                                null))))));
+                return lineRow.line();
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Collect the move rows of a chapter graph. Moves sharing the next moves
+     * of another one (merged transpositions) are stored once, the others only
+     * referencing them.
+     *
+     * @param chapterId is the Chapter id.
+     * @param parentId  is the parent Move id (null for the first moves).
+     * @param moves     is the Moves to collect.
+     * @param owners    is the id of the Move owning each next moves list.
+     * @param moveRows  is the list where to add the rows.
+     */
+    private static void collectMoveRows(final UUID chapterId,
+                                        final UUID parentId,
+                                        final List<Move> moves,
+                                        final Map<List<Move>, UUID> owners,
+                                        final List<MoveRow> moveRows) {
+
+        if (moves == null)
+            return;
+
+        for (int position = 0; position < moves.size(); position++) {
+            final Move move = moves.get(position);
+            final List<Move> nextMoves = move.getNextMoves();
+            final UUID ownerId = nextMoves == null || nextMoves.isEmpty()
+                ? null
+                : owners.putIfAbsent(nextMoves, move.getId());
+            moveRows.add(new MoveRow(
+                move,
+                chapterId,
+                parentId,
+                position,
+                ownerId));
+            if (ownerId == null)
+                collectMoveRows(
+                    chapterId,
+                    move.getId(),
+                    nextMoves,
+                    owners,
+                    moveRows);
         }
     }
 
+    private static Book readBook(final Readable row) {
+
+        return Book.builder()
+            .id(row.get(FIELD_ID, UUID.class))
+            .studyId(row.get(FIELD_STUDY_ID, String.class))
+            .name(row.get(FIELD_NAME, String.class))
+            .color(Optional
+                .ofNullable(row.get(FIELD_COLOR, String.class))
+                .map(Color::valueOf)
+                .orElse(null))
+            .calendarSlot(Optional
+                .ofNullable(row.get(FIELD_CALENDAR_SLOT, Integer.class))
+                .orElse(0))
+            .version(Optional
+                .ofNullable(row.get(FIELD_VERSION, Long.class))
+                .orElse(0L))
+            .build();
+    }
+
+    private static Move readMove(final Readable row) {
+
+        return Move.builder()
+            .id(row.get(FIELD_ID, UUID.class))
+            .san(row.get(FIELD_SAN, String.class))
+            .uci(row.get(FIELD_UCI, String.class))
+            .nag(Optional
+                .ofNullable(row.get(FIELD_NAG, String.class))
+                .map(Nag::valueOf)
+                .orElse(null))
+            .comment(row.get(FIELD_COMMENT, String.class))
+            .color(Optional
+                .ofNullable(row.get(FIELD_COLOR, String.class))
+                .map(Color::valueOf)
+                .orElse(null))
+            .nextMoves(new ArrayList<>())
+            .build();
+    }
+
+    private static Chapter readChapter(
+        final Readable row,
+        final Function<UUID, List<Move>> nextMoves) {
+
+        final UUID chapterId = row.get(FIELD_ID, UUID.class);
+        return Chapter.builder()
+            .id(chapterId)
+            .title(row.get(FIELD_TITLE, String.class))
+            .enabled(Boolean.TRUE.equals(
+                row.get(FIELD_ENABLED, Boolean.class)))
+            .nextMoves(nextMoves.apply(chapterId))
+            .build();
+    }
+
+    private LineRow readLine(final Readable row) {
+
+        final String format = row.get(FIELD_MOVES_FORMAT, String.class);
+        final byte[] encoded = row.get(FIELD_ENCODED_MOVES, byte[].class);
+
+        return new LineRow(
+            TrainingRepository.readLineProgress(row)
+                .id(row.get(FIELD_ID, UUID.class))
+                .chapterId(row.get(FIELD_CHAPTER_ID, UUID.class))
+                .moves(new ArrayList<>())
+                .build(),
+            this.metrics.time(
+                Metrics.LINES_DECODE,
+                () -> this
+                    .getLineMovesCodec(LineMovesFormat.valueOf(format))
+                    .decode(encoded),
+                Metrics.TAG_FORMAT,
+                format));
+    }
+
     /**
-     * Map a JSON to a Book.
+     * Encode the moves of the Lines of a Book.
      *
-     * @param json The json
-     * @return A Book
+     * @param book  is the Book.
+     * @param codec is the LineMovesCodec.
+     * @param lines is the Lines.
+     * @return the encoded moves, by Line.
      */
-    private Book readFromJson(final String json) {
+    private List<byte[]> encodeLinesMoves(final Book book,
+                                          final LineMovesCodec codec,
+                                          final List<Line> lines) {
 
-        try {
-            return objectMapper.readValue(json, Book.class);
-        } catch (JsonProcessingException e) {
-            throw new BookSerDeException("Json deserialization failure", e);
+        final long start = System.nanoTime();
+        long encodedBytes = 0;
+        final List<byte[]> linesMoves = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            final byte[] encoded = codec.encode(Optional
+                .ofNullable(line.getMoves())
+                .orElse(List.of())
+                .stream()
+                .map(LineMove::getMoveId)
+                .toList());
+            encodedBytes += encoded.length;
+            linesMoves.add(encoded);
         }
+
+        final long encodeNanos = System.nanoTime() - start;
+        log.debug(
+            "Encode {} lines of book {}: {} bytes in {} ms",
+            lines.size(),
+            book.getId(),
+            encodedBytes,
+            TimeUnit.NANOSECONDS.toMillis(encodeNanos));
+        this.metrics.record(
+            Metrics.LINES_ENCODE,
+            encodeNanos,
+            Metrics.TAG_FORMAT,
+            codec.getFormat().name());
+        return linesMoves;
+    }
+
+    /**
+     * Record the size of a saved Book: its moves and lines counts, its stored
+     * lines size and its size in memory (as weighed by the cache).
+     *
+     * @param book       is the saved Book.
+     * @param moves      is the number of stored moves.
+     * @param linesMoves is the encoded moves of the Lines.
+     */
+    private void recordBookSize(final Book book,
+                                final long moves,
+                                final List<byte[]> linesMoves) {
+
+        this.metrics.count(Metrics.BOOK_MOVES, moves);
+        this.metrics.count(Metrics.BOOK_LINES, linesMoves.size());
+        this.metrics.size(
+            Metrics.BOOK_STORED_BYTES,
+            linesMoves
+                .stream()
+                .mapToLong(encoded -> encoded.length)
+                .sum());
+        this.metrics.size(Metrics.BOOK_MEMORY_BYTES, BookCache.weigh(book));
+    }
+
+    private LineMovesCodec getLineMovesCodec(final LineMovesFormat format) {
+
+        return this.lineMovesCodecs
+            .stream()
+            .filter(codec -> codec.getFormat() == format)
+            .findFirst()
+            .orElseThrow(() -> new BookSerDeException(
+                "No codec for the lines format " + format,
+                null));
     }
 
 }
@@ -0,0 +1,60 @@
+package io.github.fifi2.chessmorize.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.fifi2.chessmorize.error.exception.BookSerDeException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * JSON codec of the moves of a Line
+ * - a JSON array of the move ids, encoded in UTF-8 (readable when the
+ * database is inspected)
+ */
+
+@Component
+@RequiredArgsConstructor
+class JsonLineMovesCodec implements LineMovesCodec {
+
+    private static final TypeReference<List<UUID>> MOVE_IDS_TYPE =
+        new TypeReference<>() {
+        };
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public LineMovesFormat getFormat() {
+
+        return LineMovesFormat.JSON;
+    }
+
+    @Override
+    public byte[] encode(final List<UUID> moveIds) {
+
+        try {
+            return this.objectMapper
+                .writeValueAsString(moveIds)
+                .getBytes(StandardCharsets.UTF_8);
+        } catch (JsonProcessingException e) {
+            throw new BookSerDeException("Json serialization failure", e);
+        }
+    }
+
+    @Override
+    public List<UUID> decode(final byte[] bytes) {
+
+        try {
+            return this.objectMapper.readValue(
+                new String(bytes, StandardCharsets.UTF_8),
+                MOVE_IDS_TYPE);
+        } catch (JsonProcessingException e) {
+            throw new BookSerDeException("Json deserialization failure", e);
+        }
+    }
+
+}
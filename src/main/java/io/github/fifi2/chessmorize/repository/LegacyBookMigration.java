@@ -0,0 +1,272 @@
+package io.github.fifi2.chessmorize.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.fifi2.chessmorize.error.exception.BookSerDeException;
+import io.github.fifi2.chessmorize.model.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Legacy Book migration
+ * - the Books created before the normalized tables are stored as a whole
+ * JSON in the state column of the book table, they are migrated once at
+ * startup into the chapter, move, line and progress tables, before the web
+ * server accepts requests
+ * - a migrated Book is rewritten (in a transaction) without its state
+ * - the moves reached again (merged transpositions) were serialized as their
+ * ids, the next moves containing them are shared again
+ * - a Book which cannot be migrated is left untouched and logged as an error,
+ * the other ones being migrated, and the startup fails (its book row has to
+ * be fixed or deleted, the Book being imported again)
+ */
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LegacyBookMigration implements SmartInitializingSingleton {
+
+    private static final String SELECT_LEGACY_BOOKS = """
+        SELECT id, state
+        FROM book
+        WHERE state IS NOT NULL
+        """;
+    private static final String DELETE_ONE_BOOK = """
+        DELETE FROM book
+        WHERE id = :id
+        """;
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_STATE = "state";
+    private static final String PARAM_ID = "id";
+    private static final String JSON_ID = "id";
+    private static final String JSON_STUDY_ID = "studyId";
+    private static final String JSON_NAME = "name";
+    private static final String JSON_COLOR = "color";
+    private static final String JSON_CHAPTERS = "chapters";
+    private static final String JSON_LINES = "lines";
+    private static final String JSON_CALENDAR_SLOT = "calendarSlot";
+    private static final String JSON_TITLE = "title";
+    private static final String JSON_ENABLED = "enabled";
+    private static final String JSON_NEXT_MOVES = "nextMoves";
+    private static final String JSON_SAN = "san";
+    private static final String JSON_UCI = "uci";
+    private static final String JSON_NAG = "nag";
+    private static final String JSON_COMMENT = "comment";
+    private static final String JSON_CHAPTER_ID = "chapterId";
+    private static final String JSON_MOVES = "moves";
+    private static final String JSON_BOX_ID = "boxId";
+    private static final String JSON_LAST_TRAINING = "lastTraining";
+    private static final String JSON_LAST_CALENDAR_SLOT = "lastCalendarSlot";
+
+    private final DatabaseClient databaseClient;
+    private final ObjectMapper objectMapper;
+    private final BookRepository bookRepository;
+    private final BookCache bookCache;
+    private final TransactionalOperator transactionalOperator;
+
+    /**
+     * A legacy book row.
+     *
+     * @param id    is the Book id.
+     * @param state is the whole Book, as JSON.
+     */
+    private record LegacyRow(UUID id,
+                             String state) {
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+
+        final Long migrated = this.migrate().block();
+        if (migrated != null && migrated > 0)
+            log.info("{} legacy books migrated", migrated);
+    }
+
+    /**
+     * Migrate the legacy Books (stored as a whole JSON) into the normalized
+     * tables.
+     *
+     * @return a Mono of the number of migrated Books (an IllegalStateException
+     * if some of them cannot be migrated, once the other ones are).
+     */
+    public Mono<Long> migrate() {
+
+        return this.databaseClient
+            .sql(SELECT_LEGACY_BOOKS)
+            .map(row -> new LegacyRow(
+                row.get(FIELD_ID, UUID.class),
+                row.get(FIELD_STATE, String.class)))
+            .all()
+            .collectList()
+            .flatMapIterable(rows -> rows)
+            .concatMap(legacyRow -> this.migrate(legacyRow)
+                .thenReturn(Optional.<UUID>empty())
+                .onErrorResume(e -> {
+                    log.error(
+                        "Legacy book {} cannot be migrated",
+                        legacyRow.id(),
+                        e);
+                    return Mono.just(Optional.of(legacyRow.id()));
+                }))
+            .collectList()
+            .flatMap(results -> {
+                final List<UUID> failedIds = results
+                    .stream()
+                    .flatMap(Optional::stream)
+                    .toList();
+                return failedIds.isEmpty()
+                    ? Mono.just((long) results.size())
+                    : Mono.error(new IllegalStateException(
+                        ("The legacy books %s cannot be migrated: fix or "
+                            + "delete their book row").formatted(failedIds)));
+            });
+    }
+
+    /**
+     * Migrate a legacy Book: its row is deleted and the Book is saved again in
+     * the same transaction.
+     *
+     * @param legacyRow is the legacy book row.
+     * @return a Mono of the migrated Book.
+     */
+    private Mono<Book> migrate(final LegacyRow legacyRow) {
+
+        return this.transactionalOperator.transactional(Mono
+                .fromCallable(() -> this.readBook(legacyRow))
+                .flatMap(book -> this.databaseClient
+                    .sql(DELETE_ONE_BOOK)
+                    .bind(PARAM_ID, legacyRow.id())
+                    .fetch()
+                    .rowsUpdated()
+                    .then(this.bookRepository.save(book))))
+            .doOnError(e -> this.bookCache.evict(legacyRow.id()));
+    }
+
+    /**
+     * Map the JSON state of a legacy book row to a Book.
+     *
+     * @param legacyRow is the legacy book row.
+     * @return the Book.
+     */
+    private Book readBook(final LegacyRow legacyRow) {
+
+        final JsonNode node;
+        try {
+            node = this.objectMapper.readTree(legacyRow.state());
+        } catch (JsonProcessingException e) {
+            throw new BookSerDeException("Json deserialization failure", e);
+        }
+
+        final Map<UUID, List<Move>> movesLists = new HashMap<>();
+        final List<Chapter> chapters = new ArrayList<>();
+        for (JsonNode chapter : node.path(JSON_CHAPTERS))
+            chapters.add(Chapter.builder()
+                .id(this.read(chapter, JSON_ID, UUID.class))
+                .title(this.read(chapter, JSON_TITLE, String.class))
+                .enabled(chapter.path(JSON_ENABLED).asBoolean())
+                .nextMoves(this.readMoves(
+                    chapter.path(JSON_NEXT_MOVES),
+                    movesLists))
+                .build());
+
+        final List<Line> lines = new ArrayList<>();
+        for (JsonNode line : node.path(JSON_LINES)) {
+            final List<LineMove> lineMoves = new ArrayList<>();
+            for (JsonNode lineMove : line.path(JSON_MOVES))
+                lineMoves.add(this.read(lineMove, LineMove.class));
+            lines.add(Line.builder()
+                .id(this.read(line, JSON_ID, UUID.class))
+                .chapterId(this.read(line, JSON_CHAPTER_ID, UUID.class))
+                .moves(lineMoves)
+                .boxId(line.path(JSON_BOX_ID).asInt())
+                .lastTraining(this.read(
+                    line,
+                    JSON_LAST_TRAINING,
+                    Instant.class))
+                .lastCalendarSlot(this.read(
+                    line,
+                    JSON_LAST_CALENDAR_SLOT,
+                    Integer.class))
+                .build());
+        }
+
+        return Book.builder()
+            .id(legacyRow.id())
+            .studyId(this.read(node, JSON_STUDY_ID, String.class))
+            .name(this.read(node, JSON_NAME, String.class))
+            .color(this.read(node, JSON_COLOR, Color.class))
+            .chapters(chapters)
+            .lines(lines)
+            .calendarSlot(node.path(JSON_CALENDAR_SLOT).asInt())
+            .build();
+    }
+
+    /**
+     * Map the JSON next moves of a legacy Move (or Chapter) to Moves. Next
+     * moves already read are serialized as their ids: the list containing
+     * them is then shared.
+     *
+     * @param nextMoves  is the JSON next moves.
+     * @param movesLists is the list containing each Move already read, by
+     *                   Move id.
+     * @return the Moves.
+     */
+    private List<Move> readMoves(final JsonNode nextMoves,
+                                 final Map<UUID, List<Move>> movesLists) {
+
+        final JsonNode first = nextMoves.path(0);
+        if (first.isTextual())
+            return Optional
+                .ofNullable(movesLists.get(this.read(first, UUID.class)))
+                .orElseThrow(() -> new BookSerDeException(
+                    "Unknown move " + first.asText(),
+                    null));
+
+        final List<Move> moves = new ArrayList<>();
+        for (JsonNode node : nextMoves) {
+            final Move move = Move.builder()
+                .id(this.read(node, JSON_ID, UUID.class))
+                .san(this.read(node, JSON_SAN, String.class))
+                .uci(this.read(node, JSON_UCI, String.class))
+                .nag(this.read(node, JSON_NAG, Nag.class))
+                .comment(this.read(node, JSON_COMMENT, String.class))
+                .color(this.read(node, JSON_COLOR, Color.class))
+                .build();
+            moves.add(move);
+            movesLists.put(move.getId(), moves);
+            move.setNextMoves(this.readMoves(
+                node.path(JSON_NEXT_MOVES),
+                movesLists));
+        }
+        return moves;
+    }
+
+    private <T> T read(final JsonNode node,
+                       final String field,
+                       final Class<T> type) {
+
+        return this.read(node.path(field), type);
+    }
+
+    private <T> T read(final JsonNode node,
+                       final Class<T> type) {
+
+        if (node.isMissingNode() || node.isNull())
+            return null;
+        try {
+            return this.objectMapper.treeToValue(node, type);
+        } catch (JsonProcessingException e) {
+            throw new BookSerDeException("Json deserialization failure", e);
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package io.github.fifi2.chessmorize.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Codec of the moves of a Line, stored as the ids of their Moves
+ */
+
+interface LineMovesCodec {
+
+    /**
+     * Get the format of the codec (stored with the encoded lines).
+     *
+     * @return the LineMovesFormat.
+     */
+    LineMovesFormat getFormat();
+
+    /**
+     * Encode the moves of a Line.
+     *
+     * @param moveIds is the ids of the moves.
+     * @return the encoded moves.
+     */
+    byte[] encode(List<UUID> moveIds);
+
+    /**
+     * Decode the moves of a Line.
+     *
+     * @param bytes is the encoded moves.
+     * @return the ids of the moves (a BookSerDeException if the bytes are not
+     * in the format of the codec).
+     */
+    List<UUID> decode(byte[] bytes);
+
+}
@@ -0,0 +1,18 @@
+package io.github.fifi2.chessmorize.repository;
+
+/**
+ * Storage format of the moves of a Line
+ * - the format is stored with the line (format marker), so that the lines
+ * written in another format can still be read
+ * - the lines stored before the format marker are JSON text
+ */
+
+public enum LineMovesFormat {
+
+    // JSON array of the move ids
+    JSON,
+
+    // the move ids, 16 bytes each
+    BINARY
+
+}
@@ -0,0 +1,76 @@
+package io.github.fifi2.chessmorize.repository;
+
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Statements helpers
+ * - the batch statements use the native H2 bind markers ($1, $2...), the
+ * other queries go through the DatabaseClient named parameters
+ */
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class Statements {
+
+    /**
+     * Execute a statement once per item, as a single batch.
+     *
+     * @param databaseClient is the DatabaseClient.
+     * @param sql            is the statement, with native bind markers.
+     * @param items          is the items to bind.
+     * @param binder         is the binding of an item into the statement.
+     * @param <T>            is the type of the items.
+     * @return A Mono of the number of updated rows.
+     */
+    static <T> Mono<Long> executeBatch(final DatabaseClient databaseClient,
+                                       final String sql,
+                                       final List<T> items,
+                                       final BiConsumer<Statement, T> binder) {
+
+        if (items.isEmpty())
+            return Mono.just(0L);
+
+        return databaseClient
+            .inConnectionMany(connection -> {
+                final Statement statement = connection.createStatement(sql);
+                for (int i = 0; i < items.size(); i++) {
+                    if (i > 0)
+                        statement.add();
+                    binder.accept(statement, items.get(i));
+                }
+                return Flux
+                    .from(statement.execute())
+                    .flatMap(Result::getRowsUpdated);
+            })
+            .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Bind a nullable value into a statement.
+     *
+     * @param statement is the statement.
+     * @param index     is the bind marker index (from 0).
+     * @param value     is the value (can be null).
+     * @param type      is the value type.
+     * @param <T>       is the value type.
+     */
+    static <T> void bind(final Statement statement,
+                         final int index,
+                         final T value,
+                         final Class<T> type) {
+
+        if (value == null)
+            statement.bindNull(index, type);
+        else
+            statement.bind(index, value);
+    }
+
+}
@@ -0,0 +1,463 @@
+package io.github.fifi2.chessmorize.repository;
+
+import io.github.fifi2.chessmorize.error.exception.BookConflictException;
+import io.github.fifi2.chessmorize.error.exception.BookNotFoundException;
+import io.github.fifi2.chessmorize.model.Book;
+import io.github.fifi2.chessmorize.model.Chapter;
+import io.github.fifi2.chessmorize.model.Line;
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.Parameter;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.github.fifi2.chessmorize.repository.Statements.bind;
+import static io.github.fifi2.chessmorize.repository.Statements.executeBatch;
+
+/**
+ * Training state persistence
+ * - the training state of a Book is its calendar slot (book_progress) and
+ * the progress of its lines (line_progress), including their order
+ * - it is read and written apart from the imported content, a few bytes per
+ * training request
+ */
+
+@Repository
+@RequiredArgsConstructor
+public class TrainingRepository {
+
+    private static final String INSERT_ONE_BOOK_PROGRESS = """
+        INSERT INTO book_progress (book_id, calendar_slot, version)
+        VALUES (:id, :calendarSlot, :version)
+        """;
+    private static final String INSERT_LINE_PROGRESSES = """
+        INSERT INTO line_progress (line_id, book_id, position, box_id,
+            last_training, last_calendar_slot)
+        VALUES ($1, $2, $3, $4, $5, $6)
+        """;
+    private static final String UPDATE_ONE_BOOK_PROGRESS = """
+        UPDATE book_progress
+        SET calendar_slot = :calendarSlot,
+            version = version + 1
+        WHERE book_id = :id
+        AND version = :version
+        """;
+    private static final String UPDATE_ONE_BOOK_VERSION = """
+        UPDATE book_progress
+        SET version = version + 1
+        WHERE book_id = :id
+        AND version = :version
+        """;
+    private static final String UPDATE_ONE_LINE_PROGRESS = """
+        UPDATE line_progress
+        SET box_id = :boxId,
+            last_training = :lastTraining,
+            last_calendar_slot = :lastCalendarSlot
+        WHERE book_id = :id
+        AND line_id = :lineId
+        """;
+    private static final String UPDATE_LINE_POSITIONS = """
+        UPDATE line_progress
+        SET position = $1
+        WHERE book_id = $2
+        AND line_id = $3
+        """;
+    private static final String SELECT_ONE_BOOK_PROGRESS = """
+        SELECT calendar_slot, version
+        FROM book_progress
+        WHERE book_id = :id
+        """;
+    // the lines of the disabled chapters are not trained
+    private static final String SELECT_ENABLED_LINE_PROGRESSES = """
+        SELECT l.id, l.chapter_id, p.box_id, p.last_training,
+            p.last_calendar_slot
+        FROM line l
+        JOIN line_progress p ON p.book_id = l.book_id AND p.line_id = l.id
+        LEFT JOIN chapter c ON c.book_id = l.book_id AND c.id = l.chapter_id
+        WHERE l.book_id = :id
+        AND COALESCE(c.enabled, TRUE)
+        ORDER BY p.position
+        """;
+    private static final String SELECT_LINE_IDS = """
+        SELECT line_id
+        FROM line_progress
+        WHERE book_id = :id
+        ORDER BY position
+        """;
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_LINE_ID = "line_id";
+    private static final String FIELD_CHAPTER_ID = "chapter_id";
+    private static final String FIELD_CALENDAR_SLOT = "calendar_slot";
+    private static final String FIELD_VERSION = "version";
+    private static final String FIELD_BOX_ID = "box_id";
+    private static final String FIELD_LAST_TRAINING = "last_training";
+    private static final String FIELD_LAST_CALENDAR_SLOT = "last_calendar_slot";
+    private static final String PARAM_ID = "id";
+    private static final String PARAM_LINE_ID = "lineId";
+    private static final String PARAM_CALENDAR_SLOT = "calendarSlot";
+    private static final String PARAM_VERSION = "version";
+    private static final String PARAM_BOX_ID = "boxId";
+    private static final String PARAM_LAST_TRAINING = "lastTraining";
+    private static final String PARAM_LAST_CALENDAR_SLOT = "lastCalendarSlot";
+
+    private final DatabaseClient databaseClient;
+    private final BookCache bookCache;
+    private final TransactionalOperator transactionalOperator;
+
+    /**
+     * Save the initial training state of a Book (its calendar slot and the
+     * progress of its lines, in their order).
+     *
+     * @param book is the Book.
+     * @return a Mono of the number of saved lines progress.
+     */
+    Mono<Long> save(final Book book) {
+
+        final List<Line> lines = Optional
+            .ofNullable(book.getLines())
+            .orElse(List.of());
+
+        return this.databaseClient
+            .sql(INSERT_ONE_BOOK_PROGRESS)
+            .bind(PARAM_ID, book.getId())
+            .bind(PARAM_CALENDAR_SLOT, book.getCalendarSlot())
+            .bind(PARAM_VERSION, book.getVersion())
+            .fetch()
+            .rowsUpdated()
+            .then(executeBatch(
+                this.databaseClient,
+                INSERT_LINE_PROGRESSES,
+                IntStream.range(0, lines.size()).boxed().toList(),
+                (statement, position) -> {
+                    final Line line = lines.get(position);
+                    statement
+                        .bind(0, line.getId())
+                        .bind(1, book.getId())
+                        .bind(2, position)
+                        .bind(3, line.getBoxId());
+                    bind(statement, 4, Optional
+                        .ofNullable(line.getLastTraining())
+                        .map(lastTraining -> lastTraining.atOffset(
+                            ZoneOffset.UTC))
+                        .orElse(null), OffsetDateTime.class);
+                    bind(
+                        statement,
+                        5,
+                        line.getLastCalendarSlot(),
+                        Integer.class);
+                }));
+    }
+
+    /**
+     * Find the progress of a Book (its calendar slot and its version), from the
+     * cached Book or else from the database.
+     *
+     * @param bookId is the Book id.
+     * @return a Mono of the Book, without its chapters and lines.
+     */
+    public Mono<Book> findProgress(final UUID bookId) {
+
+        return Mono.defer(() -> this.bookCache
+            .get(bookId, book -> Book.builder()
+                .id(bookId)
+                .calendarSlot(book.getCalendarSlot())
+                .version(book.getVersion())
+                .build())
+            .map(Mono::just)
+            .orElseGet(() -> this.databaseClient
+                .sql(SELECT_ONE_BOOK_PROGRESS)
+                .bind(PARAM_ID, bookId)
+                .map(row -> Book.builder()
+                    .id(bookId)
+                    .calendarSlot(row.get(FIELD_CALENDAR_SLOT, Integer.class))
+                    .version(row.get(FIELD_VERSION, Long.class))
+                    .build())
+                .one()
+                .switchIfEmpty(Mono.error(
+                    new BookNotFoundException(bookId)))));
+    }
+
+    /**
+     * Find the progress of the Lines to train (those of the enabled chapters),
+     * in their training order, from the cached Book or else from the database.
+     * The Lines are returned without their moves.
+     *
+     * @param bookId is the Book id.
+     * @return a Flux of Lines.
+     */
+    public Flux<Line> findLineProgresses(final UUID bookId) {
+
+        return Flux.defer(() -> this.bookCache
+            .get(bookId, TrainingRepository::readLineProgresses)
+            .map(Flux::fromIterable)
+            .orElseGet(() -> this.databaseClient
+                .sql(SELECT_ENABLED_LINE_PROGRESSES)
+                .bind(PARAM_ID, bookId)
+                .map(row -> readLineProgress(row)
+                    .id(row.get(FIELD_ID, UUID.class))
+                    .chapterId(row.get(FIELD_CHAPTER_ID, UUID.class))
+                    .build())
+                .all()));
+    }
+
+    /**
+     * Find the ids of all the Lines of a Book, in their training order.
+     *
+     * @param bookId is the Book id.
+     * @return a Flux of Line ids.
+     */
+    public Flux<UUID> findLineIds(final UUID bookId) {
+
+        return this.databaseClient
+            .sql(SELECT_LINE_IDS)
+            .bind(PARAM_ID, bookId)
+            .map(row -> row.get(FIELD_LINE_ID, UUID.class))
+            .all();
+    }
+
+    /**
+     * Update the calendar slot of a Book, if its version has not changed, and
+     * the training order of its Lines in the same transaction. The version is
+     * incremented. The cached Book is updated once the transaction is
+     * committed (evicted if it fails).
+     *
+     * @param bookId       is the Book id.
+     * @param version      is the version of the Book the update is based on.
+     * @param calendarSlot is the new calendar slot.
+     * @param lineIds      is the Line ids, in their new order (null to keep
+     *                     the order).
+     * @return a Mono of the calendar slot (empty if the Book is not found, a
+     * BookConflictException if its version has changed).
+     */
+    public Mono<Integer> updateCalendarSlot(final UUID bookId,
+                                            final long version,
+                                            final int calendarSlot,
+                                            final List<UUID> lineIds) {
+
+        return this.transactionalOperator.transactional(this
+                .storeCalendarSlot(bookId, version, calendarSlot)
+                .flatMap(slot -> lineIds == null
+                    ? Mono.just(slot)
+                    : this.storeLineOrder(bookId, lineIds).thenReturn(slot)))
+            .doOnNext(slot -> this.bookCache.update(
+                bookId,
+                version + 1,
+                book -> {
+                    book.setCalendarSlot(slot);
+                    if (lineIds != null)
+                        reorderLines(book, lineIds);
+                }))
+            .doOnError(e -> this.bookCache.evict(bookId));
+    }
+
+    /**
+     * Store the calendar slot of a Book, if its version has not changed,
+     * without updating the cached Book (the transactional callers update it
+     * once committed). The version is incremented.
+     *
+     * @param bookId       is the Book id.
+     * @param version      is the version of the Book the update is based on.
+     * @param calendarSlot is the new calendar slot.
+     * @return a Mono of the calendar slot (empty if the Book is not found, a
+     * BookConflictException if its version has changed).
+     */
+    Mono<Integer> storeCalendarSlot(final UUID bookId,
+                                    final long version,
+                                    final int calendarSlot) {
+
+        return this.databaseClient
+            .sql(UPDATE_ONE_BOOK_PROGRESS)
+            .bind(PARAM_ID, bookId)
+            .bind(PARAM_VERSION, version)
+            .bind(PARAM_CALENDAR_SLOT, calendarSlot)
+            .fetch()
+            .rowsUpdated()
+            .flatMap(rowsUpdated -> rowsUpdated > 0
+                ? Mono.just(calendarSlot)
+                : this.conflict(bookId, version));
+    }
+
+    /**
+     * Update the training progress of a Line (a single row update), if the
+     * version of its Book has not changed. The version is incremented.
+     *
+     * @param bookId  is the Book id.
+     * @param version is the version of the Book the update is based on.
+     * @param line    is the Line holding the progress to save.
+     * @return a Mono of the updated Line (empty if the Line is not found, a
+     * BookConflictException if the version of the Book has changed).
+     */
+    public Mono<Line> updateLineProgress(final UUID bookId,
+                                         final long version,
+                                         final Line line) {
+
+        return this.transactionalOperator.transactional(this.databaseClient
+            .sql(UPDATE_ONE_LINE_PROGRESS)
+            .bind(PARAM_ID, bookId)
+            .bind(PARAM_LINE_ID, line.getId())
+            .bind(PARAM_BOX_ID, line.getBoxId())
+            .bind(PARAM_LAST_TRAINING, Parameter.fromOrEmpty(
+                Optional
+                    .ofNullable(line.getLastTraining())
+                    .map(lastTraining -> lastTraining.atOffset(ZoneOffset.UTC))
+                    .orElse(null),
+                OffsetDateTime.class))
+            .bind(PARAM_LAST_CALENDAR_SLOT, Parameter.fromOrEmpty(
+                line.getLastCalendarSlot(),
+                Integer.class))
+            .fetch()
+            .rowsUpdated()
+            .filter(rowsUpdated -> rowsUpdated > 0)
+            .flatMap(rowsUpdated -> this.databaseClient
+                .sql(UPDATE_ONE_BOOK_VERSION)
+                .bind(PARAM_ID, bookId)
+                .bind(PARAM_VERSION, version)
+                .fetch()
+                .rowsUpdated())
+            .flatMap(rowsUpdated -> rowsUpdated > 0
+                ? Mono.just(line)
+                : this.conflict(bookId, version)))
+            .doOnNext(updated -> this.bookCache.update(
+                bookId,
+                version + 1,
+                book -> Optional
+                    .ofNullable(book.getLines())
+                    .orElse(List.of())
+                    .stream()
+                    .filter(cached -> updated.getId().equals(cached.getId()))
+                    .forEach(cached -> {
+                        cached.setBoxId(updated.getBoxId());
+                        cached.setLastTraining(updated.getLastTraining());
+                        cached.setLastCalendarSlot(
+                            updated.getLastCalendarSlot());
+                    })))
+            .doOnError(e -> this.bookCache.evict(bookId));
+    }
+
+    /**
+     * Store the training order of the Lines of a Book, without updating the
+     * cached Book (the transactional callers update it once committed). It is
+     * not versioned: it follows a versioned update of the Book.
+     *
+     * @param bookId  is the Book id.
+     * @param lineIds is the Line ids, in their new order.
+     * @return a Mono of the number of updated Lines.
+     */
+    Mono<Long> storeLineOrder(final UUID bookId,
+                              final List<UUID> lineIds) {
+
+        return executeBatch(
+            this.databaseClient,
+            UPDATE_LINE_POSITIONS,
+            IntStream.range(0, lineIds.size()).boxed().toList(),
+            (statement, position) -> statement
+                .bind(0, position)
+                .bind(1, bookId)
+                .bind(2, lineIds.get(position)));
+    }
+
+    /**
+     * Reorder the Lines of a cached Book, as the update does in database.
+     *
+     * @param book    is the cached Book.
+     * @param lineIds is the Line ids, in their new order.
+     */
+    static void reorderLines(final Book book,
+                             final List<UUID> lineIds) {
+
+        final Map<UUID, Line> lines = Optional
+            .ofNullable(book.getLines())
+            .orElse(List.of())
+            .stream()
+            .collect(Collectors.toMap(Line::getId, line -> line));
+        book.setLines(lineIds
+            .stream()
+            .map(lines::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Fail a versioned update which has not updated the Book: the Book has
+     * been deleted (empty) or its version has changed (the cached Book, if
+     * any, is outdated and evicted), the current version being reported.
+     *
+     * @param bookId  is the Book id.
+     * @param version is the version of the Book the update is based on.
+     * @param <T>     is the result type of the update.
+     * @return an empty Mono or a BookConflictException.
+     */
+    private <T> Mono<T> conflict(final UUID bookId,
+                                 final long version) {
+
+        return this.databaseClient
+            .sql(SELECT_ONE_BOOK_PROGRESS)
+            .bind(PARAM_ID, bookId)
+            .map(row -> row.get(FIELD_VERSION, Long.class))
+            .one()
+            .flatMap(currentVersion -> {
+                this.bookCache.evict(bookId);
+                return Mono.error(new BookConflictException(
+                    bookId,
+                    version,
+                    currentVersion));
+            });
+    }
+
+    /**
+     * Read the progress of the Lines to train from a cached Book: the Lines of
+     * the disabled chapters are excluded.
+     *
+     * @param book is the cached Book.
+     * @return the Lines, without their moves.
+     */
+    private static List<Line> readLineProgresses(final Book book) {
+
+        final Set<UUID> disabledChapterIds = Optional
+            .ofNullable(book.getChapters())
+            .orElse(List.of())
+            .stream()
+            .filter(chapter -> !chapter.isEnabled())
+            .map(Chapter::getId)
+            .collect(Collectors.toSet());
+
+        return Optional
+            .ofNullable(book.getLines())
+            .orElse(List.of())
+            .stream()
+            .filter(line -> !disabledChapterIds.contains(line.getChapterId()))
+            .map(line -> line.toBuilder()
+                .moves(null)
+                .build())
+            .toList();
+    }
+
+    /**
+     * Read the progress columns of a line_progress row.
+     *
+     * @param row is the row.
+     * @return a Line builder holding the progress.
+     */
+    static Line.LineBuilder readLineProgress(final Readable row) {
+
+        return Line.builder()
+            .boxId(Optional
+                .ofNullable(row.get(FIELD_BOX_ID, Integer.class))
+                .orElse(0))
+            .lastTraining(Optional
+                .ofNullable(row.get(FIELD_LAST_TRAINING, OffsetDateTime.class))
+                .map(OffsetDateTime::toInstant)
+                .orElse(null))
+            .lastCalendarSlot(row.get(FIELD_LAST_CALENDAR_SLOT, Integer.class));
+    }
+
+}
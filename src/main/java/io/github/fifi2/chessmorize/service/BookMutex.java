@@ -0,0 +1,80 @@
+package io.github.fifi2.chessmorize.service;
+
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Book mutex
+ * - the mutations of a Book run one after another, in their subscription
+ * order: each one waits for the completion of the previous one
+ * - the mutations of different Books run concurrently, the queue of a Book is
+ * removed once it has no more pending mutation
+ * - the mutex is local to the application instance, the version of the Book
+ * protects the updates against the others
+ */
+
+@Component
+public class BookMutex {
+
+    // the completion of the last mutation submitted for each Book
+    private final ConcurrentHashMap<UUID, Mono<Void>> tails =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Run a mutation of a Book once the previous ones have completed.
+     *
+     * @param bookId   is the Book id.
+     * @param mutation is the mutation (read, modify and write of the Book).
+     * @param <T>      is the mutation result type.
+     * @return a Mono of the mutation result.
+     */
+    public <T> Mono<T> run(final UUID bookId,
+                           final Supplier<Mono<T>> mutation) {
+
+        return Mono.defer(() -> {
+            final Sinks.Empty<Void> completion = Sinks.empty();
+            final Mono<Void> tail = completion.asMono();
+            final Mono<Void> previous = Optional
+                .ofNullable(this.tails.put(bookId, tail))
+                .orElse(Mono.empty());
+
+            final AtomicBoolean started = new AtomicBoolean();
+            final Runnable release = () -> {
+                this.tails.remove(bookId, tail);
+                completion.tryEmitEmpty();
+            };
+
+            return previous
+                .then(Mono.defer(() -> {
+                    started.set(true);
+                    return mutation.get();
+                }))
+                .doFinally(signal -> {
+                    // a mutation cancelled while waiting still releases the
+                    // next ones after the previous one only
+                    if (started.get())
+                        release.run();
+                    else
+                        previous.subscribe(null, e -> release.run(), release);
+                });
+        });
+    }
+
+    /**
+     * Get the number of Books with pending mutations.
+     *
+     * @return the number of Books.
+     */
+    public int size() {
+
+        return this.tails.size();
+    }
+
+}
@@ -1,26 +1,31 @@
 package io.github.fifi2.chessmorize.service;
 
 import io.github.fifi2.chessmorize.api.LichessApiClient;
+import io.github.fifi2.chessmorize.config.properties.ImportProperties;
 import io.github.fifi2.chessmorize.config.properties.TrainingProperties;
 import io.github.fifi2.chessmorize.converter.PgnGamesToBookConverter;
 import io.github.fifi2.chessmorize.error.exception.ChapterNotFoundException;
+import io.github.fifi2.chessmorize.error.exception.ImportRejectedException;
+import io.github.fifi2.chessmorize.error.exception.lichess.LichessException;
 import io.github.fifi2.chessmorize.error.exception.pgn.PgnException;
+import io.github.fifi2.chessmorize.metrics.Metrics;
 import io.github.fifi2.chessmorize.model.*;
 import io.github.fifi2.chessmorize.repository.BookRepository;
 import io.github.fifi2.chessmorize.service.pgn.PgnGame;
 import io.github.fifi2.chessmorize.service.pgn.PgnParser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -32,13 +37,24 @@ public class BookService {
     private final LichessApiClient lichessApiClient;
     private final PgnGamesToBookConverter pgnGamesToBookConverter;
     private final BookRepository bookRepository;
+    private final BookMutex bookMutex;
+    private final DueLineQueues dueLineQueues;
     private final TrainingProperties trainingProperties;
+    private final ImportProperties importProperties;
+    private final Scheduler importScheduler;
+    private final ForkJoinPool parserPool;
+    private final Semaphore importSlots;
+    private final Metrics metrics;
 
     /**
-     * Create a book from a Lichess study id. The method will retrieve the PGN
+     * Create a book from a Lichess study id. The method will stream the PGN
      * study, parse it and convert the result as a Book. The resulting lines
      * will be generated and set to the book before it is saved and returned in
-     * a Mono.
+     * a Mono. The import takes an import slot before the study is downloaded
+     * (an ImportRejectedException is raised if none is left) and gives it
+     * back once done. The chapters are parsed on the parser pool as soon as
+     * they are received, the conversion and lines generation run on the
+     * import scheduler.
      *
      * @param studyId is the study id.
      * @param color   is the player color (WHITE or BLACK).
@@ -47,25 +63,48 @@ public class BookService {
     public Mono<Book> createBook(final String studyId,
                                  final Color color) {
 
-        return this.lichessApiClient.getStudyPGN(studyId)
-            .map(pgn -> parsePgn(pgn, studyId))
-            .map(pgnGames -> this.pgnGamesToBookConverter.convert(
-                pgnGames,
-                studyId,
-                color))
-            .doOnNext(book -> book.setLines(this.createLines(book)))
-            .flatMap(this.bookRepository::save);
+        return Mono.defer(() -> {
+            if (!this.importSlots.tryAcquire())
+                return Mono.error(new ImportRejectedException(studyId));
+
+            return this.parsePgn(
+                    this.lichessApiClient.getStudyPGNStream(studyId),
+                    studyId)
+                .publishOn(this.importScheduler)
+                .map(pgnGames -> this.metrics.time(
+                    Metrics.IMPORT_CONVERT,
+                    () -> this.pgnGamesToBookConverter.convert(
+                        pgnGames,
+                        studyId,
+                        color)))
+                .doOnNext(book -> book.setLines(this.metrics.time(
+                    Metrics.IMPORT_LINES,
+                    () -> this.createLines(book))))
+                .onErrorMap(
+                    RejectedExecutionException.class,
+                    e -> new ImportRejectedException(studyId, e))
+                .flatMap(this.bookRepository::save)
+                .doFinally(signal -> this.importSlots.release());
+        });
     }
 
     /**
-     * Retrieve a Book by its id and return it as a Mono.
+     * Retrieve a view of a Book by its id and return it as a Mono. Only the
+     * parts of the Book in the view are loaded, the others are null.
      *
      * @param bookId is the id of the Book.
+     * @param view   is the BookView.
      * @return A Mono of the Book.
      */
-    public Mono<Book> getOneBook(final UUID bookId) {
+    public Mono<Book> getOneBook(final UUID bookId,
+                                 final BookView view) {
 
-        return this.bookRepository.findById(bookId);
+        return switch (view) {
+            case SUMMARY -> this.bookRepository.findHeaderById(bookId);
+            case CHAPTERS -> this.bookRepository.findChaptersView(bookId);
+            case LINES -> this.bookRepository.findLinesView(bookId);
+            case FULL -> this.bookRepository.findById(bookId);
+        };
     }
 
     /**
@@ -86,7 +125,8 @@ public class BookService {
      */
     public Mono<UUID> deleteOneBook(final UUID bookId) {
 
-        return this.bookRepository.deleteById(bookId);
+        return this.bookRepository.deleteById(bookId)
+            .doOnNext(this.dueLineQueues::evict);
     }
 
     /**
@@ -97,16 +137,7 @@ public class BookService {
      */
     List<Line> createLines(final Book book) {
 
-        List<Line> lines = book.getChapters()
-            .stream()
-            .flatMap(chapter -> chapter.getNextMoves()
-                .stream()
-                .flatMap(m -> this.buildChapterLines(m, book.getColor()))
-                .map(moveIds -> Line.builder()
-                    .id(UUID.randomUUID())
-                    .chapterId(chapter.getId())
-                    .moves(moveIds)
-                    .build()))
+        List<Line> lines = this.streamLines(book)
             .collect(Collectors.toList());
 
         if (this.trainingProperties.isShuffled())
@@ -116,64 +147,70 @@ public class BookService {
     }
 
     /**
-     * Recursively flatten all possible paths from a Move and its next Moves.
+     * Flatten all moves from the book as a lazy Stream of Lines, in the order
+     * of the chapters and of their moves.
      *
-     * @param move is the Move to flatten.
-     * @return A Stream of List of LineMove.
+     * @param book is the Book to flatten.
+     * @return A Stream of Line.
+     */
+    Stream<Line> streamLines(final Book book) {
+
+        // the LineMoves shared by the lines
+        final Map<UUID, LineMove> lineMoves = new HashMap<>();
+
+        return book.getChapters()
+            .stream()
+            .flatMap(chapter -> {
+                // the moves already flattened in the chapter, shared with
+                // the transpositions
+                final Set<UUID> visited = new HashSet<>();
+                return chapter.getNextMoves()
+                    .stream()
+                    .flatMap(m -> ChapterLines.stream(
+                        m,
+                        book.getColor(),
+                        visited,
+                        lineMoves))
+                    .map(moveIds -> Line.builder()
+                        .id(UUID.randomUUID())
+                        .chapterId(chapter.getId())
+                        .moves(moveIds)
+                        .build());
+            });
+    }
+
+    /**
+     * Flatten all possible paths from a Move and its next Moves.
+     *
+     * @param move  is the Move to flatten.
+     * @param color is the player color.
+     * @return A lazy Stream of List of LineMove.
      */
     Stream<List<LineMove>> buildChapterLines(final Move move,
                                              final Color color) {
 
-        final List<Move> nextMoves = Optional
-            .ofNullable(move.getNextMoves())
-            .orElse(List.of())
-            .stream()
-            // Filter out moves that are not relevant for training
-            // (moves marked as mistakes in the study, for educational purposes)
-            .filter(m -> m.getNag() == null
-                || m.getNag().mustBeTrained()
-                || m.getColor() != color)
-            // Filter out final move if it is not the same color as the chapter
-            // (e.g. if the chapter is for white, we don't want to keep a black
-            // move without response at the end of a line).
-            .filter(m -> m.getColor() == color
-                || (m.getNextMoves() != null && !m.getNextMoves().isEmpty()))
-            .toList();
-
-        final LineMove currentLineMove = LineMove.builder()
-            .moveId(move.getId())
-            .san(move.getSan())
-            .nag(move.getNag())
-            .uci(move.getUci())
-            .comment(move.getComment())
-            .build();
-
-        if (nextMoves.isEmpty()) {
-            return Stream.of(List.of(currentLineMove));
-        }
-
-        return nextMoves
-            .stream()
-            .flatMap(nextMove -> this.buildChapterLines(nextMove, color)
-                .map(followingPath -> Stream.concat(
-                        Stream.of(currentLineMove),
-                        followingPath.stream())
-                    .toList()));
+        return ChapterLines.stream(
+            move,
+            color,
+            new HashSet<>(),
+            new HashMap<>());
     }
 
     /**
-     * Enable or disable a chapter.
+     * Enable or disable a chapter. The mutations of a Book are serialized.
+     * Only the training view of the Book is loaded (without its moves).
      *
      * @param bookId    The Book id.
      * @param chapterId The id of the Chapter to disable.
      * @param enabled   A boolean (true to enable, false to disable).
-     * @return A Mono of the updated Book.
+     * @return A Mono of the updated Book (its training view).
      */
     public Mono<Book> toggleChapter(final UUID bookId,
                                     final UUID chapterId,
                                     final boolean enabled) {
 
-        return this.bookRepository.findById(bookId)
+        return this.bookMutex.run(bookId, () -> this.bookRepository
+            .findTrainingView(bookId)
             .doOnNext(book -> {
                 book.getChapters()
                     .stream()
@@ -199,7 +236,8 @@ public class BookService {
                     this.refreshLines(book);
                 }
             })
-            .flatMap(this.bookRepository::update);
+            .flatMap(this.bookRepository::update)
+            .doOnNext(book -> this.dueLineQueues.evict(bookId)));
     }
 
     /**
@@ -216,28 +254,34 @@ public class BookService {
     }
 
     /**
-     * Do the PGN parsing of the Book from its study.
+     * Do the PGN parsing of the Book from its study, on the parser pool, while
+     * the study is received.
      *
-     * @param pgn     is the study as a String (the PGN).
+     * @param pgn     is the study as a stream of bytes (the PGN).
      * @param studyId is the study id on Lichess.
-     * @return A List of PgnGame.
+     * @return A Mono of the List of PgnGame.
      */
-    private static List<PgnGame> parsePgn(final String pgn,
-                                          final String studyId) {
-
-        // pgn parsing
-        List<PgnGame> pgnGames;
-        final Instant start = Instant.now();
-        try {
-            pgnGames = PgnParser.parse(pgn);
-        } catch (Exception e) {
-            throw new PgnException(studyId, e);
-        }
-        log.info(
-            "Parse PGN {} in {} ms",
-            studyId,
-            Duration.between(start, Instant.now()).toMillis());
-        return pgnGames;
+    private Mono<List<PgnGame>> parsePgn(final Flux<DataBuffer> pgn,
+                                         final String studyId) {
+
+        return PgnParser
+            .parse(
+                PgnParser.splitGames(pgn),
+                this.parserPool,
+                this.importProperties.getParserForkThreshold())
+            .onErrorMap(
+                e -> !(e instanceof LichessException),
+                e -> new PgnException(studyId, e))
+            .doOnNext(result -> log.info(
+                "Parse PGN {} ({} chapters) in {} ms, speedup {}",
+                studyId,
+                result.games().size(),
+                TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos()),
+                String.format(Locale.ROOT, "%.2f", result.speedup())))
+            .doOnNext(result -> this.metrics.record(
+                Metrics.IMPORT_PARSE,
+                result.elapsedNanos()))
+            .map(PgnParser.Result::games);
     }
 
 }
@@ -0,0 +1,158 @@
+package io.github.fifi2.chessmorize.service;
+
+import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.model.LineMove;
+import io.github.fifi2.chessmorize.model.Move;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The lines of a chapter
+ * - all the paths from a Move to the end of its next Moves, walked
+ * depth-first with an explicit stack (the depth of a line is not limited by
+ * the thread stack)
+ * - the lines are built lazily, one at a time, each one being copied once
+ * from the current path
+ * - the LineMove of a Move is built once and shared by all the lines going
+ * through it
+ * - when the next Moves have already been walked (the Move transposes into a
+ * known position), the line stops at the next player move instead of
+ * repeating the known continuation
+ */
+
+final class ChapterLines implements Iterator<List<LineMove>> {
+
+    private final Color color;
+    private final Set<UUID> visited;
+    private final Map<UUID, LineMove> lineMoves;
+    private final Deque<Step> steps = new ArrayDeque<>();
+    private final List<LineMove> path = new ArrayList<>();
+    private List<LineMove> next;
+
+    /**
+     * A Move to walk.
+     *
+     * @param move  is the Move.
+     * @param depth is the index of the Move in the line.
+     * @param last  is true if the line ends with the Move, whatever its next
+     *              Moves.
+     */
+    private record Step(Move move,
+                        int depth,
+                        boolean last) {
+    }
+
+    private ChapterLines(final Move move,
+                         final Color color,
+                         final Set<UUID> visited,
+                         final Map<UUID, LineMove> lineMoves) {
+
+        this.color = color;
+        this.visited = visited;
+        this.lineMoves = lineMoves;
+        this.steps.push(new Step(move, 0, false));
+    }
+
+    /**
+     * Get the lines from a Move, as a lazy Stream.
+     *
+     * @param move      is the Move to flatten.
+     * @param color     is the player color.
+     * @param visited   is the ids of the Moves already flattened (updated
+     *                  while the Stream is consumed).
+     * @param lineMoves is the LineMoves already built, by Move id (updated
+     *                  while the Stream is consumed).
+     * @return A Stream of List of LineMove.
+     */
+    static Stream<List<LineMove>> stream(final Move move,
+                                         final Color color,
+                                         final Set<UUID> visited,
+                                         final Map<UUID, LineMove> lineMoves) {
+
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                new ChapterLines(move, color, visited, lineMoves),
+                Spliterator.ORDERED | Spliterator.NONNULL),
+            false);
+    }
+
+    @Override
+    public boolean hasNext() {
+
+        while (this.next == null && !this.steps.isEmpty())
+            this.walk(this.steps.pop());
+
+        return this.next != null;
+    }
+
+    @Override
+    public List<LineMove> next() {
+
+        if (!this.hasNext())
+            throw new NoSuchElementException();
+
+        final List<LineMove> line = this.next;
+        this.next = null;
+        return line;
+    }
+
+    /**
+     * Walk a Move: append it to the path and either end the line or push its
+     * next Moves (in reverse order, so that they are walked in order).
+     *
+     * @param step is the Move to walk.
+     */
+    private void walk(final Step step) {
+
+        final Move move = step.move();
+        this.path.subList(step.depth(), this.path.size()).clear();
+        this.path.add(this.lineMoves.computeIfAbsent(
+            move.getId(),
+            moveId -> LineMove.of(move)));
+
+        if (step.last()) {
+            this.next = List.copyOf(this.path);
+            return;
+        }
+
+        this.visited.add(move.getId());
+
+        final List<Move> allNextMoves = Optional
+            .ofNullable(move.getNextMoves())
+            .orElse(List.of());
+        final boolean isTransposition = allNextMoves
+            .stream()
+            .anyMatch(m -> this.visited.contains(m.getId()));
+
+        final List<Move> nextMoves = allNextMoves
+            .stream()
+            // Filter out moves that are not relevant for training
+            // (moves marked as mistakes in the study, for educational purposes)
+            .filter(m -> m.getNag() == null
+                || m.getNag().mustBeTrained()
+                || m.getColor() != this.color)
+            // Filter out final move if it is not the same color as the chapter
+            // (e.g. if the chapter is for white, we don't want to keep a black
+            // move without response at the end of a line).
+            .filter(m -> m.getColor() == this.color
+                || (m.getNextMoves() != null && !m.getNextMoves().isEmpty()))
+            .toList();
+
+        if (nextMoves.isEmpty()
+            || (isTransposition && move.getColor() == this.color)) {
+            this.next = List.copyOf(this.path);
+            return;
+        }
+
+        // on a transposition, the player replies are still trained, not what
+        // follows them
+        for (int i = nextMoves.size() - 1; i >= 0; i--)
+            this.steps.push(new Step(
+                nextMoves.get(i),
+                step.depth() + 1,
+                isTransposition));
+    }
+
+}
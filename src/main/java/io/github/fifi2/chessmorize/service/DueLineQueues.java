@@ -0,0 +1,161 @@
+package io.github.fifi2.chessmorize.service;
+
+import io.github.fifi2.chessmorize.config.properties.TrainingProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Due line queues
+ * - the DueLines of the Books being trained, so that picking the next Line
+ * does not scan all the Lines of the Book
+ * - the DueLines of a Book are valid for its version and the day they have
+ * been built: any other update of the Book (next calendar slot, chapter
+ * toggle, other instance) invalidates them, and they are dropped once read
+ * invalid
+ * - the DueLines of a Book not trained for a while (time to idle) are
+ * dropped, as are the least recently trained ones beyond the maximum number
+ * of Books
+ */
+
+@Component
+public class DueLineQueues {
+
+    private final int maxBooks;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final LinkedHashMap<UUID, Entry> queues = new LinkedHashMap<>(
+        16,
+        0.75f,
+        true);
+
+    /**
+     * The DueLines of a Book, with their expiration.
+     *
+     * @param dueLines  is the DueLines.
+     * @param expiresAt is the expiration instant (in milliseconds).
+     */
+    private record Entry(DueLines dueLines,
+                         long expiresAt) {
+    }
+
+    @Autowired
+    public DueLineQueues(final TrainingProperties properties) {
+
+        this(
+            properties.getDueLinesMaxBooks(),
+            properties.getDueLinesTtl(),
+            Clock.systemUTC());
+    }
+
+    DueLineQueues(final int maxBooks,
+                  final Duration ttl,
+                  final Clock clock) {
+
+        this.maxBooks = maxBooks;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Get the DueLines of a Book, if they are still valid. Their time to idle
+     * is reset.
+     *
+     * @param bookId  is the Book id.
+     * @param version is the current version of the Book.
+     * @param day     is the current day (UTC).
+     * @return an Optional of DueLines (empty if none is valid).
+     */
+    synchronized Optional<DueLines> get(final UUID bookId,
+                                        final long version,
+                                        final LocalDate day) {
+
+        final Entry entry = this.queues.get(bookId);
+        if (entry == null)
+            return Optional.empty();
+
+        final long now = this.clock.millis();
+        final DueLines dueLines = entry.dueLines();
+        if (entry.expiresAt() <= now
+            || dueLines.getVersion() != version
+            || !dueLines.getDay().equals(day)) {
+            this.queues.remove(bookId);
+            return Optional.empty();
+        }
+
+        this.queues.put(bookId, new Entry(dueLines, now + this.ttlMillis));
+        return Optional.of(dueLines);
+    }
+
+    /**
+     * Keep the DueLines of a Book. The least recently trained Books are
+     * dropped beyond the maximum number of Books.
+     *
+     * @param bookId   is the Book id.
+     * @param dueLines is the DueLines.
+     */
+    synchronized void put(final UUID bookId,
+                          final DueLines dueLines) {
+
+        this.queues.put(
+            bookId,
+            new Entry(dueLines, this.clock.millis() + this.ttlMillis));
+
+        final Iterator<Entry> eldest = this.queues.values().iterator();
+        while (this.queues.size() > this.maxBooks) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Remove a trained Line from the DueLines of a Book. The DueLines follow
+     * the Book to its next version if they were built for the trained version,
+     * they are evicted otherwise.
+     *
+     * @param bookId  is the Book id.
+     * @param version is the version of the Book the training was based on.
+     * @param lineId  is the trained Line id.
+     */
+    synchronized void remove(final UUID bookId,
+                             final long version,
+                             final UUID lineId) {
+
+        final Entry entry = this.queues.get(bookId);
+        if (entry == null)
+            return;
+
+        if (entry.dueLines().getVersion() != version)
+            this.queues.remove(bookId);
+        else
+            entry.dueLines().remove(lineId);
+    }
+
+    /**
+     * Evict the DueLines of a Book.
+     *
+     * @param bookId is the Book id.
+     */
+    public synchronized void evict(final UUID bookId) {
+
+        this.queues.remove(bookId);
+    }
+
+    /**
+     * Get the number of Books having DueLines.
+     *
+     * @return the number of Books.
+     */
+    synchronized int size() {
+
+        return this.queues.size();
+    }
+
+}
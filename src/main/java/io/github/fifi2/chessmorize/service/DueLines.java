@@ -0,0 +1,128 @@
+package io.github.fifi2.chessmorize.service;
+
+import io.github.fifi2.chessmorize.model.Book;
+import io.github.fifi2.chessmorize.model.Chapter;
+import io.github.fifi2.chessmorize.model.Line;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Due lines
+ * - the Lines to train in a calendar slot, queued by box in their training
+ * order: the next Line is the head of the lowest non-empty box queue
+ * - the queues are built for a version of the Book and a day, a trained Line
+ * leaves its queue (it is not due again in the same slot on the same day)
+ */
+
+final class DueLines {
+
+    private final TreeMap<Integer, ArrayDeque<Line>> boxes = new TreeMap<>();
+
+    @Getter
+    private final LocalDate day;
+
+    @Getter
+    private volatile long version;
+
+    private DueLines(final long version,
+                     final LocalDate day) {
+
+        this.version = version;
+        this.day = day;
+    }
+
+    /**
+     * Queue the due Lines of a Book: the Lines of the enabled chapters, in the
+     * boxes of the calendar slot and not already trained in this slot on the
+     * given day.
+     *
+     * @param book         is the Book, with its calendar slot, its version and
+     *                     its lines progress.
+     * @param currentBoxes is the boxes of the calendar slot.
+     * @param day          is the day (UTC).
+     * @return the DueLines.
+     */
+    static DueLines of(final Book book,
+                       final Collection<Integer> currentBoxes,
+                       final LocalDate day) {
+
+        final int currentCalendarSlot = book.getCalendarSlot();
+        final Set<Integer> sessionBoxes = Set.copyOf(currentBoxes);
+        final Set<UUID> disabledChapters = Optional
+            .ofNullable(book.getChapters())
+            .orElse(List.of())
+            .stream()
+            .filter(Predicate.not(Chapter::isEnabled))
+            .map(Chapter::getId)
+            .collect(Collectors.toSet());
+        final DueLines dueLines = new DueLines(book.getVersion(), day);
+
+        Optional
+            .ofNullable(book.getLines())
+            .orElse(List.of())
+            .stream()
+            // filter chapters
+            .filter(line -> !disabledChapters.contains(line.getChapterId()))
+            // filter lines related to the session boxes
+            .filter(line -> sessionBoxes.contains(line.getBoxId()))
+            // filter lines that went back in box 0 during this training session
+            .filter(line -> Optional
+                .ofNullable(line.getLastCalendarSlot())
+                .map(lastSlot -> !lastSlot.equals(currentCalendarSlot)
+                    || line.hasNotBeenTrainedOn(day))
+                .orElse(true))
+            .forEach(line -> dueLines.boxes
+                .computeIfAbsent(line.getBoxId(), boxId -> new ArrayDeque<>())
+                .add(line));
+
+        return dueLines;
+    }
+
+    /**
+     * Get the next Line to train: the first Line of the lowest box.
+     *
+     * @return an Optional of Line (empty if no Line is due).
+     */
+    synchronized Optional<Line> peek() {
+
+        return Optional
+            .ofNullable(this.boxes.firstEntry())
+            .map(box -> box.getValue().peekFirst());
+    }
+
+    /**
+     * Remove a trained Line from the queues, the Book moves to the next
+     * version. The trained Line is normally the head of a queue.
+     *
+     * @param lineId is the Line id.
+     */
+    synchronized void remove(final UUID lineId) {
+
+        this.boxes.values().forEach(queue -> {
+            if (!queue.isEmpty() && lineId.equals(queue.peekFirst().getId()))
+                queue.pollFirst();
+            else
+                queue.removeIf(line -> lineId.equals(line.getId()));
+        });
+        this.boxes.values().removeIf(ArrayDeque::isEmpty);
+        this.version++;
+    }
+
+    /**
+     * Get the number of due Lines.
+     *
+     * @return the number of Lines.
+     */
+    synchronized int size() {
+
+        return this.boxes.values()
+            .stream()
+            .mapToInt(ArrayDeque::size)
+            .sum();
+    }
+
+}
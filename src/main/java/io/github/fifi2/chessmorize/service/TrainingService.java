@@ -3,19 +3,20 @@ package io.github.fifi2.chessmorize.service;
 import io.github.fifi2.chessmorize.config.properties.TrainingProperties;
 import io.github.fifi2.chessmorize.error.exception.LineNotFoundException;
 import io.github.fifi2.chessmorize.error.exception.NoTrainingLineException;
+import io.github.fifi2.chessmorize.metrics.Metrics;
 import io.github.fifi2.chessmorize.model.Book;
-import io.github.fifi2.chessmorize.model.Chapter;
 import io.github.fifi2.chessmorize.model.Line;
 import io.github.fifi2.chessmorize.repository.BookRepository;
+import io.github.fifi2.chessmorize.repository.TrainingRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.*;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -23,66 +24,53 @@ import java.util.stream.Collectors;
 public class TrainingService {
 
     private final BookRepository bookRepository;
+    private final TrainingRepository trainingRepository;
+    private final BookMutex bookMutex;
+    private final DueLineQueues dueLineQueues;
     private final TrainingProperties trainingProperties;
+    private final Metrics metrics;
 
 
     /**
-     * Given a Book id, retrieve the Book and pick the next line to train.
+     * Given a Book id, retrieve its training state and pick the next line to
+     * train from its due lines (queued once per version of the Book and per
+     * day). Only the picked line is loaded with its moves.
      *
      * @param bookId is the Book id.
      * @return a Mono of Line (empty if no line to train is found).
      */
     public Mono<Line> getNextLine(final UUID bookId) {
 
-        return this.bookRepository.findById(bookId)
-            .map(this::pickNextLine)
-            .flatMap(optionalLine -> optionalLine
-                .map(Mono::just)
-                .orElseThrow(() -> new NoTrainingLineException(bookId)));
+        return this.metrics.time(
+            Metrics.TRAINING_NEXT_LINE,
+            this.trainingRepository.findProgress(bookId)
+                .flatMap(this::findDueLines)
+                .map(DueLines::peek)
+                .flatMap(optionalLine -> optionalLine
+                    .map(line -> this.bookRepository.findLine(
+                        bookId,
+                        line.getId()))
+                    .orElseThrow(() -> new NoTrainingLineException(bookId))));
     }
 
     /**
-     * Return the next line to review during the training session. Resulting
-     * Lines are sorted by boxId (ASC) and lastTraining (ASC) and an Optional is
-     * returned with the first Line (empty if no Line is found).
+     * Return the next line to review during the training session: the first
+     * Line (in the training order) of the lowest box of the session, among the
+     * Lines not already trained in this session.
      *
      * @param book The current studied Book.
      * @return An optional of Line. Empty if the training session is over.
      */
     Optional<Line> pickNextLine(final Book book) {
 
-        final int currentCalendarSlot = book.getCalendarSlot();
-        final List<Integer> currentBoxes = this.trainingProperties.getCalendar()
-            .get(currentCalendarSlot);
-        final Set<UUID> disabledChapters = Optional
-            .ofNullable(book.getChapters())
-            .orElse(List.of())
-            .stream()
-            .filter(Predicate.not(Chapter::isEnabled))
-            .map(Chapter::getId)
-            .collect(Collectors.toSet());
-
-        return book.getLines()
-            .stream()
-            // filter chapters
-            .filter(line -> !disabledChapters.contains(line.getChapterId()))
-            // filter lines related to the session boxes
-            .filter(line -> currentBoxes.contains(line.getBoxId()))
-            // filter lines that went back in box 0 during this training session
-            .filter(line -> Optional
-                .ofNullable(line.getLastCalendarSlot())
-                .map(lastSlot -> !lastSlot.equals(currentCalendarSlot)
-                    || line.hasNotBeenTrainedToday())
-                .orElse(true))
-            .sorted(Comparator.comparing(Line::getBoxId))
-            .findAny();
+        return this.queueDueLines(book, LocalDate.now(ZoneOffset.UTC)).peek();
     }
 
     /**
      * Save the training result on the Line. The Line box will be updated to the
      * first one if {@code result} is false, to the next one otherwise. The
      * metadata of the Line will be updated accordingly ({@code lastTraining}
-     * and {@code lastCalendarSlot}).
+     * and {@code lastCalendarSlot}). The mutations of a Book are serialized.
      *
      * @param bookId is the Book id.
      * @param lineId is the Line id.
@@ -94,44 +82,109 @@ public class TrainingService {
                                     final boolean result) {
 
         // TODO Check that lineId is indeed the next line to train?
-        return this.bookRepository.findById(bookId)
-            .flatMap(book -> {
-                final Optional<Line> optionalLine = book.getLines()
-                    .stream()
-                    .filter(line -> lineId.equals(line.getId()))
-                    .findAny();
-                if (optionalLine.isPresent()) {
-                    final Line line = optionalLine.get();
+        return this.bookMutex.run(bookId, () -> this.trainingRepository
+            .findProgress(bookId)
+            .flatMap(progress -> this.bookRepository
+                .findLine(bookId, lineId)
+                .switchIfEmpty(Mono.error(
+                    new LineNotFoundException(bookId, lineId)))
+                .flatMap(line -> {
                     line.setBoxId(result ? this.computeNextBoxId(line) : 0);
                     line.setLastTraining(Instant.now());
-                    line.setLastCalendarSlot(book.getCalendarSlot());
-                    return this.bookRepository.update(book)
-                        .thenReturn(line);
-                }
-                throw new LineNotFoundException(bookId, lineId);
-            });
+                    line.setLastCalendarSlot(progress.getCalendarSlot());
+                    return this.trainingRepository.updateLineProgress(
+                        bookId,
+                        progress.getVersion(),
+                        line);
+                })
+                .doOnNext(line -> this.dueLineQueues.remove(
+                    bookId,
+                    progress.getVersion(),
+                    lineId))));
     }
 
     /**
-     * Force next training session.
+     * Force next training session. The lines are shuffled for the new session
+     * if configured so, the calendar slot and the lines order being updated in
+     * the same transaction. The mutations of a Book are serialized.
      *
      * @param bookId is the Book id.
-     * @return a Mono of the updated Book.
+     * @return a Mono of the new calendar slot.
      */
-    public Mono<Book> nextCalendarSlot(final UUID bookId) {
-
-        return this.bookRepository.findById(bookId)
-            .doOnNext(book -> {
-                final int nextSlot = book.getCalendarSlot() + 1;
-                book.setCalendarSlot(
-                    nextSlot >= this.trainingProperties.getCalendar().size()
-                        ? 0
-                        : nextSlot);
-
-                if (this.trainingProperties.isShuffled())
-                    Collections.shuffle(book.getLines());
+    public Mono<Integer> nextCalendarSlot(final UUID bookId) {
+
+        return this.bookMutex.run(bookId, () -> this.trainingRepository
+            .findProgress(bookId)
+            .flatMap(progress -> {
+                final int nextSlot = progress.getCalendarSlot() + 1
+                    >= this.trainingProperties.getCalendar().size()
+                    ? 0
+                    : progress.getCalendarSlot() + 1;
+                return this.trainingProperties.isShuffled()
+                    ? this.trainingRepository.findLineIds(bookId)
+                    .collectList()
+                    .flatMap(lineIds -> {
+                        Collections.shuffle(lineIds);
+                        return this.trainingRepository.updateCalendarSlot(
+                            bookId,
+                            progress.getVersion(),
+                            nextSlot,
+                            lineIds);
+                    })
+                    : this.trainingRepository.updateCalendarSlot(
+                    bookId,
+                    progress.getVersion(),
+                    nextSlot,
+                    null);
             })
-            .flatMap(this.bookRepository::update);
+            .doOnNext(nextSlot -> this.dueLineQueues.evict(bookId)));
+    }
+
+    /**
+     * Find the due lines of a Book, queued again if its version or the day has
+     * changed.
+     *
+     * @param progress is the Book progress (calendar slot and version).
+     * @return a Mono of DueLines.
+     */
+    private Mono<DueLines> findDueLines(final Book progress) {
+
+        final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+
+        return this.dueLineQueues
+            .get(progress.getId(), progress.getVersion(), today)
+            .map(Mono::just)
+            .orElseGet(() -> this.trainingRepository
+                .findLineProgresses(progress.getId())
+                .collectList()
+                .map(lines -> this.queueDueLines(
+                    progress.toBuilder()
+                        .lines(lines)
+                        .build(),
+                    today))
+                .doOnNext(dueLines -> this.dueLineQueues.put(
+                    progress.getId(),
+                    dueLines)));
+    }
+
+    /**
+     * Queue the due lines of a Book in its calendar slot.
+     *
+     * @param book is the Book with its lines progress.
+     * @param day  is the day (UTC).
+     * @return the DueLines.
+     */
+    private DueLines queueDueLines(final Book book,
+                                   final LocalDate day) {
+
+        return this.metrics.time(
+            Metrics.TRAINING_QUEUE,
+            () -> DueLines.of(
+                book,
+                this.trainingProperties
+                    .getCalendar()
+                    .get(book.getCalendarSlot()),
+                day));
     }
 
     /**
@@ -0,0 +1,318 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import static io.github.fifi2.chessmorize.service.pgn.Color.BLACK;
+import static io.github.fifi2.chessmorize.service.pgn.Color.WHITE;
+
+/**
+ * Bitboards helpers
+ * - a bitboard is a long having one bit per square (a1 = bit 0, h8 = bit 63)
+ * - a square is an int index from 0 (a1) to 63 (h8)
+ * - knight, king and pawn attacks are precomputed per square
+ * - sliding attacks are computed from precomputed rays, stopped by the first
+ * blocker found in the occupancy
+ * - the squares between two aligned squares, and the line going through
+ * them, are precomputed for the pins and checks of the move generator
+ */
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class Bitboards {
+
+    static final int SQUARES = 64;
+    static final int NO_SQUARE = -1;
+    static final long EMPTY = 0L;
+
+    private static final int[][] KNIGHT_STEPS = {
+        {1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+    private static final int[][] KING_STEPS = {
+        {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}, {-1, 1}, {0, 1}};
+    private static final int[][] WHITE_PAWN_STEPS = {{-1, 1}, {1, 1}};
+    private static final int[][] BLACK_PAWN_STEPS = {{-1, -1}, {1, -1}};
+
+    // the first two directions go towards h8 (growing square indices), the
+    // last two go towards a1 (decreasing square indices)
+    static final int[][] ROOK_DIRECTIONS = {
+        {0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+    static final int[][] BISHOP_DIRECTIONS = {
+        {1, 1}, {-1, 1}, {1, -1}, {-1, -1}};
+
+    private static final long[] FILES = new long[8];
+    private static final long[] RANKS = new long[8];
+    private static final long[] KNIGHT_ATTACKS = new long[SQUARES];
+    private static final long[] KING_ATTACKS = new long[SQUARES];
+    private static final long[][] PAWN_ATTACKS = new long[2][SQUARES];
+    private static final long[][] ROOK_RAYS = new long[4][SQUARES];
+    private static final long[][] BISHOP_RAYS = new long[4][SQUARES];
+    private static final long[][] BETWEEN = new long[SQUARES][SQUARES];
+    private static final long[][] LINE = new long[SQUARES][SQUARES];
+
+    static {
+        for (int square = 0; square < SQUARES; square++) {
+            FILES[file(square)] |= bit(square);
+            RANKS[rank(square)] |= bit(square);
+            KNIGHT_ATTACKS[square] = steps(square, KNIGHT_STEPS);
+            KING_ATTACKS[square] = steps(square, KING_STEPS);
+            PAWN_ATTACKS[WHITE.ordinal()][square] =
+                steps(square, WHITE_PAWN_STEPS);
+            PAWN_ATTACKS[BLACK.ordinal()][square] =
+                steps(square, BLACK_PAWN_STEPS);
+            for (int d = 0; d < 4; d++) {
+                ROOK_RAYS[d][square] = ray(square, ROOK_DIRECTIONS[d]);
+                BISHOP_RAYS[d][square] = ray(square, BISHOP_DIRECTIONS[d]);
+            }
+        }
+        for (int square = 0; square < SQUARES; square++)
+            for (int[][] directions : new int[][][]{
+                ROOK_DIRECTIONS,
+                BISHOP_DIRECTIONS})
+                for (int[] direction : directions)
+                    alignments(square, direction);
+    }
+
+    /**
+     * Get the square index from file and rank indices.
+     *
+     * @param file The file index (0 for a, 7 for h).
+     * @param rank The rank index (0 for 1, 7 for 8).
+     * @return The square index.
+     */
+    static int square(final int file, final int rank) {
+
+        return rank * 8 + file;
+    }
+
+    static int file(final int square) {
+
+        return square & 7;
+    }
+
+    static int rank(final int square) {
+
+        return square >>> 3;
+    }
+
+    static long bit(final int square) {
+
+        return 1L << square;
+    }
+
+    /**
+     * Get the squares of a file.
+     *
+     * @param file The file index (0 for a, 7 for h).
+     * @return The squares of the file as a bitboard.
+     */
+    static long fileSquares(final int file) {
+
+        return FILES[file];
+    }
+
+    /**
+     * Get the square indices of a bitboard.
+     *
+     * @param bitboard The bitboard.
+     * @return The square indices, in ascending order.
+     */
+    static int[] toSquares(final long bitboard) {
+
+        final int[] squares = new int[Long.bitCount(bitboard)];
+        int i = 0;
+
+        for (long b = bitboard; b != EMPTY; b &= b - 1)
+            squares[i++] = Long.numberOfTrailingZeros(b);
+
+        return squares;
+    }
+
+    /**
+     * Get the squares attacked by a piece standing on a square.
+     *
+     * @param pieceType The type of the piece.
+     * @param color     The color of the piece (only matters for pawns).
+     * @param square    The square of the piece.
+     * @param occupancy The occupied squares (only matters for sliding pieces).
+     * @return The attacked squares as a bitboard.
+     */
+    static long attacks(final PgnPieceType pieceType,
+                        final Color color,
+                        final int square,
+                        final long occupancy) {
+
+        return switch (pieceType) {
+            case PAWN -> pawnAttacks(color, square);
+            case KNIGHT -> knightAttacks(square);
+            case BISHOP -> bishopAttacks(square, occupancy);
+            case ROOK -> rookAttacks(square, occupancy);
+            case QUEEN -> bishopAttacks(square, occupancy)
+                | rookAttacks(square, occupancy);
+            case KING -> kingAttacks(square);
+        };
+    }
+
+    static long pawnAttacks(final Color color, final int square) {
+
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    static long knightAttacks(final int square) {
+
+        return KNIGHT_ATTACKS[square];
+    }
+
+    static long kingAttacks(final int square) {
+
+        return KING_ATTACKS[square];
+    }
+
+    static long bishopAttacks(final int square, final long occupancy) {
+
+        return slidingAttacks(BISHOP_RAYS, square, occupancy);
+    }
+
+    static long rookAttacks(final int square, final long occupancy) {
+
+        return slidingAttacks(ROOK_RAYS, square, occupancy);
+    }
+
+    /**
+     * Get the squares strictly between two squares.
+     *
+     * @param from The first square.
+     * @param to   The second square.
+     * @return The squares between them as a bitboard (EMPTY if the squares
+     * are not on a same rank, file or diagonal).
+     */
+    static long between(final int from, final int to) {
+
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * Get the whole line (rank, file or diagonal) going through two squares.
+     *
+     * @param from The first square.
+     * @param to   The second square.
+     * @return The squares of the line as a bitboard, both squares included
+     * (EMPTY if the squares are not aligned).
+     */
+    static long line(final int from, final int to) {
+
+        return LINE[from][to];
+    }
+
+    /**
+     * Get the squares matching a disambiguating move information (e.g. "b",
+     * "4" or even "h4").
+     *
+     * @param disambiguatingMove The disambiguating move part of a SAN (can be
+     *                           null).
+     * @return The matching squares as a bitboard.
+     */
+    static long disambiguatingSquares(final String disambiguatingMove) {
+
+        long squares = ~EMPTY;
+
+        if (disambiguatingMove == null)
+            return squares;
+
+        for (int i = 0; i < disambiguatingMove.length(); i++) {
+            final char c = disambiguatingMove.charAt(i);
+            if (c >= 'a' && c <= 'h')
+                squares &= FILES[c - 'a'];
+            else if (c >= '1' && c <= '8')
+                squares &= RANKS[c - '1'];
+        }
+
+        return squares;
+    }
+
+    private static long slidingAttacks(final long[][] rays,
+                                       final int square,
+                                       final long occupancy) {
+
+        long attacks = EMPTY;
+
+        for (int d = 0; d < 4; d++) {
+            final long ray = rays[d][square];
+            final long blockers = ray & occupancy;
+            if (blockers == EMPTY) {
+                attacks |= ray;
+            } else {
+                // the squares behind the first blocker are not reachable
+                final int blocker = d < 2
+                    ? Long.numberOfTrailingZeros(blockers)
+                    : 63 - Long.numberOfLeadingZeros(blockers);
+                attacks |= ray ^ rays[d][blocker];
+            }
+        }
+
+        return attacks;
+    }
+
+    private static long steps(final int square,
+                              final int[][] steps) {
+
+        long squares = EMPTY;
+
+        for (int[] step : steps) {
+            final int file = file(square) + step[0];
+            final int rank = rank(square) + step[1];
+            if (isValid(file, rank))
+                squares |= bit(square(file, rank));
+        }
+
+        return squares;
+    }
+
+    /**
+     * Set the squares between a square and the ones aligned with it in a
+     * direction, and the line going through them.
+     *
+     * @param square    The square.
+     * @param direction The direction (file and rank steps).
+     */
+    private static void alignments(final int square,
+                                   final int[] direction) {
+
+        final long line = bit(square)
+            | ray(square, direction)
+            | ray(square, new int[]{-direction[0], -direction[1]});
+        long between = EMPTY;
+        int file = file(square) + direction[0];
+        int rank = rank(square) + direction[1];
+
+        while (isValid(file, rank)) {
+            final int aligned = square(file, rank);
+            BETWEEN[square][aligned] = between;
+            LINE[square][aligned] = line;
+            between |= bit(aligned);
+            file += direction[0];
+            rank += direction[1];
+        }
+    }
+
+    private static long ray(final int square,
+                            final int[] direction) {
+
+        long squares = EMPTY;
+        int file = file(square) + direction[0];
+        int rank = rank(square) + direction[1];
+
+        while (isValid(file, rank)) {
+            squares |= bit(square(file, rank));
+            file += direction[0];
+            rank += direction[1];
+        }
+
+        return squares;
+    }
+
+    private static boolean isValid(final int file,
+                                   final int rank) {
+
+        return file >= 0 && file <= 7 && rank >= 0 && rank <= 7;
+    }
+
+}
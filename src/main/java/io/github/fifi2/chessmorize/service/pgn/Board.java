@@ -1,16 +1,26 @@
 package io.github.fifi2.chessmorize.service.pgn;
 
-import lombok.Data;
+import lombok.Getter;
 
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.*;
 import static io.github.fifi2.chessmorize.service.pgn.Color.*;
 import static io.github.fifi2.chessmorize.service.pgn.PgnPieceType.*;
 
-@Data
+/**
+ * Board
+ * - the position is stored as bitboards: one per piece type and color, one
+ * per color and one for the whole occupancy
+ * - moves are given as SAN, the source square being resolved with attack
+ * lookups on the bitboards, then checked against the legal moves
+ * - the legal moves are generated as int codes (source, target, piece
+ * types and flags), from the checkers and the pinned pieces of the side to
+ * move, and played without any allocation (perft)
+ */
+
 class Board {
 
     static final String FEN_START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
@@ -26,29 +36,108 @@ class Board {
         + "$");
     private static final String FEN_FIELDS_SPLIT = " ";
     private static final String FEN_POSITION_SPLIT = "/";
-    private static final String FEN_WHITE_TURN = "w";
-    private static final String FEN_BLACK_TURN = "b";
     private static final String SAN_CAPTURE_FLAG = "x";
     private static final Pattern PATTERN_SAN = Pattern.compile("^"
         + "(?<piece>[RNBQK])?"         // piece letter or null for a pawn move
-        + "(?<clue>[a-h1-8]){0,2}"     // disambiguating part (e.g. Nbd7 or Qh4e1)
+        + "(?<clue>[a-h]?[1-8]?)"      // disambiguating part (e.g. Nbd7 or Qh4e1)
         + "(?<capture>x)?"             // capture flag "x"
         + "(?<target>[a-h][1-8])"      // arrival square
         + "(?:=(?<promotion>[RNBQ]))?" // promotion
         + ".*$");                      // optional trailing data
 
-    private static final PgnSquare SQUARE_ROOK_A1 = new PgnSquare("a1");
-    private static final PgnSquare SQUARE_ROOK_H1 = new PgnSquare("h1");
-    private static final PgnSquare SQUARE_ROOK_A8 = new PgnSquare("a8");
-    private static final PgnSquare SQUARE_ROOK_H8 = new PgnSquare("h8");
+    private static final PgnPieceType[] PIECE_TYPE_VALUES =
+        PgnPieceType.values();
+    private static final int PIECE_TYPES = PIECE_TYPE_VALUES.length;
+    private static final Piece[] PIECES = new Piece[PIECE_TYPES * 2];
+    private static final int NO_PIECE = -1;
+
+    // the castling rights are a mask, one bit per right in the KQkq order
+    private static final String CASTLING_RIGHTS = "KQkq";
+    private static final String[] CASTLING_KING_SOURCES =
+        {"e1", "e1", "e8", "e8"};
+    private static final String[] CASTLING_KING_TARGETS =
+        {"g1", "c1", "g8", "c8"};
+    private static final String[] CASTLING_ROOK_SOURCES =
+        {"h1", "a1", "h8", "a8"};
+    private static final String[] CASTLING_ROOK_TARGETS =
+        {"f1", "d1", "f8", "d8"};
+    private static final int[] CASTLING_RIGHTS_KEPT = new int[SQUARES];
+    private static final int[] CASTLING_KING_SOURCE = new int[4];
+    private static final int[] CASTLING_KING_TARGET = new int[4];
+    private static final int[] CASTLING_ROOK_SOURCE = new int[4];
+    private static final long[] CASTLING_EMPTY_SQUARES = new long[4];
+    private static final long[] CASTLING_SAFE_SQUARES = new long[4];
+    // the rook squares by king target square
+    private static final int[] ROOK_SOURCE_BY_KING_TARGET = new int[SQUARES];
+    private static final int[] ROOK_TARGET_BY_KING_TARGET = new int[SQUARES];
+
+    // the moves of the generator are int codes
+    private static final int MAX_MOVES = 256;
+    private static final int TARGET_SHIFT = 6;
+    private static final int PIECE_SHIFT = 12;
+    private static final int PROMOTION_SHIFT = 15;
+    private static final int DOUBLE_PUSH = 1 << 18;
+    private static final int EN_PASSANT = 1 << 19;
+    private static final int CASTLING = 1 << 20;
+    private static final PgnPieceType[] PROMOTIONS = {
+        QUEEN,
+        ROOK,
+        BISHOP,
+        KNIGHT};
+    private static final PgnPieceType[] PIECE_MOVES = {
+        KNIGHT,
+        BISHOP,
+        ROOK,
+        QUEEN};
 
-    private Piece[][] position;
+    static {
+        for (Color color : Color.values())
+            for (PgnPieceType pieceType : PIECE_TYPE_VALUES)
+                PIECES[pieceIndex(pieceType, color)] =
+                    new Piece(pieceType, color);
+
+        Arrays.fill(CASTLING_RIGHTS_KEPT, 0b1111);
+        for (int right = 0; right < 4; right++) {
+            final int kingSource =
+                new PgnSquare(CASTLING_KING_SOURCES[right]).getIndex();
+            final int kingTarget =
+                new PgnSquare(CASTLING_KING_TARGETS[right]).getIndex();
+            final int rookSource =
+                new PgnSquare(CASTLING_ROOK_SOURCES[right]).getIndex();
+            CASTLING_KING_SOURCE[right] = kingSource;
+            CASTLING_KING_TARGET[right] = kingTarget;
+            CASTLING_ROOK_SOURCE[right] = rookSource;
+            CASTLING_EMPTY_SQUARES[right] = between(kingSource, rookSource);
+            CASTLING_SAFE_SQUARES[right] = between(kingSource, kingTarget)
+                | bit(kingTarget);
+            ROOK_SOURCE_BY_KING_TARGET[kingTarget] = rookSource;
+            ROOK_TARGET_BY_KING_TARGET[kingTarget] =
+                new PgnSquare(CASTLING_ROOK_TARGETS[right]).getIndex();
+            // a move leaving or reaching the king or rook square (e.g. a
+            // capture of the rook) removes the right
+            CASTLING_RIGHTS_KEPT[kingSource] &= ~(1 << right);
+            CASTLING_RIGHTS_KEPT[rookSource] &= ~(1 << right);
+        }
+    }
+
+    private final long[] pieces = new long[PIECE_TYPES * 2];
+    private final long[] colors = new long[2];
+    private long occupancy;
+    private final Deque<Undo> history = new ArrayDeque<>();
+    private int[] legalMoves;
+
+    @Getter
     private Color turn;
-    private String castlingAvailability;
-    private String enPassantTargetSquare;
-    private Integer halfMoveClock;
-    private Integer fullMoveNumber;
+    private int castlingRights;
+    private int enPassantSquare = NO_SQUARE;
+    @Getter
+    private int halfMoveClock;
+    @Getter
+    private int fullMoveNumber;
+    @Getter
     private String uci;
+    @Getter
+    private long zobristKey;
 
     record Piece(PgnPieceType type, Color color) {
 
@@ -77,14 +166,26 @@ class Board {
                 Move castlingMove) {
     }
 
+    /**
+     * What is needed to take a move back: the move itself (and its code), the
+     * captured piece index and the board state that a move can't restore.
+     */
+    record Undo(Move move,
+                int code,
+                int captured,
+                int castlingRights,
+                int enPassantSquare,
+                int halfMoveClock,
+                String uci,
+                long zobristKey) {
+    }
+
     Board() {
         this(FEN_START);
     }
 
     Board(final String fen) {
 
-        this.position = new Piece[8][8];
-
         PATTERN_FEN.matcher(fen)
             .results()
             .findAny()
@@ -92,18 +193,20 @@ class Board {
                 result -> {
                     this.setFenPosition(result.group("position"));
                     this.turn = fromFenNotation(result.group("turn"));
-                    this.castlingAvailability = FEN_NULL.equals(
-                        result.group("castlingAvailability"))
-                        ? null
-                        : result.group("castlingAvailability");
-                    this.enPassantTargetSquare =
+                    this.castlingRights = castlingRights(
+                        result.group("castlingAvailability"));
+                    this.enPassantSquare =
                         FEN_NULL.equals(result.group("enPassantTarget"))
-                            ? null
-                            : result.group("enPassantTarget");
-                    this.halfMoveClock = Integer.valueOf(
+                            ? NO_SQUARE
+                            : new PgnSquare(result.group("enPassantTarget"))
+                            .getIndex();
+                    this.halfMoveClock = Integer.parseInt(
                         result.group("halfMoveClock"));
-                    this.fullMoveNumber = Integer.valueOf(
+                    this.fullMoveNumber = Integer.parseInt(
                         result.group("fullMoveNumber"));
+                    this.zobristKey ^= Zobrist.turn(this.turn)
+                        ^ Zobrist.castling(this.castlingRights)
+                        ^ Zobrist.enPassant(this.enPassantSquare);
                 },
                 () -> {
                     throw new IllegalArgumentException("invalid FEN");
@@ -111,27 +214,46 @@ class Board {
             );
     }
 
+    /**
+     * Copy a board position (without its history: the moves played before
+     * the copy can't be taken back on it).
+     *
+     * @param board The board to copy.
+     */
+    Board(final Board board) {
+
+        System.arraycopy(board.pieces, 0, this.pieces, 0, this.pieces.length);
+        System.arraycopy(board.colors, 0, this.colors, 0, this.colors.length);
+        this.occupancy = board.occupancy;
+        this.turn = board.turn;
+        this.castlingRights = board.castlingRights;
+        this.enPassantSquare = board.enPassantSquare;
+        this.halfMoveClock = board.halfMoveClock;
+        this.fullMoveNumber = board.fullMoveNumber;
+        this.uci = board.uci;
+        this.zobristKey = board.zobristKey;
+    }
+
     private void setFenPosition(final String fenPosition) {
 
         final String[] positionRows = fenPosition.split(FEN_POSITION_SPLIT);
 
         for (int row = 0; row < positionRows.length; row++) {
             final String fenRow = positionRows[row];
-            int column = 0;
+            int file = 0;
             for (int rowIdx = 0; rowIdx < fenRow.length(); rowIdx++) {
                 final char fenChar = fenRow.charAt(rowIdx);
                 if (Character.isDigit(fenChar)) {
-                    // set empty squares to null
-                    int numEmptySquares = Character.getNumericValue(fenChar);
-                    for (int j = 0; j < numEmptySquares; j++) {
-                        position[row][column++] = null;
-                    }
+                    // skip empty squares
+                    file += Character.getNumericValue(fenChar);
                 } else {
-                    position[row][column++] = new Piece(
-                        fromLetter(fenChar),
-                        Character.isUpperCase(fenChar)
-                            ? WHITE
-                            : BLACK);
+                    this.put(
+                        PIECES[pieceIndex(
+                            fromLetter(fenChar),
+                            Character.isUpperCase(fenChar)
+                                ? WHITE
+                                : BLACK)],
+                        square(file++, 7 - row));
                 }
             }
         }
@@ -144,9 +266,9 @@ class Board {
             List.of(
                 this.getFenPosition(),
                 String.valueOf(this.turn.getFenNotation()),
-                Optional.ofNullable(this.castlingAvailability)
+                Optional.ofNullable(this.getCastlingAvailability())
                     .orElse(FEN_NULL),
-                Optional.ofNullable(this.enPassantTargetSquare)
+                Optional.ofNullable(this.getEnPassantTargetSquare())
                     .orElse(FEN_NULL),
                 String.valueOf(halfMoveClock),
                 String.valueOf(fullMoveNumber)));
@@ -156,10 +278,10 @@ class Board {
 
         final StringBuilder positionBuilder = new StringBuilder();
 
-        for (int row = 0; row < this.position.length; row++) {
+        for (int rank = 7; rank >= 0; rank--) {
             int emptySquareCount = 0;
-            for (int col = 0; col < this.position[row].length; col++) {
-                final Piece piece = this.position[row][col];
+            for (int file = 0; file < 8; file++) {
+                final Piece piece = this.pieceAt(square(file, rank));
                 if (piece == null)
                     emptySquareCount++;
                 else {
@@ -172,78 +294,263 @@ class Board {
             }
             if (emptySquareCount > 0)
                 positionBuilder.append(emptySquareCount);
-            if (row < position.length - 1)
+            if (rank > 0)
                 positionBuilder.append(FEN_POSITION_SPLIT);
         }
 
         return positionBuilder.toString();
     }
 
-    void move(final String san) {
-
-        Optional
-            .ofNullable(parseSan(san, this.turn))
-            .ifPresent(m -> {
-                this.updateCastlingAvailability(m);
-                this.halfMoveClock = m.pieceType() == PAWN || m.capture()
-                    ? 0
-                    : this.halfMoveClock + 1;
-
-                this.getPiece(m.source()).ifPresentOrElse(
-                    piece -> {
-                        this.setPiece(
-                            Optional.ofNullable(m.promotion()).orElse(piece),
-                            m.target());
-                        this.setPiece(null, m.source());
-
-                        // Handle en passant
-                        Optional
-                            .ofNullable(this.enPassantTargetSquare)
-                            .filter(dummy -> piece.type() == PAWN)
-                            .map(PgnSquare::new)
-                            .filter(s -> s.equals(m.target()))
-                            .map(s -> new PgnSquare(
-                                s.getFileIdx(),
-                                s.getRankIdx() + (this.turn == WHITE ? 1 : -1)))
-                            .ifPresent(s -> this.setPiece(null, s));
-
-                        // Handle castling
-                        Optional
-                            .ofNullable(m.castlingMove())
-                            .ifPresent(rookMove ->
-                                this.getPiece(rookMove.source())
-                                    .ifPresentOrElse(
-                                        rook -> {
-                                            this.setPiece(
-                                                rook,
-                                                rookMove.target());
-                                            this.setPiece(
-                                                null,
-                                                rookMove.source());
-                                        },
-                                        () -> {
-                                            throw new NoSuchElementException(
-                                                "no rook found");
-                                        }));
-
-                        this.uci = Board.buildUci(m);
-                    },
-                    () -> {
-                        throw new NoSuchElementException("no piece found");
-                    });
-
-                this.enPassantTargetSquare = Optional
-                    .ofNullable(m.enPassantTarget())
-                    .map(PgnSquare::getName)
-                    .orElse(null);
-
-                if (this.turn == WHITE) {
-                    this.turn = BLACK;
-                } else {
-                    this.turn = WHITE;
-                    this.fullMoveNumber++;
-                }
-            });
+    /**
+     * Get the position as a bi-dimensional array with ranks (from 8 to 1)
+     * coming first, followed by files (from a to h).
+     *
+     * @return A new array of pieces (null for an empty square).
+     */
+    Piece[][] getPosition() {
+
+        final Piece[][] position = new Piece[8][8];
+
+        for (int square = 0; square < SQUARES; square++)
+            position[7 - rank(square)][file(square)] = this.pieceAt(square);
+
+        return position;
+    }
+
+    /**
+     * Set the side to move.
+     *
+     * @param turn The side to move.
+     */
+    void setTurn(final Color turn) {
+
+        this.zobristKey ^= Zobrist.turn(this.turn) ^ Zobrist.turn(turn);
+        this.turn = turn;
+    }
+
+    /**
+     * Get the castling availability.
+     *
+     * @return The FEN castling availability (e.g. "KQk"), null if no castling
+     * is available.
+     */
+    String getCastlingAvailability() {
+
+        if (this.castlingRights == 0)
+            return null;
+
+        final StringBuilder availability = new StringBuilder();
+        for (int right = 0; right < CASTLING_RIGHTS.length(); right++)
+            if ((this.castlingRights & (1 << right)) != 0)
+                availability.append(CASTLING_RIGHTS.charAt(right));
+
+        return availability.toString();
+    }
+
+    /**
+     * Set the castling availability.
+     *
+     * @param castlingAvailability The FEN castling availability (e.g. "KQk"),
+     *                             null if no castling is available.
+     */
+    void setCastlingAvailability(final String castlingAvailability) {
+
+        final int castlingRights = castlingRights(castlingAvailability);
+        this.zobristKey ^= Zobrist.castling(this.castlingRights)
+            ^ Zobrist.castling(castlingRights);
+        this.castlingRights = castlingRights;
+    }
+
+    private static int castlingRights(final String castlingAvailability) {
+
+        int castlingRights = 0;
+
+        if (castlingAvailability == null)
+            return castlingRights;
+
+        for (int i = 0; i < castlingAvailability.length(); i++) {
+            final int right = CASTLING_RIGHTS.indexOf(
+                castlingAvailability.charAt(i));
+            if (right >= 0)
+                castlingRights |= 1 << right;
+        }
+
+        return castlingRights;
+    }
+
+    /**
+     * Get the en passant target square name (e.g. "e3").
+     *
+     * @return The square name or null if there is no en passant target.
+     */
+    String getEnPassantTargetSquare() {
+
+        return this.enPassantSquare == NO_SQUARE
+            ? null
+            : PgnSquare.of(this.enPassantSquare).getName();
+    }
+
+    /**
+     * Play a move given as a SAN on the board. The move must be legal.
+     *
+     * @param san The SAN of the move.
+     * @return The Undo record allowing to take the move back.
+     */
+    Undo move(final String san) {
+
+        final Move m = parseSan(san, this.turn);
+
+        if (m == null)
+            throw new IllegalArgumentException("invalid SAN " + san);
+        if (m.source() == null || this.pieceAt(m.source().getIndex()) == null)
+            throw new IllegalArgumentException("no piece found for " + san);
+        if (!this.isLegal(this.encode(m)))
+            throw new IllegalArgumentException("illegal move " + san);
+
+        return this.move(m);
+    }
+
+    /**
+     * Play an already parsed move on the board. The undo record is pushed on
+     * the board history so that the move can be taken back with unmove.
+     *
+     * @param m The Move to play.
+     * @return The Undo record allowing to take the move back.
+     */
+    Undo move(final Move m) {
+
+        if (m.source() == null || this.pieceAt(m.source().getIndex()) == null)
+            throw new NoSuchElementException("no piece found");
+
+        final int code = this.encode(m);
+        if ((code & CASTLING) != 0
+            && this.pieceAt(ROOK_SOURCE_BY_KING_TARGET[target(code)]) == null)
+            throw new NoSuchElementException("no rook found");
+
+        final int castlingRights = this.castlingRights;
+        final int enPassantSquare = this.enPassantSquare;
+        final int halfMoveClock = this.halfMoveClock;
+        final String uci = this.uci;
+        final long zobristKey = this.zobristKey;
+
+        final Undo undo = new Undo(
+            m,
+            code,
+            this.play(code),
+            castlingRights,
+            enPassantSquare,
+            halfMoveClock,
+            uci,
+            zobristKey);
+        this.uci = Board.buildUci(m);
+
+        this.history.push(undo);
+        return undo;
+    }
+
+    /**
+     * Take back the last move played on the board.
+     *
+     * @return The Undo record of the move taken back.
+     */
+    Undo unmove() {
+
+        if (this.history.isEmpty())
+            throw new NoSuchElementException("no move to take back");
+
+        final Undo undo = this.history.pop();
+        this.takeBack(undo.code(), undo.captured());
+        this.restore(
+            undo.castlingRights(),
+            undo.enPassantSquare(),
+            undo.halfMoveClock(),
+            undo.zobristKey());
+        this.uci = undo.uci();
+
+        return undo;
+    }
+
+    /**
+     * Get the legal moves of the side to move.
+     *
+     * @return The legal moves, in the generation order.
+     */
+    List<Move> getLegalMoves() {
+
+        final int[] moves = new int[MAX_MOVES];
+        final int count = this.generateLegalMoves(moves);
+        final List<Move> legalMoves = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++)
+            legalMoves.add(this.toMove(moves[i]));
+
+        return legalMoves;
+    }
+
+    /**
+     * Count the leaf nodes of the legal move tree (perft), to check the move
+     * generator against known positions.
+     *
+     * @param depth The depth of the tree (in plies).
+     * @return The number of leaf nodes.
+     */
+    long perft(final int depth) {
+
+        return depth == 0
+            ? 1L
+            : this.perft(depth, new int[depth][MAX_MOVES]);
+    }
+
+    /**
+     * Count the leaf nodes of the legal move tree, by first move.
+     *
+     * @param depth The depth of the tree (in plies, at least 1).
+     * @return The number of leaf nodes by UCI first move, in the generation
+     * order.
+     */
+    Map<String, Long> divide(final int depth) {
+
+        final Map<String, Long> nodes = new LinkedHashMap<>();
+        final int[][] buffers = new int[depth][MAX_MOVES];
+
+        for (Move m : this.getLegalMoves()) {
+            this.move(m);
+            nodes.put(
+                this.uci,
+                depth == 1 ? 1L : this.perft(depth - 1, buffers));
+            this.unmove();
+        }
+
+        return nodes;
+    }
+
+    private long perft(final int depth, final int[][] buffers) {
+
+        final int[] moves = buffers[depth - 1];
+        final int count = this.generateLegalMoves(moves);
+
+        // bulk counting: the leaves don't need to be played
+        if (depth == 1)
+            return count;
+
+        final int castlingRights = this.castlingRights;
+        final int enPassantSquare = this.enPassantSquare;
+        final int halfMoveClock = this.halfMoveClock;
+        final long zobristKey = this.zobristKey;
+        long nodes = 0L;
+
+        for (int i = 0; i < count; i++) {
+            final int captured = this.play(moves[i]);
+            nodes += this.perft(depth - 1, buffers);
+            this.takeBack(moves[i], captured);
+            this.restore(
+                castlingRights,
+                enPassantSquare,
+                halfMoveClock,
+                zobristKey);
+        }
+
+        return nodes;
     }
 
     /**
@@ -268,7 +575,8 @@ class Board {
 
         if (san.startsWith("O-O")) {
             // castling
-            final boolean shortCastle = san.equals("O-O");
+            // the SAN may end with a check flag (e.g. O-O+)
+            final boolean shortCastle = !san.startsWith("O-O-O");
             return new Move(
                 KING,
                 new PgnSquare(color == WHITE ? "e1" : "e8"),
@@ -295,61 +603,44 @@ class Board {
                     .orElse(PAWN);
                 final PgnSquare target = new PgnSquare(matcher.group("target"));
                 final boolean isCapture = SAN_CAPTURE_FLAG.equals(matcher.group("capture"));
+                final int source = this.getSourceSquare(
+                    pieceType,
+                    color,
+                    target.getIndex(),
+                    matcher.group("clue"),
+                    isCapture);
                 return new Move(
                     pieceType,
-                    this.getSourceSquare(
-                        pieceType,
-                        color,
-                        target,
-                        matcher.group("clue"),
-                        isCapture),
+                    source == NO_SQUARE ? null : PgnSquare.of(source),
                     isCapture,
                     target,
                     Optional.ofNullable(matcher.group("promotion"))
                         .map(PgnPieceType::fromLetter)
-                        .map(pgnPieceType -> new Piece(pgnPieceType, color))
+                        .map(pgnPieceType -> PIECES[pieceIndex(
+                            pgnPieceType,
+                            color)])
                         .orElse(null),
-                    this.buildEnPassantTargetSquare(pieceType, color, target),
+                    this.buildEnPassantTargetSquare(
+                        pieceType,
+                        color,
+                        source,
+                        target.getIndex()),
                     null);
             })
             .orElse(null);
     }
 
-    void updateCastlingAvailability(Move move) {
-
-        final Set<String> availabilitiesToRemove = new HashSet<>();
-
-        if (this.castlingAvailability == null) {
-            return;
-        }
-
-        if (move.pieceType() == KING) {
-            availabilitiesToRemove.add("K");
-            availabilitiesToRemove.add("Q");
-        } else if (move.pieceType() == ROOK) {
-            final PgnSquare moveSource = move.source();
-            if (SQUARE_ROOK_A1.equals(moveSource) && this.turn == WHITE
-                || SQUARE_ROOK_A8.equals(moveSource) && this.turn == BLACK)
-                availabilitiesToRemove.add("Q");
-            else if (SQUARE_ROOK_H1.equals(moveSource) && this.turn == WHITE
-                || SQUARE_ROOK_H8.equals(moveSource) && this.turn == BLACK)
-                availabilitiesToRemove.add("K");
-        }
+    /**
+     * Remove the castling rights lost by a move: the ones of a king or a rook
+     * leaving its square, or of a rook captured on its square.
+     *
+     * @param move The Move.
+     */
+    void updateCastlingAvailability(final Move move) {
 
-        final String newAvailability = availabilitiesToRemove
-            .stream()
-            .map(availability -> this.turn == WHITE
-                ? availability
-                : availability.toLowerCase())
-            .reduce(
-                this.castlingAvailability,
-                (availability, removal) -> availability.replace(
-                    removal,
-                    ""));
-
-        this.castlingAvailability = newAvailability.isEmpty()
-            ? null
-            : newAvailability;
+        this.castlingRights &=
+            CASTLING_RIGHTS_KEPT[move.source().getIndex()]
+                & CASTLING_RIGHTS_KEPT[move.target().getIndex()];
     }
 
     /**
@@ -414,56 +705,614 @@ class Board {
             : new PgnSquare("a8");
     }
 
-    private PgnSquare getSourceSquare(final PgnPieceType pieceType,
-                                      final Color color,
-                                      final PgnSquare target,
-                                      final String clue,
-                                      final boolean isCapture) {
-
-        return pieceType.getMoveStrategy()
-            .getCandidateSourceSquares(target, color)
-            // we keep a square only if we can find the expected piece on it
-            .filter(square -> this.getPiece(square)
-                .filter(piece -> piece.type() == pieceType)
-                .filter(piece -> piece.color() == color)
-                .isPresent())
-            // use capture flag as a disambiguating information for pawn moves
-            .filter(square -> pieceType != PAWN
-                || isCapture == (square.getFileIdx() != target.getFileIdx()))
-            // if we have some disambiguating information, we filter our
-            // candidate squares with this clue
-            .filter(square -> square.isMatchingDisambiguatingMove(clue))
-            // we keep the closest square
-            // (to handle a position with Qa1, Qa2 and target = c3 for example)
-            .reduce((nearestSquare, square) ->
-                target.getDistance(square) < target.getDistance(nearestSquare)
-                    ? square
-                    : nearestSquare)
-            .orElse(null);
+
+    /**
+     * Find the square of the piece moving to the target square. The
+     * candidates are the pieces of the expected type and color able to reach
+     * the target square (the occupied squares blocking the way), filtered by
+     * the disambiguating move information. If several candidates remain, the
+     * ones leaving their king in check (pinned pieces) are discarded.
+     *
+     * @param pieceType The type of the moved piece.
+     * @param color     The color of the moved piece.
+     * @param target    The target square index.
+     * @param clue      The disambiguating move information (can be null).
+     * @param isCapture Is the move a capture.
+     * @return The source square index or NO_SQUARE if no piece (or more than
+     * one) can move there.
+     */
+    private int getSourceSquare(final PgnPieceType pieceType,
+                                final Color color,
+                                final int target,
+                                final String clue,
+                                final boolean isCapture) {
+
+        long candidates = this.pieces[pieceIndex(pieceType, color)]
+            & disambiguatingSquares(clue)
+            & pieceType.getMoveStrategy()
+            .getSourceSquares(target, color, this.occupancy);
+
+        // use capture flag as a disambiguating information for pawn moves
+        if (pieceType == PAWN) {
+            candidates &= isCapture
+                ? ~fileSquares(file(target))
+                : fileSquares(file(target));
+        }
+
+        if (Long.bitCount(candidates) > 1) {
+            for (long c = candidates; c != EMPTY; c &= c - 1) {
+                final int square = Long.numberOfTrailingZeros(c);
+                if (this.isLeavingKingInCheck(color, square, target))
+                    candidates &= ~bit(square);
+            }
+        }
+
+        return Long.bitCount(candidates) == 1
+            ? Long.numberOfTrailingZeros(candidates)
+            : NO_SQUARE;
+    }
+
+    /**
+     * Check if moving a piece would leave its king in check.
+     *
+     * @param color  The color of the moved piece.
+     * @param source The source square index.
+     * @param target The target square index.
+     * @return true if the king would be in check after the move.
+     */
+    boolean isLeavingKingInCheck(final Color color,
+                                 final int source,
+                                 final int target) {
+
+        final long kings = this.pieces[pieceIndex(KING, color)];
+        if (kings == EMPTY)
+            return false;
+
+        final int king = (kings & bit(source)) != EMPTY
+            ? target
+            : Long.numberOfTrailingZeros(kings);
+        final long occupancy = this.occupancy & ~bit(source) | bit(target);
+
+        // a captured piece can't attack
+        return (this.attackers(king, opposite(color), occupancy)
+            & ~bit(target)) != EMPTY;
     }
 
     private PgnSquare buildEnPassantTargetSquare(final PgnPieceType pieceType,
                                                  final Color color,
-                                                 final PgnSquare target) {
-
-        return Stream.of(-1, 1)
-            .filter(dummy -> pieceType == PAWN)
-            .filter(dummy -> color == WHITE && target.getRankIdx() == 6
-                || color == BLACK && target.getRankIdx() == 3)
-            .map(file -> new PgnSquare(
-                target.getFileIdx() + file,
-                target.getRankIdx()))
-            .filter(PgnSquare::isValid)
-            .map(this::getPiece)
-            .map(optionalPiece -> optionalPiece.orElse(null))
-            .filter(Objects::nonNull)
-            .filter(piece -> piece.type() == PAWN && piece.color() != color)
-            // TODO check if the capture is legal
-            .findAny()
-            .map(dummy -> new PgnSquare(
-                target.getFileIdx(),
-                color == WHITE ? 5 : 2))
-            .orElse(null);
+                                                 final int source,
+                                                 final int target) {
+
+        if (pieceType != PAWN
+            || source == NO_SQUARE
+            || Math.abs(target - source) != 16)
+            return null;
+
+        final int passedSquare = this.enPassantSquare(color, source, target);
+        return passedSquare == NO_SQUARE
+            ? null
+            : PgnSquare.of(passedSquare);
+    }
+
+    /**
+     * Get the en passant target square given by a pawn double push: the
+     * passed square, only if an opponent pawn can legally take on it.
+     *
+     * @param color  The color of the pawn.
+     * @param source The source square index of the pawn.
+     * @param target The target square index of the pawn.
+     * @return The passed square index or NO_SQUARE.
+     */
+    private int enPassantSquare(final Color color,
+                                final int source,
+                                final int target) {
+
+        final int passedSquare = (source + target) / 2;
+        final Color opponent = opposite(color);
+        final long kings = this.pieces[pieceIndex(KING, opponent)];
+
+        for (long capturers = pawnAttacks(color, passedSquare)
+            & this.pieces[pieceIndex(PAWN, opponent)];
+             capturers != EMPTY;
+             capturers &= capturers - 1) {
+            if (kings == EMPTY)
+                return passedSquare;
+            // the position once the pawn is taken: the capturer on the
+            // passed square, both pawn squares empty
+            final int capturer = Long.numberOfTrailingZeros(capturers);
+            final long occupancy = this.occupancy
+                & ~bit(source)
+                & ~bit(capturer)
+                | bit(passedSquare);
+            if ((this.attackers(
+                Long.numberOfTrailingZeros(kings),
+                color,
+                occupancy) & ~bit(source)) == EMPTY)
+                return passedSquare;
+        }
+
+        return NO_SQUARE;
+    }
+
+    /**
+     * Generate the legal moves of the side to move. A king in double check
+     * can only move, a single check must be captured or blocked, and a
+     * pinned piece can only move along its pin line. En passant captures are
+     * checked on the resulting occupancy (the two pawns leave the rank of
+     * the king).
+     *
+     * @param moves The buffer to fill with the move codes (at least
+     *              MAX_MOVES long).
+     * @return The number of legal moves.
+     */
+    int generateLegalMoves(final int[] moves) {
+
+        final int offset = this.turn.ordinal() * PIECE_TYPES;
+        final long own = this.colors[this.turn.ordinal()];
+        final long kings = this.pieces[offset + KING.ordinal()];
+        final int king = kings == EMPTY
+            ? NO_SQUARE
+            : Long.numberOfTrailingZeros(kings);
+        long checkMask = ~EMPTY;
+        long pinned = EMPTY;
+        int count = 0;
+
+        if (king != NO_SQUARE) {
+            final Color opponent = opposite(this.turn);
+            final long checkers =
+                this.attackers(king, opponent, this.occupancy);
+
+            // the sliding pieces attack through the king
+            final long occupancy = this.occupancy & ~kings;
+            for (long targets = kingAttacks(king) & ~own;
+                 targets != EMPTY;
+                 targets &= targets - 1) {
+                final int target = Long.numberOfTrailingZeros(targets);
+                if (this.attackers(target, opponent, occupancy) == EMPTY)
+                    moves[count++] = code(king, target, KING, 0, 0);
+            }
+
+            if (Long.bitCount(checkers) > 1)
+                return count;
+            if (checkers == EMPTY)
+                count = this.addCastlingMoves(moves, count, king);
+            else
+                checkMask = between(king, Long.numberOfTrailingZeros(checkers))
+                    | checkers;
+            pinned = this.pinned(king);
+        }
+
+        count = this.addPawnMoves(moves, count, king, pinned, checkMask);
+
+        for (PgnPieceType pieceType : PIECE_MOVES) {
+            for (long sources = this.pieces[offset + pieceType.ordinal()];
+                 sources != EMPTY;
+                 sources &= sources - 1) {
+                final int source = Long.numberOfTrailingZeros(sources);
+                long targets = attacks(
+                    pieceType,
+                    this.turn,
+                    source,
+                    this.occupancy) & ~own & checkMask;
+                if ((pinned & bit(source)) != EMPTY)
+                    targets &= line(king, source);
+                for (; targets != EMPTY; targets &= targets - 1)
+                    moves[count++] = code(
+                        source,
+                        Long.numberOfTrailingZeros(targets),
+                        pieceType,
+                        0,
+                        0);
+            }
+        }
+
+        return count;
+    }
+
+    private int addPawnMoves(final int[] moves,
+                             int count,
+                             final int king,
+                             final long pinned,
+                             final long checkMask) {
+
+        final boolean white = this.turn == WHITE;
+        final int step = white ? 8 : -8;
+        final int startRank = white ? 1 : 6;
+        final int lastRank = white ? 7 : 0;
+        final long opponents = this.colors[opposite(this.turn).ordinal()];
+
+        for (long sources = this.pieces[pieceIndex(PAWN, this.turn)];
+             sources != EMPTY;
+             sources &= sources - 1) {
+            final int source = Long.numberOfTrailingZeros(sources);
+            final int push = source + step;
+            long targets = pawnAttacks(this.turn, source) & opponents;
+            if ((this.occupancy & bit(push)) == EMPTY) {
+                targets |= bit(push);
+                if (rank(source) == startRank
+                    && (this.occupancy & bit(push + step)) == EMPTY)
+                    targets |= bit(push + step);
+            }
+            targets &= checkMask;
+            if ((pinned & bit(source)) != EMPTY)
+                targets &= line(king, source);
+
+            for (; targets != EMPTY; targets &= targets - 1) {
+                final int target = Long.numberOfTrailingZeros(targets);
+                if (rank(target) == lastRank) {
+                    for (PgnPieceType promotion : PROMOTIONS)
+                        moves[count++] = code(
+                            source,
+                            target,
+                            PAWN,
+                            promotion.ordinal() + 1,
+                            0);
+                } else {
+                    moves[count++] = code(
+                        source,
+                        target,
+                        PAWN,
+                        0,
+                        Math.abs(target - source) == 16 ? DOUBLE_PUSH : 0);
+                }
+            }
+
+            if (this.enPassantSquare != NO_SQUARE
+                && (pawnAttacks(this.turn, source)
+                & bit(this.enPassantSquare)) != EMPTY
+                && this.isEnPassantLegal(king, source))
+                moves[count++] = code(
+                    source,
+                    this.enPassantSquare,
+                    PAWN,
+                    0,
+                    EN_PASSANT);
+        }
+
+        return count;
+    }
+
+    private int addCastlingMoves(final int[] moves,
+                                 int count,
+                                 final int king) {
+
+        final Color opponent = opposite(this.turn);
+        final long rooks = this.pieces[pieceIndex(ROOK, this.turn)];
+        final int first = this.turn == WHITE ? 0 : 2;
+
+        for (int right = first; right < first + 2; right++) {
+            if ((this.castlingRights & (1 << right)) == 0
+                || king != CASTLING_KING_SOURCE[right]
+                || (rooks & bit(CASTLING_ROOK_SOURCE[right])) == EMPTY
+                || (this.occupancy & CASTLING_EMPTY_SQUARES[right]) != EMPTY)
+                continue;
+            boolean safe = true;
+            for (long squares = CASTLING_SAFE_SQUARES[right];
+                 safe && squares != EMPTY;
+                 squares &= squares - 1)
+                safe = this.attackers(
+                    Long.numberOfTrailingZeros(squares),
+                    opponent,
+                    this.occupancy) == EMPTY;
+            if (safe)
+                moves[count++] = code(
+                    king,
+                    CASTLING_KING_TARGET[right],
+                    KING,
+                    0,
+                    CASTLING);
+        }
+
+        return count;
+    }
+
+    private boolean isEnPassantLegal(final int king, final int source) {
+
+        if (king == NO_SQUARE)
+            return true;
+
+        final int captured = this.enPassantSquare
+            + (this.turn == WHITE ? -8 : 8);
+        final long occupancy = this.occupancy
+            & ~bit(source)
+            & ~bit(captured)
+            | bit(this.enPassantSquare);
+
+        return (this.attackers(king, opposite(this.turn), occupancy)
+            & ~bit(captured)) == EMPTY;
+    }
+
+    /**
+     * Get the pieces of the side to move pinned on their king: the only
+     * piece between the king and an opponent sliding piece.
+     *
+     * @param king The king square index.
+     * @return The pinned pieces as a bitboard.
+     */
+    private long pinned(final int king) {
+
+        final int offset = opposite(this.turn).ordinal() * PIECE_TYPES;
+        final long opponents = this.colors[opposite(this.turn).ordinal()];
+        final long queens = this.pieces[offset + QUEEN.ordinal()];
+        long pinned = EMPTY;
+
+        for (long snipers = rookAttacks(king, opponents)
+            & (this.pieces[offset + ROOK.ordinal()] | queens)
+            | bishopAttacks(king, opponents)
+            & (this.pieces[offset + BISHOP.ordinal()] | queens);
+             snipers != EMPTY;
+             snipers &= snipers - 1) {
+            final long blockers = this.occupancy & between(
+                king,
+                Long.numberOfTrailingZeros(snipers));
+            if (Long.bitCount(blockers) == 1
+                && (blockers & this.colors[this.turn.ordinal()]) != EMPTY)
+                pinned |= blockers;
+        }
+
+        return pinned;
+    }
+
+    /**
+     * Get the pieces of a color attacking a square.
+     *
+     * @param square    The square index.
+     * @param color     The color of the attacking pieces.
+     * @param occupancy The occupied squares (blocking the sliding pieces).
+     * @return The attacking pieces as a bitboard.
+     */
+    private long attackers(final int square,
+                           final Color color,
+                           final long occupancy) {
+
+        final int offset = color.ordinal() * PIECE_TYPES;
+        final long queens = this.pieces[offset + QUEEN.ordinal()];
+
+        return (pawnAttacks(opposite(color), square)
+            & this.pieces[offset + PAWN.ordinal()])
+            | (knightAttacks(square) & this.pieces[offset + KNIGHT.ordinal()])
+            | (kingAttacks(square) & this.pieces[offset + KING.ordinal()])
+            | (bishopAttacks(square, occupancy)
+            & (this.pieces[offset + BISHOP.ordinal()] | queens))
+            | (rookAttacks(square, occupancy)
+            & (this.pieces[offset + ROOK.ordinal()] | queens));
+    }
+
+    private boolean isLegal(final int code) {
+
+        if (this.legalMoves == null)
+            this.legalMoves = new int[MAX_MOVES];
+
+        final int count = this.generateLegalMoves(this.legalMoves);
+        for (int i = 0; i < count; i++)
+            if (this.legalMoves[i] == code)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Play a move code: the pieces, the castling rights, the en passant
+     * square, the clocks, the side to move and the Zobrist key are updated.
+     *
+     * @param code The move code.
+     * @return The index of the captured piece (or NO_PIECE).
+     */
+    private int play(final int code) {
+
+        final int source = source(code);
+        final int target = target(code);
+        final int offset = this.turn.ordinal() * PIECE_TYPES;
+        final int moved = offset + ((code >>> PIECE_SHIFT) & 7);
+        final int promotion = (code >>> PROMOTION_SHIFT) & 7;
+        final int placed = promotion == 0 ? moved : offset + promotion - 1;
+        final int enPassantSquare = (code & DOUBLE_PUSH) != 0
+            ? this.enPassantSquare(this.turn, source, target)
+            : NO_SQUARE;
+        final int capturedSquare = capturedSquare(code, this.turn);
+        final int captured = this.pieceIndexAt(
+            PIECE_TYPES - offset,
+            capturedSquare);
+
+        long zobristKey = this.zobristKey
+            ^ Zobrist.castling(this.castlingRights)
+            ^ Zobrist.enPassant(this.enPassantSquare)
+            ^ Zobrist.turn(BLACK)
+            ^ Zobrist.piece(moved, source)
+            ^ Zobrist.piece(placed, target);
+
+        if (captured != NO_PIECE) {
+            this.flip(captured, capturedSquare);
+            zobristKey ^= Zobrist.piece(captured, capturedSquare);
+        }
+        this.flip(moved, source);
+        this.flip(placed, target);
+
+        if ((code & CASTLING) != 0) {
+            final int rook = offset + ROOK.ordinal();
+            final int rookSource = ROOK_SOURCE_BY_KING_TARGET[target];
+            final int rookTarget = ROOK_TARGET_BY_KING_TARGET[target];
+            this.flip(rook, rookSource);
+            this.flip(rook, rookTarget);
+            zobristKey ^= Zobrist.piece(rook, rookSource)
+                ^ Zobrist.piece(rook, rookTarget);
+        }
+
+        this.castlingRights &= CASTLING_RIGHTS_KEPT[source]
+            & CASTLING_RIGHTS_KEPT[target];
+        this.enPassantSquare = enPassantSquare;
+        this.halfMoveClock = moved == offset + PAWN.ordinal()
+            || captured != NO_PIECE
+            ? 0
+            : this.halfMoveClock + 1;
+        this.zobristKey = zobristKey
+            ^ Zobrist.castling(this.castlingRights)
+            ^ Zobrist.enPassant(this.enPassantSquare);
+
+        if (this.turn == WHITE) {
+            this.turn = BLACK;
+        } else {
+            this.turn = WHITE;
+            this.fullMoveNumber++;
+        }
+
+        return captured;
+    }
+
+    /**
+     * Take a move code back: the pieces and the side to move are restored,
+     * the rest of the board state must be restored by the caller.
+     *
+     * @param code     The move code.
+     * @param captured The index of the captured piece (or NO_PIECE).
+     */
+    private void takeBack(final int code, final int captured) {
+
+        if (this.turn == WHITE) {
+            this.turn = BLACK;
+            this.fullMoveNumber--;
+        } else {
+            this.turn = WHITE;
+        }
+
+        final int source = source(code);
+        final int target = target(code);
+        final int offset = this.turn.ordinal() * PIECE_TYPES;
+        final int moved = offset + ((code >>> PIECE_SHIFT) & 7);
+        final int promotion = (code >>> PROMOTION_SHIFT) & 7;
+
+        if ((code & CASTLING) != 0) {
+            final int rook = offset + ROOK.ordinal();
+            this.flip(rook, ROOK_TARGET_BY_KING_TARGET[target]);
+            this.flip(rook, ROOK_SOURCE_BY_KING_TARGET[target]);
+        }
+
+        this.flip(promotion == 0 ? moved : offset + promotion - 1, target);
+        this.flip(moved, source);
+        if (captured != NO_PIECE)
+            this.flip(captured, capturedSquare(code, this.turn));
+    }
+
+    private void restore(final int castlingRights,
+                         final int enPassantSquare,
+                         final int halfMoveClock,
+                         final long zobristKey) {
+
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        this.halfMoveClock = halfMoveClock;
+        this.zobristKey = zobristKey;
+    }
+
+    /**
+     * Get the code of a parsed move, the moved piece being the one on its
+     * source square.
+     *
+     * @param m The Move.
+     * @return The move code.
+     */
+    private int encode(final Move m) {
+
+        final int source = m.source().getIndex();
+        final int target = m.target().getIndex();
+        final PgnPieceType pieceType = this.pieceAt(source).type();
+        final int promotion = m.promotion() == null
+            ? 0
+            : m.promotion().type().ordinal() + 1;
+        int flags = 0;
+
+        if (m.castlingMove() != null)
+            flags = CASTLING;
+        else if (pieceType == PAWN && Math.abs(target - source) == 16)
+            flags = DOUBLE_PUSH;
+        else if (pieceType == PAWN
+            && target == this.enPassantSquare
+            && file(source) != file(target))
+            flags = EN_PASSANT;
+
+        return code(source, target, pieceType, promotion, flags);
+    }
+
+    /**
+     * Get the Move of a move code, in the current position.
+     *
+     * @param code The move code.
+     * @return The Move.
+     */
+    private Move toMove(final int code) {
+
+        final int source = source(code);
+        final int target = target(code);
+        final PgnPieceType pieceType =
+            PIECE_TYPE_VALUES[(code >>> PIECE_SHIFT) & 7];
+        final int promotion = (code >>> PROMOTION_SHIFT) & 7;
+        final int enPassantSquare = (code & DOUBLE_PUSH) != 0
+            ? this.enPassantSquare(this.turn, source, target)
+            : NO_SQUARE;
+
+        return new Move(
+            pieceType,
+            PgnSquare.of(source),
+            (code & EN_PASSANT) != 0
+                || (this.colors[opposite(this.turn).ordinal()]
+                & bit(target)) != EMPTY,
+            PgnSquare.of(target),
+            promotion == 0
+                ? null
+                : PIECES[pieceIndex(
+                PIECE_TYPE_VALUES[promotion - 1],
+                this.turn)],
+            enPassantSquare == NO_SQUARE
+                ? null
+                : PgnSquare.of(enPassantSquare),
+            (code & CASTLING) == 0
+                ? null
+                : new Move(
+                ROOK,
+                PgnSquare.of(ROOK_SOURCE_BY_KING_TARGET[target]),
+                false,
+                PgnSquare.of(ROOK_TARGET_BY_KING_TARGET[target]),
+                null,
+                null,
+                null));
+    }
+
+    private static int code(final int source,
+                            final int target,
+                            final PgnPieceType pieceType,
+                            final int promotion,
+                            final int flags) {
+
+        return source
+            | target << TARGET_SHIFT
+            | pieceType.ordinal() << PIECE_SHIFT
+            | promotion << PROMOTION_SHIFT
+            | flags;
+    }
+
+    private static int source(final int code) {
+
+        return code & 63;
+    }
+
+    private static int target(final int code) {
+
+        return (code >>> TARGET_SHIFT) & 63;
+    }
+
+    /**
+     * Get the square of the piece captured by a move (the target square,
+     * except for en passant).
+     *
+     * @param code  The move code.
+     * @param color The color of the moved piece.
+     * @return The square index.
+     */
+    private static int capturedSquare(final int code, final Color color) {
+
+        return (code & EN_PASSANT) == 0
+            ? target(code)
+            : target(code) + (color == WHITE ? -8 : 8);
     }
 
     /**
@@ -475,7 +1324,9 @@ class Board {
      */
     void setPiece(final Piece piece, final PgnSquare square) {
 
-        this.position[square.getRankIdx()][square.getFileIdx()] = piece;
+        this.remove(square.getIndex());
+        if (piece != null)
+            this.put(piece, square.getIndex());
     }
 
     /**
@@ -489,7 +1340,92 @@ class Board {
 
         return Optional
             .ofNullable(square)
-            .map(s -> this.position[square.getRankIdx()][square.getFileIdx()]);
+            .map(s -> this.pieceAt(s.getIndex()));
+    }
+
+    private Piece pieceAt(final int square) {
+
+        final long bit = bit(square);
+
+        if ((this.occupancy & bit) == EMPTY)
+            return null;
+
+        final int offset = (this.colors[WHITE.ordinal()] & bit) != EMPTY
+            ? 0
+            : PIECE_TYPES;
+        for (int type = 0; type < PIECE_TYPES; type++)
+            if ((this.pieces[offset + type] & bit) != EMPTY)
+                return PIECES[offset + type];
+
+        return null;
+    }
+
+    private int pieceIndexAt(final int offset, final int square) {
+
+        final long bit = bit(square);
+
+        if ((this.colors[offset / PIECE_TYPES] & bit) == EMPTY)
+            return NO_PIECE;
+
+        for (int i = offset; i < offset + PIECE_TYPES; i++)
+            if ((this.pieces[i] & bit) != EMPTY)
+                return i;
+
+        return NO_PIECE;
+    }
+
+    /**
+     * Put or remove a piece (without updating the Zobrist key).
+     *
+     * @param pieceIndex The piece index.
+     * @param square     The square index.
+     */
+    private void flip(final int pieceIndex, final int square) {
+
+        final long bit = bit(square);
+        this.pieces[pieceIndex] ^= bit;
+        this.colors[pieceIndex / PIECE_TYPES] ^= bit;
+        this.occupancy ^= bit;
+    }
+
+    private void put(final Piece piece, final int square) {
+
+        final long bit = bit(square);
+        final int pieceIndex = pieceIndex(piece.type(), piece.color());
+        this.pieces[pieceIndex] |= bit;
+        this.colors[piece.color().ordinal()] |= bit;
+        this.occupancy |= bit;
+        this.zobristKey ^= Zobrist.piece(pieceIndex, square);
+    }
+
+    private void remove(final int square) {
+
+        final long bit = bit(square);
+
+        if ((this.occupancy & bit) == EMPTY)
+            return;
+
+        for (int i = 0; i < this.pieces.length; i++) {
+            if ((this.pieces[i] & bit) != EMPTY) {
+                this.pieces[i] &= ~bit;
+                this.zobristKey ^= Zobrist.piece(i, square);
+                break;
+            }
+        }
+        this.colors[WHITE.ordinal()] &= ~bit;
+        this.colors[BLACK.ordinal()] &= ~bit;
+        this.occupancy &= ~bit;
+    }
+
+    private static int pieceIndex(final PgnPieceType pieceType,
+                                  final Color color) {
+
+        return color.ordinal() * PIECE_TYPES + pieceType.ordinal();
+    }
+
+    private static Color opposite(final Color color) {
+
+        return color == WHITE ? BLACK : WHITE;
     }
 
 }
@@ -7,7 +7,7 @@ import java.util.Arrays;
 
 @AllArgsConstructor
 @Getter
-enum Color {
+public enum Color {
 
     WHITE('w'),
     BLACK('b');
@@ -1,24 +1,22 @@
 package io.github.fifi2.chessmorize.service.pgn;
 
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.SQUARES;
 
 class MoveKingStrategy implements MoveStrategy {
 
+    private static final int[][] CANDIDATES = new int[SQUARES][];
+
+    static {
+        for (int square = 0; square < SQUARES; square++)
+            CANDIDATES[square] = Bitboards.toSquares(
+                Bitboards.kingAttacks(square));
+    }
+
     @Override
-    public Stream<PgnSquare> getCandidateSourceSquares(final PgnSquare target,
-                                                       final Color color) {
+    public int[] getCandidateSourceSquares(final int target,
+                                           final Color color) {
 
-        return IntStream
-            .range(-1, 2)
-            .boxed()
-            .flatMap(fileStep -> IntStream.range(-1, 2)
-                .boxed()
-                .filter(rankStep -> !fileStep.equals(0)
-                    || !rankStep.equals(0))
-                .map(rankStep -> new Vector(fileStep, rankStep))
-                .map(vector -> vector.apply(target)))
-            .filter(PgnSquare::isValid);
+        return CANDIDATES[target];
     }
 
 }
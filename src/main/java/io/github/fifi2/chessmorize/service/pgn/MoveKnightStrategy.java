@@ -1,26 +1,22 @@
 package io.github.fifi2.chessmorize.service.pgn;
 
-import java.util.stream.Stream;
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.SQUARES;
 
 class MoveKnightStrategy implements MoveStrategy {
 
+    private static final int[][] CANDIDATES = new int[SQUARES][];
+
+    static {
+        for (int square = 0; square < SQUARES; square++)
+            CANDIDATES[square] = Bitboards.toSquares(
+                Bitboards.knightAttacks(square));
+    }
+
     @Override
-    public Stream<PgnSquare> getCandidateSourceSquares(final PgnSquare target,
-                                                       final Color color) {
+    public int[] getCandidateSourceSquares(final int target,
+                                           final Color color) {
 
-        return Stream.of(
-                new Vector(1, 2),
-                new Vector(2, 1))
-            .flatMap(a -> Stream.of(
-                    new Vector(1, 1),
-                    new Vector(-1, -1),
-                    new Vector(1, -1),
-                    new Vector(-1, 1))
-                .map(b -> new Vector(
-                    a.file() * b.file(),
-                    a.rank() * b.rank()))
-                .map(vector -> vector.apply(target)))
-            .filter(PgnSquare::isValid);
+        return CANDIDATES[target];
     }
 
 }
@@ -1,29 +1,71 @@
 package io.github.fifi2.chessmorize.service.pgn;
 
-import java.util.stream.Stream;
-
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.*;
 import static io.github.fifi2.chessmorize.service.pgn.Color.BLACK;
 import static io.github.fifi2.chessmorize.service.pgn.Color.WHITE;
 
 class MovePawnStrategy implements MoveStrategy {
 
+    private static final int[][] PUSHES = new int[2][SQUARES];
+    private static final int[][] FIRST_PUSHES = new int[2][SQUARES];
+    private static final long[][] CAPTURES = new long[2][SQUARES];
+    private static final int[][][] CANDIDATES = new int[2][SQUARES][];
+
+    static {
+        for (Color color : Color.values()) {
+            final int c = color.ordinal();
+            final int step = color == WHITE ? -8 : 8;
+            for (int square = 0; square < SQUARES; square++) {
+                final int push = square + step;
+                PUSHES[c][square] = push >= 0 && push < SQUARES
+                    ? push
+                    : NO_SQUARE;
+                FIRST_PUSHES[c][square] =
+                    color == WHITE && rank(square) == 3
+                        || color == BLACK && rank(square) == 4
+                        ? push + step
+                        : NO_SQUARE;
+                // a pawn takes on the squares an opponent pawn would attack
+                CAPTURES[c][square] = PUSHES[c][square] == NO_SQUARE
+                    ? EMPTY
+                    : pawnAttacks(color == WHITE ? BLACK : WHITE, square);
+                CANDIDATES[c][square] = toSquares(
+                    CAPTURES[c][square]
+                        | bits(PUSHES[c][square])
+                        | bits(FIRST_PUSHES[c][square]));
+            }
+        }
+    }
+
+    @Override
+    public int[] getCandidateSourceSquares(final int target,
+                                           final Color color) {
+
+        return CANDIDATES[color.ordinal()][target];
+    }
+
     @Override
-    public Stream<PgnSquare> getCandidateSourceSquares(final PgnSquare target,
-                                                       final Color color) {
-
-        final int step = color == WHITE ? 1 : -1;
-
-        return Stream.concat(
-                Stream.of(
-                    new Vector(0, step),  // push
-                    new Vector(-1, step), // takes
-                    new Vector(1, step)), // takes
-                color == WHITE && target.getRankIdx() == 4
-                    || color == BLACK && target.getRankIdx() == 3
-                    ? Stream.of(new Vector(0, step * 2)) // first push
-                    : Stream.empty())
-            .map(vector -> vector.apply(target))
-            .filter(PgnSquare::isValid);
+    public long getSourceSquares(final int target,
+                                 final Color color,
+                                 final long occupancy) {
+
+        final int c = color.ordinal();
+        final int push = PUSHES[c][target];
+
+        if (push == NO_SQUARE)
+            return EMPTY;
+
+        // the first push is only possible through an empty square
+        return CAPTURES[c][target]
+            | bit(push)
+            | ((occupancy & bit(push)) == EMPTY
+            ? bits(FIRST_PUSHES[c][target])
+            : EMPTY);
+    }
+
+    private static long bits(final int square) {
+
+        return square == NO_SQUARE ? EMPTY : bit(square);
     }
 
 }
@@ -1,23 +1,44 @@
 package io.github.fifi2.chessmorize.service.pgn;
 
-import lombok.RequiredArgsConstructor;
+import java.util.stream.IntStream;
 
-import java.util.stream.Stream;
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.SQUARES;
 
-@RequiredArgsConstructor
 class MoveQueenStrategy implements MoveStrategy {
 
     private final MoveBishopStrategy bishopStrategy;
     private final MoveRookStrategy rookStrategy;
+    private final int[][] candidates = new int[SQUARES][];
+
+    MoveQueenStrategy(final MoveBishopStrategy bishopStrategy,
+                      final MoveRookStrategy rookStrategy) {
+
+        this.bishopStrategy = bishopStrategy;
+        this.rookStrategy = rookStrategy;
+
+        for (int square = 0; square < SQUARES; square++)
+            this.candidates[square] = IntStream.concat(
+                    IntStream.of(bishopStrategy
+                        .getCandidateSourceSquares(square, Color.WHITE)),
+                    IntStream.of(rookStrategy
+                        .getCandidateSourceSquares(square, Color.WHITE)))
+                .toArray();
+    }
+
+    @Override
+    public int[] getCandidateSourceSquares(final int target,
+                                           final Color color) {
+
+        return this.candidates[target];
+    }
 
     @Override
-    public Stream<PgnSquare> getCandidateSourceSquares(final PgnSquare target,
-                                                       final Color color) {
+    public long getSourceSquares(final int target,
+                                 final Color color,
+                                 final long occupancy) {
 
-        return Stream.concat(
-            bishopStrategy.getCandidateSourceSquares(target, color),
-            rookStrategy.getCandidateSourceSquares(target, color)
-        );
+        return this.bishopStrategy.getSourceSquares(target, color, occupancy)
+            | this.rookStrategy.getSourceSquares(target, color, occupancy);
     }
 
 }
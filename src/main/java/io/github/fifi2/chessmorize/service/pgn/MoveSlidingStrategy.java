@@ -0,0 +1,74 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import java.util.Arrays;
+
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.*;
+
+/**
+ * Move strategy of the pieces sliding along rays (rooks and bishops). The
+ * rays of each square are precomputed, ordered from the square outwards, so
+ * that a ray walk can stop at the first blocker.
+ */
+abstract class MoveSlidingStrategy implements MoveStrategy {
+
+    private final int[][][] rays = new int[SQUARES][][];
+    private final int[][] candidates = new int[SQUARES][];
+
+    MoveSlidingStrategy(final int[][] directions) {
+
+        for (int square = 0; square < SQUARES; square++) {
+            this.rays[square] = new int[directions.length][];
+            for (int d = 0; d < directions.length; d++)
+                this.rays[square][d] = ray(square, directions[d]);
+            this.candidates[square] = Arrays.stream(this.rays[square])
+                .flatMapToInt(Arrays::stream)
+                .toArray();
+        }
+    }
+
+    @Override
+    public int[] getCandidateSourceSquares(final int target,
+                                           final Color color) {
+
+        return this.candidates[target];
+    }
+
+    @Override
+    public long getSourceSquares(final int target,
+                                 final Color color,
+                                 final long occupancy) {
+
+        long squares = EMPTY;
+
+        // on each ray, only the first occupied square can hold a piece
+        // reaching the target
+        for (int[] ray : this.rays[target]) {
+            for (int square : ray) {
+                if ((occupancy & bit(square)) != EMPTY) {
+                    squares |= bit(square);
+                    break;
+                }
+            }
+        }
+
+        return squares;
+    }
+
+    private static int[] ray(final int square,
+                             final int[] direction) {
+
+        final int[] ray = new int[8];
+        int length = 0;
+        int file = file(square) + direction[0];
+        int rank = rank(square) + direction[1];
+
+        while (file >= 0 && file <= 7 && rank >= 0 && rank <= 7) {
+            ray[length++] = square(file, rank);
+            file += direction[0];
+            rank += direction[1];
+        }
+
+        return Arrays.copyOf(ray, length);
+    }
+
+}
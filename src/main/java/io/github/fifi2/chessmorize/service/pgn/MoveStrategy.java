@@ -1,21 +1,44 @@
 package io.github.fifi2.chessmorize.service.pgn;
 
-import java.util.stream.Stream;
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.EMPTY;
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.bit;
 
+/**
+ * Squares are int indices from 0 (a1) to 63 (h8), see Bitboards.
+ */
 interface MoveStrategy {
 
-    record Vector(int file, int rank) {
-
-        PgnSquare apply(final PgnSquare square) {
-
-            return new PgnSquare(
-                square.getFileIdx() + this.file,
-                square.getRankIdx() + this.rank);
-        }
-
+    /**
+     * Get the squares from which a piece could move to the target square, on
+     * an empty board. The array is precomputed and shared: it must not be
+     * modified.
+     *
+     * @param target The target square.
+     * @param color  The color of the piece.
+     * @return The candidate source squares.
+     */
+    int[] getCandidateSourceSquares(final int target,
+                                    final Color color);
+
+    /**
+     * Get the squares from which a piece could move to the target square,
+     * the occupied squares blocking the way.
+     *
+     * @param target    The target square.
+     * @param color     The color of the piece.
+     * @param occupancy The occupied squares as a bitboard.
+     * @return The candidate source squares as a bitboard.
+     */
+    default long getSourceSquares(final int target,
+                                  final Color color,
+                                  final long occupancy) {
+
+        long squares = EMPTY;
+
+        for (int square : this.getCandidateSourceSquares(target, color))
+            squares |= bit(square);
+
+        return squares;
     }
 
-    Stream<PgnSquare> getCandidateSourceSquares(final PgnSquare target,
-                                                final Color color);
-
 }
@@ -0,0 +1,132 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * PGN game splitter
+ * - split a PGN received as a stream of bytes into individual games, as soon
+ * as they are complete (i.e. once the event tag of the next game is received)
+ * - the split is made on the bytes: the event tag is ASCII and can't be part
+ * of a multibyte UTF-8 character
+ * - the bytes preceding the first event tag are skipped
+ */
+
+final class PgnGameSplitter {
+
+    private static final byte[] EVENT_TAG_START = "[Event \""
+        .getBytes(StandardCharsets.US_ASCII);
+    private static final int INITIAL_CAPACITY = 8192;
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int size;
+    private int scanned;
+    private int gameStart = -1;
+
+    /**
+     * Append a buffer to the received bytes and release it.
+     *
+     * @param buffer The received buffer.
+     * @return The games completed by the buffer (possibly none).
+     */
+    List<String> feed(final DataBuffer buffer) {
+
+        try {
+            this.append(buffer);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+
+        final List<String> games = new ArrayList<>();
+        for (int i = this.scanned;
+             i <= this.size - EVENT_TAG_START.length;
+             i++) {
+            if (!this.isEventTagStart(i))
+                continue;
+            if (this.gameStart >= 0)
+                games.add(this.decode(this.gameStart, i));
+            this.gameStart = i;
+            i += EVENT_TAG_START.length - 1;
+        }
+        this.scanned = Math.max(
+            this.scanned,
+            this.size - EVENT_TAG_START.length + 1);
+
+        this.compact();
+        return games;
+    }
+
+    /**
+     * End the stream of bytes.
+     *
+     * @return The last game (if any).
+     */
+    List<String> finish() {
+
+        final List<String> games = this.gameStart >= 0
+            ? List.of(this.decode(this.gameStart, this.size))
+            : List.of();
+
+        this.bytes = new byte[0];
+        this.size = 0;
+        this.scanned = 0;
+        this.gameStart = -1;
+        return games;
+    }
+
+    private void append(final DataBuffer buffer) {
+
+        final int length = buffer.readableByteCount();
+        if (this.size + length > this.bytes.length)
+            this.bytes = Arrays.copyOf(
+                this.bytes,
+                Math.max(this.size + length, 2 * this.bytes.length));
+
+        buffer.read(this.bytes, this.size, length);
+        this.size += length;
+    }
+
+    private boolean isEventTagStart(final int index) {
+
+        for (int i = 0; i < EVENT_TAG_START.length; i++)
+            if (this.bytes[index + i] != EVENT_TAG_START[i])
+                return false;
+        return true;
+    }
+
+    private String decode(final int start,
+                          final int end) {
+
+        return new String(
+            this.bytes,
+            start,
+            end - start,
+            StandardCharsets.UTF_8)
+            .strip();
+    }
+
+    /**
+     * Drop the bytes that are no longer needed: the completed games, or the
+     * scanned bytes before the first game.
+     */
+    private void compact() {
+
+        final int start = this.gameStart >= 0
+            ? this.gameStart
+            : Math.max(this.scanned, 0);
+        if (start == 0)
+            return;
+
+        System.arraycopy(this.bytes, start, this.bytes, 0, this.size - start);
+        this.size -= start;
+        this.scanned -= start;
+        if (this.gameStart >= 0)
+            this.gameStart = 0;
+    }
+
+}
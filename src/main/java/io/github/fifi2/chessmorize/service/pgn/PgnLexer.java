@@ -0,0 +1,268 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+/**
+ * PGN movetext lexer
+ * - single pass cursor over a CharSequence (no copy of the remaining input)
+ * - emits move, NAG, comment, annotation and variation tokens
+ * - move numbers are skipped and a game termination marker ends the input
+ * - it can be bounded to a range of the input (e.g. a variation)
+ */
+
+class PgnLexer {
+
+    private static final char VARIATION_START = '(';
+    private static final char VARIATION_END = ')';
+    private static final char COMMENT_START = '{';
+    private static final char COMMENT_END = '}';
+    private static final char LINE_COMMENT_START = ';';
+    private static final char ESCAPE_START = '%';
+    private static final char NUMERIC_NAG_START = '$';
+    private static final char UNKNOWN_RESULT = '*';
+    private static final String ANNOTATION_START = "[%";
+
+    enum TokenType {
+        MOVE,
+        NAG,
+        COMMENT,
+        ANNOTATION,
+        VARIATION_START,
+        VARIATION_END,
+        END
+    }
+
+    private final CharSequence input;
+    private final int length;
+    private int cursor;
+    private int tokenStart;
+    private int tokenEnd;
+
+    PgnLexer(final CharSequence input) {
+
+        this(input, 0, input.length());
+    }
+
+    /**
+     * Create a lexer reading a range of the input.
+     *
+     * @param input The input.
+     * @param start The index of the first character to read.
+     * @param end   The index after the last character to read.
+     */
+    PgnLexer(final CharSequence input,
+             final int start,
+             final int end) {
+
+        this.input = input;
+        this.cursor = start;
+        this.length = end;
+    }
+
+    /**
+     * Move the cursor to the next token.
+     *
+     * @return The type of the token (END once the input is consumed or a game
+     * termination marker is reached).
+     */
+    TokenType next() {
+
+        while (true) {
+            this.skipWhitespaces();
+            if (this.cursor >= this.length) {
+                return this.token(TokenType.END, this.cursor, this.cursor);
+            }
+
+            final int start = this.cursor;
+            final char c = this.input.charAt(start);
+
+            if (c == VARIATION_START) {
+                this.cursor++;
+                return this.token(TokenType.VARIATION_START, start, start + 1);
+            }
+            if (c == VARIATION_END) {
+                this.cursor++;
+                return this.token(TokenType.VARIATION_END, start, start + 1);
+            }
+            if (c == COMMENT_START) {
+                return this.readComment();
+            }
+            if (c == LINE_COMMENT_START) {
+                return this.readLineComment();
+            }
+            if (c == ESCAPE_START && this.isLineStart(start)) {
+                this.skipLine();
+                continue;
+            }
+            if (c == NUMERIC_NAG_START) {
+                this.cursor++;
+                this.skipDigits();
+                return this.token(TokenType.NAG, start, this.cursor);
+            }
+            if (isGlyph(c)) {
+                while (this.cursor < this.length
+                    && isGlyph(this.input.charAt(this.cursor)))
+                    this.cursor++;
+                return this.token(TokenType.NAG, start, this.cursor);
+            }
+            if (c == UNKNOWN_RESULT) {
+                this.cursor = this.length;
+                return this.token(TokenType.END, start, start + 1);
+            }
+            if (Character.isDigit(c)) {
+                // either a move number (e.g. 12. or 12...) or a game result
+                this.skipDigits();
+                if (this.cursor < this.length
+                    && this.input.charAt(this.cursor) == '.') {
+                    while (this.cursor < this.length
+                        && this.input.charAt(this.cursor) == '.')
+                        this.cursor++;
+                    continue;
+                }
+                this.cursor = this.length;
+                return this.token(TokenType.END, start, start);
+            }
+            if (Character.isLetter(c)) {
+                while (this.cursor < this.length
+                    && !this.isMoveDelimiter(this.input.charAt(this.cursor)))
+                    this.cursor++;
+                return this.token(TokenType.MOVE, start, this.cursor);
+            }
+
+            throw new IllegalArgumentException(
+                "unexpected character '" + c + "' at index " + start);
+        }
+    }
+
+    /**
+     * Get the current token text. For comments and annotations, the braces
+     * and the surrounding blanks are excluded.
+     *
+     * @return The token text as a String.
+     */
+    String getText() {
+
+        return this.input
+            .subSequence(this.tokenStart, this.tokenEnd)
+            .toString();
+    }
+
+    /**
+     * Get the index of the current token start in the input.
+     *
+     * @return The index.
+     */
+    int getTokenStart() {
+
+        return this.tokenStart;
+    }
+
+    /**
+     * Get the index of the next character to read in the input.
+     *
+     * @return The index.
+     */
+    int getCursor() {
+
+        return this.cursor;
+    }
+
+    /**
+     * Move the cursor forward, skipping the input up to an index.
+     *
+     * @param index The index of the next character to read.
+     */
+    void skipTo(final int index) {
+
+        this.cursor = Math.max(this.cursor, Math.min(index, this.length));
+    }
+
+    private TokenType readComment() {
+
+        int end = this.cursor + 1;
+        while (end < this.length && this.input.charAt(end) != COMMENT_END)
+            end++;
+        if (end >= this.length) {
+            throw new IllegalArgumentException(
+                "unterminated comment at index " + this.cursor);
+        }
+
+        final int bodyStart = this.cursor + 1;
+        this.cursor = end + 1;
+        return this.commentToken(bodyStart, end);
+    }
+
+    private TokenType readLineComment() {
+
+        final int bodyStart = this.cursor + 1;
+        this.skipLine();
+        return this.commentToken(bodyStart, this.cursor);
+    }
+
+    private TokenType commentToken(int start, int end) {
+
+        while (start < end && Character.isWhitespace(this.input.charAt(start)))
+            start++;
+        while (end > start && Character.isWhitespace(this.input.charAt(end - 1)))
+            end--;
+
+        final boolean isAnnotation = end - start >= ANNOTATION_START.length()
+            && this.input.charAt(start) == ANNOTATION_START.charAt(0)
+            && this.input.charAt(start + 1) == ANNOTATION_START.charAt(1);
+
+        return this.token(
+            isAnnotation ? TokenType.ANNOTATION : TokenType.COMMENT,
+            start,
+            end);
+    }
+
+    private TokenType token(final TokenType type,
+                            final int start,
+                            final int end) {
+
+        this.tokenStart = start;
+        this.tokenEnd = end;
+        return type;
+    }
+
+    private void skipWhitespaces() {
+
+        while (this.cursor < this.length
+            && Character.isWhitespace(this.input.charAt(this.cursor)))
+            this.cursor++;
+    }
+
+    private void skipDigits() {
+
+        while (this.cursor < this.length
+            && Character.isDigit(this.input.charAt(this.cursor)))
+            this.cursor++;
+    }
+
+    private void skipLine() {
+
+        while (this.cursor < this.length
+            && this.input.charAt(this.cursor) != '\n')
+            this.cursor++;
+    }
+
+    private boolean isLineStart(final int index) {
+
+        return index == 0 || this.input.charAt(index - 1) == '\n';
+    }
+
+    private boolean isMoveDelimiter(final char c) {
+
+        return Character.isWhitespace(c)
+            || isGlyph(c)
+            || c == VARIATION_START
+            || c == VARIATION_END
+            || c == COMMENT_START
+            || c == LINE_COMMENT_START
+            || c == NUMERIC_NAG_START;
+    }
+
+    private static boolean isGlyph(final char c) {
+
+        return c == '!' || c == '?';
+    }
+
+}
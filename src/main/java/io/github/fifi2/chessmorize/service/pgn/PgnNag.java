@@ -10,14 +10,15 @@ import java.util.Optional;
 @Getter
 public enum PgnNag {
 
-    GOOD_MOVE("!"),
-    MISTAKE("?"),
-    BRILLIANT_MOVE("!!"),
-    BLUNDER("??"),
-    SPECULATIVE_MOVE("!?"),
-    DUBIOUS_MOVE("?!");
+    GOOD_MOVE("!", 1),
+    MISTAKE("?", 2),
+    BRILLIANT_MOVE("!!", 3),
+    BLUNDER("??", 4),
+    SPECULATIVE_MOVE("!?", 5),
+    DUBIOUS_MOVE("?!", 6);
 
     private final String glyph;
+    private final int code;
 
     /**
      * Get a PgnNag from a glyph
@@ -32,4 +33,17 @@ public enum PgnNag {
             .findFirst();
     }
 
+    /**
+     * Get a PgnNag from its numeric code (e.g. 1 for $1)
+     *
+     * @param code the numeric code to search for
+     * @return An optional of PgnNag
+     */
+    static Optional<PgnNag> fromCode(final int code) {
+
+        return Arrays.stream(PgnNag.values())
+            .filter(nag -> nag.code == code)
+            .findFirst();
+    }
+
 }
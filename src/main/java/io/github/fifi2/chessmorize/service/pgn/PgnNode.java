@@ -17,7 +17,10 @@ public class PgnNode {
     private String comment;
     private Map<String, List<String>> annotations;
     private List<PgnNode> variations;
-    private String fen;
     private String uci;
+    private long zobristKey;
+
+    // the side having played the move
+    private Color color;
 
 }
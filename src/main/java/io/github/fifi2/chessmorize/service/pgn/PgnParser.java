@@ -2,9 +2,18 @@ package io.github.fifi2.chessmorize.service.pgn;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.*;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -13,6 +22,13 @@ import java.util.stream.Stream;
  * PGN Parser
  * - expected to work on Lichess PGN exports
  * - parse the PGN and feed the package model, starting on PgnGame
+ * - the games are parsed in parallel on a ForkJoinPool (the common pool
+ * unless the caller provides one)
+ * - the large variations of a game are parsed in forked tasks, the resulting
+ * PgnNode tree being the same as the one of a sequential parsing
+ * - a PGN can also be parsed while it is received, each game being parsed as
+ * soon as it is complete
+ * - the movetext is read in a single pass by the PgnLexer
  */
 
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
@@ -26,45 +42,121 @@ public abstract class PgnParser {
         Pattern.DOTALL);
     private static final Pattern TAG_PATTERN = Pattern.compile(
         "\\[(?<tag>\\w+) \"(?<value>.*?)\"]");
-    private static final String ANNOTATIONS_REGEX = "\\{\\s\\[%[^}]*]\\s}";
-    private static final Pattern GAME_COMMENT_PATTERN = Pattern.compile(
-        "^(?:\\{\\s+(?<gameComment>.*?)\\s+})?\\s*"
-            + "(?:(?<gameAnnotations>" + ANNOTATIONS_REGEX + ")\\s*)?"
-            + "(?<game>.*)\\s*",
-        Pattern.DOTALL);
-    private static final String PLY_REGEX = "\\d+\\.+";
-    private static final String STANDARD_MOVE_REGEX =
-        "[RNBQK]?(?:[a-h1-8]|[a-h][1-8])?x?[a-h][1-8](?:=[RNKQ])?";
-    private static final String CASTLE_REGEX = "O(?:-O){1,2}";
-    private static final String NAG_REGEX = "[?!]{1,2}";
-    private static final String COMMENT_REGEX = "\\{\\s+[^(?:\\[%)].*?\\s+}";
-    private static final Pattern MOVE_PATTERN = Pattern.compile(
-        "\\s*(?:" + PLY_REGEX + "\\s+)?"
-            + "(?<san>(?:" + STANDARD_MOVE_REGEX + "|" + CASTLE_REGEX + ")[+#]?)(?<nag>" + NAG_REGEX + ")?\\s*"
-            + "(?:(?<comment>" + COMMENT_REGEX + ")\\s*)?"
-            + "(?:(?<annotations>" + ANNOTATIONS_REGEX + ")\\s*)?",
-        Pattern.DOTALL);
-    private static final char VARIATION_START = '(';
-    private static final char VARIATION_END = ')';
-    private static final char COMMENT_START = '{';
-    private static final char COMMENT_END = '}';
     private static final String ANNOTATION_PART_START = "[";
     private static final String ANNOTATION_PART_END = "]";
-    private static final String COMMENT_START_END_REGEX = "["
-        + COMMENT_START
-        + COMMENT_END
-        + "]";
+    private static final String COMMENT_START_END_REGEX = "[{}]";
     private static final String ANNOTATIONS_SPLIT_REGEX = "]\\[";
     private static final String ESCAPE_SIGN = "%";
     private static final String ANNOTATION_VALUE_SPLIT_REGEX = ",";
+    private static final String NUMERIC_NAG_START = "$";
     private static final String EMPTY = "";
+    // variations of at least this number of characters are forked
+    public static final int DEFAULT_FORK_THRESHOLD = 8192;
 
     record PgnTagsGame(String tags,
                        String game) {
     }
 
-    record PgnVariations(String pgn,
-                         List<String> variations) {
+    /**
+     * The result of a parsing.
+     *
+     * @param games        is the list of PgnGame (in the PGN order).
+     * @param elapsedNanos is the elapsed time of the parsing (from the first
+     *                     game).
+     * @param busyNanos    is the cumulated parsing time of the games.
+     */
+    public record Result(List<PgnGame> games,
+                         long elapsedNanos,
+                         long busyNanos) {
+
+        /**
+         * Get the parallel speedup of the parsing: the cumulated parsing time
+         * of the games divided by the elapsed time.
+         *
+         * @return the speedup (1 when nothing was parsed).
+         */
+        public double speedup() {
+
+            return this.elapsedNanos == 0 || this.busyNanos == 0
+                ? 1
+                : (double) this.busyNanos / this.elapsedNanos;
+        }
+
+    }
+
+    /**
+     * The parsing state of a variation (the main line being the root one).
+     * All the variations of a game share the same board: the moves of a
+     * variation are taken back when it ends.
+     */
+    private static final class Variation {
+
+        private List<PgnNode> nextMoves;
+        private List<PgnNode> lastMoveSiblings;
+        private PgnNode lastMove;
+        private Board.Undo lastUndo;
+        private int playedMoves;
+
+        private Variation(final List<PgnNode> nextMoves) {
+
+            this.nextMoves = nextMoves;
+        }
+
+    }
+
+    /**
+     * A variation parsed in a forked task. Its moves replace a placeholder in
+     * the list of moves it belongs to, once the task is joined.
+     *
+     * @param nodes is the list of moves having the placeholder.
+     * @param index is the index of the placeholder.
+     * @param task  is the forked task.
+     */
+    private record Fork(List<PgnNode> nodes,
+                        int index,
+                        ForkJoinTask<List<PgnNode>> task) {
+    }
+
+    /**
+     * The parsing of a variation, from its own copy of the board. It returns
+     * the moves that the variation adds to the moves it starts from.
+     */
+    private static final class VariationTask
+        extends RecursiveTask<List<PgnNode>> {
+
+        private final CharSequence pgn;
+        private final int start;
+        private final int end;
+        private final Board board;
+        private final Map<Integer, Integer> forkedEnds;
+
+        private VariationTask(final CharSequence pgn,
+                              final int start,
+                              final int end,
+                              final Board board,
+                              final Map<Integer, Integer> forkedEnds) {
+
+            this.pgn = pgn;
+            this.start = start;
+            this.end = end;
+            this.board = board;
+            this.forkedEnds = forkedEnds;
+        }
+
+        @Override
+        protected List<PgnNode> compute() {
+
+            final List<PgnNode> nodes = new ArrayList<>();
+            parseMoves(
+                this.pgn,
+                new PgnLexer(this.pgn, this.start, this.end),
+                this.board,
+                nodes,
+                null,
+                this.forkedEnds);
+            return nodes;
+        }
+
     }
 
     /**
@@ -75,11 +167,131 @@ public abstract class PgnParser {
      */
     public static List<PgnGame> parse(final String pgn) {
 
-        return splitGames(pgn)
-            .parallel()
-            .map(PgnParser::splitGameAndTags)
-            .map(PgnParser::buildGame)
+        return parse(pgn, ForkJoinPool.commonPool()).games();
+    }
+
+    /**
+     * Parse the PGN String on a ForkJoinPool, one task per game. The calling
+     * thread waits for the games.
+     *
+     * @param pgn  The PGN coming from Lichess
+     * @param pool The pool running the parsing of the games
+     * @return The Result of the parsing (the list of PgnGame and its timing)
+     */
+    public static Result parse(final String pgn,
+                               final ForkJoinPool pool) {
+
+        return parse(pgn, pool, DEFAULT_FORK_THRESHOLD);
+    }
+
+    /**
+     * Parse the PGN String on a ForkJoinPool, one task per game, the
+     * variations larger than the fork threshold being parsed in their own
+     * tasks. The calling thread waits for the games.
+     *
+     * @param pgn           The PGN coming from Lichess
+     * @param pool          The pool running the parsing of the games
+     * @param forkThreshold The minimum size (in characters) of a forked
+     *                      variation
+     * @return The Result of the parsing (the list of PgnGame and its timing)
+     */
+    public static Result parse(final String pgn,
+                               final ForkJoinPool pool,
+                               final int forkThreshold) {
+
+        final long start = System.nanoTime();
+        final LongAdder busyNanos = new LongAdder();
+
+        final List<ForkJoinTask<PgnGame>> tasks = splitGames(pgn)
+            .map(game -> pool.submit(() -> {
+                final long gameStart = System.nanoTime();
+                try {
+                    return buildGame(splitGameAndTags(game), forkThreshold);
+                } finally {
+                    busyNanos.add(System.nanoTime() - gameStart);
+                }
+            }))
             .toList();
+
+        final List<PgnGame> games = tasks
+            .stream()
+            .map(ForkJoinTask::join)
+            .toList();
+
+        return new Result(
+            games,
+            System.nanoTime() - start,
+            busyNanos.sum());
+    }
+
+    /**
+     * Parse a stream of games on a ForkJoinPool, each game being submitted as
+     * soon as it is received. The games are parsed while the next ones are
+     * received, and no thread waits for them.
+     *
+     * @param games         The stream of individual PGN games
+     * @param pool          The pool running the parsing of the games
+     * @param forkThreshold The minimum size (in characters) of a forked
+     *                      variation
+     * @return A Mono of the Result of the parsing (the list of PgnGame, in the
+     * stream order, and its timing)
+     */
+    public static Mono<Result> parse(final Flux<String> games,
+                                     final ForkJoinPool pool,
+                                     final int forkThreshold) {
+
+        return Mono.defer(() -> {
+            final AtomicLong start = new AtomicLong();
+            final LongAdder busyNanos = new LongAdder();
+
+            return games
+                .doOnNext(game -> start.compareAndSet(0, System.nanoTime()))
+                .map(game -> CompletableFuture.supplyAsync(
+                    () -> {
+                        final long gameStart = System.nanoTime();
+                        try {
+                            return buildGame(
+                                splitGameAndTags(game),
+                                forkThreshold);
+                        } finally {
+                            busyNanos.add(System.nanoTime() - gameStart);
+                        }
+                    },
+                    pool))
+                .collectList()
+                .flatMap(futures -> Mono
+                    .fromFuture(CompletableFuture.allOf(
+                        futures.toArray(CompletableFuture[]::new)))
+                    .then(Mono.fromCallable(() -> new Result(
+                        futures
+                            .stream()
+                            .map(CompletableFuture::join)
+                            .toList(),
+                        start.get() == 0 ? 0 : System.nanoTime() - start.get(),
+                        busyNanos.sum()))));
+        });
+    }
+
+    /**
+     * Split a PGN received as a stream of bytes in a stream of games. A game
+     * is emitted as soon as it is complete: once the event tag of the next
+     * game is received (or at the end of the stream for the last one). The
+     * buffers are released once read.
+     *
+     * @param pgn The full PGN, as a stream of buffers
+     * @return A Flux of individual PGN String (having both tags and game).
+     */
+    public static Flux<String> splitGames(final Flux<DataBuffer> pgn) {
+
+        return Flux
+            .defer(() -> {
+                final PgnGameSplitter splitter = new PgnGameSplitter();
+                return pgn
+                    .concatMapIterable(splitter::feed)
+                    .concatWith(Flux.defer(() -> Flux
+                        .fromIterable(splitter.finish())));
+            })
+            .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
     }
 
     /**
@@ -117,53 +329,39 @@ public abstract class PgnParser {
 
     /**
      * Build a PgnGame from a PgnTagsGame record. Set the root level data of
-     * the PgnGame, such as the tags or comment, and launch the recursive
-     * parsing of the PGN game.
+     * the PgnGame, such as the tags, and run the single pass parsing of the
+     * PGN game.
      *
      * @param pgnTagsGame A PgnTagsGame record
      * @return A fully-qualified PgnGame
      */
     static PgnGame buildGame(final PgnTagsGame pgnTagsGame) {
 
-        return GAME_COMMENT_PATTERN.matcher(pgnTagsGame.game())
-            .results()
-            .findAny()
-            .map(matchResult -> PgnGame.builder()
-                .tags(getTags(pgnTagsGame.tags()))
-                .comment(Optional.ofNullable(matchResult.group("gameComment"))
-                    .map(String::strip)
-                    .orElse(null))
-                .annotations(buildAnnotations(matchResult.group("gameAnnotations")))
-                .nodes(splitGameByRootNodes(matchResult.group("game"))
-                    .stream()
-                    .map(pgn -> PgnParser.parseGame(pgn, new Board()))
-                    .toList())
-                .build())
-            .orElse(null);
+        return buildGame(pgnTagsGame, DEFAULT_FORK_THRESHOLD);
     }
 
     /**
-     * Root variations can't be detected by PgnParser.parseGame() method because
-     * our model expects to know the variations when creating the previous move.
-     * However, the PGN notation set the variation next to the main one. This
-     * method detects the root variations to run multiple parsings based on the
-     * return value.
+     * Build a PgnGame from a PgnTagsGame record, forking the parsing of the
+     * large variations.
      *
-     * @param pgn The PGN to parse.
-     * @return A list of PGN split by root variations.
+     * @param pgnTagsGame   A PgnTagsGame record
+     * @param forkThreshold The minimum size (in characters) of a forked
+     *                      variation
+     * @return A fully-qualified PgnGame
      */
-    static List<String> splitGameByRootNodes(final String pgn) {
+    static PgnGame buildGame(final PgnTagsGame pgnTagsGame,
+                             final int forkThreshold) {
+
+        final PgnGame game = PgnGame.builder()
+            .tags(getTags(Optional
+                .ofNullable(pgnTagsGame.tags())
+                .orElse(EMPTY)))
+            .annotations(new HashMap<>())
+            .nodes(new ArrayList<>())
+            .build();
 
-        return Optional.of(MOVE_PATTERN.matcher(pgn))
-            .filter(Matcher::find)
-            .stream()
-            .flatMap(matcher -> {
-                final PgnVariations pgnVariations = splitVariations(matcher.replaceFirst(EMPTY));
-                return Stream.concat(
-                    Stream.of(matcher.group().stripTrailing() + " " + pgnVariations.pgn().stripTrailing()),
-                    pgnVariations.variations().stream());
-            })
-            .toList();
+        parseGame(pgnTagsGame.game(), game, forkThreshold);
+        return game;
     }
 
     /**
@@ -183,58 +381,262 @@ public abstract class PgnParser {
     }
 
     /**
-     * Parse an individual PGN game as a PgnNode
+     * Parse an individual PGN game in a single pass over its tokens. Moves are
+     * appended to the current variation, comments, NAGs and annotations are
+     * attached to the last move (or to the game itself before the first move)
+     * and a variation starts from the position preceding the last move, as an
+     * alternative to it. The variation tree is walked depth-first on a single
+     * board: the last move is taken back when a variation starts, and replayed
+     * once the variation moves are taken back at its end. The variations
+     * larger than the fork threshold are parsed in forked tasks.
      *
-     * @param pgn   The individual PGN game.
-     * @param board The Board which will help following the moves and building
-     *              the FEN.
-     * @return A PgnNode
+     * @param pgn           The individual PGN game (movetext only).
+     * @param game          The PgnGame to feed with the root nodes.
+     * @param forkThreshold The minimum size (in characters) of a forked
+     *                      variation.
      */
-    private static PgnNode parseGame(String pgn,
-                                     final Board board) {
+    private static void parseGame(final CharSequence pgn,
+                                  final PgnGame game,
+                                  final int forkThreshold) {
+
+        parseMoves(
+            pgn,
+            new PgnLexer(pgn),
+            new Board(),
+            game.getNodes(),
+            game,
+            pgn.length() > forkThreshold
+                ? findLargeVariations(pgn, forkThreshold)
+                : Map.of());
+    }
 
-        final Matcher moveMatcher = MOVE_PATTERN.matcher(pgn);
-        if (!moveMatcher.find()) {
-            return null;
+    /**
+     * Parse the tokens of a lexer, from the position of the board.
+     *
+     * @param pgn        The individual PGN game (movetext only).
+     * @param lexer      The lexer (possibly bounded to a variation).
+     * @param board      The board.
+     * @param nodes      The moves to feed with the first moves.
+     * @param game       The PgnGame to feed with the comments preceding the
+     *                   first move (null for a variation).
+     * @param forkedEnds The variations to fork: the indexes of their end by
+     *                   the indexes of their start.
+     */
+    private static void parseMoves(final CharSequence pgn,
+                                   final PgnLexer lexer,
+                                   final Board board,
+                                   final List<PgnNode> nodes,
+                                   final PgnGame game,
+                                   final Map<Integer, Integer> forkedEnds) {
+
+        final Deque<Variation> parents = new ArrayDeque<>();
+        final List<Fork> forks = new ArrayList<>();
+        Variation variation = new Variation(nodes);
+
+        PgnLexer.TokenType token;
+        while ((token = lexer.next()) != PgnLexer.TokenType.END) {
+            final PgnNode lastMove = variation.lastMove;
+            final boolean isRoot = parents.isEmpty() && game != null;
+            switch (token) {
+                case MOVE -> addMove(variation, board, lexer.getText());
+                case NAG -> {
+                    if (lastMove != null && lastMove.getNag() == null)
+                        lastMove.setNag(buildNag(lexer.getText()));
+                }
+                case COMMENT -> {
+                    if (lastMove != null)
+                        lastMove.setComment(appendComment(
+                            lastMove.getComment(),
+                            lexer.getText()));
+                    else if (isRoot)
+                        game.setComment(appendComment(
+                            game.getComment(),
+                            lexer.getText()));
+                }
+                case ANNOTATION -> {
+                    if (lastMove != null)
+                        lastMove.getAnnotations()
+                            .putAll(buildAnnotations(lexer.getText()));
+                    else if (isRoot)
+                        game.getAnnotations()
+                            .putAll(buildAnnotations(lexer.getText()));
+                }
+                case VARIATION_START -> {
+                    if (lastMove == null)
+                        throw new IllegalArgumentException(
+                            "variation without a preceding move");
+                    board.unmove();
+                    final Integer end = forkedEnds.get(
+                        lexer.getTokenStart());
+                    if (end != null) {
+                        forks.add(forkVariation(
+                            pgn,
+                            lexer,
+                            end,
+                            board,
+                            variation.lastMoveSiblings,
+                            forkedEnds));
+                        board.move(variation.lastUndo.move());
+                    } else {
+                        parents.push(variation);
+                        variation = new Variation(variation.lastMoveSiblings);
+                    }
+                }
+                case VARIATION_END -> {
+                    if (parents.isEmpty())
+                        throw new IllegalArgumentException(
+                            "unexpected variation end");
+                    for (int i = 0; i < variation.playedMoves; i++)
+                        board.unmove();
+                    variation = parents.pop();
+                    board.move(variation.lastUndo.move());
+                }
+                default -> throw new IllegalStateException(
+                    "unexpected token " + token);
+            }
         }
 
-        pgn = moveMatcher.replaceFirst(EMPTY).stripLeading();
-        pgn = splitVariations(pgn).pgn();
-
-        final Matcher nextMoveMatcher = MOVE_PATTERN.matcher(pgn);
-        final List<String> variations = new ArrayList<>();
-
-        if (nextMoveMatcher.find()) {
-            pgn = nextMoveMatcher.replaceFirst(EMPTY).stripLeading();
-            final PgnVariations pgnVariations = splitVariations(pgn);
-            pgn = pgnVariations.pgn().strip();
-            pgn = pgn.isEmpty()
-                ? nextMoveMatcher.group().strip()
-                : nextMoveMatcher.group().strip() + " " + pgn;
-            variations.add(pgn);
-            variations.addAll(pgnVariations.variations());
+        if (!parents.isEmpty())
+            throw new IllegalArgumentException("unterminated variation");
+
+        // the last forks first: the indexes of the previous placeholders of a
+        // list are not shifted by the replacement
+        for (int i = forks.size() - 1; i >= 0; i--) {
+            final Fork fork = forks.get(i);
+            final List<PgnNode> variationNodes = fork.task().join();
+            fork.nodes().remove(fork.index());
+            fork.nodes().addAll(fork.index(), variationNodes);
         }
+    }
 
-        final String san = moveMatcher.group("san");
-        board.move(san);
-        final String fen = board.getFen();
+    /**
+     * Fork the parsing of a variation, from a copy of the board, and skip its
+     * tokens. A placeholder is added to the moves the variation belongs to.
+     *
+     * @param pgn        The individual PGN game (movetext only).
+     * @param lexer      The lexer, positioned after the variation start.
+     * @param end        The index of the variation end.
+     * @param board      The board, at the variation start position.
+     * @param siblings   The moves the variation belongs to.
+     * @param forkedEnds The variations to fork.
+     * @return The Fork to join.
+     */
+    private static Fork forkVariation(final CharSequence pgn,
+                                      final PgnLexer lexer,
+                                      final int end,
+                                      final Board board,
+                                      final List<PgnNode> siblings,
+                                      final Map<Integer, Integer> forkedEnds) {
+
+        final VariationTask task = new VariationTask(
+            pgn,
+            lexer.getCursor(),
+            end,
+            new Board(board),
+            forkedEnds);
+        lexer.skipTo(end + 1);
+
+        siblings.add(null);
+        return new Fork(siblings, siblings.size() - 1, task.fork());
+    }
 
-        return PgnNode.builder()
+    /**
+     * Find the variations of at least a given size, in a single pass over the
+     * tokens of a game. The unterminated variations are ignored (the parsing
+     * fails on them).
+     *
+     * @param pgn       The individual PGN game (movetext only).
+     * @param threshold The minimum size (in characters) of a variation.
+     * @return The indexes of the variations end by the indexes of their start.
+     */
+    static Map<Integer, Integer> findLargeVariations(final CharSequence pgn,
+                                                      final int threshold) {
+
+        final Map<Integer, Integer> variations = new HashMap<>();
+        final Deque<Integer> starts = new ArrayDeque<>();
+        final PgnLexer lexer = new PgnLexer(pgn);
+
+        PgnLexer.TokenType token;
+        while ((token = lexer.next()) != PgnLexer.TokenType.END) {
+            if (token == PgnLexer.TokenType.VARIATION_START) {
+                starts.push(lexer.getTokenStart());
+            } else if (token == PgnLexer.TokenType.VARIATION_END
+                && !starts.isEmpty()) {
+                final int start = starts.pop();
+                if (lexer.getTokenStart() - start >= threshold)
+                    variations.put(start, lexer.getTokenStart());
+            }
+        }
+
+        return variations;
+    }
+
+    /**
+     * Play a move on the board and append the matching PgnNode to the
+     * variation.
+     *
+     * @param variation The current variation.
+     * @param board     The board of the game.
+     * @param san       The SAN of the move.
+     */
+    private static void addMove(final Variation variation,
+                                final Board board,
+                                final String san) {
+
+        final Color color = board.getTurn();
+        final Board.Undo undo = board.move(san);
+
+        final PgnNode node = PgnNode.builder()
             .san(san)
-            .nag(PgnNag.fromGlyph(moveMatcher.group("nag"))
-                .orElse(null))
-            .comment(Optional.ofNullable(moveMatcher.group("comment"))
-                .map(com -> com.replaceAll(COMMENT_START_END_REGEX, EMPTY))
-                .map(String::strip)
-                .orElse(null))
-            .annotations(buildAnnotations(moveMatcher.group("annotations")))
-            .variations(variations.stream()
-                .map(pgnVariation -> PgnParser.parseGame(pgnVariation, new Board(fen)))
-                .filter(Objects::nonNull)
-                .toList())
-            .fen(fen)
+            .annotations(new HashMap<>())
+            .variations(new ArrayList<>())
+            .color(color)
             .uci(board.getUci())
+            .zobristKey(board.getZobristKey())
             .build();
+
+        variation.nextMoves.add(node);
+        variation.lastMoveSiblings = variation.nextMoves;
+        variation.nextMoves = node.getVariations();
+        variation.lastMove = node;
+        variation.lastUndo = undo;
+        variation.playedMoves++;
+    }
+
+    /**
+     * Build a PgnNag from a NAG token, either a glyph (e.g. "!?") or a numeric
+     * NAG (e.g. "$5").
+     *
+     * @param nag The NAG token.
+     * @return The PgnNag or null if it is not supported.
+     */
+    static PgnNag buildNag(final String nag) {
+
+        if (!nag.startsWith(NUMERIC_NAG_START))
+            return PgnNag.fromGlyph(nag).orElse(null);
+
+        try {
+            return PgnNag.fromCode(Integer.parseInt(nag.substring(1)))
+                .orElse(null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Append a comment to an existing one (a move can be followed by several
+     * comments).
+     *
+     * @param comment  The existing comment (possibly null).
+     * @param addition The comment to append.
+     * @return The resulting comment.
+     */
+    private static String appendComment(final String comment,
+                                        final String addition) {
+
+        return comment == null
+            ? addition
+            : comment + " " + addition;
     }
 
     /**
@@ -268,64 +670,4 @@ public abstract class PgnParser {
             ));
     }
 
-    /**
-     * Put aside next coming variations in a PGN String.
-     *
-     * @param pgn The partial PGN which needs to be rid of its coming
-     *            variations.
-     * @return The PGN without the next coming variations and the list of
-     * these variations (encapsulated in a PgnVariations record).
-     */
-    static PgnVariations splitVariations(final String pgn) {
-
-        String remainingPgn = Optional.ofNullable(pgn).orElse(EMPTY);
-        final List<String> variations = new ArrayList<>();
-
-        while (remainingPgn.startsWith(String.valueOf(VARIATION_START))) {
-            final String variation = getNextVariation(remainingPgn);
-            variations.add(variation);
-            remainingPgn = remainingPgn
-                .substring(variation.length() + 2)
-                .stripLeading();
-        }
-
-        return new PgnVariations(remainingPgn, variations);
-    }
-
-    /**
-     * Extract the next full variation (including sub-variations).
-     *
-     * @param input The partial PGN.
-     * @return The next full variation.
-     */
-    static String getNextVariation(final String input) {
-
-        int parentheses = 0;
-        int index = 0;
-        boolean isNotInAComment = true;
-
-        for (char c : input.toCharArray()) {
-            if (isNotInAComment) {
-                if (c == VARIATION_START) {
-                    parentheses++;
-                } else if (c == VARIATION_END) {
-                    parentheses--;
-                }
-            }
-            if (c == COMMENT_START) {
-                isNotInAComment = false;
-            } else if (c == COMMENT_END) {
-                isNotInAComment = true;
-            }
-
-            if (parentheses == 0) {
-                break;
-            }
-
-            index++;
-        }
-
-        return input.substring(1, index);
-    }
-
 }
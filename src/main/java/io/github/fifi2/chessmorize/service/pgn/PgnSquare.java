@@ -16,6 +16,13 @@ import java.util.Optional;
 @EqualsAndHashCode
 class PgnSquare {
 
+    private static final PgnSquare[] SQUARES = new PgnSquare[64];
+
+    static {
+        for (int index = 0; index < SQUARES.length; index++)
+            SQUARES[index] = new PgnSquare(index & 7, 7 - (index >>> 3));
+    }
+
     private int fileIdx;
     private int rankIdx;
 
@@ -29,6 +36,27 @@ class PgnSquare {
         this.rankIdx = Math.abs(Integer.parseInt(name.substring(1, 2)) - 8);
     }
 
+    /**
+     * Get the (shared) PgnSquare of a square index.
+     *
+     * @param index The square index, from 0 (a1) to 63 (h8).
+     * @return The PgnSquare.
+     */
+    static PgnSquare of(final int index) {
+
+        return SQUARES[index];
+    }
+
+    /**
+     * Get the square index, from 0 (a1) to 63 (h8).
+     *
+     * @return the square index.
+     */
+    int getIndex() {
+
+        return (7 - this.rankIdx) * 8 + this.fileIdx;
+    }
+
     /**
      * Convert file and rank indices to algebraic notation.
      * E.g. "a1", "b2", etc.
@@ -0,0 +1,94 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.SplittableRandom;
+
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.NO_SQUARE;
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.SQUARES;
+
+/**
+ * Zobrist hashing
+ * - a position key is the XOR of random keys, one per piece on its square,
+ * one per castling right, one per en passant file and one for black to move
+ * - the keys come from a fixed seed, so that a position key is stable from
+ * one run to another
+ */
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class Zobrist {
+
+    private static final long SEED = 0x5EED_C4E5_5000_0001L;
+
+    private static final long[][] PIECE_SQUARE_KEYS = new long[12][SQUARES];
+    private static final long[] CASTLING_KEYS = new long[4];
+    private static final long[] CASTLING_RIGHTS_KEYS = new long[16];
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        final SplittableRandom random = new SplittableRandom(SEED);
+        for (long[] keys : PIECE_SQUARE_KEYS)
+            for (int square = 0; square < SQUARES; square++)
+                keys[square] = random.nextLong();
+        for (int i = 0; i < CASTLING_KEYS.length; i++)
+            CASTLING_KEYS[i] = random.nextLong();
+        for (int i = 0; i < EN_PASSANT_KEYS.length; i++)
+            EN_PASSANT_KEYS[i] = random.nextLong();
+        BLACK_TO_MOVE_KEY = random.nextLong();
+        for (int rights = 0; rights < CASTLING_RIGHTS_KEYS.length; rights++)
+            for (int i = 0; i < CASTLING_KEYS.length; i++)
+                if ((rights & (1 << i)) != 0)
+                    CASTLING_RIGHTS_KEYS[rights] ^= CASTLING_KEYS[i];
+    }
+
+    /**
+     * Get the key of a piece on a square.
+     *
+     * @param pieceIndex The piece index (by color and piece type).
+     * @param square     The square index.
+     * @return The key.
+     */
+    static long piece(final int pieceIndex, final int square) {
+
+        return PIECE_SQUARE_KEYS[pieceIndex][square];
+    }
+
+    /**
+     * Get the key of the castling rights.
+     *
+     * @param castlingRights The castling rights, one bit per right in the KQkq
+     *                       order (0 if no castling is available).
+     * @return The key.
+     */
+    static long castling(final int castlingRights) {
+
+        return CASTLING_RIGHTS_KEYS[castlingRights];
+    }
+
+    /**
+     * Get the key of an en passant target square (only its file matters).
+     *
+     * @param square The en passant target square index (or NO_SQUARE).
+     * @return The key.
+     */
+    static long enPassant(final int square) {
+
+        return square == NO_SQUARE
+            ? 0L
+            : EN_PASSANT_KEYS[Bitboards.file(square)];
+    }
+
+    /**
+     * Get the key of the side to move.
+     *
+     * @param turn The side to move.
+     * @return The key.
+     */
+    static long turn(final Color turn) {
+
+        return turn == Color.BLACK ? BLACK_TO_MOVE_KEY : 0L;
+    }
+
+}
@@ -1,7 +1,79 @@
 CREATE TABLE IF NOT EXISTS book (
     id UUID NOT NULL,
+    study_id VARCHAR(255),
     name VARCHAR(255),
     color CHAR(5),
-    state TEXT,
     PRIMARY KEY (id)
 );
+
+-- books created before the normalized tables
+ALTER TABLE book ADD COLUMN IF NOT EXISTS study_id VARCHAR(255);
+
+-- state is the whole JSON book of the books created before the normalized
+-- tables, they are migrated at startup (a book is rewritten without state)
+ALTER TABLE book ADD COLUMN IF NOT EXISTS state TEXT;
+
+-- the ids of the chapters, moves and lines are unique in their book
+CREATE TABLE IF NOT EXISTS chapter (
+    id UUID NOT NULL,
+    book_id UUID NOT NULL,
+    position INT NOT NULL,
+    title VARCHAR(255),
+    enabled BOOLEAN NOT NULL,
+    PRIMARY KEY (book_id, id),
+    FOREIGN KEY (book_id) REFERENCES book (id) ON DELETE CASCADE
+);
+
+-- parent_id is null for the first moves of a chapter, next_moves_id is the
+-- move whose next moves are shared (merged transpositions)
+CREATE TABLE IF NOT EXISTS move (
+    id UUID NOT NULL,
+    book_id UUID NOT NULL,
+    chapter_id UUID NOT NULL,
+    parent_id UUID,
+    position INT NOT NULL,
+    next_moves_id UUID,
+    san VARCHAR(16),
+    uci VARCHAR(8),
+    nag VARCHAR(32),
+    comment TEXT,
+    color CHAR(5),
+    PRIMARY KEY (book_id, id),
+    FOREIGN KEY (book_id, chapter_id) REFERENCES chapter (book_id, id)
+        ON DELETE CASCADE
+);
+
+-- encoded_moves is the ids of the moves of the line, in moves_format
+CREATE TABLE IF NOT EXISTS line (
+    id UUID NOT NULL,
+    book_id UUID NOT NULL,
+    chapter_id UUID,
+    moves_format VARCHAR(16) NOT NULL,
+    encoded_moves VARBINARY NOT NULL,
+    PRIMARY KEY (book_id, id),
+    FOREIGN KEY (book_id) REFERENCES book (id) ON DELETE CASCADE
+);
+
+-- the training state, updated during the training sessions (the imported
+-- content above never changes)
+-- version is incremented on each update of the training state of a book
+-- (optimistic locking)
+CREATE TABLE IF NOT EXISTS book_progress (
+    book_id UUID NOT NULL,
+    calendar_slot INT NOT NULL DEFAULT 0,
+    version BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (book_id),
+    FOREIGN KEY (book_id) REFERENCES book (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS line_progress (
+    book_id UUID NOT NULL,
+    line_id UUID NOT NULL,
+    position INT NOT NULL,
+    box_id INT NOT NULL DEFAULT 0,
+    last_training TIMESTAMP(9) WITH TIME ZONE,
+    last_calendar_slot INT,
+    PRIMARY KEY (book_id, line_id),
+    FOREIGN KEY (book_id, line_id) REFERENCES line (book_id, id)
+        ON DELETE CASCADE
+);
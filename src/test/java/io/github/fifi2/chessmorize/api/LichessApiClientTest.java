@@ -1,40 +1,97 @@
 package io.github.fifi2.chessmorize.api;
 
 import io.github.fifi2.chessmorize.AbstractSpringBootTest;
+import io.github.fifi2.chessmorize.config.properties.LichessProperties;
+import io.github.fifi2.chessmorize.error.exception.lichess.LichessEmptyResponseException;
 import io.github.fifi2.chessmorize.error.exception.lichess.LichessException;
 import io.github.fifi2.chessmorize.helper.LichessMock;
 import io.github.fifi2.chessmorize.helper.LichessMockExtension;
+import io.github.fifi2.chessmorize.metrics.Metrics;
+import io.github.fifi2.chessmorize.service.pgn.PgnParser;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.util.ResourceLeakDetector;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 import reactor.test.StepVerifier;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
 class LichessApiClientTest extends AbstractSpringBootTest {
 
     private static final String STUDY_ID = "whatever";
+    private static final String GAME = """
+        [Event "Study: Chapter"]
+        [StudyName "Study"]
+        [ChapterName "Chapter"]
+        
+        1. e4 c6 2. d4 d5 3. e5 Bf5 *
+        
+        """;
+
+    private static ResourceLeakDetector.Level leakDetectionLevel;
 
     @Autowired
     private LichessApiClient lichessApiClient;
 
-    @DisplayName("Get a study from Lichess")
+    @Autowired
+    private LichessProperties lichessProperties;
+
+    @Autowired
+    private RetryRegistry retryRegistry;
+
+    @Autowired
+    private Metrics metrics;
+
+    @BeforeAll
+    static void beforeAll() {
+
+        leakDetectionLevel = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+    }
+
+    @AfterAll
+    static void afterAll() {
+
+        ResourceLeakDetector.setLevel(leakDetectionLevel);
+    }
+
+    @DisplayName("Stream a study from Lichess")
     @Test
     @ExtendWith(LichessMockExtension.class)
-    void getStudyPGN_withOkResponse(final LichessMock lichessMock) {
+    void getStudyPGNStream_withOkResponse(final LichessMock lichessMock) {
 
         final String pgn = "fake pgn for test";
         lichessMock.mockResponse(pgn);
 
         StepVerifier
-            .create(this.lichessApiClient.getStudyPGN(STUDY_ID))
-            .expectNextMatches(pgn::equals)
+            .create(DataBufferUtils
+                .join(this.lichessApiClient.getStudyPGNStream(STUDY_ID))
+                .map(buffer -> {
+                    final String body = buffer.toString(StandardCharsets.UTF_8);
+                    DataBufferUtils.release(buffer);
+                    return body;
+                }))
+            .expectNext(pgn)
             .verifyComplete();
     }
 
-    @DisplayName("Throw expected error in case of exception:")
+    @DisplayName("Throw expected error in case of exception when streaming:")
     @ParameterizedTest(name = "{index}: when exception is {0}")
     @CsvSource(delimiter = '|', textBlock = """
         BAD_REQUEST         | Lichess4xxException
@@ -43,18 +100,131 @@ class LichessApiClientTest extends AbstractSpringBootTest {
         SERVICE_UNAVAILABLE | Lichess5xxException
         """)
     @ExtendWith(LichessMockExtension.class)
-    void getStudyPGN_withException(final HttpStatus status,
-                                   final String exceptionName,
-                                   final LichessMock lichessMock) {
+    void getStudyPGNStream_withException(final HttpStatus status,
+                                         final String exceptionName,
+                                         final LichessMock lichessMock) {
 
         lichessMock.mockError(status);
 
         StepVerifier
-            .create(this.lichessApiClient.getStudyPGN(STUDY_ID))
+            .create(this.lichessApiClient.getStudyPGNStream(STUDY_ID))
             .expectErrorMatches(error -> error instanceof LichessException e
                 && status.equals(e.getStatus())
                 && exceptionName.equals(error.getClass().getSimpleName()))
             .verify();
     }
 
+    @DisplayName("Release the buffers when the connection is closed while streaming")
+    @Test
+    @ExtendWith(LichessMockExtension.class)
+    void getStudyPGNStream_withInterruptedResponse(
+        final LichessMock lichessMock) {
+
+        final UnpooledByteBufAllocator allocator =
+            new UnpooledByteBufAllocator(true);
+        lichessMock.mockInterruptedResponse(GAME.repeat(200), 256);
+
+        StepVerifier
+            .create(PgnParser.splitGames(this
+                .buildLichessApiClient(allocator)
+                .getStudyPGNStream(STUDY_ID)))
+            .thenConsumeWhile(game -> true)
+            .verifyError();
+
+        this.assertReleased(allocator);
+    }
+
+    @DisplayName("Release the buffers when the stream is cancelled")
+    @Test
+    @ExtendWith(LichessMockExtension.class)
+    void getStudyPGNStream_withCancel(final LichessMock lichessMock) {
+
+        final UnpooledByteBufAllocator allocator =
+            new UnpooledByteBufAllocator(true);
+        lichessMock.mockChunkedResponse(GAME.repeat(200), 256);
+
+        StepVerifier
+            .create(
+                PgnParser.splitGames(this
+                    .buildLichessApiClient(allocator)
+                    .getStudyPGNStream(STUDY_ID)),
+                1)
+            .expectNextCount(1)
+            .thenCancel()
+            .verify();
+
+        this.assertReleased(allocator);
+    }
+
+    @DisplayName("Release the body when the stream is cancelled before any demand")
+    @Test
+    @ExtendWith(LichessMockExtension.class)
+    void getStudyPGNStream_withCancelBeforeDemand(
+        final LichessMock lichessMock) {
+
+        final UnpooledByteBufAllocator allocator =
+            new UnpooledByteBufAllocator(true);
+        lichessMock.mockChunkedResponse(GAME.repeat(200), 256);
+
+        StepVerifier
+            .create(
+                this.buildLichessApiClient(allocator)
+                    .getStudyPGNStream(STUDY_ID),
+                0)
+            .thenAwait(Duration.ofMillis(500))
+            .thenCancel()
+            .verify();
+
+        this.assertReleased(allocator);
+    }
+
+    @DisplayName("Throw an error when the streamed study is empty")
+    @Test
+    @ExtendWith(LichessMockExtension.class)
+    void getStudyPGNStream_withEmptyResponse(final LichessMock lichessMock) {
+
+        lichessMock.mockResponse("");
+
+        StepVerifier
+            .create(this.lichessApiClient.getStudyPGNStream(STUDY_ID))
+            .expectError(LichessEmptyResponseException.class)
+            .verify();
+    }
+
+    /**
+     * Build a LichessApiClient reading the responses in the buffers of the
+     * given allocator, on a new connection for each call.
+     *
+     * @param allocator is the allocator of the received buffers.
+     * @return a LichessApiClient.
+     */
+    private LichessApiClient buildLichessApiClient(
+        final UnpooledByteBufAllocator allocator) {
+
+        return new LichessApiClient(
+            WebClient.builder()
+                .baseUrl(this.lichessProperties.getUrl())
+                .clientConnector(new ReactorClientHttpConnector(HttpClient
+                    .create(ConnectionProvider.newConnection())
+                    .option(ChannelOption.ALLOCATOR, allocator)))
+                .build(),
+            this.retryRegistry,
+            this.metrics);
+    }
+
+    /**
+     * Assert that all the buffers of an allocator are eventually released
+     * (once the connection is closed).
+     *
+     * @param allocator is the allocator.
+     */
+    private void assertReleased(final UnpooledByteBufAllocator allocator) {
+
+        Awaitility
+            .await()
+            .atMost(Duration.ofSeconds(5))
+            .until(() -> allocator.metric().usedDirectMemory() == 0
+                && allocator.metric().usedHeapMemory() == 0);
+    }
+
 }
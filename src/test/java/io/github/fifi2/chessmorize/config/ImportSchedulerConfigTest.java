@@ -0,0 +1,77 @@
+package io.github.fifi2.chessmorize.config;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImportSchedulerConfigTest {
+
+    @Test
+    void newImportScheduler() throws InterruptedException {
+
+        final Scheduler scheduler = ImportSchedulerConfig
+            .newImportScheduler(1, 1);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch drained = new CountDownLatch(1);
+
+        try {
+            // the only thread is busy, the next task waits in the queue
+            scheduler.schedule(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+            scheduler.schedule(drained::countDown);
+
+            // the queue is full
+            assertThatThrownBy(() -> scheduler.schedule(() -> {
+            })).isInstanceOf(RejectedExecutionException.class);
+            StepVerifier
+                .create(Mono.just(1).publishOn(scheduler))
+                .expectError(RejectedExecutionException.class)
+                .verify();
+
+            // the queue is empty once the waiting task runs
+            release.countDown();
+            assertThat(drained.await(5, TimeUnit.SECONDS)).isTrue();
+            StepVerifier
+                .create(Mono.fromCallable(() -> Thread.currentThread().getName())
+                    .subscribeOn(scheduler))
+                .expectNextMatches(name -> name.startsWith("import-"))
+                .verifyComplete();
+        } finally {
+            release.countDown();
+            scheduler.dispose();
+        }
+    }
+
+    @Test
+    void newParserPool() {
+
+        final ForkJoinPool pool = ImportSchedulerConfig.newParserPool(3);
+
+        try {
+            assertThat(pool.getParallelism()).isEqualTo(3);
+            assertThat(pool.submit(() -> Thread.currentThread().getName())
+                .join())
+                .startsWith("parser-");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
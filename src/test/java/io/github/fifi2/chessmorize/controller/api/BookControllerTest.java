@@ -10,6 +10,7 @@ import io.github.fifi2.chessmorize.error.exception.lichess.LichessNotFoundExcept
 import io.github.fifi2.chessmorize.error.exception.lichess.LichessTimeoutException;
 import io.github.fifi2.chessmorize.error.exception.pgn.PgnException;
 import io.github.fifi2.chessmorize.model.Book;
+import io.github.fifi2.chessmorize.model.BookView;
 import io.github.fifi2.chessmorize.model.Color;
 import io.github.fifi2.chessmorize.service.BookService;
 import org.junit.jupiter.api.DisplayName;
@@ -141,7 +142,7 @@ class BookControllerTest extends AbstractSpringBootTest {
         final UUID bookId = UUID.randomUUID();
 
         Mockito
-            .when(this.bookService.getOneBook(bookId))
+            .when(this.bookService.getOneBook(bookId, BookView.FULL))
             .thenReturn(existingBook
                 ? Mono.just(Book.builder().id(bookId).build())
                 : Mono.error(new BookNotFoundException(bookId)));
@@ -153,6 +154,35 @@ class BookControllerTest extends AbstractSpringBootTest {
             .expectStatus().isEqualTo(expectedStatus);
     }
 
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', textBlock = """
+        summary  | OK          | SUMMARY
+        CHAPTERS | OK          | CHAPTERS
+        lines    | OK          | LINES
+        Full     | OK          | FULL
+        unknown  | BAD_REQUEST |
+        """)
+    void getBook_withView(final String view,
+                          final HttpStatus expectedStatus,
+                          final BookView expectedView) {
+
+        final UUID bookId = UUID.randomUUID();
+
+        if (expectedView != null)
+            Mockito
+                .when(this.bookService.getOneBook(bookId, expectedView))
+                .thenReturn(Mono.just(Book.builder().id(bookId).build()));
+
+        this.webTestClient
+            .get()
+            .uri(uriBuilder -> uriBuilder
+                .path(Api.BOOK)
+                .queryParam("view", view)
+                .build(bookId))
+            .exchange()
+            .expectStatus().isEqualTo(expectedStatus);
+    }
+
     static Stream<Arguments> getBook_withException() {
 
         return Stream.of(
@@ -172,7 +202,7 @@ class BookControllerTest extends AbstractSpringBootTest {
         final UUID bookId = UUID.randomUUID();
 
         Mockito
-            .when(this.bookService.getOneBook(bookId))
+            .when(this.bookService.getOneBook(bookId, BookView.FULL))
             .thenReturn(Mono.error(mockedException));
 
         this.webTestClient
@@ -6,7 +6,6 @@ import io.github.fifi2.chessmorize.error.exception.BookNotFoundException;
 import io.github.fifi2.chessmorize.error.exception.LineNotFoundException;
 import io.github.fifi2.chessmorize.error.exception.NoTrainingLineException;
 import io.github.fifi2.chessmorize.AbstractSpringBootTest;
-import io.github.fifi2.chessmorize.model.Book;
 import io.github.fifi2.chessmorize.model.Line;
 import io.github.fifi2.chessmorize.service.TrainingService;
 import org.junit.jupiter.api.Test;
@@ -184,7 +183,7 @@ class TrainingControllerTest extends AbstractSpringBootTest {
         Mockito
             .when(this.trainingService.nextCalendarSlot(Mockito.any()))
             .thenReturn(isBookFound
-                ? Mono.just(Book.builder().id(bookId).build())
+                ? Mono.just(1)
                 : Mono.error(new BookNotFoundException(bookId)));
 
         final WebTestClient.ResponseSpec postExchange = this.webTestClient
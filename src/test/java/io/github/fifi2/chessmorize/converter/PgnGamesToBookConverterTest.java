@@ -1,9 +1,11 @@
 package io.github.fifi2.chessmorize.converter;
 
+import io.github.fifi2.chessmorize.config.properties.ImportProperties;
 import io.github.fifi2.chessmorize.model.*;
 import io.github.fifi2.chessmorize.service.pgn.PgnGame;
 import io.github.fifi2.chessmorize.service.pgn.PgnNag;
 import io.github.fifi2.chessmorize.service.pgn.PgnNode;
+import io.github.fifi2.chessmorize.service.pgn.PgnParser;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -17,8 +19,16 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 class PgnGamesToBookConverterTest {
 
+    private static final String TRANSPOSITION_PGN = """
+        [Event "Study: chapter 1"]
+
+        1. d4 (1. c4 Nf6 2. d4 e6 3. g3) 1... Nf6 2. c4 e6 3. Nc3 *
+        """;
+
+    private final ImportProperties importProperties = new ImportProperties();
+
     private final PgnGamesToBookConverter converter =
-        new PgnGamesToBookConverter();
+        new PgnGamesToBookConverter(this.importProperties);
 
     @Test
     void convert() {
@@ -51,6 +61,84 @@ class PgnGamesToBookConverterTest {
         assertThat(secondChapter.getNextMoves()).hasSize(1);
     }
 
+    @Test
+    void buildNextMoves_withTranspositions() {
+
+        final List<Move> moves = this.converter.buildNextMoves(
+            PgnParser.parse(TRANSPOSITION_PGN).getFirst().getNodes());
+
+        final List<Move> d4Moves =
+            getMovesAfter(moves, "d4", "Nf6", "c4", "e6");
+        final List<Move> c4Moves =
+            getMovesAfter(moves, "c4", "Nf6", "d4", "e6");
+        assertThat(d4Moves).isNotSameAs(c4Moves);
+        assertThat(d4Moves).extracting(Move::getSan).containsExactly("Nc3");
+        assertThat(c4Moves).extracting(Move::getSan).containsExactly("g3");
+    }
+
+    @Test
+    void buildNextMoves_withMergedTranspositions() {
+
+        this.importProperties.setMergeTranspositions(true);
+
+        final List<Move> moves = this.converter.buildNextMoves(
+            PgnParser.parse(TRANSPOSITION_PGN).getFirst().getNodes());
+
+        final List<Move> d4Moves =
+            getMovesAfter(moves, "d4", "Nf6", "c4", "e6");
+        final List<Move> c4Moves =
+            getMovesAfter(moves, "c4", "Nf6", "d4", "e6");
+        assertThat(d4Moves).isSameAs(c4Moves);
+        assertThat(d4Moves)
+            .extracting(Move::getSan)
+            .containsExactly("Nc3", "g3");
+
+        // the transposing move references the move owning the next moves
+        final Move d4c4 = getMovesAfter(moves, "d4", "Nf6").getFirst();
+        final Move c4d4 = getMovesAfter(moves, "c4", "Nf6").getFirst();
+        assertThat(d4c4.getNextMovesId()).isNull();
+        assertThat(c4d4.getNextMovesId()).isEqualTo(d4c4.getId());
+    }
+
+    @Test
+    void buildNextMoves_withMergedRepetition() {
+
+        this.importProperties.setMergeTranspositions(true);
+
+        // the position after 2... Ng8 is the one after 1... e5 with another
+        // move number: it must not lead back to itself
+        final List<Move> moves = this.converter.buildNextMoves(PgnParser
+            .parse("""
+                [Event "Study: chapter 1"]
+
+                1. e4 e5 2. Nf3 Nf6 3. Ng1 Ng8 4. Nf3 *
+                """)
+            .getFirst()
+            .getNodes());
+
+        final List<Move> movesAfterRepetition =
+            getMovesAfter(moves, "e4", "e5", "Nf3", "Nf6", "Ng1", "Ng8");
+        assertThat(movesAfterRepetition)
+            .extracting(Move::getSan)
+            .containsExactly("Nf3");
+        assertThat(movesAfterRepetition.getFirst().getNextMoves()).isEmpty();
+        assertThat(movesAfterRepetition.getFirst().getNextMovesId()).isNull();
+    }
+
+    private static List<Move> getMovesAfter(final List<Move> moves,
+                                            final String... sans) {
+
+        List<Move> nextMoves = moves;
+        for (String san : sans)
+            nextMoves = nextMoves
+                .stream()
+                .filter(m -> san.equals(m.getSan()))
+                .findAny()
+                .orElseThrow()
+                .getNextMoves();
+        return nextMoves;
+    }
+
     private static List<PgnGame> getSamplePngGames() {
 
         return List.of(
@@ -82,7 +170,7 @@ class PgnGamesToBookConverterTest {
             .variations(List.of(
                 PgnNode.builder().san("Nc6").build(),
                 PgnNode.builder().san("c5").build()))
-            .fen("rnbqkbnr/ppp2ppp/8/4P3/2Pp4/5N2/PP2PPPP/RNBQKB1R b KQkq - 1 4")
+            .color(io.github.fifi2.chessmorize.service.pgn.Color.WHITE)
             .uci("g1f3")
             .build());
 
@@ -113,16 +201,18 @@ class PgnGamesToBookConverterTest {
         assertThat(this.converter.buildNag(pgnNag)).isEqualTo(nag);
     }
 
-    @DisplayName("Build Color from FEN:")
-    @ParameterizedTest(name = "{index}: when FEN is {0} then Color is {1}")
+    @DisplayName("Convert the PgnNode Color to Color:")
+    @ParameterizedTest(name = "{index}: when the PgnNode Color is {0}")
     @CsvSource(delimiter = '|', textBlock = """
-        rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1   | WHITE
-        rnbqkbnr/pp1ppppp/2p5/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2 | BLACK
+        WHITE | WHITE
+        BLACK | BLACK
+              |
         """)
-    void buildColorFromFen(final String fen,
-                           final Color expectedColor) {
+    void buildColor(
+        final io.github.fifi2.chessmorize.service.pgn.Color pgnColor,
+        final Color expectedColor) {
 
-        assertThat(this.converter.buildColorFromFen(fen))
+        assertThat(this.converter.buildColor(pgnColor))
             .isEqualTo(expectedColor);
     }
 
@@ -13,6 +13,7 @@ public abstract class Constants {
         public static final String NEXT_CALENDAR_SLOT =
             TRAINING + "/next-calendar-slot";
         public static final String TOGGLE_CHAPTER = BOOKS + "/toggle-chapter";
+        public static final String PROMETHEUS = "/actuator/prometheus";
 
     }
 
@@ -30,7 +31,7 @@ public abstract class Constants {
         public static final String COLOR = ROOT + ".color";
         public static final String CHAPTERS = ROOT + ".chapters";
         public static final String CHAPTERS_SIZE = CHAPTERS + SIZE;
-        private static final String LINES = ROOT + ".lines";
+        public static final String LINES = ROOT + ".lines";
         public static final String LINES_SIZE = LINES + SIZE;
         public static final String CALENDAR_SLOT = ROOT + ".calendarSlot";
 
@@ -39,7 +40,7 @@ public abstract class Constants {
         public static final String CHAPTER_ID = CHAPTER + ".id";
         public static final String CHAPTER_TITLE = CHAPTER + ".title";
         public static final String CHAPTER_ENABLED = CHAPTER + ".enabled";
-        private static final String CHAPTER_MOVES = CHAPTER + ".nextMoves";
+        public static final String CHAPTER_MOVES = CHAPTER + ".nextMoves";
         public static final String CHAPTER_MOVES_SIZE = CHAPTER_MOVES + SIZE;
 
         // line fields
@@ -60,7 +61,7 @@ public abstract class Constants {
         private static final String LINE = LINES + IDX;
         public static final String LINE_ID = LINE + _LINE_ID;
         public static final String LINE_CHAPTER_ID = LINE + _LINE_CHAPTER_ID;
-        private static final String LINE_MOVES = LINE + _LINE_MOVES;
+        public static final String LINE_MOVES = LINE + _LINE_MOVES;
         public static final String LINE_MOVES_SIZE = LINE_MOVES + SIZE;
         private static final String LINE_MOVE = LINE_MOVES + IDX;
         public static final String LINE_MOVE_ID = LINE_MOVE + _LINE_MOVE_ID;
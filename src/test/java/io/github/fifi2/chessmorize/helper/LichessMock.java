@@ -2,6 +2,7 @@ package io.github.fifi2.chessmorize.helper;
 
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.SocketPolicy;
 import org.springframework.http.HttpStatus;
 
 import java.io.IOException;
@@ -35,6 +36,38 @@ public class LichessMock {
         mockResponse(HttpStatus.OK, response);
     }
 
+    /**
+     * Mock a response sent in chunks, as a study streamed by Lichess.
+     *
+     * @param response  is the response body (e.g. a generated study).
+     * @param chunkSize is the maximum size of a chunk (in bytes).
+     */
+    public void mockChunkedResponse(final String response,
+                                    final int chunkSize) {
+
+        this.lichessMock.enqueue(new MockResponse()
+            .addHeader(CONTENT_TYPE, X_CHESS_PGN)
+            .setResponseCode(HttpStatus.OK.value())
+            .setChunkedBody(response, chunkSize));
+    }
+
+    /**
+     * Mock a response sent in chunks, the connection being closed in the
+     * middle of the body.
+     *
+     * @param response  is the response body (e.g. a generated study).
+     * @param chunkSize is the maximum size of a chunk (in bytes).
+     */
+    public void mockInterruptedResponse(final String response,
+                                        final int chunkSize) {
+
+        this.lichessMock.enqueue(new MockResponse()
+            .addHeader(CONTENT_TYPE, X_CHESS_PGN)
+            .setResponseCode(HttpStatus.OK.value())
+            .setChunkedBody(response, chunkSize)
+            .setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY));
+    }
+
     public void mockError(final HttpStatus status) {
 
         mockResponse(status, "error");
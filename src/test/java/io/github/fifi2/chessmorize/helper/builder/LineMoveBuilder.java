@@ -1,6 +1,7 @@
 package io.github.fifi2.chessmorize.helper.builder;
 
 import io.github.fifi2.chessmorize.model.LineMove;
+import io.github.fifi2.chessmorize.model.Nag;
 import lombok.RequiredArgsConstructor;
 
 import java.util.UUID;
@@ -15,6 +16,16 @@ public class LineMoveBuilder {
         return this;
     }
 
+    public LineMoveBuilder san(final String san) {
+        this.move.setSan(san);
+        return this;
+    }
+
+    public LineMoveBuilder nag(final Nag nag) {
+        this.move.setNag(nag);
+        return this;
+    }
+
     public LineMoveBuilder uci(final String uci) {
         this.move.setUci(uci);
         return this;
@@ -328,6 +328,71 @@ class BookApiTest extends AbstractSpringBootTest {
             .jsonPath(Json.CALENDAR_SLOT).isEqualTo(0);
     }
 
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', textBlock = """
+        summary  | false | false | false
+        chapters | true  | false | false
+        lines    | false | false | true
+        full     | true  | true  | true
+        """)
+    void getBook_withView(final String view,
+                          final boolean withChapters,
+                          final boolean withChapterMoves,
+                          final boolean withLines) {
+
+        final UUID bookId = UUID.randomUUID();
+        final UUID chapterId = UUID.randomUUID();
+        final UUID moveId = UUID.randomUUID();
+
+        this.saveBook(BookBuilder.builder()
+            .id(bookId)
+            .name("White")
+            .color(Color.WHITE)
+            .withChapter(chapter -> chapter
+                .id(chapterId)
+                .title("Queen's gambit")
+                .withNextMove(d4 -> d4.id(moveId).san("d4").uci("d2d4")))
+            .withLine(line -> line
+                .chapterId(chapterId)
+                .withMove(d4 -> d4.moveId(moveId).san("d4").uci("d2d4")))
+            .calendarSlot(3)
+            .build());
+
+        final WebTestClient.BodyContentSpec body = this.webTestClient
+            .get()
+            .uri(uriBuilder -> uriBuilder
+                .path(Api.BOOK)
+                .queryParam("view", view)
+                .build(bookId))
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody()
+            .jsonPath(Json.ID).isEqualTo(bookId.toString())
+            .jsonPath(Json.NAME).isEqualTo("White")
+            .jsonPath(Json.CALENDAR_SLOT).isEqualTo(3);
+
+        if (withChapters)
+            body
+                .jsonPath(Json.CHAPTER_ID, 0).isEqualTo(chapterId.toString())
+                .jsonPath(Json.CHAPTER_TITLE, 0).isEqualTo("Queen's gambit")
+                .jsonPath(Json.CHAPTER_ENABLED, 0).isEqualTo(true);
+        else
+            body.jsonPath(Json.CHAPTERS).doesNotExist();
+
+        if (withChapterMoves)
+            body.jsonPath(Json.CHAPTER_MOVES_SIZE, 0).isEqualTo(1);
+        else if (withChapters)
+            body.jsonPath(Json.CHAPTER_MOVES, 0).doesNotExist();
+
+        if (withLines)
+            body
+                .jsonPath(Json.LINE_CHAPTER_ID, 0).isEqualTo(chapterId.toString())
+                .jsonPath(Json.LINE_MOVE_ID, 0, 0).isEqualTo(moveId.toString())
+                .jsonPath(Json.LINE_MOVE_SAN, 0, 0).isEqualTo("d4");
+        else
+            body.jsonPath(Json.LINES).doesNotExist();
+    }
+
     @Test
     void getAllBooks_withNoBook() {
 
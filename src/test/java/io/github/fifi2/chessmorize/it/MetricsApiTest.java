@@ -0,0 +1,68 @@
+package io.github.fifi2.chessmorize.it;
+
+import io.github.fifi2.chessmorize.AbstractSpringBootTest;
+import io.github.fifi2.chessmorize.controller.api.dto.BookCreationRequest;
+import io.github.fifi2.chessmorize.helper.LichessMock;
+import io.github.fifi2.chessmorize.helper.LichessMockExtension;
+import io.github.fifi2.chessmorize.model.Color;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static io.github.fifi2.chessmorize.helper.Constants.Api;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@AutoConfigureObservability(tracing = false)
+class MetricsApiTest extends AbstractSpringBootTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Test
+    @ExtendWith(LichessMockExtension.class)
+    void getPrometheus_afterImport(final LichessMock lichessMock) {
+
+        lichessMock.mockResponse("""
+            [Event "White: Queen's gambit"]
+            [StudyName "White"]
+            [ChapterName "Queen's gambit"]
+            
+            1. d4 d5 2. c4 *
+            """);
+
+        this.webTestClient
+            .post()
+            .uri(Api.BOOKS)
+            .bodyValue(BookCreationRequest.builder()
+                .studyId("study-id")
+                .color(Color.WHITE)
+                .build())
+            .exchange()
+            .expectStatus().isCreated();
+
+        this.webTestClient
+            .get()
+            .uri(Api.PROMETHEUS)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class)
+            .value(body -> assertThat(body).contains(
+                "chessmorize_lichess_download_seconds_count",
+                "chessmorize_import_parse_seconds_count",
+                "chessmorize_import_convert_seconds_count",
+                "chessmorize_import_lines_seconds_count",
+                "chessmorize_repository_query_seconds_count{query=\"save\",}",
+                "chessmorize_repository_lines_encode_seconds_count",
+                "chessmorize_repository_lines_encode_seconds_bucket",
+                "chessmorize_book_moves_count",
+                "chessmorize_book_lines_count",
+                "chessmorize_book_stored_bytes_count",
+                "chessmorize_book_memory_bytes_count",
+                "chessmorize_book_cache_weight_bytes",
+                "chessmorize_book_cache_size",
+                "chessmorize_book_cache_hits_total"));
+    }
+
+}
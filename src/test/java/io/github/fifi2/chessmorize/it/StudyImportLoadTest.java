@@ -0,0 +1,73 @@
+package io.github.fifi2.chessmorize.it;
+
+import io.github.fifi2.chessmorize.AbstractSpringBootTest;
+import io.github.fifi2.chessmorize.controller.api.dto.BookCreationRequest;
+import io.github.fifi2.chessmorize.helper.LichessMock;
+import io.github.fifi2.chessmorize.helper.LichessMockExtension;
+import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.service.pgn.StudyGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.Duration;
+
+import static io.github.fifi2.chessmorize.helper.Constants.Api;
+import static io.github.fifi2.chessmorize.helper.Constants.Json;
+
+/**
+ * Import of large synthetic studies, streamed in chunks by the Lichess mock
+ * - excluded from the default build, run with mvn -Pload test
+ */
+
+@Tag("load")
+class StudyImportLoadTest extends AbstractSpringBootTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', textBlock = """
+        16 | 30 | 3 | 0.15
+        64 | 30 | 3 | 0.15
+        64 | 60 | 2 | 0.05
+        """)
+    @ExtendWith(LichessMockExtension.class)
+    void postBook(final int chapters,
+                  final int depth,
+                  final int branching,
+                  final double variationRate,
+                  final LichessMock lichessMock) {
+
+        lichessMock.mockChunkedResponse(
+            StudyGenerator.builder()
+                .chapters(chapters)
+                .depth(depth)
+                .branching(branching)
+                .variationRate(variationRate)
+                .build()
+                .generate(),
+            8192);
+
+        this.webTestClient
+            .mutate()
+            .responseTimeout(Duration.ofMinutes(5))
+            // the created book is returned with all its moves
+            .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(-1))
+            .build()
+            .post()
+            .uri(Api.BOOKS)
+            .bodyValue(BookCreationRequest.builder()
+                .studyId("loadtest")
+                .color(Color.WHITE)
+                .build())
+            .exchange()
+            .expectStatus().isCreated()
+            .expectBody()
+            .jsonPath(Json.CHAPTERS_SIZE).isEqualTo(chapters);
+    }
+
+}
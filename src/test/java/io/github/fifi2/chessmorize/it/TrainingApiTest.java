@@ -7,6 +7,8 @@ import io.github.fifi2.chessmorize.helper.builder.BookBuilder;
 import io.github.fifi2.chessmorize.helper.builder.LineBuilder;
 import io.github.fifi2.chessmorize.model.Book;
 import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.model.Line;
+import io.github.fifi2.chessmorize.service.TrainingService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -14,6 +16,9 @@ import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -99,6 +104,9 @@ class TrainingApiTest extends AbstractSpringBootTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private TrainingService trainingService;
+
     private static Stream<Arguments> getNextLine_noContent() {
 
         final UUID chapterId = UUID.randomUUID();
@@ -314,6 +322,38 @@ class TrainingApiTest extends AbstractSpringBootTest {
             null);
     }
 
+    @Test
+    void setResult_withConcurrentRequests() {
+
+        final UUID chapterId = UUID.randomUUID();
+        final BookBuilder bookBuilder = BookBuilder.builder()
+            .color(Color.BLACK)
+            .withChapter(chapterId, "Caro-Kann, Introduction");
+        for (int i = 0; i < 8; i++)
+            bookBuilder.withLine(INTRO.apply(UUID.randomUUID(), chapterId));
+        final Book book = bookBuilder.build();
+        this.saveBook(book);
+
+        // the results of the same Book are saved one after another
+        Flux.fromIterable(book.getLines())
+            .parallel()
+            .runOn(Schedulers.parallel())
+            .flatMap(line -> this.trainingService.setLineResult(
+                book.getId(),
+                line.getId(),
+                true))
+            .sequential()
+            .as(StepVerifier::create)
+            .expectNextCount(8)
+            .verifyComplete();
+
+        final Book updatedBook = this.getBook(book.getId());
+        assertThat(updatedBook.getVersion()).isEqualTo(8);
+        assertThat(updatedBook.getLines())
+            .extracting(Line::getBoxId)
+            .containsOnly(1);
+    }
+
     private void runAndAssertNextLine(final UUID bookId,
                                       final UUID expectedLineId,
                                       final UUID expectedChapterId,
@@ -8,6 +8,7 @@ import org.mockito.Mockito;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Optional;
 
@@ -44,4 +45,26 @@ class LineTest {
         }
     }
 
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', textBlock = """
+        2024-03-22 |                      | true
+        2024-03-22 | 2024-03-21T23:59:59Z | true
+        2024-03-22 | 2024-03-22T00:00:00Z | false
+        2024-03-22 | 2024-03-23T10:00:00Z | false
+        """)
+    void hasNotBeenTrainedOn(final String day,
+                             final String lastTraining,
+                             final boolean expectedResult) {
+
+        final Line line = Line.builder()
+            .lastTraining(Optional
+                .ofNullable(lastTraining)
+                .map(Instant::parse)
+                .orElse(null))
+            .build();
+
+        assertThat(line.hasNotBeenTrainedOn(LocalDate.parse(day)))
+            .isEqualTo(expectedResult);
+    }
+
 }
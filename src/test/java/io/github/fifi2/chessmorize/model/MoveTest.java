@@ -0,0 +1,53 @@
+package io.github.fifi2.chessmorize.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MoveTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void serialize_withSharedNextMoves() {
+
+        final List<Move> sharedNextMoves = new ArrayList<>(List.of(Move
+            .builder()
+            .id(UUID.randomUUID())
+            .san("Nc3")
+            .nextMoves(new ArrayList<>())
+            .build()));
+        final Move owner = Move.builder()
+            .id(UUID.randomUUID())
+            .san("e6")
+            .nextMoves(sharedNextMoves)
+            .build();
+        final Move transposition = Move.builder()
+            .id(UUID.randomUUID())
+            .san("e6")
+            .nextMoves(sharedNextMoves)
+            .nextMovesId(owner.getId())
+            .build();
+
+        final JsonNode json = this.objectMapper.valueToTree(
+            List.of(owner, transposition));
+
+        // the shared next moves are serialized once, on their owner
+        assertThat(json.get(0).has("nextMovesId")).isFalse();
+        assertThat(json.get(0).get("nextMoves").get(0).get("san").asText())
+            .isEqualTo("Nc3");
+        assertThat(json.get(1).get("nextMovesId").asText())
+            .isEqualTo(owner.getId().toString());
+        assertThat(json.get(1).get("nextMoves")).isEmpty();
+
+        // the model keeps sharing them
+        assertThat(transposition.getNextMoves()).isSameAs(sharedNextMoves);
+    }
+
+}
@@ -0,0 +1,46 @@
+package io.github.fifi2.chessmorize.repository;
+
+import io.github.fifi2.chessmorize.error.exception.BookSerDeException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BinaryLineMovesCodecTest {
+
+    private final BinaryLineMovesCodec codec = new BinaryLineMovesCodec();
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 100})
+    void encode_decode(final int size) {
+
+        final List<UUID> moveIds = IntStream
+            .range(0, size)
+            .mapToObj(i -> UUID.randomUUID())
+            .toList();
+
+        final byte[] bytes = this.codec.encode(moveIds);
+
+        assertThat(bytes).hasSize(16 * size);
+        assertThat(this.codec.decode(bytes)).isEqualTo(moveIds);
+    }
+
+    @Test
+    void decode_withTruncatedBytes() {
+
+        final byte[] bytes = this.codec.encode(List.of(UUID.randomUUID()));
+
+        assertThatThrownBy(() -> this.codec.decode(
+            Arrays.copyOf(bytes, 15)))
+            .isInstanceOf(BookSerDeException.class)
+            .hasMessage("Binary deserialization failure: 15 bytes");
+    }
+
+}
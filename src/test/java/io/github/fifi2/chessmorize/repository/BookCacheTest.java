@@ -0,0 +1,259 @@
+package io.github.fifi2.chessmorize.repository;
+
+import io.github.fifi2.chessmorize.config.properties.BookCacheProperties;
+import io.github.fifi2.chessmorize.helper.builder.BookBuilder;
+import io.github.fifi2.chessmorize.model.Book;
+import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.model.Move;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class BookCacheTest {
+
+    @Mock
+    private Clock clock;
+
+    private BookCacheProperties properties;
+
+    @BeforeEach
+    void beforeEach() {
+
+        this.properties = new BookCacheProperties();
+        this.properties.setMaxWeight(DataSize.ofKilobytes(4));
+        this.properties.setTtl(Duration.ofSeconds(10));
+    }
+
+    @Test
+    void get() {
+
+        final BookCache bookCache = new BookCache(this.properties, this.clock);
+        final Book book = this.buildBook();
+
+        assertThat(bookCache.get(book.getId())).isEmpty();
+
+        bookCache.put(book);
+        book.setCalendarSlot(12);
+
+        assertThat(bookCache.get(book.getId()))
+            .hasValueSatisfying(cached -> {
+                assertThat(cached).isNotSameAs(book);
+                assertThat(cached.getCalendarSlot()).isZero();
+                assertThat(cached.getLines().getFirst())
+                    .isNotSameAs(book.getLines().getFirst())
+                    .isEqualTo(book.getLines().getFirst());
+                // the moves are shared
+                assertThat(cached.getChapters().getFirst().getNextMoves())
+                    .isSameAs(book.getChapters().getFirst().getNextMoves());
+            });
+        assertThat(bookCache.getHits()).isEqualTo(1);
+        assertThat(bookCache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void get_withExpiredBook() {
+
+        final BookCache bookCache = new BookCache(this.properties, this.clock);
+        final Book book = this.buildBook();
+
+        Mockito.when(this.clock.millis()).thenReturn(1_000L);
+        bookCache.put(book);
+
+        Mockito.when(this.clock.millis()).thenReturn(10_999L);
+        assertThat(bookCache.get(book.getId())).isPresent();
+
+        Mockito.when(this.clock.millis()).thenReturn(11_000L);
+        assertThat(bookCache.get(book.getId())).isEmpty();
+        assertThat(bookCache.size()).isZero();
+        assertThat(bookCache.getWeight()).isZero();
+    }
+
+    @Test
+    void put_withMaxWeightExceeded() {
+
+        final Book book1 = this.buildBook();
+        final Book book2 = this.buildBook();
+        final Book book3 = this.buildBook();
+        this.properties.setMaxWeight(DataSize.ofBytes(
+            2 * BookCache.weigh(book1)));
+        final BookCache bookCache = new BookCache(this.properties, this.clock);
+
+        bookCache.put(book1);
+        bookCache.put(book2);
+        // book1 is now the most recently used
+        assertThat(bookCache.get(book1.getId())).isPresent();
+        bookCache.put(book3);
+
+        assertThat(bookCache.size()).isEqualTo(2);
+        assertThat(bookCache.get(book1.getId())).isPresent();
+        assertThat(bookCache.get(book2.getId())).isEmpty();
+        assertThat(bookCache.get(book3.getId())).isPresent();
+        assertThat(bookCache.getWeight())
+            .isEqualTo(BookCache.weigh(book1) + BookCache.weigh(book3));
+    }
+
+    @Test
+    void put_withBookTooHeavy() {
+
+        final Book book = this.buildBook();
+        this.properties.setMaxWeight(DataSize.ofBytes(
+            BookCache.weigh(book) - 1));
+        final BookCache bookCache = new BookCache(this.properties, this.clock);
+
+        bookCache.put(book);
+
+        assertThat(bookCache.size()).isZero();
+        assertThat(bookCache.get(book.getId())).isEmpty();
+    }
+
+    @Test
+    void update() {
+
+        final BookCache bookCache = new BookCache(this.properties, this.clock);
+        final Book book = this.buildBook();
+
+        bookCache.update(book.getId(), b -> b.setCalendarSlot(3));
+        bookCache.put(book);
+        bookCache.update(book.getId(), b -> b.setCalendarSlot(4));
+
+        assertThat(bookCache.get(book.getId(), Book::getCalendarSlot))
+            .hasValue(4);
+    }
+
+    @Test
+    void put_withOlderVersion() {
+
+        final BookCache bookCache = new BookCache(this.properties, this.clock);
+        final Book book = this.buildBook();
+        book.setVersion(2);
+        bookCache.put(book);
+
+        // a read started before the last update doesn't replace the Book
+        bookCache.put(book.toBuilder().version(1).calendarSlot(5).build());
+
+        assertThat(bookCache.get(book.getId()))
+            .hasValueSatisfying(cached -> {
+                assertThat(cached.getVersion()).isEqualTo(2);
+                assertThat(cached.getCalendarSlot()).isZero();
+            });
+    }
+
+    @Test
+    void update_withVersion() {
+
+        final BookCache bookCache = new BookCache(this.properties, this.clock);
+        final Book book = this.buildBook();
+        bookCache.put(book);
+
+        bookCache.update(book.getId(), 1, b -> b.setCalendarSlot(4));
+
+        assertThat(bookCache.get(book.getId()))
+            .hasValueSatisfying(cached -> {
+                assertThat(cached.getVersion()).isEqualTo(1);
+                assertThat(cached.getCalendarSlot()).isEqualTo(4);
+            });
+
+        // an update not based on the cached version evicts it
+        bookCache.update(book.getId(), 3, b -> b.setCalendarSlot(6));
+
+        assertThat(bookCache.get(book.getId())).isEmpty();
+        assertThat(bookCache.size()).isZero();
+    }
+
+    @Test
+    void update_withVersionAndBookNotCached() {
+
+        final BookCache bookCache = new BookCache(this.properties, this.clock);
+        final Book book = this.buildBook();
+
+        bookCache.update(book.getId(), 1, b -> b.setCalendarSlot(4));
+
+        // the Book read before the update is outdated
+        bookCache.put(book);
+        assertThat(bookCache.get(book.getId())).isEmpty();
+        assertThat(bookCache.size()).isZero();
+
+        book.setVersion(1);
+        bookCache.put(book);
+        assertThat(bookCache.get(book.getId(), Book::getVersion)).hasValue(1L);
+        assertThat(bookCache.getWeight()).isEqualTo(BookCache.weigh(book));
+    }
+
+    @Test
+    void evict() {
+
+        final BookCache bookCache = new BookCache(this.properties, this.clock);
+        final Book book1 = this.buildBook();
+        final Book book2 = this.buildBook();
+
+        bookCache.put(book1);
+        bookCache.put(book2);
+        bookCache.evict(book1.getId());
+
+        assertThat(bookCache.get(book1.getId())).isEmpty();
+        assertThat(bookCache.get(book2.getId())).isPresent();
+        assertThat(bookCache.getWeight()).isEqualTo(BookCache.weigh(book2));
+
+        bookCache.clear();
+
+        assertThat(bookCache.size()).isZero();
+        assertThat(bookCache.getWeight()).isZero();
+    }
+
+    @Test
+    void weigh_withSharedNextMoves() {
+
+        final Book book = this.buildBook();
+        final List<Move> firstMoves = book.getChapters()
+            .getFirst()
+            .getNextMoves();
+
+        // a transposition shares the next moves of a known move: only the
+        // transposing move itself weighs
+        long weight = BookCache.weigh(book);
+        firstMoves.add(Move.builder()
+            .id(UUID.randomUUID())
+            .san("c4")
+            .nextMoves(firstMoves.getFirst().getNextMoves())
+            .build());
+        final long transpositionWeight = BookCache.weigh(book) - weight;
+
+        weight = BookCache.weigh(book);
+        firstMoves.add(Move.builder()
+            .id(UUID.randomUUID())
+            .san("e4")
+            .nextMoves(new ArrayList<>())
+            .build());
+
+        assertThat(BookCache.weigh(book) - weight)
+            .isEqualTo(transpositionWeight);
+    }
+
+    private Book buildBook() {
+
+        return BookBuilder.builder()
+            .color(Color.WHITE)
+            .withChapter(chapter -> chapter
+                .withNextMove(d4 -> d4
+                    .san("d4")
+                    .withNextMove(d5 -> d5.san("d5"))))
+            .withLine(line -> line
+                .withMove("d2d4")
+                .withMove("d7d5"))
+            .build();
+    }
+
+}
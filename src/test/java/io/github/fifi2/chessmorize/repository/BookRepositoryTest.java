@@ -1,35 +1,61 @@
 package io.github.fifi2.chessmorize.repository;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.fifi2.chessmorize.AbstractSpringBootTest;
+import io.github.fifi2.chessmorize.config.properties.BookStorageProperties;
+import io.github.fifi2.chessmorize.error.exception.BookConflictException;
 import io.github.fifi2.chessmorize.error.exception.BookNotFoundException;
 import io.github.fifi2.chessmorize.error.exception.BookSerDeException;
-import io.github.fifi2.chessmorize.model.Book;
-import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.helper.builder.BookBuilder;
+import io.github.fifi2.chessmorize.model.*;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.SpyBean;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 class BookRepositoryTest extends AbstractSpringBootTest {
 
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookCache bookCache;
+
     @SpyBean
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private BookStorageProperties bookStorageProperties;
+
+    private LineMovesFormat linesFormat;
+
     @BeforeEach
     void beforeEach() {
 
         this.bookRepository.deleteAll().block();
+        this.linesFormat = this.bookStorageProperties.getLinesFormat();
+    }
+
+    @AfterEach
+    void afterEach() {
+
+        this.bookStorageProperties.setLinesFormat(this.linesFormat);
     }
 
     @Test
@@ -46,15 +72,14 @@ class BookRepositoryTest extends AbstractSpringBootTest {
     @Test
     void save_withSerializationFailure() throws JsonProcessingException {
 
+        this.bookStorageProperties.setLinesFormat(LineMovesFormat.JSON);
         Mockito
             .when(this.objectMapper.writeValueAsString(Mockito.any()))
             .thenThrow(JsonProcessingException.class);
 
         StepVerifier
-            .create(this.bookRepository.save(Book.builder()
-                .id(UUID.randomUUID())
-                .studyId("studyId")
-                .name("name")
+            .create(this.bookRepository.save(BookBuilder.builder()
+                .withLine(line -> line.withMove("e2e4"))
                 .build()))
             .expectErrorMatches(error -> error instanceof BookSerDeException e
                 && e.getCause() instanceof JsonProcessingException
@@ -71,37 +96,100 @@ class BookRepositoryTest extends AbstractSpringBootTest {
             .create(this.insertBook(bookId)
                 .doOnNext(book -> book.setCalendarSlot(123))
                 .flatMap(book -> this.bookRepository.update(book)))
-            .expectNextMatches(book -> book.getCalendarSlot() == 123)
+            .expectNextMatches(book -> book.getCalendarSlot() == 123
+                && book.getVersion() == 1)
             .verifyComplete();
     }
 
     @Test
-    void update_withNoBookFound() {
+    void update_withVersionConflict() {
+
+        final UUID bookId = UUID.randomUUID();
 
         StepVerifier
-            .create(this.bookRepository.update(Book.builder()
-                .id(UUID.randomUUID())
-                .build()))
+            .create(this.insertBook(bookId)
+                .flatMap(book -> this.bookRepository.update(book))
+                .doOnNext(book -> book.setVersion(0))
+                .flatMap(book -> this.bookRepository.update(book)))
+            .expectError(BookConflictException.class)
+            .verify();
+
+        StepVerifier
+            .create(this.bookRepository.findById(bookId))
+            .expectNextMatches(book -> book.getVersion() == 1)
             .verifyComplete();
     }
 
     @Test
-    void update_withSerializationFailure() throws JsonProcessingException {
+    void update_withRollback() {
 
-        Mockito
-            .when(this.objectMapper.writeValueAsString(Mockito.any()))
-            .thenThrow(JsonProcessingException.class);
+        final UUID bookId = UUID.randomUUID();
+        this.insertBook(bookId).block();
+
+        // the chapters update fails once the calendar slot is stored
+        StepVerifier
+            .create(this.bookRepository
+                .findById(bookId)
+                .doOnNext(book -> {
+                    book.setCalendarSlot(123);
+                    book.setChapters(List.of(Chapter.builder().build()));
+                })
+                .flatMap(book -> this.bookRepository.update(book)))
+            .expectError()
+            .verify();
+
+        // the cached Book has not been updated
+        StepVerifier
+            .create(this.bookRepository.findById(bookId))
+            .expectNextMatches(book -> book.getCalendarSlot() == 0
+                && book.getVersion() == 0)
+            .verifyComplete();
+    }
+
+    @Test
+    void update_withNoBookFound() {
 
         StepVerifier
             .create(this.bookRepository.update(Book.builder()
                 .id(UUID.randomUUID())
-                .studyId("studyId")
-                .name("name")
                 .build()))
-            .expectErrorMatches(error -> error instanceof BookSerDeException e
-                && e.getCause() instanceof JsonProcessingException
-                && "Json serialization failure".equals(e.getMessage()))
-            .verify();
+            .verifyComplete();
+    }
+
+    @Test
+    void update_withChapterDisabled() {
+
+        final UUID chapterId1 = UUID.randomUUID();
+        final UUID chapterId2 = UUID.randomUUID();
+        final UUID lineId1 = UUID.randomUUID();
+        final UUID lineId2 = UUID.randomUUID();
+        final UUID lineId3 = UUID.randomUUID();
+        final Book book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .withChapter(chapterId1, "Chapter 1")
+            .withChapter(chapterId2, "Chapter 2")
+            .withLine(line -> line.id(lineId1).chapterId(chapterId1))
+            .withLine(line -> line.id(lineId2).chapterId(chapterId2))
+            .withLine(line -> line.id(lineId3).chapterId(chapterId1))
+            .build();
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .doOnNext(b -> {
+                    b.getChapters().getLast().setEnabled(false);
+                    Collections.reverse(b.getLines());
+                })
+                .flatMap(this.bookRepository::update)
+                .flatMap(b -> this.bookRepository.findById(b.getId())))
+            .assertNext(b -> {
+                assertThat(b.getChapters())
+                    .extracting(Chapter::isEnabled)
+                    .containsExactly(true, false);
+                assertThat(b.getLines())
+                    .extracting(Line::getId)
+                    .containsExactly(lineId3, lineId1);
+            })
+            .verifyComplete();
     }
 
     @Test
@@ -116,6 +204,400 @@ class BookRepositoryTest extends AbstractSpringBootTest {
             .verifyComplete();
     }
 
+    @Test
+    void findById_withChaptersAndLines() {
+
+        final UUID chapterId = UUID.randomUUID();
+        final UUID lineId = UUID.randomUUID();
+        final UUID e4Id = UUID.randomUUID();
+        final UUID c6Id = UUID.randomUUID();
+        final Book book = BookBuilder.builder()
+            .color(Color.BLACK)
+            .calendarSlot(4)
+            .withChapter(chapter -> chapter
+                .id(chapterId)
+                .title("Caro-Kann")
+                .withNextMove(e4 -> e4
+                    .id(e4Id)
+                    .san("e4")
+                    .uci("e2e4")
+                    .color(Color.WHITE)
+                    .withNextMove(c6 -> c6
+                        .id(c6Id)
+                        .san("c6")
+                        .uci("c7c6")
+                        .nag(Nag.GOOD_MOVE)
+                        .comment("The Caro-Kann!")
+                        .color(Color.BLACK))
+                    .withNextMove(e5 -> e5
+                        .san("e5")
+                        .uci("e7e5")
+                        .color(Color.BLACK))))
+            .withLine(line -> line
+                .id(lineId)
+                .chapterId(chapterId)
+                .boxId(2)
+                .lastCalendarSlot(3)
+                .withMove(e4 -> e4
+                    .moveId(e4Id)
+                    .san("e4")
+                    .uci("e2e4"))
+                .withMove(c6 -> c6
+                    .moveId(c6Id)
+                    .san("c6")
+                    .nag(Nag.GOOD_MOVE)
+                    .uci("c7c6")
+                    .comment("The Caro-Kann!")))
+            .build();
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .doOnNext(b -> this.bookCache.evict(b.getId()))
+                .flatMap(b -> this.bookRepository.findById(b.getId())))
+            .assertNext(b -> {
+                assertThat(b.getStudyId()).isEqualTo(book.getStudyId());
+                assertThat(b.getName()).isEqualTo(book.getName());
+                assertThat(b.getColor()).isEqualTo(Color.BLACK);
+                assertThat(b.getCalendarSlot()).isEqualTo(4);
+                assertThat(b.getChapters()).isEqualTo(book.getChapters());
+                assertThat(b.getLines()).isEqualTo(book.getLines());
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void findById_withSharedLineMoves() {
+
+        final UUID chapterId = UUID.randomUUID();
+        final UUID e4Id = UUID.randomUUID();
+        final Book book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .withChapter(chapter -> chapter
+                .id(chapterId)
+                .withNextMove(e4 -> e4
+                    .id(e4Id)
+                    .uci("e2e4")
+                    .withNextMove(c5 -> c5.uci("c7c5"))
+                    .withNextMove(e5 -> e5.uci("e7e5"))))
+            .withLine(line -> line
+                .chapterId(chapterId)
+                .withMove(e4 -> e4.moveId(e4Id).uci("e2e4")))
+            .withLine(line -> line
+                .chapterId(chapterId)
+                .withMove(e4 -> e4.moveId(e4Id).uci("e2e4")))
+            .build();
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .doOnNext(b -> this.bookCache.evict(b.getId()))
+                .flatMap(b -> this.bookRepository.findById(b.getId())))
+            .assertNext(b -> {
+                assertThat(b.getLines()).isEqualTo(book.getLines());
+                assertThat(b.getLines().get(0).getMoves().getFirst())
+                    .isSameAs(b.getLines().get(1).getMoves().getFirst());
+            })
+            .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @EnumSource(LineMovesFormat.class)
+    void findById_withLinesFormat(final LineMovesFormat format) {
+
+        this.bookStorageProperties.setLinesFormat(format);
+        final UUID chapterId = UUID.randomUUID();
+        final UUID e4Id = UUID.randomUUID();
+        final UUID e5Id = UUID.randomUUID();
+        final Book book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .withChapter(chapter -> chapter
+                .id(chapterId)
+                .withNextMove(e4 -> e4
+                    .id(e4Id)
+                    .uci("e2e4")
+                    .withNextMove(e5 -> e5.id(e5Id).uci("e7e5"))))
+            .withLine(line -> line
+                .chapterId(chapterId)
+                .withMove(e4 -> e4.moveId(e4Id).uci("e2e4"))
+                .withMove(e5 -> e5.moveId(e5Id).uci("e7e5")))
+            .withLine(line -> line.chapterId(chapterId))
+            .build();
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .doOnNext(b -> this.bookCache.evict(b.getId()))
+                .flatMap(b -> this.bookRepository.findById(b.getId())))
+            .assertNext(b -> assertThat(b.getLines())
+                .isEqualTo(book.getLines()))
+            .verifyComplete();
+    }
+
+    @Test
+    void findById_withSharedNextMoves() {
+
+        final Move sharedMove = Move.builder()
+            .id(UUID.randomUUID())
+            .san("Nc3")
+            .nextMoves(new ArrayList<>())
+            .build();
+        final List<Move> sharedNextMoves = new ArrayList<>(List.of(sharedMove));
+        final Book book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .withChapter(chapter -> chapter
+                .withNextMove(d4 -> d4.san("d4"))
+                .withNextMove(c4 -> c4.san("c4")))
+            .build();
+        book.getChapters().getFirst().getNextMoves()
+            .forEach(move -> move.setNextMoves(sharedNextMoves));
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .doOnNext(b -> this.bookCache.evict(b.getId()))
+                .flatMap(b -> this.bookRepository.findById(b.getId())))
+            .assertNext(b -> {
+                final List<Move> firstMoves =
+                    b.getChapters().getFirst().getNextMoves();
+                assertThat(firstMoves)
+                    .extracting(Move::getSan)
+                    .containsExactly("d4", "c4");
+                assertThat(firstMoves.getFirst().getNextMoves())
+                    .isSameAs(firstMoves.getLast().getNextMoves())
+                    .containsExactly(sharedMove);
+                assertThat(firstMoves.getFirst().getNextMovesId()).isNull();
+                assertThat(firstMoves.getLast().getNextMovesId())
+                    .isEqualTo(firstMoves.getFirst().getId());
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void findById_fromCache() {
+
+        final UUID bookId = UUID.randomUUID();
+        final long hits = this.bookCache.getHits();
+
+        StepVerifier
+            .create(this.insertBook(bookId)
+                .flatMap(dummy -> this.bookRepository.findById(bookId))
+                .doOnNext(book -> book.setCalendarSlot(123))
+                .flatMap(dummy -> this.bookRepository.findById(bookId)))
+            .assertNext(book -> {
+                // the cached Book is not altered by its readers
+                assertThat(book.getCalendarSlot()).isZero();
+                assertThat(this.bookCache.getHits()).isEqualTo(hits + 2);
+            })
+            .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"true", "false"})
+    void findTrainingView(final boolean cached) {
+
+        final UUID chapterId = UUID.randomUUID();
+        final UUID e4Id = UUID.randomUUID();
+        final Book book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .withChapter(chapter -> chapter
+                .id(chapterId)
+                .title("Chapter")
+                .withNextMove(e4 -> e4.id(e4Id).uci("e2e4")))
+            .withLine(line -> line
+                .chapterId(chapterId)
+                .boxId(2)
+                .withMove(e4 -> e4.moveId(e4Id).uci("e2e4")))
+            .build();
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .doOnNext(b -> {
+                    if (!cached)
+                        this.bookCache.evict(b.getId());
+                })
+                .flatMap(b -> this.bookRepository.findTrainingView(b.getId())))
+            .assertNext(b -> {
+                assertThat(b.getColor()).isEqualTo(Color.WHITE);
+                assertThat(b.getChapters())
+                    .singleElement()
+                    .satisfies(chapter -> {
+                        assertThat(chapter.getId()).isEqualTo(chapterId);
+                        assertThat(chapter.getTitle()).isEqualTo("Chapter");
+                        assertThat(chapter.isEnabled()).isTrue();
+                        assertThat(chapter.getNextMoves()).isNull();
+                    });
+                assertThat(b.getLines())
+                    .singleElement()
+                    .satisfies(line -> {
+                        assertThat(line.getId())
+                            .isEqualTo(book.getLines().getFirst().getId());
+                        assertThat(line.getBoxId()).isEqualTo(2);
+                        assertThat(line.getMoves()).isNull();
+                    });
+            })
+            .verifyComplete();
+
+        // the cached Book keeps its moves
+        StepVerifier
+            .create(this.bookRepository.findById(book.getId()))
+            .assertNext(b -> {
+                assertThat(b.getChapters()).isEqualTo(book.getChapters());
+                assertThat(b.getLines()).isEqualTo(book.getLines());
+            })
+            .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"true", "false"})
+    void findChaptersView(final boolean cached) {
+
+        final Book book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .withChapter(chapter -> chapter
+                .title("Chapter")
+                .withNextMove(e4 -> e4.uci("e2e4")))
+            .withLine(line -> line.withMove("e2e4"))
+            .build();
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .doOnNext(b -> {
+                    if (!cached)
+                        this.bookCache.evict(b.getId());
+                })
+                .flatMap(b -> this.bookRepository.findChaptersView(b.getId())))
+            .assertNext(b -> {
+                assertThat(b.getColor()).isEqualTo(Color.WHITE);
+                assertThat(b.getChapters())
+                    .singleElement()
+                    .satisfies(chapter -> {
+                        assertThat(chapter.getTitle()).isEqualTo("Chapter");
+                        assertThat(chapter.getNextMoves()).isNull();
+                    });
+                assertThat(b.getLines()).isNull();
+            })
+            .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"true", "false"})
+    void findLinesView(final boolean cached) {
+
+        final UUID chapterId = UUID.randomUUID();
+        final UUID e4Id = UUID.randomUUID();
+        final Book book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .withChapter(chapter -> chapter
+                .id(chapterId)
+                .withNextMove(e4 -> e4.id(e4Id).san("e4").uci("e2e4")))
+            .withLine(line -> line
+                .chapterId(chapterId)
+                .boxId(1)
+                .withMove(e4 -> e4.moveId(e4Id).san("e4").uci("e2e4")))
+            .build();
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .doOnNext(b -> {
+                    if (!cached)
+                        this.bookCache.evict(b.getId());
+                })
+                .flatMap(b -> this.bookRepository.findLinesView(b.getId())))
+            .assertNext(b -> {
+                assertThat(b.getColor()).isEqualTo(Color.WHITE);
+                assertThat(b.getChapters()).isNull();
+                assertThat(b.getLines()).isEqualTo(book.getLines());
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void update_withTrainingView() {
+
+        final UUID chapterId1 = UUID.randomUUID();
+        final UUID chapterId2 = UUID.randomUUID();
+        final UUID e4Id = UUID.randomUUID();
+        final Book book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .withChapter(chapter -> chapter
+                .id(chapterId1)
+                .withNextMove(e4 -> e4.id(e4Id).uci("e2e4")))
+            .withChapter(chapterId2, "Chapter 2")
+            .withLine(line -> line
+                .chapterId(chapterId1)
+                .withMove(e4 -> e4.moveId(e4Id).uci("e2e4")))
+            .withLine(line -> line.chapterId(chapterId2))
+            .build();
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .flatMap(b -> this.bookRepository.findTrainingView(b.getId()))
+                .doOnNext(view -> view.getChapters()
+                    .getLast()
+                    .setEnabled(false))
+                .flatMap(this.bookRepository::update)
+                // from the cache, updated with the training view
+                .flatMap(view -> this.bookRepository.findById(view.getId())))
+            .assertNext(b -> {
+                assertThat(b.getVersion()).isEqualTo(1);
+                assertThat(b.getChapters())
+                    .extracting(Chapter::isEnabled)
+                    .containsExactly(true, false);
+                assertThat(b.getChapters().getFirst().getNextMoves())
+                    .isEqualTo(book.getChapters().getFirst().getNextMoves());
+                assertThat(b.getLines())
+                    .containsExactly(book.getLines().getFirst());
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void findLine_fromCache() {
+
+        final UUID lineId = UUID.randomUUID();
+        final Book book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .withLine(line -> line
+                .id(lineId)
+                .boxId(1)
+                .withMove("e2e4"))
+            .build();
+        final long hits = this.bookCache.getHits();
+
+        StepVerifier
+            .create(this.bookRepository.save(book)
+                .flatMap(b -> this.bookRepository.findLine(b.getId(), lineId)))
+            .assertNext(line -> {
+                assertThat(line).isEqualTo(book.getLines().getFirst());
+                assertThat(this.bookCache.getHits()).isEqualTo(hits + 1);
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void findHeaderById() {
+
+        final UUID bookId = UUID.randomUUID();
+
+        StepVerifier
+            .create(this.insertBook(bookId)
+                .flatMap(dummy -> this.bookRepository.findHeaderById(bookId)))
+            .expectNextMatches(book -> bookId.equals(book.getId())
+                && book.getChapters() == null
+                && book.getLines() == null)
+            .verifyComplete();
+    }
+
+    @Test
+    void findLine_withLineNotFound() {
+
+        final UUID bookId = UUID.randomUUID();
+
+        StepVerifier
+            .create(this.insertBook(bookId)
+                .flatMap(dummy -> this.bookRepository.findLine(
+                    bookId,
+                    UUID.randomUUID())))
+            .verifyComplete();
+    }
+
     @Test
     void findById_withBookNotFound() {
 
@@ -128,13 +610,19 @@ class BookRepositoryTest extends AbstractSpringBootTest {
     @Test
     void findById_withDeserializationFailure() throws JsonProcessingException {
 
+        this.bookStorageProperties.setLinesFormat(LineMovesFormat.JSON);
         Mockito
             .doThrow(JsonProcessingException.class)
             .when(this.objectMapper)
-            .readValue(Mockito.anyString(), Mockito.eq(Book.class));
+            .readValue(Mockito.anyString(), Mockito.any(TypeReference.class));
 
         StepVerifier
-            .create(this.insertBook(UUID.randomUUID())
+            .create(this.bookRepository.save(BookBuilder.builder()
+                    .color(Color.WHITE)
+                    .withLine(line -> line.withMove("e2e4"))
+                    .build())
+                // the saved Book is cached, read it from the database
+                .doOnNext(book -> this.bookCache.evict(book.getId()))
                 .flatMap(book -> this.bookRepository.findById(book.getId())))
             .expectErrorMatches(error -> error instanceof BookSerDeException e
                 && e.getCause() instanceof JsonProcessingException
@@ -0,0 +1,210 @@
+package io.github.fifi2.chessmorize.repository;
+
+import io.github.fifi2.chessmorize.AbstractSpringBootTest;
+import io.github.fifi2.chessmorize.model.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class LegacyBookMigrationTest extends AbstractSpringBootTest {
+
+    @Autowired
+    private LegacyBookMigration legacyBookMigration;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void beforeEach() {
+
+        this.cleanDatabase();
+    }
+
+    @AfterEach
+    void afterEach() {
+
+        // no legacy book is left for the next application startups
+        this.cleanDatabase();
+    }
+
+    @Test
+    void migrate() {
+
+        final UUID bookId = UUID.randomUUID();
+        final UUID chapterId = UUID.randomUUID();
+        final UUID d4Id = UUID.randomUUID();
+        final UUID c4Id = UUID.randomUUID();
+        final UUID nf6Id = UUID.randomUUID();
+        final UUID lineId = UUID.randomUUID();
+
+        // the next moves of c4 are shared with d4 (serialized as their ids)
+        final String state = """
+            {
+              "id": "%s",
+              "studyId": "studyId",
+              "name": "name",
+              "color": "WHITE",
+              "chapters": [ {
+                "id": "%s",
+                "title": "title",
+                "enabled": true,
+                "nextMoves": [ {
+                  "id": "%s",
+                  "san": "d4",
+                  "uci": "d2d4",
+                  "nag": "GOOD_MOVE",
+                  "comment": "comment",
+                  "color": "WHITE",
+                  "nextMoves": [ {
+                    "id": "%s",
+                    "san": "Nf6",
+                    "uci": "g8f6",
+                    "color": "BLACK",
+                    "nextMoves": [ ]
+                  } ]
+                }, {
+                  "id": "%s",
+                  "san": "c4",
+                  "uci": "c2c4",
+                  "color": "WHITE",
+                  "nextMoves": [ "%s" ]
+                } ]
+              } ],
+              "lines": [ {
+                "id": "%s",
+                "chapterId": "%s",
+                "moves": [ {
+                  "moveId": "%s",
+                  "san": "d4",
+                  "nag": "GOOD_MOVE",
+                  "uci": "d2d4",
+                  "comment": "comment"
+                }, {
+                  "moveId": "%s",
+                  "san": "Nf6",
+                  "uci": "g8f6"
+                } ],
+                "boxId": 2,
+                "lastTraining": "2024-04-01T10:00:00Z",
+                "lastCalendarSlot": 3
+              } ],
+              "calendarSlot": 4
+            }
+            """.formatted(
+            bookId,
+            chapterId,
+            d4Id,
+            nf6Id,
+            c4Id,
+            nf6Id,
+            lineId,
+            chapterId,
+            d4Id,
+            nf6Id);
+
+        StepVerifier
+            .create(this.insertLegacyBook(bookId, state)
+                .then(this.legacyBookMigration.migrate()))
+            .expectNext(1L)
+            .verifyComplete();
+        this.bookCache.evict(bookId);
+
+        final Book book = this.getBook(bookId);
+        assertThat(book.getStudyId()).isEqualTo("studyId");
+        assertThat(book.getName()).isEqualTo("name");
+        assertThat(book.getColor()).isEqualTo(Color.WHITE);
+        assertThat(book.getCalendarSlot()).isEqualTo(4);
+
+        assertThat(book.getChapters())
+            .singleElement()
+            .satisfies(chapter -> {
+                assertThat(chapter.getId()).isEqualTo(chapterId);
+                assertThat(chapter.getTitle()).isEqualTo("title");
+                assertThat(chapter.isEnabled()).isTrue();
+            });
+        final List<Move> firstMoves =
+            book.getChapters().getFirst().getNextMoves();
+        assertThat(firstMoves)
+            .extracting(Move::getId, Move::getSan, Move::getNag)
+            .containsExactly(
+                tuple(d4Id, "d4", Nag.GOOD_MOVE),
+                tuple(c4Id, "c4", null));
+        assertThat(firstMoves.getFirst().getNextMoves())
+            .isSameAs(firstMoves.getLast().getNextMoves())
+            .extracting(Move::getId)
+            .containsExactly(nf6Id);
+
+        assertThat(book.getLines())
+            .singleElement()
+            .satisfies(line -> {
+                assertThat(line.getId()).isEqualTo(lineId);
+                assertThat(line.getChapterId()).isEqualTo(chapterId);
+                assertThat(line.getMoves())
+                    .extracting(LineMove::getMoveId)
+                    .containsExactly(d4Id, nf6Id);
+                assertThat(line.getBoxId()).isEqualTo(2);
+                assertThat(line.getLastTraining())
+                    .isEqualTo(Instant.parse("2024-04-01T10:00:00Z"));
+                assertThat(line.getLastCalendarSlot()).isEqualTo(3);
+            });
+
+        // the state is cleared: nothing left to migrate
+        StepVerifier
+            .create(this.legacyBookMigration.migrate())
+            .expectNext(0L)
+            .verifyComplete();
+    }
+
+    @Test
+    void migrate_withDeserializationFailure() {
+
+        final UUID bookId = UUID.randomUUID();
+
+        StepVerifier
+            .create(this.insertLegacyBook(bookId, "{")
+                .then(this.legacyBookMigration.migrate()))
+            .expectErrorSatisfies(error -> assertThat(error)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(bookId.toString()))
+            .verify();
+
+        // the legacy book is left untouched
+        StepVerifier
+            .create(this.databaseClient
+                .sql("SELECT state FROM book WHERE id = :id")
+                .bind("id", bookId)
+                .map(row -> row.get("state", String.class))
+                .one())
+            .expectNext("{")
+            .verifyComplete();
+    }
+
+    private Mono<Long> insertLegacyBook(final UUID bookId,
+                                        final String state) {
+
+        return this.databaseClient
+            .sql("""
+                INSERT INTO book (id, name, color, state)
+                VALUES (:id, 'name', 'WHITE', :state)
+                """)
+            .bind("id", bookId)
+            .bind("state", state)
+            .fetch()
+            .rowsUpdated();
+    }
+
+}
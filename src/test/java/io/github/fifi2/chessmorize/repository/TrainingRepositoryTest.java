@@ -0,0 +1,325 @@
+package io.github.fifi2.chessmorize.repository;
+
+import io.github.fifi2.chessmorize.AbstractSpringBootTest;
+import io.github.fifi2.chessmorize.error.exception.BookConflictException;
+import io.github.fifi2.chessmorize.error.exception.BookNotFoundException;
+import io.github.fifi2.chessmorize.helper.builder.BookBuilder;
+import io.github.fifi2.chessmorize.model.Book;
+import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.model.Line;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TrainingRepositoryTest extends AbstractSpringBootTest {
+
+    private static final UUID CHAPTER_ID_1 = UUID.randomUUID();
+    private static final UUID CHAPTER_ID_2 = UUID.randomUUID();
+    private static final UUID LINE_ID_1 = UUID.randomUUID();
+    private static final UUID LINE_ID_2 = UUID.randomUUID();
+    private static final UUID LINE_ID_3 = UUID.randomUUID();
+    private static final UUID MOVE_ID_E4 = UUID.randomUUID();
+    private static final UUID MOVE_ID_D4 = UUID.randomUUID();
+    private static final UUID MOVE_ID_C4 = UUID.randomUUID();
+
+    @Autowired
+    private TrainingRepository trainingRepository;
+
+    @Autowired
+    private BookCache bookCache;
+
+    private Book book;
+
+    @BeforeEach
+    void beforeEach() {
+
+        this.cleanDatabase();
+        this.book = BookBuilder.builder()
+            .color(Color.WHITE)
+            .calendarSlot(3)
+            .withChapter(chapter -> chapter
+                .id(CHAPTER_ID_1)
+                .title("Chapter 1")
+                .withNextMove(e4 -> e4.id(MOVE_ID_E4).uci("e2e4"))
+                .withNextMove(c4 -> c4.id(MOVE_ID_C4).uci("c2c4")))
+            .withChapter(chapter -> chapter
+                .id(CHAPTER_ID_2)
+                .title("Chapter 2")
+                .enabled(false)
+                .withNextMove(d4 -> d4.id(MOVE_ID_D4).uci("d2d4")))
+            .withLine(line -> line
+                .id(LINE_ID_1)
+                .chapterId(CHAPTER_ID_1)
+                .withMove(e4 -> e4.moveId(MOVE_ID_E4).uci("e2e4")))
+            .withLine(line -> line
+                .id(LINE_ID_2)
+                .chapterId(CHAPTER_ID_2)
+                .withMove(d4 -> d4.moveId(MOVE_ID_D4).uci("d2d4")))
+            .withLine(line -> line
+                .id(LINE_ID_3)
+                .chapterId(CHAPTER_ID_1)
+                .boxId(2)
+                .lastCalendarSlot(1)
+                .withMove(c4 -> c4.moveId(MOVE_ID_C4).uci("c2c4")))
+            .build();
+        this.saveBook(this.book);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void findProgress(final boolean cached) {
+
+        if (!cached)
+            this.bookCache.evict(this.book.getId());
+
+        StepVerifier
+            .create(this.trainingRepository.findProgress(this.book.getId()))
+            .assertNext(progress -> {
+                assertThat(progress.getId()).isEqualTo(this.book.getId());
+                assertThat(progress.getCalendarSlot()).isEqualTo(3);
+                assertThat(progress.getVersion()).isZero();
+                assertThat(progress.getLines()).isNull();
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void findProgress_withBookNotFound() {
+
+        StepVerifier
+            .create(this.trainingRepository.findProgress(UUID.randomUUID()))
+            .expectError(BookNotFoundException.class)
+            .verify();
+    }
+
+    @Test
+    void findLineProgresses() {
+
+        StepVerifier
+            .create(this.trainingRepository
+                .findLineProgresses(this.book.getId())
+                .collectList())
+            .assertNext(lines -> {
+                // the line of the disabled chapter is excluded
+                assertThat(lines)
+                    .extracting(Line::getId)
+                    .containsExactly(LINE_ID_1, LINE_ID_3);
+                assertThat(lines.getLast().getBoxId()).isEqualTo(2);
+                assertThat(lines.getLast().getLastCalendarSlot()).isEqualTo(1);
+                assertThat(lines.getLast().getMoves()).isNull();
+            })
+            .verifyComplete();
+    }
+
+    @Test
+    void findLineProgresses_withBookNotCached() {
+
+        this.bookCache.evict(this.book.getId());
+
+        StepVerifier
+            .create(this.trainingRepository
+                .findLineProgresses(this.book.getId())
+                .map(Line::getId)
+                .collectList())
+            .expectNext(List.of(LINE_ID_1, LINE_ID_3))
+            .verifyComplete();
+    }
+
+    @Test
+    void updateCalendarSlot() {
+
+        StepVerifier
+            .create(this.trainingRepository
+                .updateCalendarSlot(this.book.getId(), 0, 4, null)
+                .then(this.trainingRepository.findProgress(
+                    this.book.getId())))
+            .expectNextMatches(progress -> progress.getCalendarSlot() == 4
+                && progress.getVersion() == 1)
+            .verifyComplete();
+
+        // the cache has been written through
+        this.bookCache.evict(this.book.getId());
+        StepVerifier
+            .create(this.trainingRepository.findProgress(this.book.getId()))
+            .expectNextMatches(progress -> progress.getCalendarSlot() == 4
+                && progress.getVersion() == 1)
+            .verifyComplete();
+    }
+
+    @Test
+    void updateCalendarSlot_withBookNotFound() {
+
+        StepVerifier
+            .create(this.trainingRepository
+                .updateCalendarSlot(UUID.randomUUID(), 0, 4, null))
+            .verifyComplete();
+    }
+
+    @Test
+    void updateCalendarSlot_withVersionConflict() {
+
+        StepVerifier
+            .create(this.trainingRepository
+                .updateCalendarSlot(this.book.getId(), 0, 4, null)
+                .then(this.trainingRepository.updateCalendarSlot(
+                    this.book.getId(),
+                    0,
+                    5,
+                    null)))
+            .expectErrorSatisfies(error -> assertThat(error)
+                .isInstanceOf(BookConflictException.class)
+                .hasMessageContaining("since version 0 (current version 1)"))
+            .verify();
+
+        StepVerifier
+            .create(this.trainingRepository.findProgress(this.book.getId()))
+            .expectNextMatches(progress -> progress.getCalendarSlot() == 4
+                && progress.getVersion() == 1)
+            .verifyComplete();
+    }
+
+    @Test
+    void updateLineProgress() {
+
+        final Instant lastTraining = Instant.now();
+
+        StepVerifier
+            .create(this.trainingRepository
+                .updateLineProgress(this.book.getId(), 0, Line.builder()
+                    .id(LINE_ID_1)
+                    .boxId(3)
+                    .lastTraining(lastTraining)
+                    .lastCalendarSlot(2)
+                    .build())
+                .then(this.bookRepository.findLine(
+                    this.book.getId(),
+                    LINE_ID_1)))
+            .assertNext(line -> {
+                assertThat(line.getBoxId()).isEqualTo(3);
+                assertThat(line.getLastTraining())
+                    .isCloseTo(lastTraining, within(1, ChronoUnit.MICROS));
+                assertThat(line.getLastCalendarSlot()).isEqualTo(2);
+                assertThat(line.getMoves()).hasSize(1);
+            })
+            .verifyComplete();
+
+        // the cached Line and the stored one are the same
+        final Line cachedLine = this.bookRepository
+            .findLine(this.book.getId(), LINE_ID_1)
+            .block();
+        this.bookCache.evict(this.book.getId());
+        StepVerifier
+            .create(this.bookRepository.findLine(this.book.getId(), LINE_ID_1))
+            .assertNext(line -> assertThat(line)
+                .usingRecursiveComparison()
+                .withComparatorForType(
+                    (a, b) -> a.truncatedTo(ChronoUnit.MICROS)
+                        .compareTo(b.truncatedTo(ChronoUnit.MICROS)),
+                    Instant.class)
+                .isEqualTo(cachedLine))
+            .verifyComplete();
+    }
+
+    @Test
+    void updateLineProgress_withLineNotFound() {
+
+        StepVerifier
+            .create(this.trainingRepository.updateLineProgress(
+                this.book.getId(),
+                0,
+                Line.builder()
+                    .id(UUID.randomUUID())
+                    .build()))
+            .verifyComplete();
+    }
+
+    @Test
+    void updateLineProgress_withVersionConflict() {
+
+        final Line line = Line.builder()
+            .id(LINE_ID_1)
+            .boxId(3)
+            .build();
+
+        StepVerifier
+            .create(this.trainingRepository
+                .updateCalendarSlot(this.book.getId(), 0, 4, null)
+                .then(this.trainingRepository.updateLineProgress(
+                    this.book.getId(),
+                    0,
+                    line)))
+            .expectError(BookConflictException.class)
+            .verify();
+
+        // the line update has been rolled back
+        this.bookCache.evict(this.book.getId());
+        StepVerifier
+            .create(this.bookRepository.findLine(this.book.getId(), LINE_ID_1))
+            .expectNextMatches(l -> l.getBoxId() == 0)
+            .verifyComplete();
+    }
+
+    @Test
+    void updateCalendarSlot_withLineOrder() {
+
+        final List<UUID> lineIds = List.of(LINE_ID_3, LINE_ID_1, LINE_ID_2);
+
+        StepVerifier
+            .create(this.trainingRepository
+                .updateCalendarSlot(this.book.getId(), 0, 4, lineIds)
+                .thenMany(this.trainingRepository.findLineIds(
+                    this.book.getId()))
+                .collectList())
+            .expectNext(lineIds)
+            .verifyComplete();
+
+        // the cached lines have been reordered
+        StepVerifier
+            .create(this.bookRepository
+                .findById(this.book.getId())
+                .map(b -> b.getLines().stream().map(Line::getId).toList()))
+            .expectNext(lineIds)
+            .verifyComplete();
+    }
+
+    @Test
+    void updateCalendarSlot_withRollback() {
+
+        // the line order fails once the calendar slot is stored
+        final List<UUID> lineIds = new ArrayList<>();
+        lineIds.add(LINE_ID_3);
+        lineIds.add(null);
+
+        StepVerifier
+            .create(this.trainingRepository
+                .updateCalendarSlot(this.book.getId(), 0, 4, lineIds))
+            .expectError()
+            .verify();
+
+        // neither the slot nor the order has been stored, nor cached
+        StepVerifier
+            .create(this.trainingRepository.findProgress(this.book.getId()))
+            .expectNextMatches(progress -> progress.getCalendarSlot() == 3
+                && progress.getVersion() == 0)
+            .verifyComplete();
+        StepVerifier
+            .create(this.trainingRepository
+                .findLineIds(this.book.getId())
+                .collectList())
+            .expectNext(List.of(LINE_ID_1, LINE_ID_2, LINE_ID_3))
+            .verifyComplete();
+    }
+
+}
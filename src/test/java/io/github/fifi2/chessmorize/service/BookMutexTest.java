@@ -0,0 +1,144 @@
+package io.github.fifi2.chessmorize.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BookMutexTest {
+
+    private final BookMutex bookMutex = new BookMutex();
+
+    @Test
+    void run() {
+
+        final UUID bookId = UUID.randomUUID();
+        final List<String> events = new ArrayList<>();
+        final Sinks.One<String> first = Sinks.one();
+
+        this.bookMutex
+            .run(bookId, () -> {
+                events.add("first started");
+                return first.asMono();
+            })
+            .subscribe(events::add);
+        this.bookMutex
+            .run(bookId, () -> {
+                events.add("second started");
+                return Mono.just("second done");
+            })
+            .subscribe(events::add);
+
+        // the second mutation waits for the first one
+        assertThat(events).containsExactly("first started");
+
+        first.tryEmitValue("first done");
+
+        assertThat(events).containsExactly(
+            "first started",
+            "first done",
+            "second started",
+            "second done");
+        assertThat(this.bookMutex.size()).isZero();
+    }
+
+    @Test
+    void run_withCancelledWaitingMutation() {
+
+        final UUID bookId = UUID.randomUUID();
+        final List<String> events = new ArrayList<>();
+        final Sinks.One<String> first = Sinks.one();
+
+        this.bookMutex
+            .run(bookId, () -> {
+                events.add("first started");
+                return first.asMono();
+            })
+            .subscribe(events::add);
+        final Disposable second = this.bookMutex
+            .run(bookId, () -> {
+                events.add("second started");
+                return Mono.just("second done");
+            })
+            .subscribe(events::add);
+        this.bookMutex
+            .run(bookId, () -> {
+                events.add("third started");
+                return Mono.just("third done");
+            })
+            .subscribe(events::add);
+
+        // the cancelled second mutation does not release the third one while
+        // the first one is running
+        second.dispose();
+        assertThat(events).containsExactly("first started");
+
+        first.tryEmitValue("first done");
+
+        assertThat(events).containsExactly(
+            "first started",
+            "first done",
+            "third started",
+            "third done");
+        assertThat(this.bookMutex.size()).isZero();
+    }
+
+    @Test
+    void run_withOtherBook() {
+
+        final List<String> events = new ArrayList<>();
+        final Sinks.One<String> first = Sinks.one();
+
+        this.bookMutex
+            .run(UUID.randomUUID(), () -> {
+                events.add("first started");
+                return first.asMono();
+            })
+            .subscribe(events::add);
+        this.bookMutex
+            .run(UUID.randomUUID(), () -> {
+                events.add("second started");
+                return Mono.just("second done");
+            })
+            .subscribe(events::add);
+
+        // the mutations of different Books do not wait for each other
+        assertThat(events).containsExactly(
+            "first started",
+            "second started",
+            "second done");
+        assertThat(this.bookMutex.size()).isEqualTo(1);
+
+        first.tryEmitValue("first done");
+
+        assertThat(this.bookMutex.size()).isZero();
+    }
+
+    @Test
+    void run_withError() {
+
+        final UUID bookId = UUID.randomUUID();
+
+        StepVerifier
+            .create(this.bookMutex.run(
+                bookId,
+                () -> Mono.error(new IllegalStateException())))
+            .expectError(IllegalStateException.class)
+            .verify();
+
+        // the next mutation is not blocked
+        StepVerifier
+            .create(this.bookMutex.run(bookId, () -> Mono.just(1)))
+            .expectNext(1)
+            .verifyComplete();
+        assertThat(this.bookMutex.size()).isZero();
+    }
+
+}
@@ -1,28 +1,46 @@
 package io.github.fifi2.chessmorize.service;
 
 import io.github.fifi2.chessmorize.api.LichessApiClient;
+import io.github.fifi2.chessmorize.config.properties.ImportProperties;
 import io.github.fifi2.chessmorize.config.properties.TrainingProperties;
 import io.github.fifi2.chessmorize.converter.PgnGamesToBookConverter;
+import io.github.fifi2.chessmorize.error.exception.ImportRejectedException;
+import io.github.fifi2.chessmorize.error.exception.lichess.LichessNotFoundException;
 import io.github.fifi2.chessmorize.error.exception.pgn.PgnException;
 import io.github.fifi2.chessmorize.helper.builder.BookBuilder;
+import io.github.fifi2.chessmorize.metrics.Metrics;
 import io.github.fifi2.chessmorize.model.*;
 import io.github.fifi2.chessmorize.repository.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -45,6 +63,30 @@ class BookServiceTest {
     @Mock
     private TrainingProperties trainingPropertiesMock;
 
+    @Mock
+    private ImportProperties importPropertiesMock;
+
+    @Spy
+    private BookMutex bookMutex = new BookMutex();
+
+    @Spy
+    private DueLineQueues dueLineQueues = new DueLineQueues(
+        256,
+        Duration.ofMinutes(30),
+        Clock.systemUTC());
+
+    @Spy
+    private Scheduler importScheduler = Schedulers.immediate();
+
+    @Spy
+    private ForkJoinPool parserPool = ForkJoinPool.commonPool();
+
+    @Spy
+    private Semaphore importSlots = new Semaphore(1);
+
+    @Spy
+    private Metrics metrics = new Metrics(new SimpleMeterRegistry());
+
     @InjectMocks
     private BookService bookService;
 
@@ -53,8 +95,8 @@ class BookServiceTest {
     void createBook(final boolean isShuffled) {
 
         Mockito
-            .when(this.lichessApiClientMock.getStudyPGN(STUDY_ID))
-            .thenReturn(Mono.just("1. d4 d5 *"));
+            .when(this.lichessApiClientMock.getStudyPGNStream(STUDY_ID))
+            .thenReturn(pgnStream("1. d4 d5 *"));
 
         Mockito
             .when(this.pgnGamesToBookConverterMock.convert(
@@ -87,14 +129,55 @@ class BookServiceTest {
                 this.bookRepositoryMock,
                 Mockito.times(1))
             .save(Mockito.any());
+        assertThat(this.importSlots.availablePermits()).isOne();
+    }
+
+    @Test
+    void createBook_withoutImportSlot() {
+
+        this.importSlots.acquireUninterruptibly();
+
+        StepVerifier
+            .create(this.bookService.createBook(STUDY_ID, Color.WHITE))
+            .expectError(ImportRejectedException.class)
+            .verify();
+
+        // the study is not even downloaded
+        Mockito
+            .verify(this.lichessApiClientMock, Mockito.never())
+            .getStudyPGNStream(Mockito.any());
+        assertThat(this.importSlots.availablePermits()).isZero();
+    }
+
+    @Test
+    void createBook_withImportRejected() {
+
+        Mockito
+            .when(this.lichessApiClientMock.getStudyPGNStream(STUDY_ID))
+            .thenReturn(pgnStream("1. d4 d5 *"));
+
+        Mockito
+            .doThrow(new RejectedExecutionException())
+            .when(this.importScheduler)
+            .schedule(Mockito.any());
+
+        StepVerifier
+            .create(this.bookService.createBook(STUDY_ID, Color.WHITE))
+            .expectError(ImportRejectedException.class)
+            .verify();
+
+        Mockito
+            .verify(this.bookRepositoryMock, Mockito.never())
+            .save(Mockito.any());
+        assertThat(this.importSlots.availablePermits()).isOne();
     }
 
     @Test
     void createBook_withInvalidPgn() {
 
         Mockito
-            .when(this.lichessApiClientMock.getStudyPGN(STUDY_ID))
-            .thenReturn(Mono.just("""
+            .when(this.lichessApiClientMock.getStudyPGNStream(STUDY_ID))
+            .thenReturn(pgnStream("""
                 [Event "invalid pgn"]
                 
                 1. Da1 *
@@ -102,7 +185,9 @@ class BookServiceTest {
 
         StepVerifier
             .create(this.bookService.createBook(STUDY_ID, Color.WHITE))
-            .expectError(PgnException.class)
+            .expectErrorSatisfies(e -> assertThat(e)
+                .isInstanceOf(PgnException.class)
+                .hasRootCauseInstanceOf(IllegalArgumentException.class))
             .verify();
 
         Mockito
@@ -115,20 +200,44 @@ class BookServiceTest {
     }
 
     @Test
-    void getOneBook() {
+    void createBook_withLichessError() {
+
+        Mockito
+            .when(this.lichessApiClientMock.getStudyPGNStream(STUDY_ID))
+            .thenReturn(Flux.error(new LichessNotFoundException(
+                STUDY_ID,
+                null)));
+
+        StepVerifier
+            .create(this.bookService.createBook(STUDY_ID, Color.WHITE))
+            .expectError(LichessNotFoundException.class)
+            .verify();
+
+        Mockito
+            .verify(this.bookRepositoryMock, Mockito.never())
+            .save(Mockito.any());
+    }
 
+    @ParameterizedTest
+    @EnumSource(BookView.class)
+    void getOneBook(final BookView view) {
+
+        final Function<BookRepository, Mono<Book>> find = switch (view) {
+            case SUMMARY -> repository -> repository.findHeaderById(BOOK_ID);
+            case CHAPTERS -> repository -> repository.findChaptersView(BOOK_ID);
+            case LINES -> repository -> repository.findLinesView(BOOK_ID);
+            case FULL -> repository -> repository.findById(BOOK_ID);
+        };
         Mockito
-            .when(this.bookRepositoryMock.findById(BOOK_ID))
+            .when(find.apply(this.bookRepositoryMock))
             .thenReturn(Mono.just(Book.builder().id(BOOK_ID).build()));
 
         StepVerifier
-            .create(this.bookService.getOneBook(BOOK_ID))
+            .create(this.bookService.getOneBook(BOOK_ID, view))
             .expectNextMatches(book -> BOOK_ID.equals(book.getId()))
             .verifyComplete();
 
-        Mockito
-            .verify(this.bookRepositoryMock, Mockito.only())
-            .findById(BOOK_ID);
+        find.apply(Mockito.verify(this.bookRepositoryMock, Mockito.only()));
     }
 
     @Test
@@ -258,6 +367,63 @@ class BookServiceTest {
             .containsExactlyInAnyOrder(List.of(id3, id31));
     }
 
+    @Test
+    void createLines_withTranspositions() {
+
+        final Move e = buildMove("e", Color.WHITE, List.of(
+            buildMove("f", Color.BLACK, List.of(
+                buildMove("g", Color.WHITE, List.of())))));
+        final List<Move> sharedMoves = List.of(e);
+
+        final Move a = buildMove("a", Color.WHITE, List.of(
+            buildMove("b", Color.BLACK, List.of(
+                buildMove("c", Color.WHITE, List.of(
+                    buildMove("d", Color.BLACK, sharedMoves)))))));
+        // transposition after an opponent move
+        final Move a2 = buildMove("a2", Color.WHITE, List.of(
+            buildMove("b2", Color.BLACK, List.of(
+                buildMove("c2", Color.WHITE, List.of(
+                    buildMove("d2", Color.BLACK, sharedMoves)))))));
+        // transposition after a player move
+        final Move a3 = buildMove("a3", Color.WHITE, List.of(
+            buildMove("b3", Color.BLACK, List.of(
+                buildMove("e3", Color.WHITE, e.getNextMoves())))));
+
+        final Book book = Book.builder()
+            .color(Color.WHITE)
+            .chapters(List.of(Chapter.builder()
+                .id(UUID.randomUUID())
+                .nextMoves(List.of(a, a2, a3))
+                .build()))
+            .build();
+
+        Mockito
+            .when(this.trainingPropertiesMock.isShuffled())
+            .thenReturn(false);
+
+        assertThat(this.bookService.createLines(book))
+            .extracting(line -> line.getMoves()
+                .stream()
+                .map(LineMove::getSan)
+                .toList())
+            .containsExactly(
+                List.of("a", "b", "c", "d", "e", "f", "g"),
+                List.of("a2", "b2", "c2", "d2", "e"),
+                List.of("a3", "b3", "e3"));
+    }
+
+    private static Move buildMove(final String san,
+                                  final Color color,
+                                  final List<Move> nextMoves) {
+
+        return Move.builder()
+            .id(UUID.randomUUID())
+            .san(san)
+            .color(color)
+            .nextMoves(nextMoves)
+            .build();
+    }
+
     @Test
     void buildChapterLines() {
 
@@ -386,7 +552,7 @@ class BookServiceTest {
                     .chapterId(chapters.get(chapter2)));
 
         Mockito
-            .when(this.bookRepositoryMock.findById(bookId))
+            .when(this.bookRepositoryMock.findTrainingView(bookId))
             .thenReturn(Mono.just(bookBuilder.build()));
 
         Mockito
@@ -428,4 +594,10 @@ class BookServiceTest {
         // TODO When refresh is implemented, check that lines are refreshed
     }
 
+    private static Flux<DataBuffer> pgnStream(final String pgn) {
+
+        return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(
+            pgn.getBytes(StandardCharsets.UTF_8)));
+    }
+
 }
@@ -0,0 +1,72 @@
+package io.github.fifi2.chessmorize.service;
+
+import io.github.fifi2.chessmorize.model.Color;
+import io.github.fifi2.chessmorize.model.LineMove;
+import io.github.fifi2.chessmorize.model.Move;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChapterLinesTest {
+
+    @Test
+    void stream_withLongLine() {
+
+        // a line far deeper than what a recursive walk could handle
+        final int depth = 100_000;
+        Move move = null;
+        for (int i = depth - 1; i >= 0; i--)
+            move = Move.builder()
+                .id(UUID.randomUUID())
+                .color(i % 2 == 0 ? Color.WHITE : Color.BLACK)
+                .nextMoves(move == null ? List.of() : List.of(move))
+                .build();
+
+        final List<List<LineMove>> lines = ChapterLines
+            .stream(move, Color.BLACK, new HashSet<>(), new HashMap<>())
+            .toList();
+
+        assertThat(lines).hasSize(1);
+        assertThat(lines.getFirst()).hasSize(depth);
+    }
+
+    @Test
+    void stream_isLazy() {
+
+        final Move e4 = Move.builder()
+            .id(UUID.randomUUID())
+            .color(Color.WHITE)
+            .nextMoves(List.of(
+                Move.builder()
+                    .id(UUID.randomUUID())
+                    .color(Color.BLACK)
+                    .san("e5")
+                    .build(),
+                Move.builder()
+                    .id(UUID.randomUUID())
+                    .color(Color.BLACK)
+                    .san("c5")
+                    .build()))
+            .build();
+        final Set<UUID> visited = new HashSet<>();
+
+        final Iterator<List<LineMove>> lines = ChapterLines
+            .stream(e4, Color.BLACK, visited, new HashMap<>())
+            .iterator();
+
+        // the second line is not walked until it is read
+        assertThat(lines.next())
+            .extracting(LineMove::getSan)
+            .containsExactly(null, "e5");
+        assertThat(visited).hasSize(2);
+
+        assertThat(lines.next())
+            .extracting(LineMove::getSan)
+            .containsExactly(null, "c5");
+        assertThat(visited).hasSize(3);
+        assertThat(lines.hasNext()).isFalse();
+    }
+
+}
@@ -0,0 +1,134 @@
+package io.github.fifi2.chessmorize.service;
+
+import io.github.fifi2.chessmorize.helper.builder.BookBuilder;
+import io.github.fifi2.chessmorize.model.Book;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class DueLineQueuesTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 22);
+
+    @Mock
+    private Clock clock;
+
+    @Test
+    void get() {
+
+        final DueLineQueues queues = this.buildQueues(2);
+        final Book book = this.buildBook();
+        final DueLines dueLines = DueLines.of(book, List.of(0), TODAY);
+        final UUID bookId = book.getId();
+
+        assertThat(queues.get(bookId, 0, TODAY)).isEmpty();
+
+        Mockito.when(this.clock.millis()).thenReturn(0L);
+        queues.put(bookId, dueLines);
+
+        // the time to idle is reset by each read
+        Mockito.when(this.clock.millis()).thenReturn(8_000L);
+        assertThat(queues.get(bookId, 0, TODAY)).containsSame(dueLines);
+        Mockito.when(this.clock.millis()).thenReturn(16_000L);
+        assertThat(queues.get(bookId, 0, TODAY)).containsSame(dueLines);
+    }
+
+    @Test
+    void get_withInvalidDueLines() {
+
+        final DueLineQueues queues = this.buildQueues(2);
+        final Book book = this.buildBook();
+        final UUID bookId = book.getId();
+        Mockito.when(this.clock.millis()).thenReturn(0L);
+
+        queues.put(bookId, DueLines.of(book, List.of(0), TODAY));
+        assertThat(queues.get(bookId, 1, TODAY)).isEmpty();
+        assertThat(queues.size()).isZero();
+
+        queues.put(bookId, DueLines.of(book, List.of(0), TODAY));
+        assertThat(queues.get(bookId, 0, TODAY.plusDays(1))).isEmpty();
+        assertThat(queues.size()).isZero();
+    }
+
+    @Test
+    void get_withExpiredDueLines() {
+
+        final DueLineQueues queues = this.buildQueues(2);
+        final Book book = this.buildBook();
+        final UUID bookId = book.getId();
+
+        Mockito.when(this.clock.millis()).thenReturn(0L);
+        queues.put(bookId, DueLines.of(book, List.of(0), TODAY));
+
+        Mockito.when(this.clock.millis()).thenReturn(10_000L);
+        assertThat(queues.get(bookId, 0, TODAY)).isEmpty();
+        assertThat(queues.size()).isZero();
+    }
+
+    @Test
+    void put_withMaxBooksExceeded() {
+
+        final DueLineQueues queues = this.buildQueues(2);
+        final Book book1 = this.buildBook();
+        final Book book2 = this.buildBook();
+        final Book book3 = this.buildBook();
+        Mockito.when(this.clock.millis()).thenReturn(0L);
+
+        queues.put(book1.getId(), DueLines.of(book1, List.of(0), TODAY));
+        queues.put(book2.getId(), DueLines.of(book2, List.of(0), TODAY));
+        // book1 becomes the most recently trained one
+        assertThat(queues.get(book1.getId(), 0, TODAY)).isPresent();
+        queues.put(book3.getId(), DueLines.of(book3, List.of(0), TODAY));
+
+        assertThat(queues.size()).isEqualTo(2);
+        assertThat(queues.get(book2.getId(), 0, TODAY)).isEmpty();
+        assertThat(queues.get(book1.getId(), 0, TODAY)).isPresent();
+        assertThat(queues.get(book3.getId(), 0, TODAY)).isPresent();
+    }
+
+    @Test
+    void remove() {
+
+        final DueLineQueues queues = this.buildQueues(2);
+        final Book book = this.buildBook();
+        final UUID bookId = book.getId();
+        final UUID lineId = book.getLines().getFirst().getId();
+        Mockito.when(this.clock.millis()).thenReturn(0L);
+
+        // the DueLines follow the Book to its next version
+        queues.put(bookId, DueLines.of(book, List.of(0), TODAY));
+        queues.remove(bookId, 0, lineId);
+        assertThat(queues.get(bookId, 1, TODAY))
+            .hasValueSatisfying(dueLines -> assertThat(dueLines.size())
+                .isEqualTo(1));
+
+        // the DueLines of another version are evicted
+        queues.remove(bookId, 0, lineId);
+        assertThat(queues.size()).isZero();
+    }
+
+    private DueLineQueues buildQueues(final int maxBooks) {
+
+        return new DueLineQueues(maxBooks, Duration.ofSeconds(10), this.clock);
+    }
+
+    private Book buildBook() {
+
+        return BookBuilder.builder()
+            .withLine(line -> line.boxId(0))
+            .withLine(line -> line.boxId(0))
+            .build();
+    }
+
+}
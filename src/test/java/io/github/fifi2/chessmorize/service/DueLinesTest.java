@@ -0,0 +1,71 @@
+package io.github.fifi2.chessmorize.service;
+
+import io.github.fifi2.chessmorize.helper.builder.BookBuilder;
+import io.github.fifi2.chessmorize.model.Book;
+import io.github.fifi2.chessmorize.model.Line;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DueLinesTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 22);
+
+    @Test
+    void of() {
+
+        final Book book = BookBuilder.builder()
+            .calendarSlot(1)
+            .withLine(line -> line.boxId(1))
+            .withLine(line -> line.boxId(2))
+            .withLine(line -> line.boxId(0))
+            // trained in this slot today
+            .withLine(line -> line
+                .boxId(0)
+                .lastCalendarSlot(1)
+                .lastTraining(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC)))
+            .withLine(line -> line.boxId(1))
+            .build();
+        book.setVersion(4);
+        final List<Line> lines = book.getLines();
+
+        final DueLines dueLines = DueLines.of(book, List.of(0, 1), TODAY);
+
+        assertThat(dueLines.getVersion()).isEqualTo(4);
+        assertThat(dueLines.getDay()).isEqualTo(TODAY);
+        assertThat(dueLines.size()).isEqualTo(3);
+        assertThat(dueLines.peek()).containsSame(lines.get(2));
+    }
+
+    @Test
+    void remove() {
+
+        final Book book = BookBuilder.builder()
+            .withLine(line -> line.boxId(0))
+            .withLine(line -> line.boxId(1))
+            .withLine(line -> line.boxId(1))
+            .withLine(line -> line.boxId(0))
+            .build();
+        final List<Line> lines = book.getLines();
+        final DueLines dueLines = DueLines.of(book, List.of(0, 1), TODAY);
+
+        // the head of a queue
+        dueLines.remove(lines.get(0).getId());
+        assertThat(dueLines.peek()).containsSame(lines.get(3));
+
+        // a Line behind the head
+        dueLines.remove(lines.get(2).getId());
+        dueLines.remove(lines.get(3).getId());
+        assertThat(dueLines.peek()).containsSame(lines.get(1));
+
+        dueLines.remove(lines.get(1).getId());
+        assertThat(dueLines.peek()).isEmpty();
+        assertThat(dueLines.size()).isZero();
+        assertThat(dueLines.getVersion()).isEqualTo(4);
+    }
+
+}
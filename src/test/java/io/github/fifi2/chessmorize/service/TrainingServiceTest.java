@@ -5,10 +5,13 @@ import io.github.fifi2.chessmorize.error.exception.BookNotFoundException;
 import io.github.fifi2.chessmorize.error.exception.LineNotFoundException;
 import io.github.fifi2.chessmorize.error.exception.NoTrainingLineException;
 import io.github.fifi2.chessmorize.helper.builder.BookBuilder;
+import io.github.fifi2.chessmorize.metrics.Metrics;
 import io.github.fifi2.chessmorize.helper.converter.StringToList;
 import io.github.fifi2.chessmorize.model.Book;
 import io.github.fifi2.chessmorize.model.Line;
 import io.github.fifi2.chessmorize.repository.BookRepository;
+import io.github.fifi2.chessmorize.repository.TrainingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -18,10 +21,13 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -36,9 +42,24 @@ class TrainingServiceTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private TrainingRepository trainingRepository;
+
     @Mock
     private TrainingProperties trainingProperties;
 
+    @Spy
+    private BookMutex bookMutex = new BookMutex();
+
+    @Spy
+    private DueLineQueues dueLineQueues = new DueLineQueues(
+        256,
+        Duration.ofMinutes(30),
+        Clock.systemUTC());
+
+    @Spy
+    private Metrics metrics = new Metrics(new SimpleMeterRegistry());
+
     @InjectMocks
     private TrainingService trainingService;
 
@@ -53,9 +74,28 @@ class TrainingServiceTest {
         for (int i = 0; i < eligibleLinesNumber; i++)
             bookBuilder.withLine(line -> line.boxId(0));
 
+        final List<Line> lines = bookBuilder.build().getLines();
+
         Mockito
-            .when(this.bookRepository.findById(bookId))
-            .thenReturn(Mono.just(bookBuilder.build()));
+            .when(this.trainingRepository.findProgress(bookId))
+            .thenReturn(Mono.just(Book.builder().id(bookId).build()));
+
+        Mockito
+            .when(this.trainingRepository.findLineProgresses(bookId))
+            .thenReturn(Flux.fromIterable(lines));
+
+        if (eligibleLinesNumber > 0) {
+            Mockito
+                .when(this.bookRepository.findLine(
+                    Mockito.eq(bookId),
+                    Mockito.any()))
+                .thenAnswer(invocation -> Mono.just(lines
+                    .stream()
+                    .filter(line -> invocation.getArgument(1)
+                        .equals(line.getId()))
+                    .findAny()
+                    .orElseThrow()));
+        }
 
         Mockito
             .when(this.trainingProperties.getCalendar())
@@ -75,6 +115,78 @@ class TrainingServiceTest {
         }
     }
 
+    @Test
+    void getNextLine_afterSetLineResult() {
+
+        final UUID bookId = UUID.randomUUID();
+        final Book book = BookBuilder.builder()
+            .id(bookId)
+            .withLine(line -> line.boxId(0))
+            .withLine(line -> line.boxId(0))
+            .build();
+        final Line firstLine = book.getLines().getFirst();
+        final Line secondLine = book.getLines().getLast();
+
+        Mockito
+            .when(this.trainingRepository.findProgress(bookId))
+            .thenReturn(
+                Mono.just(Book.builder().id(bookId).version(0).build()),
+                Mono.just(Book.builder().id(bookId).version(0).build()),
+                Mono.just(Book.builder().id(bookId).version(1).build()));
+
+        Mockito
+            .when(this.trainingRepository.findLineProgresses(bookId))
+            .thenReturn(Flux.fromIterable(book.getLines()
+                .stream()
+                .map(line -> line.toBuilder().build())
+                .toList()));
+
+        Mockito
+            .when(this.bookRepository.findLine(
+                Mockito.eq(bookId),
+                Mockito.any()))
+            .thenAnswer(invocation -> Mono.just(book.getLines()
+                .stream()
+                .filter(line -> invocation.getArgument(1)
+                    .equals(line.getId()))
+                .findAny()
+                .orElseThrow()));
+
+        Mockito
+            .when(this.trainingProperties.getCalendar())
+            .thenReturn(List.of(List.of(0)));
+
+        Mockito
+            .when(this.trainingRepository.updateLineProgress(
+                Mockito.eq(bookId),
+                Mockito.eq(0L),
+                Mockito.any()))
+            .thenAnswer(invocation -> Mono.just(invocation.getArgument(2)));
+
+        StepVerifier
+            .create(this.trainingService.getNextLine(bookId))
+            .expectNextMatches(line -> firstLine.getId().equals(line.getId()))
+            .verifyComplete();
+
+        StepVerifier
+            .create(this.trainingService.setLineResult(
+                bookId,
+                firstLine.getId(),
+                false))
+            .expectNextCount(1)
+            .verifyComplete();
+
+        // the due lines follow the Book to its next version
+        StepVerifier
+            .create(this.trainingService.getNextLine(bookId))
+            .expectNextMatches(line -> secondLine.getId().equals(line.getId()))
+            .verifyComplete();
+
+        Mockito
+            .verify(this.trainingRepository, Mockito.times(1))
+            .findLineProgresses(bookId);
+    }
+
     @ParameterizedTest
     @CsvSource(delimiter = '|', textBlock = """
         0 |   |                             | with no lines #1
@@ -146,10 +258,18 @@ class TrainingServiceTest {
             .id(bookId)
             .withLine(line -> line.id(lineId))
             .build();
+        final Line line = book.getLines().getFirst();
 
         Mockito
-            .when(this.bookRepository.findById(book.getId()))
-            .thenReturn(Mono.just(book));
+            .when(this.trainingRepository.findProgress(book.getId()))
+            .thenReturn(Mono.just(Book.builder()
+                .id(bookId)
+                .version(7)
+                .build()));
+
+        Mockito
+            .when(this.bookRepository.findLine(bookId, lineId))
+            .thenReturn(Mono.just(line));
 
         if (result) {
             Mockito
@@ -158,18 +278,18 @@ class TrainingServiceTest {
         }
 
         Mockito
-            .when(this.bookRepository.update(book))
-            .thenReturn(Mono.just(book));
+            .when(this.trainingRepository.updateLineProgress(bookId, 7, line))
+            .thenReturn(Mono.just(line));
 
         StepVerifier
             .create(this.trainingService.setLineResult(bookId,
                 lineId,
                 result))
-            .expectNextMatches(line -> line.getBoxId() == (result ? 1 : 0)
-                && line.getLastTraining() != null
-                && line.getLastTraining().isAfter(start)
-                && line.getLastTraining().isBefore(Instant.now())
-                && line.getLastCalendarSlot() == 0)
+            .expectNextMatches(l -> l.getBoxId() == (result ? 1 : 0)
+                && l.getLastTraining() != null
+                && l.getLastTraining().isAfter(start)
+                && l.getLastTraining().isBefore(Instant.now())
+                && l.getLastCalendarSlot() == 0)
             .verifyComplete();
     }
 
@@ -180,7 +300,7 @@ class TrainingServiceTest {
         final UUID bookId = UUID.randomUUID();
 
         Mockito
-            .when(this.bookRepository.findById(bookId))
+            .when(this.trainingRepository.findProgress(bookId))
             .thenReturn(Mono.error(new BookNotFoundException(bookId)));
 
         StepVerifier
@@ -192,8 +312,8 @@ class TrainingServiceTest {
             .verify();
 
         Mockito
-            .verify(this.bookRepository, Mockito.never())
-            .update(Mockito.any());
+            .verify(this.trainingRepository, Mockito.never())
+            .updateLineProgress(Mockito.any(), Mockito.anyLong(), Mockito.any());
     }
 
     @ParameterizedTest
@@ -201,26 +321,27 @@ class TrainingServiceTest {
     void setLineResult_withLineNotFound(final boolean result) {
 
         final UUID bookId = UUID.randomUUID();
-        final Book book = Book.builder()
-            .id(bookId)
-            .lines(List.of())
-            .build();
+        final UUID lineId = UUID.randomUUID();
+
+        Mockito
+            .when(this.trainingRepository.findProgress(bookId))
+            .thenReturn(Mono.just(Book.builder().id(bookId).build()));
 
         Mockito
-            .when(this.bookRepository.findById(bookId))
-            .thenReturn(Mono.just(book));
+            .when(this.bookRepository.findLine(bookId, lineId))
+            .thenReturn(Mono.empty());
 
         StepVerifier
             .create(this.trainingService.setLineResult(
                 bookId,
-                UUID.randomUUID(),
+                lineId,
                 result))
             .expectError(LineNotFoundException.class)
             .verify();
 
         Mockito
-            .verify(this.bookRepository, Mockito.never())
-            .update(Mockito.any());
+            .verify(this.trainingRepository, Mockito.never())
+            .updateLineProgress(Mockito.any(), Mockito.anyLong(), Mockito.any());
     }
 
     @ParameterizedTest
@@ -236,15 +357,14 @@ class TrainingServiceTest {
                           final int expectedCalendarSlot) {
 
         final UUID bookId = UUID.randomUUID();
-        final Book book = Book.builder()
-            .id(bookId)
-            .lines(List.of())
-            .calendarSlot(initialCalendarSlot)
-            .build();
 
         Mockito
-            .when(this.bookRepository.findById(bookId))
-            .thenReturn(Mono.just(book));
+            .when(this.trainingRepository.findProgress(bookId))
+            .thenReturn(Mono.just(Book.builder()
+                .id(bookId)
+                .calendarSlot(initialCalendarSlot)
+                .version(3)
+                .build()));
 
         final List<List<Integer>> calendar = new ArrayList<>();
         for (int i = 0; i < calendarSize; i++)
@@ -254,30 +374,92 @@ class TrainingServiceTest {
             .thenReturn(calendar);
 
         Mockito
-            .when(this.bookRepository.update(book))
-            .thenReturn(Mono.just(book));
+            .when(this.trainingRepository.updateCalendarSlot(
+                bookId,
+                3,
+                expectedCalendarSlot,
+                null))
+            .thenReturn(Mono.just(expectedCalendarSlot));
 
         StepVerifier
             .create(this.trainingService.nextCalendarSlot(bookId))
-            .expectNextMatches(b -> bookId.equals(b.getId())
-                && b.getCalendarSlot() == expectedCalendarSlot)
+            .expectNext(expectedCalendarSlot)
             .verifyComplete();
+
+        Mockito
+            .verify(this.trainingRepository, Mockito.never())
+            .findLineIds(Mockito.any());
     }
 
     @Test
-    void nextCalendarSlot_withNoBookFound() {
+    void nextCalendarSlot_withShuffledLines() {
+
+        final UUID bookId = UUID.randomUUID();
+        final List<UUID> lineIds = List.of(
+            UUID.randomUUID(),
+            UUID.randomUUID(),
+            UUID.randomUUID());
 
         Mockito
-            .when(this.bookRepository.findById(Mockito.any()))
-            .thenReturn(Mono.empty());
+            .when(this.trainingRepository.findProgress(bookId))
+            .thenReturn(Mono.just(Book.builder().id(bookId).build()));
+
+        Mockito
+            .when(this.trainingProperties.getCalendar())
+            .thenReturn(List.of(List.of(0), List.of(0, 1)));
+
+        Mockito
+            .when(this.trainingProperties.isShuffled())
+            .thenReturn(true);
+
+        Mockito
+            .when(this.trainingRepository.findLineIds(bookId))
+            .thenReturn(Flux.fromIterable(lineIds));
+
+        Mockito
+            .when(this.trainingRepository.updateCalendarSlot(
+                Mockito.eq(bookId),
+                Mockito.eq(0L),
+                Mockito.eq(1),
+                Mockito.any()))
+            .thenReturn(Mono.just(1));
 
         StepVerifier
-            .create(this.trainingService.nextCalendarSlot(UUID.randomUUID()))
+            .create(this.trainingService.nextCalendarSlot(bookId))
+            .expectNext(1)
             .verifyComplete();
 
         Mockito
-            .verify(this.bookRepository, Mockito.never())
-            .update(Mockito.any());
+            .verify(this.trainingRepository)
+            .updateCalendarSlot(
+                Mockito.eq(bookId),
+                Mockito.eq(0L),
+                Mockito.eq(1),
+                Mockito.argThat(ids -> ids.size() == 3
+                    && ids.containsAll(lineIds)));
+    }
+
+    @Test
+    void nextCalendarSlot_withNoBookFound() {
+
+        final UUID bookId = UUID.randomUUID();
+
+        Mockito
+            .when(this.trainingRepository.findProgress(bookId))
+            .thenReturn(Mono.error(new BookNotFoundException(bookId)));
+
+        StepVerifier
+            .create(this.trainingService.nextCalendarSlot(bookId))
+            .expectError(BookNotFoundException.class)
+            .verify();
+
+        Mockito
+            .verify(this.trainingRepository, Mockito.never())
+            .updateCalendarSlot(
+                Mockito.any(),
+                Mockito.anyLong(),
+                Mockito.anyInt(),
+                Mockito.any());
     }
 
     @ParameterizedTest
@@ -0,0 +1,78 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import io.github.fifi2.chessmorize.helper.converter.StringToList;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.converter.ConvertWith;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BitboardsTest {
+
+    @DisplayName("Get the squares attacked by a:")
+    @ParameterizedTest(name = "{index}: {0} {1} on {2}")
+    @CsvSource(delimiter = '|', textBlock = """
+        WHITE | PAWN   | e4 |             | d5,f5
+        WHITE | PAWN   | a2 |             | b3
+        BLACK | PAWN   | e4 |             | d3,f3
+        BLACK | PAWN   | h7 |             | g6
+        WHITE | KNIGHT | f3 |             | d4,e5,g5,h4,d2,e1,g1,h2
+        WHITE | KNIGHT | a8 |             | c7,b6
+        WHITE | KING   | e4 |             | d5,e5,f5,d4,f4,d3,e3,f3
+        WHITE | KING   | h8 |             | g8,g7,h7
+        WHITE | ROOK   | a1 |             | a2,a3,a4,a5,a6,a7,a8,b1,c1,d1,e1,f1,g1,h1
+        WHITE | ROOK   | d4 | d6,f4,d2    | d5,d6,e4,f4,d3,d2,c4,b4,a4
+        WHITE | BISHOP | c1 |             | b2,a3,d2,e3,f4,g5,h6
+        WHITE | BISHOP | c1 | e3          | b2,a3,d2,e3
+        WHITE | QUEEN  | d1 | d2,c2,e2,c1 | c1,c2,d2,e2,e1,f1,g1,h1
+        """)
+    void attacks(final Color color,
+                 final PgnPieceType pieceType,
+                 final String square,
+                 @ConvertWith(StringToList.class) final List<String> occupied,
+                 @ConvertWith(StringToList.class) final List<String> expected) {
+
+        final long occupancy = occupied.stream()
+            .map(PgnSquare::new)
+            .mapToLong(s -> Bitboards.bit(s.getIndex()))
+            .reduce(Bitboards.EMPTY, (a, b) -> a | b);
+
+        final long attacks = Bitboards.attacks(
+            pieceType,
+            color,
+            new PgnSquare(square).getIndex(),
+            occupancy);
+
+        assertThat(toSquareNames(attacks))
+            .containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @DisplayName("Get the squares matching a disambiguating move:")
+    @ParameterizedTest(name = "{index}: {0}")
+    @CsvSource(delimiter = '|', textBlock = """
+        b  | b1,b2,b3,b4,b5,b6,b7,b8
+        4  | a4,b4,c4,d4,e4,f4,g4,h4
+        h4 | h4
+        """)
+    void disambiguatingSquares(
+        final String disambiguatingMove,
+        @ConvertWith(StringToList.class) final List<String> expected) {
+
+        assertThat(toSquareNames(
+            Bitboards.disambiguatingSquares(disambiguatingMove)))
+            .containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    private static List<String> toSquareNames(final long bitboard) {
+
+        final List<String> names = new ArrayList<>();
+        for (long b = bitboard; b != Bitboards.EMPTY; b &= b - 1)
+            names.add(PgnSquare.of(Long.numberOfTrailingZeros(b)).getName());
+        return names;
+    }
+
+}
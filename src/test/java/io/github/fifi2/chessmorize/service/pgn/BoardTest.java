@@ -1,5 +1,6 @@
 package io.github.fifi2.chessmorize.service.pgn;
 
+import io.github.fifi2.chessmorize.helper.converter.StringToList;
 import io.github.fifi2.chessmorize.service.pgn.Board;
 import io.github.fifi2.chessmorize.service.pgn.Color;
 import io.github.fifi2.chessmorize.service.pgn.PgnPieceType;
@@ -7,9 +8,13 @@ import io.github.fifi2.chessmorize.service.pgn.PgnSquare;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.converter.ConvertWith;
 import org.junit.jupiter.params.provider.CsvSource;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.stream.Stream;
 
@@ -163,14 +168,19 @@ class BoardTest {
         rnbqkbnr/pp2pppp/2p5/3p4/3PP3/8/PPP2PPP/RNBQKBNR w KQkq - 0 3       | exd5    | rnbqkbnr/pp2pppp/2p5/3P4/3P4/8/PPP2PPP/RNBQKBNR b KQkq - 0 3         | e4d5  | A capture with a pawn
         rn1qkbnr/pp3ppp/4p1b1/2ppP3/3P2PP/2N5/PPP1NP2/R1BQKB1R b KQkq - 0 7 | h5      | rn1qkbnr/pp3pp1/4p1b1/2ppP2p/3P2PP/2N5/PPP1NP2/R1BQKB1R w KQkq - 0 8 | h7h5  | A pawn long move, without en passant target
         rnbqkbnr/1ppppppp/p7/4P3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2         | d5      | rnbqkbnr/1pp1pppp/p7/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3        | d7d5 | A move giving an en passant target square
+        rnbqkbnr/ppp1pppp/8/8/3p4/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1          | e4      | rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1         | e2e4  | A white move giving an en passant target square
         rnbqkbnr/1ppppppp/8/2P1P3/p7/8/PP1P1PPP/RNBQKBNR b KQkq - 0 4       | d5      | rnbqkbnr/1pp1pppp/8/2PpP3/p7/8/PP1P1PPP/RNBQKBNR w KQkq d6 0 5       | d7d5 | A move giving an en passant target square from two squares
         rnbqkbnr/1pp1pppp/p7/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 3       | exd6    | rnbqkbnr/1pp1pppp/p2P4/8/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 3          | e5d6  | En passant
         rnbqkbnr/1pp1pppp/8/2PpP3/p7/8/PP1P1PPP/RNBQKBNR w KQkq d6 0 5      | cxd6    | rnbqkbnr/1pp1pppp/3P4/4P3/p7/8/PP1P1PPP/RNBQKBNR b KQkq - 0 5        | c5d6  | En passant with multiple choices
         rnbqk1nr/ppp2ppp/8/4P3/1BP5/8/PP2KpPP/RN1Q1BNR b kq - 1 7           | fxg1=N+ | rnbqk1nr/ppp2ppp/8/4P3/1BP5/8/PP2K1PP/RN1Q1BnR w kq - 0 8            | f2g1n | Capture and promotion with check
         6k1/Q7/1Q6/8/3r4/8/6K1/8 w - - 0 40                                 | Qxd4    | 6k1/Q7/8/8/3Q4/8/6K1/8 b - - 0 40                                    | b6d4  | A move where the closest piece should move
+        k7/Q7/8/8/8/3P4/3Q4/K7 w - - 0 1                                    | Qd4     | k7/8/8/8/3Q4/3P4/3Q4/K7 b - - 1 1                                    | a7d4  | A move where the closest piece is blocked
+        4r2k/8/8/8/8/8/4N3/1N2K3 w - - 0 1                                  | Nc3     | 4r2k/8/8/8/8/2N5/4N3/4K3 b - - 1 1                                   | b1c3  | A move where the closest piece is pinned
         8/8/1k6/8/4Q2Q/8/K7/4r2Q w - - 0 1                                  | Qh4xe1  | 8/8/1k6/8/4Q3/8/K7/4Q2Q b - - 0 1                                    | h4e1  | A move where all disambiguating move matters
         r1bqr1k1/pp1nbppp/2p2n2/3p2B1/3P4/2NBPN2/PPQ2PPP/R3K2R w KQ - 6 10  | O-O     | r1bqr1k1/pp1nbppp/2p2n2/3p2B1/3P4/2NBPN2/PPQ2PPP/R4RK1 b - - 7 10    | e1g1  | Short castle
         r3kbnr/pppq1ppp/2n1b3/4P3/2Pp4/5NP1/PP2PPBP/RNBQ1RK1 b kq - 4 7     | O-O-O   | 2kr1bnr/pppq1ppp/2n1b3/4P3/2Pp4/5NP1/PP2PPBP/RNBQ1RK1 w - - 5 8      | e8c8  | Long castle
+        8/8/8/8/k2p3R/8/4P3/4K3 w - - 0 1                                   | e4      | 8/8/8/8/k2pP2R/8/8/4K3 b - - 0 1                                     | e2e4  | A pawn long move, without en passant target (the capture is illegal)
+        r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1                                | Rxa8+   | R3k2r/8/8/8/8/8/8/4K2R b Kk - 0 1                                    | a1a8  | A capture of a rook on its square
         """)
     void move(final String givenFen,
               final String givenMove,
@@ -184,6 +194,247 @@ class BoardTest {
         assertThat(board.getUci()).isEqualTo(expectedUci);
     }
 
+    @DisplayName("Given a board, able to take back the following moves:")
+    @ParameterizedTest(name = "{index}: {2}")
+    @CsvSource(delimiter = '|', textBlock = """
+        rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1           | e4,e5,Nf3 | Simple moves, on a brand new board
+        rnbqkbnr/pp2pppp/2p5/3p4/3PP3/8/PPP2PPP/RNBQKBNR w KQkq - 0 3      | exd5,cxd5 | Captures
+        rnbqkbnr/1ppppppp/p7/4P3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2        | d5,exd6   | En passant
+        rnbqk1nr/ppp2ppp/8/4P3/1BP5/8/PP2KpPP/RN1Q1BNR b kq - 1 7          | fxg1=N+   | Capture and promotion
+        r1bqr1k1/pp1nbppp/2p2n2/3p2B1/3P4/2NBPN2/PPQ2PPP/R3K2R w KQ - 6 10 | O-O       | Short castle
+        r3kbnr/pppq1ppp/2n1b3/4P3/2Pp4/5NP1/PP2PPBP/RNBQ1RK1 b kq - 4 7    | O-O-O     | Long castle
+        """)
+    void unmove(final String givenFen,
+                @ConvertWith(StringToList.class) final List<String> moves,
+                final String description) {
+
+        final Board board = new Board(givenFen);
+        final long zobristKey = board.getZobristKey();
+        moves.forEach(board::move);
+        moves.forEach(dummy -> board.unmove());
+        assertThat(board.getFen()).isEqualTo(givenFen);
+        assertThat(board.getZobristKey()).isEqualTo(zobristKey);
+    }
+
+    @DisplayName("Zobrist key after moves:")
+    @ParameterizedTest(name = "{index}: {2}")
+    @CsvSource(delimiter = '|', textBlock = """
+        rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1           | e4,e5,Nf3 | Simple moves, on a brand new board
+        rnbqkbnr/1ppppppp/p7/4P3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2        | d5,exd6   | En passant
+        rnbqk1nr/ppp2ppp/8/4P3/1BP5/8/PP2KpPP/RN1Q1BNR b kq - 1 7          | fxg1=N+   | Capture and promotion
+        r1bqr1k1/pp1nbppp/2p2n2/3p2B1/3P4/2NBPN2/PPQ2PPP/R3K2R w KQ - 6 10 | O-O       | Short castle
+        r3kbnr/pppq1ppp/2n1b3/4P3/2Pp4/5NP1/PP2PPBP/RNBQ1RK1 b kq - 4 7    | O-O-O     | Long castle
+        """)
+    void getZobristKey(final String givenFen,
+                       @ConvertWith(StringToList.class) final List<String> moves,
+                       final String description) {
+
+        final Board board = new Board(givenFen);
+        moves.forEach(board::move);
+
+        // the incremental key is the one computed from scratch
+        assertThat(board.getZobristKey())
+            .isEqualTo(new Board(board.getFen()).getZobristKey());
+    }
+
+    @Test
+    void getZobristKey_withTransposition() {
+
+        final Board board1 = new Board();
+        List.of("d4", "Nf6", "c4", "e6").forEach(board1::move);
+        final Board board2 = new Board();
+        List.of("c4", "e6", "d4", "Nf6").forEach(board2::move);
+        final Board board3 = new Board();
+        List.of("c4", "e6", "d4").forEach(board3::move);
+
+        assertThat(board1.getZobristKey()).isEqualTo(board2.getZobristKey());
+        assertThat(board1.getZobristKey()).isNotEqualTo(board3.getZobristKey());
+    }
+
+    @Test
+    void unmove_replayTheMove() {
+
+        final Board board = new Board();
+        board.move("e4");
+        final String fen = board.getFen();
+
+        final Board.Undo undo = board.unmove();
+        assertThat(board.getFen()).isEqualTo(FEN_START);
+
+        board.move(undo.move());
+        assertThat(board.getFen()).isEqualTo(fen);
+        assertThat(board.getUci()).isEqualTo("e2e4");
+    }
+
+    @Test
+    void copy() {
+
+        final Board board = new Board();
+        board.move("e4");
+        board.move("d5");
+
+        final Board copy = new Board(board);
+        assertThat(copy.getFen()).isEqualTo(board.getFen());
+        assertThat(copy.getZobristKey()).isEqualTo(board.getZobristKey());
+        assertThat(copy.getUci()).isEqualTo("d7d5");
+
+        // the copy has its own position and no history
+        copy.move("exd5");
+        assertThat(board.getFen()).isNotEqualTo(copy.getFen());
+        board.unmove();
+        assertThat(copy.getFen())
+            .isEqualTo("rnbqkbnr/ppp1pppp/8/3P4/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2");
+        copy.unmove();
+        assertThatExceptionOfType(NoSuchElementException.class)
+            .isThrownBy(copy::unmove);
+    }
+
+    @Test
+    void unmove_withoutMove() {
+
+        final Board board = new Board();
+        assertThatExceptionOfType(NoSuchElementException.class)
+            .isThrownBy(board::unmove);
+    }
+
+    @Test
+    void move_withInvalidSan() {
+
+        final Board board = new Board();
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> board.move("Da1"));
+    }
+
+    @DisplayName("Given a board, unable to play a SAN without source piece:")
+    @ParameterizedTest(name = "{index}: {2}")
+    @CsvSource(delimiter = '|', textBlock = """
+        4k3/8/8/8/8/8/8/1N2KN2 w - - 0 1                                   | Nd2   | An ambiguous knight move without disambiguation
+        4k3/8/8/8/8/8/4K3/R6R w - - 0 1                                    | Rd1   | An ambiguous rook move without disambiguation
+        4k3/8/8/8/8/8/8/4K3 w - - 0 1                                      | Nf3   | A move without any piece able to play it
+        """)
+    void move_withoutSourcePiece(final String givenFen,
+                                 final String givenMove,
+                                 final String description) {
+
+        final Board board = new Board(givenFen);
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> board.move(givenMove))
+            .withMessageContaining(givenMove);
+        assertThat(board.getFen()).isEqualTo(givenFen);
+    }
+
+    @DisplayName("Given a board, unable to do the following illegal moves:")
+    @ParameterizedTest(name = "{index}: {2}")
+    @CsvSource(delimiter = '|', textBlock = """
+        4r2k/8/8/8/8/8/4N3/4K3 w - - 0 1                                   | Nc3   | A move of a pinned piece
+        4r2k/8/8/8/8/8/8/4K3 w - - 0 1                                     | Ke2   | A king moving into check
+        3rk3/8/8/8/8/8/8/4K3 w - - 0 1                                     | Kd2   | A king moving along an attacked file
+        4k3/8/8/8/8/8/8/4K3 w - - 0 1                                      | O-O   | A castle without rook and availability
+        4k3/8/8/8/8/8/8/R3K2R w - - 0 1                                    | O-O-O | A castle without availability
+        4k3/8/8/8/8/8/8/R2bK2R w KQ - 0 1                                  | O-O-O | A castle through a piece
+        5rk1/8/8/8/8/8/8/R3K2R w KQ - 0 1                                  | O-O   | A castle through check
+        4k3/8/8/8/8/8/8/R3K2r w Q - 0 1                                    | O-O-O | A castle out of check
+        4k3/8/8/8/8/8/4q3/4K3 w - - 0 1                                    | Kd2   | A king moving along a checking line
+        4k3/P7/8/8/8/8/8/4K3 w - - 0 1                                     | a8    | A pawn reaching the last rank without promotion
+        rnbqkbnr/1pp1pppp/p7/3pP3/8/8/PPPP1PPP/RNBQKBNR w KQkq - 0 3       | exf6  | An en passant capture without target square
+        8/8/8/K2pP2r/8/8/8/4k3 w - d6 0 1                                  | exd6  | An en passant capture exposing the king
+        """)
+    void move_withIllegalMove(final String givenFen,
+                              final String givenMove,
+                              final String description) {
+
+        final Board board = new Board(givenFen);
+        assertThatExceptionOfType(IllegalArgumentException.class)
+            .isThrownBy(() -> board.move(givenMove));
+        assertThat(board.getFen()).isEqualTo(givenFen);
+    }
+
+    @Test
+    void getLegalMoves() {
+
+        final Board board = new Board(
+            "r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+
+        assertThat(board.getLegalMoves())
+            .hasSize(28)
+            .extracting(Board::buildUci)
+            .contains("e1g1", "e1c1", "e5d6", "e5e6", "a1a8", "h1h8")
+            .doesNotHaveDuplicates();
+        assertThat(board.getLegalMoves())
+            .filteredOn(m -> m.castlingMove() != null)
+            .extracting(m -> m.castlingMove().target().getName())
+            .containsExactlyInAnyOrder("f1", "d1");
+        assertThat(board.getLegalMoves())
+            .filteredOn(Move::capture)
+            .extracting(Board::buildUci)
+            .containsExactlyInAnyOrder("e5d6", "a1a8", "h1h8");
+
+        // each legal move can be played from its SAN parts
+        board.getLegalMoves().forEach(m -> {
+            board.move(m);
+            board.unmove();
+        });
+        assertThat(board.getFen())
+            .isEqualTo("r3k2r/8/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1");
+    }
+
+    @Test
+    void getLegalMoves_whenCheckmated() {
+
+        final Board board = new Board();
+        List.of("f3", "e5", "g4", "Qh4#").forEach(board::move);
+
+        assertThat(board.getLegalMoves()).isEmpty();
+        assertThat(board.perft(3)).isZero();
+    }
+
+    @DisplayName("Count the leaf nodes of the legal move tree (perft):")
+    @ParameterizedTest(name = "{index}: {3} at depth {1}")
+    @CsvSource(delimiter = '|', textBlock = """
+        rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1                 | 0 | 1       | Initial position
+        rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1                 | 1 | 20      | Initial position
+        rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1                 | 3 | 8902    | Initial position
+        rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1                 | 4 | 197281  | Initial position
+        r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1     | 1 | 48      | Kiwipete
+        r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1     | 2 | 2039    | Kiwipete
+        r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1     | 3 | 97862   | Kiwipete
+        8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1                                | 4 | 43238   | En passant pins
+        8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1                                | 5 | 674624  | En passant pins
+        r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1         | 3 | 9467    | Promotions and checks
+        r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1         | 4 | 422333  | Promotions and checks
+        rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8                | 3 | 62379   | Promotion with capture
+        r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10 | 3 | 89890   | Middle game
+        """)
+    void perft(final String fen,
+               final int depth,
+               final long expectedNodes,
+               final String description) {
+
+        final Board board = new Board(fen);
+        assertThat(board.perft(depth)).isEqualTo(expectedNodes);
+
+        // the position is restored
+        assertThat(board.getFen()).isEqualTo(fen);
+        assertThat(board.getZobristKey())
+            .isEqualTo(new Board(fen).getZobristKey());
+    }
+
+    @Test
+    void divide() {
+
+        final Map<String, Long> nodes = new Board(
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1")
+            .divide(2);
+
+        assertThat(nodes).hasSize(48);
+        assertThat(nodes.values().stream().mapToLong(Long::longValue).sum())
+            .isEqualTo(2039L);
+        assertThat(nodes)
+            .containsEntry("e1g1", 43L)
+            .containsEntry("e1c1", 43L)
+            .containsEntry("d5e6", 46L);
+    }
+
     @ParameterizedTest
     @CsvSource(delimiter = '|', textBlock = """
         WHITE | e4     | PAWN   | e4 |      |
@@ -206,6 +457,8 @@ class BoardTest {
         WHITE | O-O-O  | KING   | c1 | ROOK | d1
         BLACK | O-O    | KING   | g8 | ROOK | f8
         BLACK | O-O-O  | KING   | c8 | ROOK | d8
+        WHITE | O-O+   | KING   | g1 | ROOK | f1
+        BLACK | O-O-O# | KING   | c8 | ROOK | d8
         """)
     void parseSan(final Color color,
                   final String san,
@@ -9,7 +9,9 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.converter.ConvertWith;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -54,9 +56,13 @@ class MoveStrategyTest {
             .stream()
             .map(Color::fromName)
             .forEach(color -> {
-                final List<String> candidateSourceSquares = pieceType
-                    .getMoveStrategy()
-                    .getCandidateSourceSquares(new PgnSquare(target), color)
+                final List<String> candidateSourceSquares = IntStream
+                    .of(pieceType
+                        .getMoveStrategy()
+                        .getCandidateSourceSquares(
+                            new PgnSquare(target).getIndex(),
+                            color))
+                    .mapToObj(PgnSquare::of)
                     .map(PgnSquare::getName)
                     .toList();
                 assertThat(candidateSourceSquares)
@@ -64,4 +70,43 @@ class MoveStrategyTest {
             });
     }
 
+    @DisplayName("Get source squares, with occupied squares, of a:")
+    @ParameterizedTest(name = "{index}: {0} {1} {2}, reaching {3}")
+    @CsvSource(delimiter = '|', textBlock = """
+        WHITE | PAWN   | on an empty board      | e4 |             | e2,e3,d3,f3
+        WHITE | PAWN   | first push             | e4 | e2          | e2,e3,d3,f3
+        WHITE | PAWN   | blocked first push     | e4 | e2,e3       | e3,d3,f3
+        BLACK | PAWN   | first push             | d5 | d7          | d6,d7,c6,e6
+        WHITE | KNIGHT | whatever the occupancy | a8 | b6          | c7,b6
+        WHITE | ROOK   | on an empty board      | f5 |             |
+        WHITE | ROOK   | blocked rays           | f5 | f7,f8,b5,f2 | f7,b5,f2
+        WHITE | BISHOP | blocked rays           | c4 | e6,f7,b3,a6 | e6,b3,a6
+        WHITE | QUEEN  | blocked rays           | a1 | a3,a4,c3,h1 | a3,c3,h1
+        """)
+    void getSourceSquares(
+        final Color color,
+        final PgnPieceType pieceType,
+        final String description,
+        final String target,
+        @ConvertWith(StringToList.class) final List<String> occupied,
+        @ConvertWith(StringToList.class) final List<String> expected) {
+
+        final long occupancy = occupied.stream()
+            .map(PgnSquare::new)
+            .mapToLong(s -> Bitboards.bit(s.getIndex()))
+            .reduce(Bitboards.EMPTY, (a, b) -> a | b);
+
+        final long sourceSquares = pieceType
+            .getMoveStrategy()
+            .getSourceSquares(
+                new PgnSquare(target).getIndex(),
+                color,
+                occupancy);
+
+        final List<String> names = new ArrayList<>();
+        for (int square : Bitboards.toSquares(sourceSquares))
+            names.add(PgnSquare.of(square).getName());
+        assertThat(names).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
 }
@@ -0,0 +1,87 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PgnGameSplitterTest {
+
+    private static final String PGN = """
+        [Event "Études: first"]
+        [Site "https://lichess.org/study/abc"]
+
+        1. e4 { Le roi ♔ } e5 *
+
+
+        [Event "Études: second"]
+
+        1. d4 d5 *
+
+        """;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 7, 8, 9, 64, 4096})
+    void feed_withChunks(final int chunkSize) {
+
+        final byte[] bytes = ("preamble\n" + PGN).getBytes(StandardCharsets.UTF_8);
+        final PgnGameSplitter splitter = new PgnGameSplitter();
+        final List<String> games = new ArrayList<>();
+
+        for (int i = 0; i < bytes.length; i += chunkSize)
+            games.addAll(splitter.feed(buffer(Arrays.copyOfRange(
+                bytes,
+                i,
+                Math.min(i + chunkSize, bytes.length)))));
+        games.addAll(splitter.finish());
+
+        // the same games as the split of the whole PGN
+        assertThat(games).containsExactlyElementsOf(
+            PgnParser.splitGames(PGN).toList());
+    }
+
+    @Test
+    void feed_emitsCompletedGames() {
+
+        final PgnGameSplitter splitter = new PgnGameSplitter();
+
+        assertThat(splitter.feed(buffer("[Event \"first\"]\n\n1. e4 *\n"
+            .getBytes(StandardCharsets.UTF_8))))
+            .isEmpty();
+
+        // the first game is complete once the next one starts
+        assertThat(splitter.feed(buffer("\n[Event \"second\"]\n\n1. d4"
+            .getBytes(StandardCharsets.UTF_8))))
+            .containsExactly("[Event \"first\"]\n\n1. e4 *");
+
+        assertThat(splitter.finish())
+            .containsExactly("[Event \"second\"]\n\n1. d4");
+    }
+
+    @Test
+    void feed_releasesBuffers() {
+
+        final PgnGameSplitter splitter = new PgnGameSplitter();
+        final DataBuffer buffer = DefaultDataBufferFactory.sharedInstance
+            .allocateBuffer(16)
+            .write("1. e4".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(splitter.feed(buffer)).isEmpty();
+        assertThat(splitter.finish()).isEmpty();
+        assertThat(buffer.readableByteCount()).isZero();
+    }
+
+    private static DataBuffer buffer(final byte[] bytes) {
+
+        return DefaultDataBufferFactory.sharedInstance.wrap(bytes);
+    }
+
+}
@@ -0,0 +1,154 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import io.github.fifi2.chessmorize.service.pgn.PgnLexer.TokenType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.fifi2.chessmorize.service.pgn.PgnLexer.TokenType.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PgnLexerTest {
+
+    private record Token(TokenType type, String text) {
+    }
+
+    @Test
+    void next_movesAndMoveNumbers() {
+
+        assertThat(tokenize("1. e4 e5 2. Nf3 12... Nc6 *"))
+            .containsExactly(
+                new Token(MOVE, "e4"),
+                new Token(MOVE, "e5"),
+                new Token(MOVE, "Nf3"),
+                new Token(MOVE, "Nc6"));
+    }
+
+    @Test
+    void next_variations() {
+
+        assertThat(tokenize("1. e4 (1. d4 (1. c4)) e5"))
+            .containsExactly(
+                new Token(MOVE, "e4"),
+                new Token(VARIATION_START, "("),
+                new Token(MOVE, "d4"),
+                new Token(VARIATION_START, "("),
+                new Token(MOVE, "c4"),
+                new Token(VARIATION_END, ")"),
+                new Token(VARIATION_END, ")"),
+                new Token(MOVE, "e5"));
+    }
+
+    @Test
+    void next_nags() {
+
+        assertThat(tokenize("1. e4!? e5?? $14 2. Nf3!"))
+            .containsExactly(
+                new Token(MOVE, "e4"),
+                new Token(NAG, "!?"),
+                new Token(MOVE, "e5"),
+                new Token(NAG, "??"),
+                new Token(NAG, "$14"),
+                new Token(MOVE, "Nf3"),
+                new Token(NAG, "!"));
+    }
+
+    @Test
+    void next_commentsAndAnnotations() {
+
+        final String pgn = """
+            { A (comment) } 1. e4 { [%csl Rd4] } ; rest of line
+            % escaped line
+            e5 { Last }
+            """;
+
+        assertThat(tokenize(pgn))
+            .containsExactly(
+                new Token(COMMENT, "A (comment)"),
+                new Token(MOVE, "e4"),
+                new Token(ANNOTATION, "[%csl Rd4]"),
+                new Token(COMMENT, "rest of line"),
+                new Token(MOVE, "e5"),
+                new Token(COMMENT, "Last"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1-0", "0-1", "1/2-1/2", "*"})
+    void next_gameTermination(String result) {
+
+        assertThat(tokenize("1. e4 e5 " + result + " 2. Nf3"))
+            .containsExactly(
+                new Token(MOVE, "e4"),
+                new Token(MOVE, "e5"));
+    }
+
+    @Test
+    void next_castlingAndPromotion() {
+
+        assertThat(tokenize("O-O-O+ exf8=Q# O-O"))
+            .containsExactly(
+                new Token(MOVE, "O-O-O+"),
+                new Token(MOVE, "exf8=Q#"),
+                new Token(MOVE, "O-O"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1. e4 { unterminated", "1. e4 # e5"})
+    void next_invalidInput(String pgn) {
+
+        assertThatThrownBy(() -> tokenize(pgn))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void next_withRange() {
+
+        final String pgn = "1. e4 (1. d4 { a comment } d5) 1... e5 *";
+        final PgnLexer lexer = new PgnLexer(
+            pgn,
+            pgn.indexOf('(') + 1,
+            pgn.indexOf(')'));
+
+        assertThat(tokenize(lexer))
+            .containsExactly(
+                new Token(MOVE, "d4"),
+                new Token(COMMENT, "a comment"),
+                new Token(MOVE, "d5"));
+    }
+
+    @Test
+    void skipTo() {
+
+        final String pgn = "1. e4 (1. d4 d5) 1... e5 *";
+        final PgnLexer lexer = new PgnLexer(pgn);
+
+        assertThat(lexer.next()).isEqualTo(MOVE);
+        assertThat(lexer.next()).isEqualTo(VARIATION_START);
+        assertThat(lexer.getTokenStart()).isEqualTo(pgn.indexOf('('));
+        assertThat(lexer.getCursor()).isEqualTo(pgn.indexOf('(') + 1);
+
+        lexer.skipTo(pgn.indexOf(')') + 1);
+        assertThat(tokenize(lexer)).containsExactly(new Token(MOVE, "e5"));
+    }
+
+    private static List<Token> tokenize(final String pgn) {
+
+        return tokenize(new PgnLexer(pgn));
+    }
+
+    private static List<Token> tokenize(final PgnLexer lexer) {
+
+        final List<Token> tokens = new ArrayList<>();
+
+        TokenType type;
+        while ((type = lexer.next()) != END)
+            tokens.add(new Token(type, lexer.getText()));
+
+        return tokens;
+    }
+
+}
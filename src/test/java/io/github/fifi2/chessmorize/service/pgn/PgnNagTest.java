@@ -26,4 +26,21 @@ class PgnNagTest {
             .isEqualTo(expectedNag);
     }
 
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', textBlock = """
+        1 | GOOD_MOVE
+        2 | MISTAKE
+        3 | BRILLIANT_MOVE
+        4 | BLUNDER
+        5 | SPECULATIVE_MOVE
+        6 | DUBIOUS_MOVE
+        0 |
+        7 |
+        """)
+    void fromCode(int code, PgnNag expectedNag) {
+
+        assertThat(PgnNag.fromCode(code).orElse(null))
+            .isEqualTo(expectedNag);
+    }
+
 }
@@ -2,17 +2,24 @@ package io.github.fifi2.chessmorize.service.pgn;
 
 import io.github.fifi2.chessmorize.helper.converter.StringToList;
 import io.github.fifi2.chessmorize.service.pgn.PgnParser.PgnTagsGame;
-import io.github.fifi2.chessmorize.service.pgn.PgnParser.PgnVariations;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.converter.ConvertWith;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class PgnParserTest {
 
@@ -49,6 +56,129 @@ class PgnParserTest {
         assertThat(pgnGames.get(1).getComment()).isNull();
     }
 
+    @Test
+    void parse_withPool() {
+
+        final String pgn = IntStream.range(0, 20)
+            .mapToObj(i -> """
+                [Event "game%d"]
+
+                1. e4 (1. d4 d5 2. c4) 1... c6 2. d4 d5 *
+
+                """.formatted(i))
+            .collect(Collectors.joining("\n"));
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final PgnParser.Result result = PgnParser.parse(pgn, pool);
+
+            // the games keep the PGN order
+            assertThat(result.games())
+                .extracting(game -> game.getTags().get("Event"))
+                .containsExactlyElementsOf(IntStream.range(0, 20)
+                    .mapToObj(i -> "game" + i)
+                    .toList());
+            assertThat(result.games()).allSatisfy(game -> assertThat(game
+                .getNodes())
+                .extracting(PgnNode::getSan)
+                .containsExactly("e4", "d4"));
+            assertThat(result.elapsedNanos()).isPositive();
+            assertThat(result.busyNanos()).isPositive();
+            assertThat(result.speedup()).isPositive();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parse_withStream() {
+
+        final String pgn = IntStream.range(0, 10)
+            .mapToObj(i -> """
+                [Event "game%d"]
+
+                1. e4 (1. d4 d5 2. c4) 1... c6 2. d4 d5 *
+
+                """.formatted(i))
+            .collect(Collectors.joining("\n"));
+        final byte[] bytes = pgn.getBytes(StandardCharsets.UTF_8);
+
+        // the PGN is received in small chunks
+        final Flux<DataBuffer> stream = Flux
+            .range(0, (bytes.length + 99) / 100)
+            .map(i -> DefaultDataBufferFactory.sharedInstance.wrap(
+                Arrays.copyOfRange(
+                    bytes,
+                    i * 100,
+                    Math.min((i + 1) * 100, bytes.length))));
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            StepVerifier
+                .create(PgnParser.parse(
+                    PgnParser.splitGames(stream),
+                    pool,
+                    PgnParser.DEFAULT_FORK_THRESHOLD))
+                .assertNext(result -> {
+                    assertThat(result.games()).isEqualTo(PgnParser
+                        .parse(pgn, pool)
+                        .games());
+                    assertThat(result.busyNanos()).isPositive();
+                })
+                .verifyComplete();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parse_withStreamAndInvalidGame() {
+
+        final ForkJoinPool pool = new ForkJoinPool(1);
+        try {
+            StepVerifier
+                .create(PgnParser.parse(
+                    Flux.just("[Event \"invalid\"]\n\n1. Da1 *"),
+                    pool,
+                    PgnParser.DEFAULT_FORK_THRESHOLD))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void parse_withEmptyStream() {
+
+        StepVerifier
+            .create(PgnParser.parse(
+                PgnParser.splitGames(Flux.empty()),
+                ForkJoinPool.commonPool(),
+                PgnParser.DEFAULT_FORK_THRESHOLD))
+            .assertNext(result -> {
+                assertThat(result.games()).isEmpty();
+                assertThat(result.speedup()).isEqualTo(1);
+            })
+            .verifyComplete();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', textBlock = """
+        0    | 0   | 1.0
+        100  | 0   | 1.0
+        100  | 250 | 2.5
+        400  | 100 | 0.25
+        """)
+    void result_speedup(final long elapsedNanos,
+                        final long busyNanos,
+                        final double expected) {
+
+        assertThat(new PgnParser.Result(List.of(), elapsedNanos, busyNanos)
+            .speedup())
+            .isEqualTo(expected);
+    }
+
     @Test
     void splitGames_withOneGame() {
 
@@ -123,20 +253,6 @@ class PgnParserTest {
         assertThat(pgnTagsGame.game().split(lineBreak)).hasSize(expectedLinesPgn);
     }
 
-    @Test
-    void splitGameByRootNodes() {
-
-        final String pgn = """
-            1. e4 (1. d4 d5) c6 *
-            """;
-
-        final List<String> games = PgnParser.splitGameByRootNodes(pgn);
-
-        assertThat(games).hasSize(2);
-        assertThat(games.getFirst()).isEqualTo("1. e4 c6 *");
-        assertThat(games.get(1)).isEqualTo("1. d4 d5");
-    }
-
     @Test
     void getTags() {
 
@@ -184,38 +300,6 @@ class PgnParserTest {
             });
     }
 
-    @ParameterizedTest
-    @CsvSource(delimiter = '|', textBlock = """
-                                |                         |
-        something (var1) (var2) | something (var1) (var2) |
-        (var1) something        | something               | var1
-        (var1) (var2) something | something               | var1,var2
-        """)
-    void splitVariations(
-        String pgn,
-        String expectedPgn,
-        @ConvertWith(StringToList.class) List<String> expectedVariations) {
-
-        final PgnVariations pgnVariations = PgnParser.splitVariations(pgn);
-
-        assertThat(pgnVariations.pgn())
-            .isEqualTo(Optional.ofNullable(expectedPgn).orElse(""));
-        assertThat(pgnVariations.variations())
-            .containsExactlyElementsOf(expectedVariations);
-    }
-
-    @ParameterizedTest
-    @CsvSource(delimiter = '|', textBlock = """
-        (123) | 123
-        (123 (45)) | 123 (45)
-        (123 { 45 (67) } 8. 9) 10 | 123 { 45 (67) } 8. 9
-        """)
-    void getNextVariation(String pgn, String nextVariation) {
-
-        assertThat(PgnParser.getNextVariation(pgn))
-            .isEqualTo(nextVariation);
-    }
-
     @Test
     void buildGame_basicPgn() {
 
@@ -231,6 +315,29 @@ class PgnParserTest {
         // @formatter:on
     }
 
+    @Test
+    void buildGame_withPositions() {
+
+        final PgnGame game = PgnParser.buildGame(
+            new PgnTagsGame("", "1. e4 (1. d4 Nf6) 1... c5 *"));
+
+        final PgnNode e4 = game.getNodes().getFirst();
+        final PgnNode d4 = game.getNodes().getLast();
+        final PgnNode c5 = e4.getVariations().getFirst();
+        assertThat(List.of(e4, d4, c5))
+            .extracting(PgnNode::getColor)
+            .containsExactly(Color.WHITE, Color.WHITE, Color.BLACK);
+
+        // the Zobrist keys match the positions replayed on a board
+        final Board board = new Board();
+        board.move("e4");
+        assertThat(e4.getZobristKey()).isEqualTo(board.getZobristKey());
+        board.move("c5");
+        assertThat(c5.getZobristKey()).isEqualTo(board.getZobristKey());
+        assertThat(board.getFen()).isEqualTo(
+            "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2");
+    }
+
     @Test
     void buildGame_withMainComment() {
 
@@ -399,6 +506,151 @@ class PgnParserTest {
         // @formatter:on
     }
 
+    @Test
+    void buildGame_nestedVariations() {
+
+        final String pgn = """
+            1. e4 e5 (1... c5 2. Nf3 (2. c3 d5) 2... d6) (1... e6) 2. Nf3 *
+            """;
+
+        final PgnGame game = PgnParser.buildGame(new PgnTagsGame("", pgn));
+
+        assertThat(game.getNodes()).hasSize(1);
+
+        // @formatter:off
+        assertNode(game.getNodes().getFirst(), "e4", null, null, null,
+            e5 -> assertNode(e5, "e5", null, null, null,
+                nf3 -> assertNode(nf3, "Nf3", null, null, null)),
+            c5 -> assertNode(c5, "c5", null, null, null,
+                nf3 -> assertNode(nf3, "Nf3", null, null, null,
+                    d6 -> assertNode(d6, "d6", null, null, null)),
+                c3 -> assertNode(c3, "c3", null, null, null,
+                    d5 -> assertNode(d5, "d5", null, null, null))),
+            e6 -> assertNode(e6, "e6", null, null, null));
+        // @formatter:on
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "1. e4 e5 (1... c5 2. Nf3 (2. c3 d5) 2... d6) (1... e6) 2. Nf3 *",
+        "1. e4 (1. d4 (1. c4) 1... d5) (1. Nf3) 1... e5 *",
+        "1. e4 ({ dropped } 1. d4 { kept } d5 $1) 1... e5 (1... c5 { [%csl Gd4] }) *",
+        "1. e4 e5 2. Nf3 (2. f4 exf4 (2... d5 3. exd5) 3. Nf3) 2... Nc6 3. Bb5 *"
+    })
+    void buildGame_withForkedVariations(final String pgn) {
+
+        final PgnGame sequential = PgnParser.buildGame(
+            new PgnTagsGame("", pgn),
+            Integer.MAX_VALUE);
+
+        // every variation is parsed in its own task
+        final PgnGame forked = PgnParser.buildGame(new PgnTagsGame("", pgn), 1);
+
+        assertThat(forked).isEqualTo(sequential);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "1. e4 (1. d4 (1. c4) *",
+        "1. e4 (1. d4 Da1) 1... e5 *",
+        "(1. e4) 1. d4 *"
+    })
+    void buildGame_withInvalidForkedVariations(final String pgn) {
+
+        assertThatThrownBy(() -> PgnParser.buildGame(
+            new PgnTagsGame("", pgn),
+            1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void findLargeVariations() {
+
+        final String pgn = "1. e4 (1. d4 (1. c4) d5) { (not a variation) } (1. Nf3) *";
+        final int d4 = pgn.indexOf("(1. d4");
+        final int c4 = pgn.indexOf("(1. c4");
+        final int nf3 = pgn.indexOf("(1. Nf3");
+
+        assertThat(PgnParser.findLargeVariations(pgn, 1))
+            .containsExactlyInAnyOrderEntriesOf(Map.of(
+                d4, pgn.indexOf(')', c4 + 7),
+                c4, c4 + 6,
+                nf3, nf3 + 7));
+        assertThat(PgnParser.findLargeVariations(pgn, 7))
+            .containsExactlyInAnyOrderEntriesOf(Map.of(
+                d4, pgn.indexOf(')', c4 + 7),
+                nf3, nf3 + 7));
+        assertThat(PgnParser.findLargeVariations(pgn, 100)).isEmpty();
+    }
+
+    @Test
+    void parse_withLargeVariations() {
+
+        // variations of both sides, having their own variations
+        final String pgn = """
+            [Event "large"]
+
+            1. e4 %s 1... e5 %s 2. Nf3 *
+            """.formatted(
+            String.join(" ", Collections.nCopies(
+                50,
+                "(1. d4 d5 (1... Nf6 2. c4 (2. Nf3 g6) 2... e6) 2. c4)")),
+            String.join(" ", Collections.nCopies(
+                50,
+                "(1... c5 2. Nf3 (2. c3 d5 (2... Nf6 3. e5)) 2... d6)")));
+
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final List<PgnGame> expected = PgnParser
+                .parse(pgn, pool, Integer.MAX_VALUE)
+                .games();
+            final List<PgnGame> games = PgnParser
+                .parse(pgn, pool, 32)
+                .games();
+
+            assertThat(games).isEqualTo(expected);
+            assertThat(games.getFirst().getNodes()).hasSize(51);
+            assertThat(games.getFirst().getNodes().getFirst().getVariations())
+                .hasSize(51);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void buildGame_commentWithParentheses() {
+
+        final String pgn = """
+            1. e4 { A comment (not a variation) } (1. d4 { Another (one) }) 1... e5 *
+            """;
+
+        final PgnGame game = PgnParser.buildGame(new PgnTagsGame("", pgn));
+
+        assertThat(game.getNodes()).hasSize(2);
+
+        // @formatter:off
+        assertNode(game.getNodes().getFirst(), "e4", null, "A comment (not a variation)", null,
+            e5 -> assertNode(e5, "e5", null, null, null));
+        assertNode(game.getNodes().get(1), "d4", null, "Another (one)", null);
+        // @formatter:on
+    }
+
+    @Test
+    void buildGame_withNumericNags() {
+
+        final String pgn = """
+            1. e4 $1 e5 $4 2. Nf3 $5 $6 *
+            """;
+
+        final PgnGame game = PgnParser.buildGame(new PgnTagsGame("", pgn));
+
+        // @formatter:off
+        assertNode(game.getNodes().getFirst(), "e4", PgnNag.GOOD_MOVE, null, null,
+            e5 -> assertNode(e5, "e5", PgnNag.BLUNDER, null, null,
+            nf3 -> assertNode(nf3, "Nf3", PgnNag.SPECULATIVE_MOVE, null, null)));
+        // @formatter:on
+    }
+
     @Test
     void buildGame_enPassant() {
 
@@ -522,7 +774,7 @@ class PgnParserTest {
         assertAnnotations(node.getAnnotations(), expectedAnnotations);
 
         // board data
-        assertThat(node.getFen()).isNotNull();
+        assertThat(node.getColor()).isNotNull();
         assertThat(node.getUci()).isNotNull();
 
         // variations
@@ -124,4 +124,22 @@ class PgnSquareTest {
         );
     }
 
+    @DisplayName("Get a square index:")
+    @ParameterizedTest(name = "{index}: of square {0}")
+    @CsvSource(delimiter = '|', textBlock = """
+        a1 | 0
+        h1 | 7
+        a2 | 8
+        e4 | 28
+        a8 | 56
+        h8 | 63
+        """)
+    void getIndex(final String squareName,
+                  final int expectedIndex) {
+
+        final PgnSquare square = new PgnSquare(squareName);
+        assertThat(square.getIndex()).isEqualTo(expectedIndex);
+        assertThat(PgnSquare.of(expectedIndex)).isEqualTo(square);
+    }
+
 }
@@ -0,0 +1,352 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import lombok.Builder;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static io.github.fifi2.chessmorize.service.pgn.Bitboards.*;
+import static io.github.fifi2.chessmorize.service.pgn.PgnPieceType.*;
+
+/**
+ * Synthetic study generator
+ * - generate a Lichess-style study PGN: one game per chapter, with its tags
+ * and a tree of moves with variations, comments, annotations (arrows and
+ * highlighted squares) and NAGs
+ * - the moves are legal: they are picked among the legal moves of the Board
+ * and written as Lichess writes them (SAN with the minimal disambiguation,
+ * check and mate flags)
+ * - the study only depends on its settings (and its seed)
+ */
+
+@Builder
+public class StudyGenerator {
+
+    private static final String STUDY_ID = "synthetic";
+    private static final String[] COMMENTS = {
+        "The main idea of the line",
+        "Keeping the tension",
+        "Not the most popular, but sound",
+        "Be careful with the move order here",
+        "A typical plan in this structure",
+    };
+    private static final String[] ANNOTATION_COLORS = {"G", "R", "Y", "B"};
+
+    // seed of the random choices
+    @Builder.Default
+    private final long seed = 42;
+
+    // number of chapters
+    @Builder.Default
+    private final int chapters = 1;
+
+    // number of plies of the lines (the variations end at the same depth as
+    // the main line, unless no move is legal)
+    @Builder.Default
+    private final int depth = 20;
+
+    // maximum number of moves played from a position (1 for no variation)
+    @Builder.Default
+    private final int branching = 3;
+
+    // probability for a position to have variations
+    @Builder.Default
+    private final double variationRate = 0.2;
+
+    // probability for a move to be commented
+    @Builder.Default
+    private final double commentRate = 0.1;
+
+    // probability for a move to be annotated (an arrow or a highlighted
+    // square, in its comment)
+    @Builder.Default
+    private final double annotationRate = 0.05;
+
+    // probability for a move to have each NAG
+    @Builder.Default
+    private final Map<PgnNag, Double> nagRates = Map.of(
+        PgnNag.GOOD_MOVE, 0.05,
+        PgnNag.MISTAKE, 0.02,
+        PgnNag.BRILLIANT_MOVE, 0.005,
+        PgnNag.BLUNDER, 0.01,
+        PgnNag.SPECULATIVE_MOVE, 0.01,
+        PgnNag.DUBIOUS_MOVE, 0.02);
+
+    /**
+     * A generated move, with its continuations (the first one being the main
+     * line).
+     */
+    private record Node(String san,
+                        PgnNag nag,
+                        String comment,
+                        String annotation,
+                        List<Node> nextMoves) {
+
+        boolean isCommented() {
+
+            return this.comment != null || this.annotation != null;
+        }
+
+    }
+
+    /**
+     * Generate the study.
+     *
+     * @return The PGN of the study.
+     */
+    public String generate() {
+
+        final Random random = new Random(this.seed);
+
+        return IntStream
+            .rangeClosed(1, this.chapters)
+            .mapToObj(chapter -> this.generateChapter(chapter, random))
+            .collect(Collectors.joining("\n\n", "", "\n"));
+    }
+
+    private String generateChapter(final int chapter,
+                                   final Random random) {
+
+        final StringBuilder pgn = new StringBuilder();
+        final String chapterName = "Chapter " + chapter;
+        tag(pgn, "Event", "Synthetic: " + chapterName);
+        tag(pgn, "Site", "https://lichess.org/study/%s/%08d"
+            .formatted(STUDY_ID, chapter));
+        tag(pgn, "Result", "*");
+        tag(pgn, "Variant", "Standard");
+        tag(pgn, "ECO", "?");
+        tag(pgn, "Opening", "?");
+        tag(pgn, "Annotator", "https://lichess.org/@/synthetic");
+        tag(pgn, "StudyName", "Synthetic");
+        tag(pgn, "ChapterName", chapterName);
+        tag(pgn, "Orientation", chapter % 2 == 0 ? "black" : "white");
+        pgn.append('\n');
+
+        this.writeMoves(
+            pgn,
+            this.generateMoves(new Board(), 0, random),
+            0,
+            true);
+        return pgn.append('*').toString();
+    }
+
+    private List<Node> generateMoves(final Board board,
+                                     final int ply,
+                                     final Random random) {
+
+        if (ply >= this.depth)
+            return List.of();
+
+        final List<Board.Move> legalMoves =
+            new ArrayList<>(board.getLegalMoves());
+        Collections.shuffle(legalMoves, random);
+        final int count = this.branching > 1
+            && random.nextDouble() < this.variationRate
+            ? 2 + random.nextInt(this.branching - 1)
+            : 1;
+
+        final List<Node> nodes = new ArrayList<>();
+        for (Board.Move move : legalMoves.subList(
+            0,
+            Math.min(count, legalMoves.size()))) {
+            final String san = san(move, legalMoves);
+            board.move(san);
+            if (!board.getUci().equals(Board.buildUci(move)))
+                throw new IllegalStateException(
+                    "%s played as %s".formatted(san, board.getUci()));
+            final String checkedSan = san + checkFlag(board);
+            nodes.add(new Node(
+                checkedSan,
+                this.generateNag(random),
+                random.nextDouble() < this.commentRate
+                    ? COMMENTS[random.nextInt(COMMENTS.length)]
+                    : null,
+                random.nextDouble() < this.annotationRate
+                    ? generateAnnotation(move, random)
+                    : null,
+                this.generateMoves(board, ply + 1, random)));
+            board.unmove();
+        }
+
+        return nodes;
+    }
+
+    private PgnNag generateNag(final Random random) {
+
+        double draw = random.nextDouble();
+        for (PgnNag nag : PgnNag.values()) {
+            draw -= this.nagRates.getOrDefault(nag, 0.0);
+            if (draw < 0)
+                return nag;
+        }
+        return null;
+    }
+
+    private static String generateAnnotation(final Board.Move move,
+                                             final Random random) {
+
+        final String color =
+            ANNOTATION_COLORS[random.nextInt(ANNOTATION_COLORS.length)];
+
+        return random.nextBoolean()
+            ? "[%%cal %s%s%s]".formatted(
+            color,
+            move.source().getName(),
+            move.target().getName())
+            : "[%%csl %s%s]".formatted(
+            color,
+            move.target().getName());
+    }
+
+    /**
+     * Write moves as Lichess does: the move number is repeated for a black
+     * move starting a variation or following a comment or variations.
+     *
+     * @param pgn        is the PGN to append to.
+     * @param nodes      is the moves of the position (main line first).
+     * @param ply        is the ply of the moves.
+     * @param withNumber is true if the move number must be written.
+     */
+    private void writeMoves(final StringBuilder pgn,
+                            final List<Node> nodes,
+                            final int ply,
+                            final boolean withNumber) {
+
+        if (nodes.isEmpty())
+            return;
+
+        final Node main = nodes.getFirst();
+        writeMove(pgn, main, ply, withNumber);
+        for (Node variation : nodes.subList(1, nodes.size())) {
+            pgn.append('(');
+            writeMove(pgn, variation, ply, true);
+            this.writeMoves(
+                pgn,
+                variation.nextMoves(),
+                ply + 1,
+                variation.isCommented());
+            pgn.setLength(pgn.length() - 1);
+            pgn.append(") ");
+        }
+
+        this.writeMoves(
+            pgn,
+            main.nextMoves(),
+            ply + 1,
+            main.isCommented() || nodes.size() > 1);
+    }
+
+    private static void writeMove(final StringBuilder pgn,
+                                  final Node node,
+                                  final int ply,
+                                  final boolean withNumber) {
+
+        final int number = ply / 2 + 1;
+        if (ply % 2 == 0)
+            pgn.append(number).append(". ");
+        else if (withNumber)
+            pgn.append(number).append("... ");
+
+        pgn.append(node.san());
+        if (node.nag() != null)
+            pgn.append(node.nag().getGlyph());
+        pgn.append(' ');
+        if (node.comment() != null)
+            pgn.append("{ ").append(node.comment()).append(" } ");
+        if (node.annotation() != null)
+            pgn.append("{ ").append(node.annotation()).append(" } ");
+    }
+
+    private static void tag(final StringBuilder pgn,
+                            final String name,
+                            final String value) {
+
+        pgn.append('[')
+            .append(name)
+            .append(" \"")
+            .append(value)
+            .append("\"]\n");
+    }
+
+    /**
+     * Write the SAN of a legal move, without its check flag.
+     *
+     * @param move       is the move.
+     * @param legalMoves is the legal moves of the position (for the
+     *                   disambiguation).
+     * @return The SAN.
+     */
+    static String san(final Board.Move move,
+                      final List<Board.Move> legalMoves) {
+
+        if (move.castlingMove() != null)
+            return file(move.target().getIndex()) == 6 ? "O-O" : "O-O-O";
+
+        final StringBuilder san = new StringBuilder();
+        final PgnSquare source = move.source();
+        if (move.pieceType() == PAWN) {
+            if (move.capture())
+                san.append(source.getName().charAt(0)).append('x');
+        } else {
+            san.append(move.pieceType().getLetter());
+            final List<Integer> others = legalMoves
+                .stream()
+                .filter(m -> m.pieceType() == move.pieceType()
+                    && m.castlingMove() == null
+                    && m.target().equals(move.target())
+                    && !m.source().equals(source))
+                .map(m -> m.source().getIndex())
+                .toList();
+            if (!others.isEmpty()) {
+                if (others.stream().noneMatch(
+                    s -> file(s) == file(source.getIndex())))
+                    san.append(source.getName().charAt(0));
+                else if (others.stream().noneMatch(
+                    s -> rank(s) == rank(source.getIndex())))
+                    san.append(source.getName().charAt(1));
+                else
+                    san.append(source.getName());
+            }
+            if (move.capture())
+                san.append('x');
+        }
+
+        san.append(move.target().getName());
+        if (move.promotion() != null)
+            san.append('=').append(move.promotion().type().getLetter());
+
+        return san.toString();
+    }
+
+    /**
+     * Get the check flag of the side to move.
+     *
+     * @param board is the Board.
+     * @return "#" if it is mated, "+" if it is in check, "" otherwise.
+     */
+    private static String checkFlag(final Board board) {
+
+        final Board.Piece[][] position = board.getPosition();
+        for (int square = 0; square < SQUARES; square++) {
+            final Board.Piece piece = pieceAt(position, square);
+            if (piece != null
+                && piece.type() == KING
+                && piece.color() == board.getTurn())
+                return !board.isLeavingKingInCheck(
+                    board.getTurn(),
+                    square,
+                    square)
+                    ? ""
+                    : board.getLegalMoves().isEmpty() ? "#" : "+";
+        }
+        return "";
+    }
+
+    private static Board.Piece pieceAt(final Board.Piece[][] position,
+                                       final int square) {
+
+        return position[7 - rank(square)][file(square)];
+    }
+
+}
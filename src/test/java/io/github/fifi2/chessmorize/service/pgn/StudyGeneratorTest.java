@@ -0,0 +1,177 @@
+package io.github.fifi2.chessmorize.service.pgn;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StudyGeneratorTest {
+
+    @Test
+    void generate_isReproducible() {
+
+        final StudyGenerator generator = StudyGenerator.builder()
+            .chapters(4)
+            .build();
+
+        assertThat(generator.generate())
+            .isEqualTo(generator.generate())
+            .isEqualTo(StudyGenerator.builder()
+                .chapters(4)
+                .build()
+                .generate())
+            .isNotEqualTo(StudyGenerator.builder()
+                .chapters(4)
+                .seed(7)
+                .build()
+                .generate());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', textBlock = """
+        1  | 1  | 1 | 0.0
+        8  | 20 | 3 | 0.2
+        4  | 60 | 2 | 0.1
+        32 | 12 | 4 | 0.5
+        """)
+    void generate_isParsed(final int chapters,
+                           final int depth,
+                           final int branching,
+                           final double variationRate) {
+
+        final List<PgnGame> games = PgnParser.parse(StudyGenerator.builder()
+            .chapters(chapters)
+            .depth(depth)
+            .branching(branching)
+            .variationRate(variationRate)
+            .build()
+            .generate());
+
+        assertThat(games).hasSize(chapters);
+        games.forEach(game -> {
+            assertThat(game.getTags()).containsKeys(
+                "Event",
+                "StudyName",
+                "ChapterName");
+            assertThat(game.getNodes()).hasSizeBetween(1, branching);
+            assertThat(maxDepth(game.getNodes())).isLessThanOrEqualTo(depth);
+            nodes(game.getNodes()).forEach(node -> assertThat(node
+                .getVariations()
+                .size())
+                .isLessThanOrEqualTo(branching));
+        });
+        // the lines end at the depth, unless no move is legal
+        assertThat(games)
+            .extracting(game -> maxDepth(game.getNodes()))
+            .contains(depth);
+    }
+
+    @Test
+    void generate_withoutVariations() {
+
+        final String pgn = StudyGenerator.builder()
+            .depth(40)
+            .branching(1)
+            .build()
+            .generate();
+
+        assertThat(pgn).doesNotContain("(");
+        assertThat(nodes(PgnParser.parse(pgn).getFirst().getNodes()))
+            .hasSize(40);
+    }
+
+    @Test
+    void generate_withDensities() {
+
+        final List<PgnNode> nodes = PgnParser
+            .parse(StudyGenerator.builder()
+                .chapters(16)
+                .commentRate(0.5)
+                .annotationRate(0.5)
+                .nagRates(Map.of(PgnNag.GOOD_MOVE, 0.3, PgnNag.BLUNDER, 0.2))
+                .build()
+                .generate())
+            .stream()
+            .flatMap(game -> nodes(game.getNodes()))
+            .toList();
+
+        assertThat(nodes)
+            .filteredOn(node -> node.getComment() != null)
+            .hasSizeBetween(nodes.size() / 3, 2 * nodes.size() / 3);
+        assertThat(nodes)
+            .filteredOn(node -> !node.getAnnotations().isEmpty())
+            .hasSizeBetween(nodes.size() / 3, 2 * nodes.size() / 3);
+        assertThat(nodes)
+            .extracting(PgnNode::getNag)
+            .containsOnly(null, PgnNag.GOOD_MOVE, PgnNag.BLUNDER)
+            .filteredOn(PgnNag.GOOD_MOVE::equals)
+            .hasSizeBetween(nodes.size() / 5, 2 * nodes.size() / 5);
+    }
+
+    @Test
+    void san_fromTheInitialPosition() {
+
+        final Board board = new Board();
+        final List<Board.Move> legalMoves = board.getLegalMoves();
+
+        assertThat(legalMoves).hasSize(20);
+        assertThat(legalMoves)
+            .extracting(move -> StudyGenerator.san(move, legalMoves))
+            .contains("e4", "e3", "Nf3", "Na3");
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', textBlock = """
+        r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1   | 26 | O-O,O-O-O,Rb1,Ra2
+        r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1   | 26 | O-O,O-O-O,Rb8,Rh7
+        r3k2r/8/8/8/8/8/5r2/R3K2R w KQkq - 0 1 | 22 | O-O-O,Kd1,Kxf2
+        4k3/8/8/8/8/8/8/4K2R w K - 0 1         | 15 | O-O,Rh8
+        2r1k3/8/8/8/8/8/8/R3K3 w Q - 0 1       | 15 | Ra8,Rb1
+        4k3/8/8/8/8/8/8/R3K2R w KQ - 0 1       | 26 | Ra8,O-O-O
+        6k1/5ppp/8/8/8/8/8/R3K3 w Q - 0 1      | 16 | Ra8,O-O-O
+        4k3/P7/8/8/8/8/8/4K3 w - - 0 1         | 9  | a8=Q,a8=N
+        1n2k3/P7/8/8/8/8/8/4K3 w - - 0 1       | 13 | axb8=Q,a8=R
+        4k3/8/8/8/8/8/8/N3K1N1 w - - 0 1       | 10 | Nb3,Nh3,Ne2
+        4k3/8/8/8/8/5N2/8/1N2K3 w - - 0 1      | 15 | Nbd2,Nfd2,Nc3,Ng1
+        4k3/8/8/8/8/8/4K3/R6R w - - 0 1        | 34 | Rad1,Rhd1,Ra8,Kd3
+        4k3/8/8/R7/8/8/8/R3K3 w - - 0 1        | 24 | R1a2,R5a2,R5a4,Rb5
+        7k/8/2Q1Q3/8/2Q5/8/8/4K3 w - - 0 1     | 59 | Qc6d5,Qed5,Q4d5,Qee4
+        """)
+    void san(final String fen,
+             final int expectedMoves,
+             final String expectedSans) {
+
+        final Board board = new Board(fen);
+        final List<Board.Move> legalMoves = board.getLegalMoves();
+
+        assertThat(legalMoves).hasSize(expectedMoves);
+        assertThat(legalMoves)
+            .extracting(move -> StudyGenerator.san(move, legalMoves))
+            .doesNotHaveDuplicates()
+            .contains(expectedSans.split(","));
+    }
+
+    private static Stream<PgnNode> nodes(final List<PgnNode> nodes) {
+
+        return nodes
+            .stream()
+            .flatMap(node -> Stream.concat(
+                Stream.of(node),
+                nodes(node.getVariations())));
+    }
+
+    private static int maxDepth(final List<PgnNode> nodes) {
+
+        return nodes
+            .stream()
+            .mapToInt(node -> 1 + maxDepth(node.getVariations()))
+            .max()
+            .orElse(0);
+    }
+
+}